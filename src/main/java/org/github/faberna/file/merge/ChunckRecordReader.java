@@ -1,19 +1,33 @@
 package org.github.faberna.file.merge;
 
+import org.github.faberna.file.split.model.FixedLengthSeparator;
+import org.github.faberna.file.split.model.LengthPrefixedSeparator;
 import org.github.faberna.file.split.model.Separator;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 /**
  * Reads records from a file using a custom byte-sequence separator.
  * Returns record bytes without the separator.
+ * With a {@link FixedLengthSeparator} every record is the next block of the record length (the last one may be
+ * shorter), read without looking at the bytes.
+ * With a {@link LengthPrefixedSeparator} every record is the payload of the next prefix, sync blocks skipped.
  */
  final class ChunkRecordReader implements AutoCloseable {
     private final java.io.BufferedInputStream in;
     private final byte[] sepBytes;
     private final int sepLen;
+    // 0 unless the records have a fixed length
+    private final int recordLength;
+    // null unless the records are length-prefixed
+    private final LengthPrefixedSeparator.Reader framed;
     private final byte[] buf = new byte[256 * 1024];
     private int pos = 0;
     private int limit = 0;
@@ -23,6 +37,8 @@ import java.nio.file.Path;
         this.in = in;
         this.sepBytes = separator.bytes();
         this.sepLen =sepBytes.length;
+        this.recordLength = separator instanceof FixedLengthSeparator fixed ? fixed.recordLength() : 0;
+        this.framed = separator instanceof LengthPrefixedSeparator prefixed ? prefixed.reader(in) : null;
     }
 
     static ChunkRecordReader open(Path p, Separator sep) throws IOException {
@@ -30,6 +46,8 @@ import java.nio.file.Path;
     }
 
      byte[] nextRecord() throws IOException {
+        if (recordLength > 0) return nextBlock();
+        if (framed != null) return framed.next();
         if (eof && pos >= limit) return null;
 
         java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream(256);
@@ -67,6 +85,83 @@ import java.nio.file.Path;
         }
     }
 
+    private byte[] nextBlock() throws IOException {
+        byte[] block = in.readNBytes(recordLength);
+        if (block.length == 0) return null;
+        return block;
+    }
+
+    /**
+     * The last record of the file (what the last {@link #nextRecord()} returns), read backwards from the end
+     * without scanning the file; null if the file has no record.
+     * Length-prefixed records cannot be read backwards: the prefixes are hopped over from the start of the file.
+     */
+    static byte[] lastRecord(Path p, Separator sep) throws IOException {
+        byte[] sepBytes = sep.bytes();
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (sep instanceof FixedLengthSeparator fixed) {
+                if (size == 0) return null;
+                long tail = size % fixed.recordLength();
+                byte[] last = new byte[(int) (tail == 0 ? fixed.recordLength() : tail)];
+                readFully(ch, ByteBuffer.wrap(last), size - last.length);
+                return last;
+            }
+            if (sep instanceof LengthPrefixedSeparator framed) {
+                return lastFramedRecord(ch, size, framed);
+            }
+            long end = size;
+            if (size >= sepBytes.length && matchesAt(ch, size - sepBytes.length, sepBytes)) end -= sepBytes.length;
+            else if (size == 0) return null;
+
+            // grow a window back from the end until it holds the separator before the last record
+            long window = 64 * 1024;
+            while (true) {
+                long from = Math.max(0, end - window);
+                byte[] tail = new byte[(int) (end - from)];
+                readFully(ch, ByteBuffer.wrap(tail), from);
+                for (int i = tail.length - sepBytes.length; i >= 0; i--) {
+                    if (Arrays.equals(tail, i, i + sepBytes.length, sepBytes, 0, sepBytes.length)) {
+                        return Arrays.copyOfRange(tail, i + sepBytes.length, tail.length);
+                    }
+                }
+                if (from == 0) return tail;
+                window *= 2;
+            }
+        }
+    }
+
+    private static byte[] lastFramedRecord(FileChannel ch, long size, LengthPrefixedSeparator framed) throws IOException {
+        LengthPrefixedSeparator.Hopper hopper = framed.hopper(ch, size);
+        long last = -1;
+        long pos = 0;
+        while (pos < size) {
+            long end = hopper.recordEnd(pos);
+            if (end < 0) break;
+            last = pos;
+            pos = end;
+        }
+        if (last < 0) return null;
+        // the last record, with the sync block before it if any
+        byte[] unit = new byte[(int) (pos - last)];
+        readFully(ch, ByteBuffer.wrap(unit), last);
+        return framed.reader(new ByteArrayInputStream(unit)).next();
+    }
+
+    private static boolean matchesAt(FileChannel ch, long pos, byte[] bytes) throws IOException {
+        byte[] read = new byte[bytes.length];
+        readFully(ch, ByteBuffer.wrap(read), pos);
+        return Arrays.equals(read, bytes);
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer dst, long pos) throws IOException {
+        while (dst.hasRemaining()) {
+            int n = ch.read(dst, pos);
+            if (n < 0) throw new IOException("unexpected end of file at " + pos);
+            pos += n;
+        }
+    }
+
     @Override
     public void close() throws IOException {
         in.close();
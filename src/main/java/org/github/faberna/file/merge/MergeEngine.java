@@ -1,20 +1,31 @@
 package org.github.faberna.file.merge;
 
 import org.github.faberna.file.merge.model.HeapItem;
+import org.github.faberna.file.segment.model.KeyEncoder;
 import org.github.faberna.file.segment.model.KeySpec;
+import org.github.faberna.file.split.model.FixedLengthSeparator;
+import org.github.faberna.file.split.model.LengthPrefixedSeparator;
 import org.github.faberna.file.split.model.Separator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.PriorityQueue;
 
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
 public final class MergeEngine {
 
 
@@ -44,6 +55,7 @@ public final class MergeEngine {
         log.info("kWayMerge end");
     }
 
+    @SuppressWarnings("unchecked")
     public static void kWayMerge(
             List<Path> sortedChunks,
             Path outputFile,
@@ -53,6 +65,14 @@ public final class MergeEngine {
     ) throws IOException {
         checkParameters(keySpecComparator, charset, recordSeparator);
         final byte[] bytes = recordSeparator.bytes();
+        // length-prefixed records are read as payloads and framed again on write
+        final LengthPrefixedSeparator framing = recordSeparator instanceof LengthPrefixedSeparator f ? f : null;
+        if (runsInOrder(sortedChunks, keySpecComparator, charset, recordSeparator)) {
+            // e.g. the parts of an input that was already sorted: the merge is a concatenation
+            log.info("kWayMerge: {} runs already in order, concatenating", sortedChunks.size());
+            concatenate(sortedChunks, outputFile, bytes);
+            return;
+        }
         // list all readers
         List<ChunkRecordReader> readers = new ArrayList<>(sortedChunks.size());
         try {
@@ -60,8 +80,21 @@ public final class MergeEngine {
                 readers.add(ChunkRecordReader.open(p, recordSeparator));
             }
 
+            // KeySpec comparator: encode each record's key once, when it enters the heap, then compare bytes;
+            // segments without a binary key use pre-extracted columns instead
+            KeySpec<?> spec = keySpecComparator instanceof KeySpec.SegmentComparator<?> segments ? segments.keySpec() : null;
+            KeyEncoder encoder = spec != null && KeyEncoder.supports(spec) ? new KeyEncoder(spec) : null;
+            KeySpec<?> columnar = encoder == null && spec != null && spec.columnar() ? spec : null;
+
+            // any other KeySpec key: through the class generated for the KeySpec
+            Comparator<String> lines = keySpecComparator instanceof KeySpec.SegmentComparator<?> segments
+                    ? (Comparator<String>) segments.withCompiled() : keySpecComparator;
+
             PriorityQueue<HeapItem> pq = new PriorityQueue<>((a, b) -> {
-                int c = keySpecComparator.compare(a.line, b.line);
+                int c;
+                if (encoder != null) c = KeyEncoder.compare(a.key, b.key);
+                else if (columnar != null) c = columnar.compareColumns(a.line, a.columns, 0, b.line, b.columns, 0);
+                else c = lines.compare(a.line, b.line);
                 if (c != 0) return c;
                 return Long.compare(a.seq, b.seq);
             });
@@ -70,20 +103,21 @@ public final class MergeEngine {
             for (int i = 0; i < readers.size(); i++) {
                 byte[] rec = readers.get(i).nextRecord();
                 if (rec != null) {
-                    pq.add(new HeapItem(new String(rec, charset), rec, i, seq++));
+                    pq.add(heapItem(rec, i, seq++, charset, encoder, columnar));
                 }
             }
             try (var out = new java.io.BufferedOutputStream(Files.newOutputStream(outputFile), 1 << 20)) {
                 while (!pq.isEmpty()) {
                     HeapItem smallest = pq.poll();
 
+                    if (framing != null) framing.writePrefix(out, smallest.recordBytes.length);
                     out.write(smallest.recordBytes);
 
                     out.write(bytes);
 
                     byte[] next = readers.get(smallest.chunkIndex).nextRecord();
                     if (next != null) {
-                        pq.add(new HeapItem(new String(next, charset), next, smallest.chunkIndex, seq++));
+                        pq.add(heapItem(next, smallest.chunkIndex, seq++, charset, encoder, columnar));
                     }
                 }
             }
@@ -99,6 +133,70 @@ public final class MergeEngine {
         }
     }
 
+    /**
+     * True if every run only holds keys strictly below the first key of the next run: the heap would then emit
+     * the runs one after the other. Costs the first and the last record of each run.
+     */
+    static boolean runsInOrder(List<Path> runs, Comparator<String> comparator, Charset charset, Separator separator)
+            throws IOException {
+        String previousLast = null;
+        for (Path run : runs) {
+            byte[] first;
+            try (ChunkRecordReader reader = ChunkRecordReader.open(run, separator)) {
+                first = reader.nextRecord();
+            }
+            if (first == null) continue;
+            if (previousLast != null && comparator.compare(previousLast, new String(first, charset)) >= 0) return false;
+            previousLast = new String(ChunkRecordReader.lastRecord(run, separator), charset);
+        }
+        return true;
+    }
+
+    /** Same bytes as the merge of runs in order: each run copied whole, its last record terminated. */
+    private static void concatenate(List<Path> runs, Path outputFile, byte[] separator) throws IOException {
+        try (FileChannel out = FileChannel.open(outputFile, WRITE, CREATE, TRUNCATE_EXISTING)) {
+            for (Path run : runs) {
+                try (FileChannel in = FileChannel.open(run, StandardOpenOption.READ)) {
+                    long size = in.size();
+                    long pos = 0;
+                    while (pos < size) {
+                        long n = in.transferTo(pos, size - pos, out);
+                        if (n <= 0) throw new IOException("transferTo made no progress at pos=" + pos + " in " + run);
+                        pos += n;
+                    }
+                    if (size > 0 && !endsWith(in, size, separator)) {
+                        ByteBuffer sep = ByteBuffer.wrap(separator);
+                        while (sep.hasRemaining()) out.write(sep);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean endsWith(FileChannel in, long size, byte[] suffix) throws IOException {
+        if (size < suffix.length) return false;
+        ByteBuffer tail = ByteBuffer.allocate(suffix.length);
+        long pos = size - suffix.length;
+        while (tail.hasRemaining()) {
+            int n = in.read(tail, pos);
+            if (n < 0) return false;
+            pos += n;
+        }
+        return Arrays.equals(tail.array(), suffix);
+    }
+
+    private static HeapItem heapItem(byte[] rec, int chunkIndex, long seq, Charset charset,
+                                     KeyEncoder encoder, KeySpec<?> columnar) {
+        String line = new String(rec, charset);
+        if (encoder != null) return new HeapItem(line, rec, chunkIndex, seq, null, encoder.encode(line));
+        long[] columns = null;
+        if (columnar != null) {
+            columns = new long[columnar.segment().size()];
+            columnar.columns(line, columns, 0);
+        }
+        return new HeapItem(line, rec, chunkIndex, seq, columns);
+    }
+
     private static void checkParameters(Comparator<String> keySpecComparator, Charset charset, Separator recordSeparator) {
         if (keySpecComparator == null) {
             throw new IllegalArgumentException("keySpecComparator is required");
@@ -106,7 +204,9 @@ public final class MergeEngine {
         if (charset == null) {
             throw new IllegalArgumentException("charset is required");
         }
-        if (recordSeparator == null || recordSeparator.length() == 0) {
+        // fixed-length and length-prefixed records have no separator bytes: their length cuts them
+        if (recordSeparator == null || (recordSeparator.length() == 0
+                && !(recordSeparator instanceof FixedLengthSeparator || recordSeparator instanceof LengthPrefixedSeparator))) {
             throw new IllegalArgumentException("record Separator is required");
         }
     }
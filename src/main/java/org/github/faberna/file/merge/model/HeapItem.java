@@ -2,17 +2,31 @@ package org.github.faberna.file.merge.model;
 
 /**
  * Heap element: decoded line for comparison + raw record bytes for output.
+ * {@code columns} holds the key columns extracted once from the line (see {@code KeySpec.columns}), or null;
+ * {@code key} its binary key (see {@code KeyEncoder}), or null.
  */
 public final class HeapItem {
     public final String line;
     public final byte[] recordBytes;
     public final int chunkIndex;
     public final long seq;
+    public final long[] columns;
+    public final byte[] key;
 
     public HeapItem(String line, byte[] recordBytes, int chunkIndex, long seq) {
+        this(line, recordBytes, chunkIndex, seq, null);
+    }
+
+    public HeapItem(String line, byte[] recordBytes, int chunkIndex, long seq, long[] columns) {
+        this(line, recordBytes, chunkIndex, seq, columns, null);
+    }
+
+    public HeapItem(String line, byte[] recordBytes, int chunkIndex, long seq, long[] columns, byte[] key) {
         this.line = line;
         this.recordBytes = recordBytes;
         this.chunkIndex = chunkIndex;
         this.seq = seq;
+        this.columns = columns;
+        this.key = key;
     }
 }
\ No newline at end of file
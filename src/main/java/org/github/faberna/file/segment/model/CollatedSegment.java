@@ -0,0 +1,124 @@
+package org.github.faberna.file.segment.model;
+
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * A text key in the order of a locale {@link Collator}: the text of {@code field} (a {@link RangeSegment}, a
+ * {@link DelimitedSegment}, a {@link JsonFieldSegment} or a {@link CsvSegment}, whose mode is ignored) compared with
+ * the rules of {@code locale} at {@code strength} (e.g. {@link Collator#PRIMARY} ignores case and accents).
+ *
+ * A collator comparison is far slower than a char comparison, so the segment is {@link #keyed()}: sorts compute the
+ * {@link java.text.CollationKey} bytes of each record once ({@link KeyEncoder}) and compare those, as merges do.
+ * {@link #compareChars} collates directly and is only the fallback for comparators used outside the sort buffers.
+ * Thread-safe: each thread collates with its own copy of the collator.
+ */
+public final class CollatedSegment implements Segment<String> {
+
+    private final Segment<String> field;
+    private final Locale locale;
+    private final int strength;
+    private final ThreadLocal<Collator> collator;
+
+    public CollatedSegment(Segment<String> field, Locale locale, int strength) {
+        FieldBounds.requireField(field);
+        if (locale == null) throw new IllegalArgumentException("locale is required");
+        if (strength != Collator.PRIMARY && strength != Collator.SECONDARY
+                && strength != Collator.TERTIARY && strength != Collator.IDENTICAL) {
+            throw new IllegalArgumentException("strength must be a Collator strength: " + strength);
+        }
+        this.field = field;
+        this.locale = locale;
+        this.strength = strength;
+        this.collator = ThreadLocal.withInitial(() -> {
+            Collator c = Collator.getInstance(locale);
+            c.setStrength(strength);
+            return c;
+        });
+    }
+
+    /** Tertiary strength: accents and case matter, less than the base letters. */
+    public CollatedSegment(Segment<String> field, Locale locale) {
+        this(field, locale, Collator.TERTIARY);
+    }
+
+    public Segment<String> field() {
+        return field;
+    }
+
+    public Locale locale() {
+        return locale;
+    }
+
+    public int strength() {
+        return strength;
+    }
+
+    @Override
+    public int compare(String a, String b) {
+        return collator.get().compare(text(a), text(b));
+    }
+
+    @Override
+    public int compareChars(CharSequence a, CharSequence b) {
+        return collator.get().compare(text(a), text(b));
+    }
+
+    @Override
+    public boolean encodable() {
+        return true;
+    }
+
+    @Override
+    public boolean keyed() {
+        return true;
+    }
+
+    @Override
+    public void encodeKey(CharSequence line, KeyEncoder.Output out) {
+        out.bytes(collationKey(line));
+    }
+
+    /** The {@link java.text.CollationKey} bytes of the field: their unsigned order is the collation order. */
+    public byte[] collationKey(CharSequence line) {
+        return collator.get().getCollationKey(text(line)).toByteArray();
+    }
+
+    @Override
+    public boolean emptyKey(CharSequence line) {
+        return FieldBounds.empty(field, line);
+    }
+
+    @Override
+    public int hash(String line) {
+        return Arrays.hashCode(collationKey(line));
+    }
+
+    @Override
+    public void appendKey(String line, StringBuilder out) {
+        field.appendKey(line, out);
+    }
+
+    private String text(CharSequence line) {
+        long bounds = FieldBounds.of(field, line);
+        return line.subSequence(FieldBounds.start(bounds), FieldBounds.end(bounds)).toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CollatedSegment other
+                && field.equals(other.field) && locale.equals(other.locale) && strength == other.strength;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(field, locale, strength);
+    }
+
+    @Override
+    public String toString() {
+        return "CollatedSegment[field=" + field + ", locale=" + locale + ", strength=" + strength + "]";
+    }
+}
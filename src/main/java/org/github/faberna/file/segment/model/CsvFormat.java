@@ -0,0 +1,25 @@
+package org.github.faberna.file.segment.model;
+
+/**
+ * The dialect of the CSV records read by {@link CsvSegment}.
+ *
+ * @param delimiter separates the fields
+ * @param quote encloses a field that may hold delimiters
+ * @param escape inside a quoted field, makes the next char literal: equal to {@code quote} for the RFC 4180 doubled
+ *               quote ({@code ""}), or e.g. {@code '\\'}
+ */
+public record CsvFormat(char delimiter, char quote, char escape) {
+
+    /** Comma-separated, fields quoted with {@code "} and quotes doubled inside them. */
+    public static final CsvFormat RFC_4180 = new CsvFormat(',', '"', '"');
+
+    public CsvFormat {
+        if (delimiter == quote) throw new IllegalArgumentException("delimiter and quote must differ");
+        if (delimiter == escape) throw new IllegalArgumentException("delimiter and escape must differ");
+    }
+
+    /** RFC 4180 quoting with another delimiter, e.g. {@code ';'} or {@code '\t'}. */
+    public static CsvFormat withDelimiter(char delimiter) {
+        return new CsvFormat(delimiter, '"', '"');
+    }
+}
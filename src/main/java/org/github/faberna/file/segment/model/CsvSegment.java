@@ -0,0 +1,268 @@
+package org.github.faberna.file.segment.model;
+
+import org.github.faberna.file.segment.util.NumericKeyParser;
+import org.github.faberna.file.segment.util.SegmentUtil;
+
+/**
+ * Field {@code fieldIndex} (0-based) of a CSV record in {@code format}: unlike {@link DelimitedSegment}, a delimiter
+ * inside a quoted field does not end it. The value compared is the content of the field, without its quotes and with
+ * its escape sequences read as the char they stand for, compared in place in the record (numeric modes parse a field
+ * holding escapes from its unescaped copy). A missing field is empty. Records are lines: a quoted field cannot hold
+ * a line break.
+ *
+ * Always {@link #columnar()}: sorts and merges tokenize each record once per segment, up to the field, and keep its
+ * offsets (LEX modes) or its parsed value (numeric modes) next to the record, so comparisons never rescan the line.
+ */
+public record CsvSegment(int fieldIndex, Mode mode, CsvFormat format) implements Segment<String> {
+
+    // set in the packed bounds of a field holding escape sequences: its chars must be read through them
+    private static final long ESCAPED = Long.MIN_VALUE;
+
+    public CsvSegment {
+        if (fieldIndex < 0) throw new IllegalArgumentException("fieldIndex must be >= 0");
+        if (mode == null) throw new IllegalArgumentException("mode is required");
+        if (format == null) throw new IllegalArgumentException("format is required");
+    }
+
+    public CsvSegment(int fieldIndex, Mode mode) {
+        this(fieldIndex, mode, CsvFormat.RFC_4180);
+    }
+
+    public CsvSegment(int fieldIndex) {
+        this(fieldIndex, Mode.LEX, CsvFormat.RFC_4180);
+    }
+
+    @Override
+    public int compare(String a, String b) {
+        return compareChars(a, b);
+    }
+
+    /** Tokenizes each line once per call: sorts and merges keep the {@link #column} of every record instead. */
+    @Override
+    public int compareChars(CharSequence a, CharSequence b) {
+        long ba = fieldBounds(a);
+        long bb = fieldBounds(b);
+        return switch (mode) {
+            case LEX -> compareText(a, ba, b, bb, false);
+            case LEX_IGNORE_CASE -> compareText(a, ba, b, bb, true);
+            case INT, FLOAT -> compareColumns(a, parse(a, ba), b, parse(b, bb));
+            case DECIMAL -> {
+                long ca = parse(a, ba);
+                long cb = parse(b, bb);
+                yield ca != NumericKeyParser.NOT_SCALED && cb != NumericKeyParser.NOT_SCALED
+                        ? Long.compare(ca, cb)
+                        : compareDecimal(a, ba, b, bb);
+            }
+        };
+    }
+
+    @Override
+    public boolean columnar() {
+        return true;
+    }
+
+    /** LEX modes: the field offsets packed as {@code start << 32 | end}; numeric modes: the (scaled) parsed value. */
+    @Override
+    public long column(CharSequence line) {
+        long b = fieldBounds(line);
+        return mode == Mode.LEX || mode == Mode.LEX_IGNORE_CASE ? b : parse(line, b);
+    }
+
+    /** The value of a numeric mode: the field parsed in place, or from its unescaped copy if it holds escapes. */
+    private long parse(CharSequence line, long b) {
+        CharSequence text = text(line, b);
+        long t = textBounds(text, b);
+        return switch (mode) {
+            case INT -> NumericKeyParser.parseLong(text, start(t), end(t));
+            case FLOAT -> Double.doubleToRawLongBits(NumericKeyParser.parseDouble(text, start(t), end(t)));
+            case DECIMAL -> NumericKeyParser.scaledDecimal(text, start(t), end(t));
+            case LEX, LEX_IGNORE_CASE -> throw new IllegalStateException("not a numeric mode: " + mode);
+        };
+    }
+
+    @Override
+    public int compareColumns(CharSequence a, long columnA, CharSequence b, long columnB) {
+        return switch (mode) {
+            case LEX -> compareText(a, columnA, b, columnB, false);
+            case LEX_IGNORE_CASE -> compareText(a, columnA, b, columnB, true);
+            case INT -> Long.compare(columnA, columnB);
+            case FLOAT -> Double.compare(Double.longBitsToDouble(columnA), Double.longBitsToDouble(columnB));
+            case DECIMAL -> {
+                if (columnA != NumericKeyParser.NOT_SCALED && columnB != NumericKeyParser.NOT_SCALED) {
+                    yield Long.compare(columnA, columnB);
+                }
+                // too many digits to scale: the column holds no offsets, tokenize again
+                yield compareDecimal(a, fieldBounds(a), b, fieldBounds(b));
+            }
+        };
+    }
+
+    private int compareDecimal(CharSequence a, long ba, CharSequence b, long bb) {
+        CharSequence textA = text(a, ba);
+        CharSequence textB = text(b, bb);
+        long ta = textBounds(textA, ba);
+        long tb = textBounds(textB, bb);
+        return NumericKeyParser.compareDecimal(textA, start(ta), end(ta), textB, start(tb), end(tb));
+    }
+
+    /** Compares two fields char by char (missing chars as 0, like the range comparisons), reading escapes in place. */
+    private int compareText(CharSequence a, long ba, CharSequence b, long bb, boolean ignoreCase) {
+        if ((ba & ESCAPED) == 0 && (bb & ESCAPED) == 0) {
+            return ignoreCase
+                    ? SegmentUtil.compareRangesIgnoreCase(a, start(ba), end(ba), b, start(bb), end(bb))
+                    : SegmentUtil.compareRangesCharByChar(a, start(ba), end(ba), b, start(bb), end(bb));
+        }
+        boolean escapedA = (ba & ESCAPED) != 0;
+        boolean escapedB = (bb & ESCAPED) != 0;
+        int ai = start(ba), aEnd = end(ba), bi = start(bb), bEnd = end(bb);
+        char escape = format.escape();
+        while (ai < aEnd || bi < bEnd) {
+            char ca = 0;
+            char cb = 0;
+            if (ai < aEnd) {
+                ca = a.charAt(ai++);
+                if (escapedA && ca == escape && ai < aEnd) ca = a.charAt(ai++);
+            }
+            if (bi < bEnd) {
+                cb = b.charAt(bi++);
+                if (escapedB && cb == escape && bi < bEnd) cb = b.charAt(bi++);
+            }
+            if (ca != cb) {
+                if (ignoreCase) {
+                    ca = SegmentUtil.foldCase(ca);
+                    cb = SegmentUtil.foldCase(cb);
+                    if (ca == cb) continue;
+                }
+                return Character.compare(ca, cb);
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean encodable() {
+        return true;
+    }
+
+    @Override
+    public void encodeKey(CharSequence line, KeyEncoder.Output out) {
+        long b = fieldBounds(line);
+        CharSequence text = text(line, b);
+        long t = textBounds(text, b);
+        switch (mode) {
+            case LEX -> out.chars(text, start(t), end(t));
+            case LEX_IGNORE_CASE -> out.foldedChars(text, start(t), end(t));
+            case INT -> out.int64(NumericKeyParser.parseLong(text, start(t), end(t)));
+            case FLOAT -> out.float64(NumericKeyParser.parseDouble(text, start(t), end(t)));
+            case DECIMAL -> out.decimal(text, start(t), end(t));
+        }
+    }
+
+    @Override
+    public boolean emptyKey(CharSequence line) {
+        return FieldBounds.empty(this, line);
+    }
+
+    @Override
+    public int hash(String line) {
+        long b = fieldBounds(line);
+        String text = (b & ESCAPED) == 0 ? line : unescape(line, b);
+        long t = textBounds(text, b);
+        int start = start(t), end = end(t);
+        return switch (mode) {
+            case LEX -> SegmentUtil.hashRange(text, start, end);
+            case LEX_IGNORE_CASE -> SegmentUtil.hashRangeIgnoreCase(text, start, end);
+            case INT -> Long.hashCode(NumericKeyParser.parseLong(text, start, end));
+            case FLOAT -> Double.hashCode(NumericKeyParser.parseDouble(text, start, end));
+            case DECIMAL -> NumericKeyParser.hashDecimal(text, start, end);
+        };
+    }
+
+    @Override
+    public void appendKey(String line, StringBuilder out) {
+        long b = fieldBounds(line);
+        if ((b & ESCAPED) == 0) SegmentUtil.appendRange(line, start(b), end(b), out);
+        else out.append(unescape(line, b));
+    }
+
+    /** The content of the field packed as {@code start << 32 | end}, escape sequences left in place. */
+    long bounds(CharSequence line) {
+        return fieldBounds(line) & ~ESCAPED;
+    }
+
+    /**
+     * Tokenizes the line up to the field: its content packed as {@code start << 32 | end}, plus {@link #ESCAPED}
+     * if it holds escape sequences; empty at the end of the line if the record has fewer fields.
+     */
+    private long fieldBounds(CharSequence line) {
+        int len = line.length();
+        char delimiter = format.delimiter();
+        char quote = format.quote();
+        int i = 0;
+        for (int field = 0; field < fieldIndex; field++) {
+            if (i < len && line.charAt(i) == quote) i = quotedEnd(line, i + 1, len) + 1;
+            while (i < len && line.charAt(i) != delimiter) i++;
+            if (i >= len) return ((long) len << 32) | len;
+            i++;
+        }
+        if (i < len && line.charAt(i) == quote) {
+            int start = i + 1;
+            int end = quotedEnd(line, start, len);
+            boolean escaped = false;
+            for (int j = start; j < end && !escaped; j++) escaped = line.charAt(j) == format.escape();
+            return (escaped ? ESCAPED : 0) | ((long) start << 32) | end;
+        }
+        int start = i;
+        while (i < len && line.charAt(i) != delimiter) i++;
+        return ((long) start << 32) | i;
+    }
+
+    /** Index of the quote closing a quoted field whose content starts at {@code from}, or {@code len}. */
+    private int quotedEnd(CharSequence line, int from, int len) {
+        char quote = format.quote();
+        char escape = format.escape();
+        for (int j = from; j < len; j++) {
+            char c = line.charAt(j);
+            if (c == escape && j + 1 < len && (escape != quote || line.charAt(j + 1) == quote)) {
+                j++;
+            } else if (c == quote) {
+                return j;
+            }
+        }
+        return len;
+    }
+
+    /** The chars holding the value of the field: the line itself, or the unescaped copy of a field with escapes. */
+    private CharSequence text(CharSequence line, long b) {
+        return (b & ESCAPED) == 0 ? line : unescape(line, b);
+    }
+
+    /** Bounds of the field in {@link #text}: the whole copy for a field with escapes. */
+    private static long textBounds(CharSequence text, long b) {
+        return (b & ESCAPED) == 0 ? b : text.length();
+    }
+
+    /**
+     * The content of an escaped field with its escape sequences replaced (allocates: hashes, keys, and the numbers of
+     * fields holding escapes only).
+     */
+    private String unescape(CharSequence line, long b) {
+        int end = end(b);
+        char escape = format.escape();
+        StringBuilder out = new StringBuilder(end - start(b));
+        for (int i = start(b); i < end; i++) {
+            char c = line.charAt(i);
+            if (c == escape && i + 1 < end) c = line.charAt(++i);
+            out.append(c);
+        }
+        return out.toString();
+    }
+
+    private static int start(long bounds) {
+        return (int) (bounds >>> 32) & Integer.MAX_VALUE;
+    }
+
+    private static int end(long bounds) {
+        return (int) bounds;
+    }
+}
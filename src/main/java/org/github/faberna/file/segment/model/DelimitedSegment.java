@@ -1,5 +1,6 @@
 package org.github.faberna.file.segment.model;
 
+import org.github.faberna.file.segment.util.NumericKeyParser;
 import org.github.faberna.file.segment.util.SegmentUtil;
 
 public record DelimitedSegment(char delimiter, int occurrenceIndex, Integer lengthAfter, Mode mode) implements Segment<String> {
@@ -17,21 +18,98 @@ public record DelimitedSegment(char delimiter, int occurrenceIndex, Integer leng
 
     @Override
     public int compare(String a, String b) {
+        return compareChars(a, b);
+    }
+
+    @Override
+    public int compareChars(CharSequence a, CharSequence b) {
         Range ra = resolve(a);
         Range rb = resolve(b);
     /*
      *  Comparison logic:
      *  - LEX: compare character by character in the resolved ranges, treating missing chars
+     *  - LEX_IGNORE_CASE: same as LEX on case-folded characters
      *  - INT: parse the resolved ranges as  integers and compare numerically
      *  - FLOAT: parse the resolved ranges as floating-point numbers and compare numerically
+     *  - DECIMAL: compare the resolved ranges as exact decimal numbers, digit by digit
      */
         return switch (mode) {
             case LEX -> SegmentUtil.compareRangesCharByChar(a, ra.start, ra.end, b, rb.start, rb.end);
+            case LEX_IGNORE_CASE -> SegmentUtil.compareRangesIgnoreCase(a, ra.start, ra.end, b, rb.start, rb.end);
             case INT -> Long.compare(parseLongInRange(a, ra.start, ra.end), parseLongInRange(b, rb.start, rb.end));
             case FLOAT -> Double.compare(parseDoubleInRange(a, ra.start, ra.end), parseDoubleInRange(b, rb.start, rb.end));
+            case DECIMAL -> NumericKeyParser.compareDecimal(a, ra.start, ra.end, b, rb.start, rb.end);
+        };
+    }
+
+
+    /** Always columnar: the field is located once per record instead of twice per comparison. */
+    @Override
+    public boolean columnar() {
+        return true;
+    }
+
+    /** LEX modes: the field offsets packed as {@code start << 32 | end}; numeric modes: the (scaled) parsed value. */
+    @Override
+    public long column(CharSequence line) {
+        Range r = resolve(line);
+        return switch (mode) {
+            case LEX, LEX_IGNORE_CASE -> ((long) r.start << 32) | r.end;
+            case INT -> parseLongInRange(line, r.start, r.end);
+            case FLOAT -> Double.doubleToRawLongBits(parseDoubleInRange(line, r.start, r.end));
+            case DECIMAL -> NumericKeyParser.scaledDecimal(line, r.start, r.end);
+        };
+    }
+
+    @Override
+    public int compareColumns(CharSequence a, long columnA, CharSequence b, long columnB) {
+        return switch (mode) {
+            case LEX -> SegmentUtil.compareRangesCharByChar(
+                    a, (int) (columnA >>> 32), (int) columnA, b, (int) (columnB >>> 32), (int) columnB);
+            case LEX_IGNORE_CASE -> SegmentUtil.compareRangesIgnoreCase(
+                    a, (int) (columnA >>> 32), (int) columnA, b, (int) (columnB >>> 32), (int) columnB);
+            case INT -> Long.compare(columnA, columnB);
+            case FLOAT -> Double.compare(Double.longBitsToDouble(columnA), Double.longBitsToDouble(columnB));
+            // a decimal too long for a scaled long: locate the fields again and compare the digits
+            case DECIMAL -> columnA != NumericKeyParser.NOT_SCALED && columnB != NumericKeyParser.NOT_SCALED
+                    ? Long.compare(columnA, columnB)
+                    : compareChars(a, b);
         };
     }
 
+    @Override
+    public boolean encodable() {
+        return true;
+    }
+
+    @Override
+    public void encodeKey(CharSequence line, KeyEncoder.Output out) {
+        Range r = resolve(line);
+        switch (mode) {
+            case LEX -> out.chars(line, r.start, r.end);
+            case LEX_IGNORE_CASE -> out.foldedChars(line, r.start, r.end);
+            case INT -> out.int64(parseLongInRange(line, r.start, r.end));
+            case FLOAT -> out.float64(parseDoubleInRange(line, r.start, r.end));
+            case DECIMAL -> out.decimal(line, r.start, r.end);
+        }
+    }
+
+    @Override
+    public boolean emptyKey(CharSequence line) {
+        return FieldBounds.empty(this, line);
+    }
+
+    @Override
+    public int hash(String line) {
+        Range r = resolve(line);
+        return switch (mode) {
+            case LEX -> SegmentUtil.hashRange(line, r.start, r.end);
+            case LEX_IGNORE_CASE -> SegmentUtil.hashRangeIgnoreCase(line, r.start, r.end);
+            case INT -> Long.hashCode(parseLongInRange(line, r.start, r.end));
+            case FLOAT -> Double.hashCode(parseDoubleInRange(line, r.start, r.end));
+            case DECIMAL -> NumericKeyParser.hashDecimal(line, r.start, r.end);
+        };
+    }
 
     @Override
     public void appendKey(String line, StringBuilder out) {
@@ -40,13 +118,19 @@ public record DelimitedSegment(char delimiter, int occurrenceIndex, Integer leng
     }
 
 
-    private Range resolve(String line) {
+    /** The field of the line packed as {@code start << 32 | end}. */
+    long bounds(CharSequence line) {
+        Range r = resolve(line);
+        return ((long) r.start << 32) | r.end;
+    }
+
+    private Range resolve(CharSequence line) {
         int delimPos = SegmentUtil.nthDelimiterIndex(line, delimiter, occurrenceIndex);
         if (delimPos < 0) return new Range(line.length(), line.length());
 
         int start = delimPos + 1;
         if (lengthAfter == null) {
-            int nextDelim = SegmentUtil.nthDelimiterIndex(line, delimiter, occurrenceIndex + 1);
+            int nextDelim = SegmentUtil.indexOf(line, delimiter, start);
             int end = (nextDelim < 0) ? line.length() : nextDelim;
             return new Range(start, end);
         }
@@ -56,68 +140,11 @@ public record DelimitedSegment(char delimiter, int occurrenceIndex, Integer leng
 
     private record Range(int start, int end) {}
 
-    // stessi parser in-place di RangeSegment (copiati qui per non dipendere da SegmentUtil)
-    private static long parseLongInRange(String s, int start, int end) {
-        int n = s.length();
-        int i = Math.min(start, n);
-        int to = Math.min(end, n);
-        while (i < to && s.charAt(i) <= ' ') i++;
-
-        boolean neg = false;
-        if (i < to) {
-            char c = s.charAt(i);
-            if (c == '-' || c == '+') { neg = (c == '-'); i++; }
-        }
-
-        long val = 0;
-        boolean any = false;
-        while (i < to) {
-            char c = s.charAt(i);
-            if (c < '0' || c > '9') break;
-            any = true;
-            val = val * 10 + (c - '0');
-            i++;
-        }
-        if (!any) return 0;
-        return neg ? -val : val;
+    private static long parseLongInRange(CharSequence s, int start, int end) {
+        return NumericKeyParser.parseLong(s, start, end);
     }
 
-    private static double parseDoubleInRange(String s, int start, int end) {
-        int n = s.length();
-        int i = Math.min(start, n);
-        int to = Math.min(end, n);
-        while (i < to && s.charAt(i) <= ' ') i++;
-
-        boolean neg = false;
-        if (i < to) {
-            char c = s.charAt(i);
-            if (c == '-' || c == '+') { neg = (c == '-'); i++; }
-        }
-
-        double val = 0.0;
-        boolean any = false;
-        while (i < to) {
-            char c = s.charAt(i);
-            if (c < '0' || c > '9') break;
-            any = true;
-            val = val * 10.0 + (c - '0');
-            i++;
-        }
-
-        if (i < to && s.charAt(i) == '.') {
-            i++;
-            double div = 10.0;
-            while (i < to) {
-                char c = s.charAt(i);
-                if (c < '0' || c > '9') break;
-                any = true;
-                val += (c - '0') / div;
-                div *= 10.0;
-                i++;
-            }
-        }
-
-        if (!any) return 0.0;
-        return neg ? -val : val;
+    private static double parseDoubleInRange(CharSequence s, int start, int end) {
+        return NumericKeyParser.parseDouble(s, start, end);
     }
 }
\ No newline at end of file
@@ -0,0 +1,4 @@
+package org.github.faberna.file.segment.model;
+
+/** Order of a segment in a key ({@link OrderedSegment}): ASC as the segment compares, DESC reversed. */
+public enum Direction { ASC, DESC }
@@ -0,0 +1,9 @@
+package org.github.faberna.file.segment.model;
+
+/**
+ * Where an {@link OrderedSegment} places the lines whose key segment is empty ({@link Segment#emptyKey}):
+ * - NATURAL: where the segment compares them (LEX: before any text; INT: as 0)
+ * - FIRST: before every other key, whatever the direction
+ * - LAST: after every other key, whatever the direction
+ */
+public enum EmptyKeys { NATURAL, FIRST, LAST }
@@ -0,0 +1,48 @@
+package org.github.faberna.file.segment.model;
+
+/**
+ * Location of the field of the segments that parse or collate a {@link RangeSegment}, a {@link DelimitedSegment}, a
+ * {@link JsonFieldSegment} or a {@link CsvSegment}.
+ */
+final class FieldBounds {
+
+    private FieldBounds() {
+        /* This utility class should not be instantiated */
+    }
+
+    static void requireField(Segment<String> field) {
+        if (!(field instanceof RangeSegment) && !(field instanceof DelimitedSegment)
+                && !(field instanceof JsonFieldSegment) && !(field instanceof CsvSegment)) {
+            throw new IllegalArgumentException(
+                    "field must be a RangeSegment, a DelimitedSegment, a JsonFieldSegment or a CsvSegment");
+        }
+    }
+
+    /** The field of the line packed as {@code start << 32 | end}, {@code end} clamped to the line. */
+    static long of(Segment<String> field, CharSequence line) {
+        if (field instanceof RangeSegment range) {
+            int end = Math.min(range.end(), line.length());
+            return ((long) Math.min(range.start(), end) << 32) | end;
+        }
+        if (field instanceof JsonFieldSegment json) return json.bounds(line);
+        if (field instanceof CsvSegment csv) return csv.bounds(line);
+        return ((DelimitedSegment) field).bounds(line);
+    }
+
+    /** True if the field of the line has no chars but spaces ({@link Segment#emptyKey}). */
+    static boolean empty(Segment<String> field, CharSequence line) {
+        long bounds = of(field, line);
+        for (int i = start(bounds); i < end(bounds); i++) {
+            if (line.charAt(i) != ' ') return false;
+        }
+        return true;
+    }
+
+    static int start(long bounds) {
+        return (int) (bounds >>> 32);
+    }
+
+    static int end(long bounds) {
+        return (int) bounds;
+    }
+}
@@ -0,0 +1,60 @@
+package org.github.faberna.file.segment.model;
+
+import java.lang.constant.ConstantDescs;
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+
+/**
+ * Template of the comparators built by {@link KeySpecCompiler}: never used as is. Each KeySpec gets a hidden class
+ * defined from the bytes of this one, with its segments as class data. In every copy the segments are static final
+ * constants and the comparison is unrolled, so the JIT sees one concrete segment type per call site (no megamorphic
+ * interface calls) and folds the range bounds and the mode switch of the segment records.
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+final class GeneratedKeyComparator implements KeyComparator<Object> {
+
+    static final int MAX_SEGMENTS = 4;
+
+    private static final int SIZE;
+    private static final Segment S0;
+    private static final Segment S1;
+    private static final Segment S2;
+    private static final Segment S3;
+
+    static {
+        List<Segment> segments;
+        try {
+            segments = MethodHandles.classData(MethodHandles.lookup(), ConstantDescs.DEFAULT_NAME, List.class);
+        } catch (IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        if (segments == null) segments = List.of();
+        SIZE = segments.size();
+        S0 = SIZE > 0 ? segments.get(0) : null;
+        S1 = SIZE > 1 ? segments.get(1) : null;
+        S2 = SIZE > 2 ? segments.get(2) : null;
+        S3 = SIZE > 3 ? segments.get(3) : null;
+    }
+
+    @Override
+    public int compare(Object a, Object b) {
+        int c = S0.compare(a, b);
+        if (c != 0 || SIZE == 1) return c;
+        c = S1.compare(a, b);
+        if (c != 0 || SIZE == 2) return c;
+        c = S2.compare(a, b);
+        if (c != 0 || SIZE == 3) return c;
+        return S3.compare(a, b);
+    }
+
+    @Override
+    public int compareChars(CharSequence a, CharSequence b) {
+        int c = S0.compareChars(a, b);
+        if (c != 0 || SIZE == 1) return c;
+        c = S1.compareChars(a, b);
+        if (c != 0 || SIZE == 2) return c;
+        c = S2.compareChars(a, b);
+        if (c != 0 || SIZE == 3) return c;
+        return S3.compareChars(a, b);
+    }
+}
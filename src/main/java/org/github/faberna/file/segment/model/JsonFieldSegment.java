@@ -0,0 +1,329 @@
+package org.github.faberna.file.segment.model;
+
+import org.github.faberna.file.segment.util.NumericKeyParser;
+import org.github.faberna.file.segment.util.SegmentUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A field of a JSON Lines (NDJSON) record, located by a path such as {@code $.event.ts} or {@code $.items[0].id}.
+ *
+ * The field is found by a single forward scan of the record: members and elements before it are skipped by matching
+ * quotes and brackets, nothing is parsed into a tree and nothing is allocated. The value span is what the modes
+ * compare: the raw text between the quotes of a string (escapes are not decoded), the token of a number or a literal,
+ * the whole text of an object or an array. A missing field, a {@code null} or a malformed record give an empty span.
+ *
+ * Always {@link #columnar()}: sorts and merges locate the field once per record and keep its span (LEX modes) or its
+ * parsed value (numeric modes) next to the record. {@link TimestampSegment} and {@link CollatedSegment} accept it as
+ * their field.
+ */
+public final class JsonFieldSegment implements Segment<String> {
+
+    private final String path;
+    private final Mode mode;
+    // compiled path: a member name, or null for the array index at the same step
+    private final String[] names;
+    private final int[] indexes;
+
+    public JsonFieldSegment(String path, Mode mode) {
+        if (path == null) throw new IllegalArgumentException("path is required");
+        if (mode == null) throw new IllegalArgumentException("mode is required");
+        this.path = path;
+        this.mode = mode;
+        List<String> steps = new ArrayList<>();
+        List<Integer> stepIndexes = new ArrayList<>();
+        compile(path, steps, stepIndexes);
+        this.names = steps.toArray(new String[0]);
+        this.indexes = stepIndexes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public JsonFieldSegment(String path) {
+        this(path, Mode.LEX);
+    }
+
+    public String path() {
+        return path;
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    /** {@code $} then {@code .name}, {@code ['name']} or {@code [index]} steps; the leading {@code $} is optional. */
+    private static void compile(String path, List<String> names, List<Integer> indexes) {
+        int i = path.startsWith("$") ? 1 : 0;
+        int n = path.length();
+        if (i == 0 && n > 0 && path.charAt(0) != '.' && path.charAt(0) != '[') {
+            path = "." + path;
+            n++;
+        }
+        while (i < n) {
+            char c = path.charAt(i);
+            if (c == '.') {
+                int end = i + 1;
+                while (end < n && path.charAt(end) != '.' && path.charAt(end) != '[') end++;
+                if (end == i + 1) throw new IllegalArgumentException("empty member name in JSON path: " + path);
+                names.add(path.substring(i + 1, end));
+                indexes.add(-1);
+                i = end;
+            } else if (c == '[') {
+                int close = path.indexOf(']', i);
+                if (close < 0) throw new IllegalArgumentException("unclosed '[' in JSON path: " + path);
+                String inner = path.substring(i + 1, close);
+                if (inner.length() >= 2 && (inner.charAt(0) == '\'' || inner.charAt(0) == '"')
+                        && inner.charAt(inner.length() - 1) == inner.charAt(0)) {
+                    names.add(inner.substring(1, inner.length() - 1));
+                    indexes.add(-1);
+                } else {
+                    try {
+                        int index = Integer.parseInt(inner);
+                        if (index < 0) throw new NumberFormatException();
+                        names.add(null);
+                        indexes.add(index);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("invalid array index in JSON path: " + path);
+                    }
+                }
+                i = close + 1;
+            } else {
+                throw new IllegalArgumentException("unexpected '" + c + "' in JSON path: " + path);
+            }
+        }
+    }
+
+    @Override
+    public int compare(String a, String b) {
+        return compareChars(a, b);
+    }
+
+    @Override
+    public int compareChars(CharSequence a, CharSequence b) {
+        long ba = bounds(a);
+        long bb = bounds(b);
+        int as = start(ba), ae = end(ba), bs = start(bb), be = end(bb);
+        return switch (mode) {
+            case LEX -> SegmentUtil.compareRangesCharByChar(a, as, ae, b, bs, be);
+            case LEX_IGNORE_CASE -> SegmentUtil.compareRangesIgnoreCase(a, as, ae, b, bs, be);
+            case INT -> Long.compare(NumericKeyParser.parseLong(a, as, ae), NumericKeyParser.parseLong(b, bs, be));
+            case FLOAT -> Double.compare(NumericKeyParser.parseDouble(a, as, ae), NumericKeyParser.parseDouble(b, bs, be));
+            case DECIMAL -> NumericKeyParser.compareDecimal(a, as, ae, b, bs, be);
+        };
+    }
+
+    @Override
+    public boolean columnar() {
+        return true;
+    }
+
+    /** LEX modes: the value span packed as {@code start << 32 | end}; numeric modes: the (scaled) parsed value. */
+    @Override
+    public long column(CharSequence line) {
+        long b = bounds(line);
+        return switch (mode) {
+            case LEX, LEX_IGNORE_CASE -> b;
+            case INT -> NumericKeyParser.parseLong(line, start(b), end(b));
+            case FLOAT -> Double.doubleToRawLongBits(NumericKeyParser.parseDouble(line, start(b), end(b)));
+            case DECIMAL -> NumericKeyParser.scaledDecimal(line, start(b), end(b));
+        };
+    }
+
+    @Override
+    public int compareColumns(CharSequence a, long columnA, CharSequence b, long columnB) {
+        return switch (mode) {
+            case LEX -> SegmentUtil.compareRangesCharByChar(a, start(columnA), end(columnA), b, start(columnB), end(columnB));
+            case LEX_IGNORE_CASE -> SegmentUtil.compareRangesIgnoreCase(
+                    a, start(columnA), end(columnA), b, start(columnB), end(columnB));
+            case INT -> Long.compare(columnA, columnB);
+            case FLOAT -> Double.compare(Double.longBitsToDouble(columnA), Double.longBitsToDouble(columnB));
+            case DECIMAL -> columnA != NumericKeyParser.NOT_SCALED && columnB != NumericKeyParser.NOT_SCALED
+                    ? Long.compare(columnA, columnB)
+                    : compareChars(a, b);
+        };
+    }
+
+    @Override
+    public boolean encodable() {
+        return true;
+    }
+
+    @Override
+    public void encodeKey(CharSequence line, KeyEncoder.Output out) {
+        long b = bounds(line);
+        switch (mode) {
+            case LEX -> out.chars(line, start(b), end(b));
+            case LEX_IGNORE_CASE -> out.foldedChars(line, start(b), end(b));
+            case INT -> out.int64(NumericKeyParser.parseLong(line, start(b), end(b)));
+            case FLOAT -> out.float64(NumericKeyParser.parseDouble(line, start(b), end(b)));
+            case DECIMAL -> out.decimal(line, start(b), end(b));
+        }
+    }
+
+    @Override
+    public boolean emptyKey(CharSequence line) {
+        return FieldBounds.empty(this, line);
+    }
+
+    @Override
+    public int hash(String line) {
+        long b = bounds(line);
+        return switch (mode) {
+            case LEX -> SegmentUtil.hashRange(line, start(b), end(b));
+            case LEX_IGNORE_CASE -> SegmentUtil.hashRangeIgnoreCase(line, start(b), end(b));
+            case INT -> Long.hashCode(NumericKeyParser.parseLong(line, start(b), end(b)));
+            case FLOAT -> Double.hashCode(NumericKeyParser.parseDouble(line, start(b), end(b)));
+            case DECIMAL -> NumericKeyParser.hashDecimal(line, start(b), end(b));
+        };
+    }
+
+    @Override
+    public void appendKey(String line, StringBuilder out) {
+        long b = bounds(line);
+        SegmentUtil.appendRange(line, start(b), end(b), out);
+    }
+
+    /** The value span of the field packed as {@code start << 32 | end}; empty at the end of the line if missing. */
+    long bounds(CharSequence line) {
+        int len = line.length();
+        long missing = ((long) len << 32) | len;
+        int i = skipWhitespace(line, 0, len);
+        for (int step = 0; step < names.length; step++) {
+            i = names[step] != null ? member(line, i, len, names[step]) : element(line, i, len, indexes[step]);
+            if (i < 0) return missing;
+        }
+        if (i >= len) return missing;
+        if (line.charAt(i) == '"') {
+            int close = closingQuote(line, i, len);
+            return close < 0 ? missing : ((long) (i + 1) << 32) | close;
+        }
+        int end = skipValue(line, i, len);
+        if (end < 0 || isNull(line, i, end)) return missing;
+        return ((long) i << 32) | end;
+    }
+
+    /** Start of the value of member {@code name} of the object at {@code i}, or -1. */
+    private static int member(CharSequence s, int i, int len, String name) {
+        if (i >= len || s.charAt(i) != '{') return -1;
+        i = skipWhitespace(s, i + 1, len);
+        while (i < len && s.charAt(i) == '"') {
+            int close = closingQuote(s, i, len);
+            if (close < 0) return -1;
+            boolean match = close - i - 1 == name.length() && regionMatches(s, i + 1, name);
+            i = skipWhitespace(s, close + 1, len);
+            if (i >= len || s.charAt(i) != ':') return -1;
+            i = skipWhitespace(s, i + 1, len);
+            if (match) return i;
+            i = next(s, i, len);
+            if (i < 0) return -1;
+        }
+        return -1;
+    }
+
+    /** Start of element {@code index} of the array at {@code i}, or -1. */
+    private static int element(CharSequence s, int i, int len, int index) {
+        if (i >= len || s.charAt(i) != '[') return -1;
+        i = skipWhitespace(s, i + 1, len);
+        if (i < len && s.charAt(i) == ']') return -1;
+        for (int k = 0; k < index; k++) {
+            i = next(s, i, len);
+            if (i < 0) return -1;
+        }
+        return i;
+    }
+
+    /** Skips the value at {@code i} and its comma: the start of the next member or element, or -1 if none. */
+    private static int next(CharSequence s, int i, int len) {
+        i = skipValue(s, i, len);
+        if (i < 0) return -1;
+        i = skipWhitespace(s, i, len);
+        if (i >= len || s.charAt(i) != ',') return -1;
+        return skipWhitespace(s, i + 1, len);
+    }
+
+    /** End (exclusive) of the value starting at {@code i}, or -1 if malformed. */
+    private static int skipValue(CharSequence s, int i, int len) {
+        if (i >= len) return -1;
+        char c = s.charAt(i);
+        if (c == '"') {
+            int close = closingQuote(s, i, len);
+            return close < 0 ? -1 : close + 1;
+        }
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            for (int j = i; j < len; j++) {
+                char d = s.charAt(j);
+                if (d == '"') {
+                    j = closingQuote(s, j, len);
+                    if (j < 0) return -1;
+                } else if (d == '{' || d == '[') {
+                    depth++;
+                } else if ((d == '}' || d == ']') && --depth == 0) {
+                    return j + 1;
+                }
+            }
+            return -1;
+        }
+        int j = i;
+        while (j < len) {
+            char d = s.charAt(j);
+            if (d == ',' || d == '}' || d == ']' || d == ' ' || d == '\t' || d == '\r' || d == '\n') break;
+            j++;
+        }
+        return j == i ? -1 : j;
+    }
+
+    /** Index of the quote closing the string opened at {@code i}, or -1. */
+    private static int closingQuote(CharSequence s, int i, int len) {
+        for (int j = i + 1; j < len; j++) {
+            char c = s.charAt(j);
+            if (c == '\\') j++;
+            else if (c == '"') return j;
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(CharSequence s, int i, int len) {
+        while (i < len) {
+            char c = s.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\n') break;
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean regionMatches(CharSequence s, int from, String name) {
+        for (int k = 0; k < name.length(); k++) {
+            if (s.charAt(from + k) != name.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isNull(CharSequence s, int start, int end) {
+        return end - start == 4 && s.charAt(start) == 'n' && s.charAt(start + 1) == 'u'
+                && s.charAt(start + 2) == 'l' && s.charAt(start + 3) == 'l';
+    }
+
+    private static int start(long bounds) {
+        return (int) (bounds >>> 32);
+    }
+
+    private static int end(long bounds) {
+        return (int) bounds;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof JsonFieldSegment other && path.equals(other.path) && mode == other.mode;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(path, mode);
+    }
+
+    @Override
+    public String toString() {
+        return "JsonFieldSegment[path=" + path + ", mode=" + mode + "]";
+    }
+}
@@ -0,0 +1,13 @@
+package org.github.faberna.file.segment.model;
+
+import java.util.Comparator;
+
+/**
+ * Comparator on the segments of a {@link KeySpec}, on lines and on any char sequence (e.g. a view over raw bytes).
+ * Built by {@link KeySpecCompiler}.
+ */
+public interface KeyComparator<T> extends Comparator<T> {
+
+    /** Same order as {@link #compare}, same as {@link KeySpec#compareChars}. */
+    int compareChars(CharSequence a, CharSequence b);
+}
@@ -0,0 +1,189 @@
+package org.github.faberna.file.segment.model;
+
+import org.github.faberna.file.segment.util.NumericKeyParser;
+import org.github.faberna.file.segment.util.SegmentUtil;
+
+import java.util.Arrays;
+
+/**
+ * Encodes the key of a line ({@link KeySpec}) into one byte array whose unsigned lexicographic order is the KeySpec
+ * order: sorts, merges, partitions and indexes can then compare keys with {@link Arrays#compareUnsigned} (or a
+ * memory segment mismatch) instead of interpreting every segment. Equal keys give equal bytes.
+ *
+ * Per segment ({@link Segment#encodeKey}):
+ * - chars ({@link Mode#LEX}): each char as its UTF-8 form (order-preserving), NUL escaped as {@code 00 FF},
+ *   trailing NULs dropped (a missing char compares as 0), terminated by {@code 00 00};
+ *   {@link Mode#LEX_IGNORE_CASE}: the same on the case-folded chars
+ * - {@link Mode#INT}: the 64-bit value big-endian with the sign bit flipped
+ * - {@link Mode#FLOAT}: the IEEE bits big-endian, sign bit flipped for positives and all bits flipped for negatives
+ * - {@link Mode#DECIMAL}: a sign byte, the integer digit count and the significant digits
+ * - {@link CollatedSegment}: the collation key bytes, {@code 00} escaped as {@code 00 FF}, terminated by {@code 00 00}
+ * A descending segment ({@link OrderedSegment}, or a direction given to the encoder) has all of its bytes flipped
+ * (every encoding is prefix-free, so that reverses its order).
+ *
+ * Not thread-safe: one encoder per thread.
+ */
+public final class KeyEncoder {
+
+    private final Segment<?>[] segments;
+    private final boolean[] descending;
+    private final Output out = new Output();
+
+    /** Every segment ascending. */
+    public KeyEncoder(KeySpec<?> keySpec) {
+        this(keySpec, new boolean[keySpec.segment().size()]);
+    }
+
+    /**
+     * @param descending per segment, in declaration order: true to reverse its order, on top of the
+     *                   {@link Direction} of an {@link OrderedSegment}
+     */
+    public KeyEncoder(KeySpec<?> keySpec, boolean... descending) {
+        if (keySpec == null) throw new IllegalArgumentException("keySpec is required");
+        if (!supports(keySpec)) throw new IllegalArgumentException("KeySpec has segments without a binary encoding: " + keySpec);
+        if (descending == null || descending.length != keySpec.segment().size()) {
+            throw new IllegalArgumentException("one direction per segment is required");
+        }
+        this.segments = keySpec.segment().toArray(new Segment<?>[0]);
+        this.descending = descending.clone();
+    }
+
+    /** True if every segment has a binary encoding ({@link Segment#encodable()}). */
+    public static boolean supports(KeySpec<?> keySpec) {
+        for (Segment<?> seg : keySpec.segment()) {
+            if (!seg.encodable()) return false;
+        }
+        return true;
+    }
+
+    /** The binary key of {@code line}. */
+    public byte[] encode(CharSequence line) {
+        out.size = 0;
+        for (int i = 0; i < segments.length; i++) {
+            int from = out.size;
+            segments[i].encodeKey(line, out);
+            if (descending[i]) out.flip(from);
+        }
+        return Arrays.copyOf(out.bytes, out.size);
+    }
+
+    /** Order of two encoded keys. */
+    public static int compare(byte[] a, byte[] b) {
+        return Arrays.compareUnsigned(a, b);
+    }
+
+    /** Sink of {@link Segment#encodeKey}: appends the order-preserving forms of the key values. */
+    public static final class Output {
+        private byte[] bytes = new byte[64];
+        private int size;
+
+        private Output() {
+        }
+
+        /** Chars of {@code line} in [start, end), clamped to the line, compared as with a missing char being 0. */
+        public void chars(CharSequence line, int start, int end) {
+            chars(line, start, end, false);
+        }
+
+        /** Same as {@link #chars} on the chars folded by {@link SegmentUtil#foldCase}. */
+        public void foldedChars(CharSequence line, int start, int end) {
+            chars(line, start, end, true);
+        }
+
+        private void chars(CharSequence line, int start, int end, boolean fold) {
+            int s = Math.max(0, start);
+            int e = Math.min(end, line.length());
+            while (e > s && line.charAt(e - 1) == 0) e--;
+            ensure(Math.max(0, e - s) * 3 + 2);
+            for (int i = s; i < e; i++) {
+                char c = fold ? SegmentUtil.foldCase(line.charAt(i)) : line.charAt(i);
+                if (c == 0) {
+                    bytes[size++] = 0;
+                    bytes[size++] = (byte) 0xFF;
+                } else if (c < 0x80) {
+                    bytes[size++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[size++] = (byte) (0xC0 | (c >> 6));
+                    bytes[size++] = (byte) (0x80 | (c & 0x3F));
+                } else {
+                    // surrogates too, one by one: UTF-16 code unit order, as String.compareTo
+                    bytes[size++] = (byte) (0xE0 | (c >> 12));
+                    bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[size++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            bytes[size++] = 0;
+            bytes[size++] = 0;
+        }
+
+        /** One byte, e.g. a tag placing some values before or after the others. */
+        void tag(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /** Flips the bytes appended since {@code from}: every encoding is prefix-free, so that reverses their order. */
+        void flip(int from) {
+            for (int p = from; p < size; p++) bytes[p] = (byte) ~bytes[p];
+        }
+
+        /** Bytes compared as unsigned, a shorter array first when it is a prefix of the other. */
+        public void bytes(byte[] value) {
+            ensure(value.length * 2 + 2);
+            for (byte b : value) {
+                bytes[size++] = b;
+                if (b == 0) bytes[size++] = (byte) 0xFF;
+            }
+            bytes[size++] = 0;
+            bytes[size++] = 0;
+        }
+
+        public void int64(long value) {
+            ensure(Long.BYTES);
+            long v = value ^ Long.MIN_VALUE;
+            for (int shift = 56; shift >= 0; shift -= 8) bytes[size++] = (byte) (v >>> shift);
+        }
+
+        /** Same order as {@link Double#compare}. */
+        public void float64(double value) {
+            long bits = Double.doubleToLongBits(value);
+            int64(bits < 0 ? ~bits ^ Long.MIN_VALUE : bits);
+        }
+
+        /**
+         * Exact order of {@link NumericKeyParser#compareDecimal}: a sign byte, then for non-zero values the number of
+         * integer digits and the significant digits, all bits flipped for negative values.
+         */
+        public void decimal(CharSequence line, int start, int end) {
+            int to = Math.min(end, line.length());
+            int from = Math.min(Math.max(0, start), to);
+            int digits = NumericKeyParser.decimalDigits(line, from, to);
+            int intEnd = NumericKeyParser.digitsEnd(line, digits, to);
+            int frac = NumericKeyParser.fractionStart(line, intEnd, to);
+            int fracEnd = NumericKeyParser.fractionEnd(line, frac, to);
+            if (intEnd == digits && fracEnd == frac) {
+                ensure(1);
+                bytes[size++] = 1;
+                return;
+            }
+            boolean negative = NumericKeyParser.negativeDecimal(line, from, digits);
+            int flip = negative ? 0xFF : 0;
+            ensure(1 + Integer.BYTES + (intEnd - digits) + (fracEnd - frac) + 1);
+            bytes[size++] = (byte) (negative ? 0 : 2);
+            int count = intEnd - digits;
+            for (int shift = 24; shift >= 0; shift -= 8) bytes[size++] = (byte) ((count >>> shift) ^ flip);
+            // digits as 1..10, so the 0 terminator makes a shorter fraction the smaller magnitude
+            for (int i = digits; i < intEnd; i++) bytes[size++] = (byte) ((line.charAt(i) - '0' + 1) ^ flip);
+            for (int i = frac; i < fracEnd; i++) bytes[size++] = (byte) ((line.charAt(i) - '0' + 1) ^ flip);
+            bytes[size++] = (byte) flip;
+        }
+
+        private void ensure(int more) {
+            if (size + more > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(size + more, bytes.length * 2));
+        }
+    }
+}
@@ -24,14 +24,104 @@ public record KeySpec<T>(List<Segment<T>> segment) {
 
     /** Default zero-allocation comparator (delegates to segments). */
     public Comparator<T> comparator() {
-        return this::compareBySegments;
+        return new SegmentComparator<>(this);
     }
 
+    /**
+     * Same order as {@link #comparator()}, through a class generated for this KeySpec ({@link KeySpecCompiler}):
+     * worth it for long sorts on keys of several segments, where the segment loop goes megamorphic.
+     * The sort buffers and the merge switch to it on their own (see {@link SegmentComparator#withCompiled()}).
+     */
+    public Comparator<T> compiledComparator() {
+        return new SegmentComparator<>(this, KeySpecCompiler.compile(this));
+    }
+
+    /**
+     * The comparator returned by {@link #comparator()} and {@link #compiledComparator()}. Sort buffers recognize it
+     * and compare raw records through {@link #compareChars} instead of decoding them.
+     * @param compiled the generated comparator, or {@code null} to loop over the segments
+     */
+    public record SegmentComparator<T>(KeySpec<T> keySpec, KeyComparator<T> compiled) implements Comparator<T> {
+
+        public SegmentComparator(KeySpec<T> keySpec) {
+            this(keySpec, null);
+        }
+
+        @Override
+        public int compare(T a, T b) {
+            return compiled != null ? compiled.compare(a, b) : keySpec.compareBySegments(a, b);
+        }
+
+        /** This order through the generated comparator of the KeySpec (built once per KeySpec, then cached). */
+        public SegmentComparator<T> withCompiled() {
+            return compiled != null ? this : new SegmentComparator<>(keySpec, KeySpecCompiler.compile(keySpec));
+        }
+
+        /** {@link KeySpec#compareChars}, through the generated comparator when there is one. */
+        public int compareChars(CharSequence a, CharSequence b) {
+            return compiled != null ? compiled.compareChars(a, b) : keySpec.compareChars(a, b);
+        }
+    }
+
+    /** Same order as {@link #comparator()}, on any char sequence (e.g. a view over raw record bytes). */
+    public int compareChars(CharSequence a, CharSequence b) {
+        for (Segment<T> seg : segment) {
+            int c = seg.compareChars(a, b);
+            if (c != 0) return c;
+        }
+        return 0;
+    }
+
+
+
+    /**
+     * True if some segment asks to be compared through its binary key ({@link Segment#keyed()}) and every segment
+     * has one: sorts should then encode each record once with a {@link KeyEncoder}.
+     */
+    public boolean keyed() {
+        boolean keyed = false;
+        for (Segment<T> seg : segment) {
+            if (!seg.encodable()) return false;
+            keyed |= seg.keyed();
+        }
+        return keyed;
+    }
+
+    /** True if some segment pre-extracts its key ({@link Segment#columnar()}): worth calling {@link #columns}. */
+    public boolean columnar() {
+        for (Segment<T> seg : segment) {
+            if (seg.columnar()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Tokenizes the line once: writes the {@link Segment#column} of every segment to {@code out},
+     * from {@code offset} (one long per segment).
+     */
+    public void columns(CharSequence line, long[] out, int offset) {
+        for (int i = 0; i < segment.size(); i++) {
+            Segment<T> seg = segment.get(i);
+            out[offset + i] = seg.columnar() ? seg.column(line) : 0;
+        }
+    }
 
+    /** Same order as {@link #compareChars}, given the {@link #columns} of both lines. */
+    public int compareColumns(CharSequence a, long[] columnsA, int offsetA, CharSequence b, long[] columnsB, int offsetB) {
+        for (int i = 0; i < segment.size(); i++) {
+            Segment<T> seg = segment.get(i);
+            int c = seg.columnar()
+                    ? seg.compareColumns(a, columnsA[offsetA + i], b, columnsB[offsetB + i])
+                    : seg.compareChars(a, b);
+            if (c != 0) return c;
+        }
+        return 0;
+    }
 
     /**
      * Materializes the key via {@link #extractKey(T)} (allocates),
      * then compares using the provided comparator.
+     * For a descending order or empty keys first / last, wrap the segments in an {@link OrderedSegment} instead.
      */
     public Comparator<T> comparator(Comparator<String> keyComparator) {
         if (keyComparator == null) throw new IllegalArgumentException("keyComparator is required");
@@ -39,7 +129,7 @@ public record KeySpec<T>(List<Segment<T>> segment) {
     }
 
 
-    private int compareBySegments(T a, T b) {
+    int compareBySegments(T a, T b) {
         for (Segment<T> seg : segment) {
             int c = seg.compare(a, b);
             if (c != 0) return c;
@@ -47,6 +137,18 @@ public record KeySpec<T>(List<Segment<T>> segment) {
         return 0;
     }
 
+    /**
+     * Zero-allocation hash of the key, consistent with {@link #comparator()}: lines with equal keys hash equal.
+     * Used by hash partitioning to co-locate equal keys in the same part.
+     */
+    public int hash(T line) {
+        int h = 1;
+        for (Segment<T> seg : segment) {
+            h = 31 * h + seg.hash(line);
+        }
+        return h;
+    }
+
     /** Allocates. Use only for debugging / materialized-key comparators. */
     public String extractKey(T line) {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,87 @@
+package org.github.faberna.file.segment.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds a comparator specialized for one {@link KeySpec}: a hidden class of its own (see {@link GeneratedKeyComparator})
+ * with the segments unrolled as constants. Falls back to the loop over the segments of the KeySpec when the key has
+ * more than {@link GeneratedKeyComparator#MAX_SEGMENTS} segments or the class cannot be defined.
+ *
+ * The class is a copy of a template compiled by javac, not bytecode emitted here: the only generated part is the
+ * class data, so there is no code generator to keep in sync with the segments. Comparators are cached per KeySpec
+ * (equal KeySpecs share one class), up to {@link #MAX_CACHED} of them.
+ */
+public final class KeySpecCompiler {
+
+    private static final Logger log = LoggerFactory.getLogger(KeySpecCompiler.class);
+
+    // class file of the template, null if it cannot be read (every compile then falls back)
+    private static final byte[] TEMPLATE = readTemplate();
+
+    /** Distinct KeySpecs whose comparator is kept: past them, each compile defines a class of its own. */
+    static final int MAX_CACHED = 256;
+    private static final Map<KeySpec<?>, KeyComparator<?>> CACHE = new ConcurrentHashMap<>();
+
+    private KeySpecCompiler() {
+        /* This utility class should not be instantiated */
+    }
+
+    /** The specialized comparator of {@code keySpec}, or its interpreter loop if it cannot be generated. */
+    @SuppressWarnings("unchecked")
+    public static <T> KeyComparator<T> compile(KeySpec<T> keySpec) {
+        if (keySpec == null) throw new IllegalArgumentException("keySpec is required");
+        KeyComparator<?> cached = CACHE.get(keySpec);
+        if (cached != null) return (KeyComparator<T>) cached;
+        KeyComparator<T> compiled = generate(keySpec);
+        if (CACHE.size() < MAX_CACHED) {
+            KeyComparator<?> first = CACHE.putIfAbsent(keySpec, compiled);
+            if (first != null) return (KeyComparator<T>) first;
+        }
+        return compiled;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> KeyComparator<T> generate(KeySpec<T> keySpec) {
+        if (TEMPLATE == null || keySpec.segment().size() > GeneratedKeyComparator.MAX_SEGMENTS) {
+            return new Interpreted<>(keySpec);
+        }
+        try {
+            MethodHandles.Lookup hidden = MethodHandles.lookup()
+                    .defineHiddenClassWithClassData(TEMPLATE, List.copyOf(keySpec.segment()), true);
+            return (KeyComparator<T>) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            log.warn("Cannot generate a comparator for {}, using the segment loop", keySpec, e);
+            return new Interpreted<>(keySpec);
+        }
+    }
+
+    /** The loop over the segments, as {@link KeySpec#comparator()} does. */
+    record Interpreted<T>(KeySpec<T> keySpec) implements KeyComparator<T> {
+        @Override
+        public int compare(T a, T b) {
+            return keySpec.compareBySegments(a, b);
+        }
+
+        @Override
+        public int compareChars(CharSequence a, CharSequence b) {
+            return keySpec.compareChars(a, b);
+        }
+    }
+
+    private static byte[] readTemplate() {
+        try (InputStream in = GeneratedKeyComparator.class.getResourceAsStream("GeneratedKeyComparator.class")) {
+            return in == null ? null : in.readAllBytes();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
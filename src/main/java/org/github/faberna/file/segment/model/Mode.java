@@ -1,3 +1,11 @@
 package org.github.faberna.file.segment.model;
 
-public enum Mode { LEX, INT, FLOAT }
+/**
+ * How a segment compares its text:
+ * - LEX: char by char
+ * - LEX_IGNORE_CASE: char by char after case folding, as {@link String#CASE_INSENSITIVE_ORDER}
+ * - INT: as a 64-bit integer
+ * - FLOAT: as a double (may round long decimals)
+ * - DECIMAL: as an exact decimal number of any length (e.g. amounts like {@code -00012345.6700})
+ */
+public enum Mode { LEX, LEX_IGNORE_CASE, INT, FLOAT, DECIMAL }
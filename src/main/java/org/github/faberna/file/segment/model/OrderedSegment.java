@@ -0,0 +1,124 @@
+package org.github.faberna.file.segment.model;
+
+/**
+ * A segment with a {@link Direction} and a placement of its {@link EmptyKeys}, as {@code ORDER BY day DESC NULLS LAST}:
+ * {@code KeySpec.of(new OrderedSegment(day, Direction.DESC, EmptyKeys.LAST), id)}.
+ *
+ * Every path of the wrapped segment is kept: comparisons stay zero-allocation (DESC swaps the operands), columns are
+ * computed once per record (an empty key gets a reserved column), and the {@link KeyEncoder} key has its bytes flipped
+ * for DESC, after a placement byte when empty keys are placed. Sorts, merges and hash partitions thus all see the
+ * same order.
+ */
+public record OrderedSegment(Segment<String> segment, Direction direction, EmptyKeys emptyKeys) implements Segment<String> {
+
+    // column of an empty key: a NaN payload and an impossible span, only an INT column can collide (checked then)
+    private static final long EMPTY = 0x7FF8_0000_0000_0001L;
+
+    public OrderedSegment {
+        if (segment == null) throw new IllegalArgumentException("segment is required");
+        if (direction == null) throw new IllegalArgumentException("direction is required");
+        if (emptyKeys == null) throw new IllegalArgumentException("emptyKeys is required");
+    }
+
+    public OrderedSegment(Segment<String> segment, Direction direction) {
+        this(segment, direction, EmptyKeys.NATURAL);
+    }
+
+    /** {@code segment} in descending order, empty keys where the segment compares them. */
+    public static OrderedSegment desc(Segment<String> segment) {
+        return new OrderedSegment(segment, Direction.DESC);
+    }
+
+    @Override
+    public int compare(String a, String b) {
+        if (placesEmptyKeys()) {
+            int c = placeEmpty(segment.emptyKey(a), segment.emptyKey(b));
+            if (c != 2) return c;
+        }
+        return direction == Direction.DESC ? segment.compare(b, a) : segment.compare(a, b);
+    }
+
+    @Override
+    public int compareChars(CharSequence a, CharSequence b) {
+        if (placesEmptyKeys()) {
+            int c = placeEmpty(segment.emptyKey(a), segment.emptyKey(b));
+            if (c != 2) return c;
+        }
+        return direction == Direction.DESC ? segment.compareChars(b, a) : segment.compareChars(a, b);
+    }
+
+    /** Columnar when the segment is, or when empty keys are placed: their emptiness is then found once per record. */
+    @Override
+    public boolean columnar() {
+        return segment.columnar() || placesEmptyKeys();
+    }
+
+    @Override
+    public long column(CharSequence line) {
+        if (placesEmptyKeys() && segment.emptyKey(line)) return EMPTY;
+        return segment.columnar() ? segment.column(line) : 0;
+    }
+
+    @Override
+    public int compareColumns(CharSequence a, long columnA, CharSequence b, long columnB) {
+        if (placesEmptyKeys()) {
+            int c = placeEmpty(columnA == EMPTY && segment.emptyKey(a), columnB == EMPTY && segment.emptyKey(b));
+            if (c != 2) return c;
+        }
+        return direction == Direction.DESC ? compareValues(b, columnB, a, columnA) : compareValues(a, columnA, b, columnB);
+    }
+
+    private int compareValues(CharSequence a, long columnA, CharSequence b, long columnB) {
+        return segment.columnar() ? segment.compareColumns(a, columnA, b, columnB) : segment.compareChars(a, b);
+    }
+
+    /** Order of two keys of which one at least is empty, or 2 if neither is. */
+    private int placeEmpty(boolean emptyA, boolean emptyB) {
+        if (emptyA == emptyB) return emptyA ? 0 : 2;
+        return emptyA == (emptyKeys == EmptyKeys.FIRST) ? -1 : 1;
+    }
+
+    private boolean placesEmptyKeys() {
+        return emptyKeys != EmptyKeys.NATURAL;
+    }
+
+    @Override
+    public boolean encodable() {
+        return segment.encodable();
+    }
+
+    @Override
+    public boolean keyed() {
+        return segment.keyed();
+    }
+
+    /** The key of the segment, bytes flipped if DESC, after {@code 00} / {@code 02} (empty first / last) or {@code 01}. */
+    @Override
+    public void encodeKey(CharSequence line, KeyEncoder.Output out) {
+        if (placesEmptyKeys()) {
+            if (segment.emptyKey(line)) {
+                out.tag(emptyKeys == EmptyKeys.FIRST ? 0 : 2);
+                return;
+            }
+            out.tag(1);
+        }
+        int from = out.size();
+        segment.encodeKey(line, out);
+        if (direction == Direction.DESC) out.flip(from);
+    }
+
+    @Override
+    public boolean emptyKey(CharSequence line) {
+        return segment.emptyKey(line);
+    }
+
+    @Override
+    public int hash(String line) {
+        return placesEmptyKeys() && segment.emptyKey(line) ? 0 : segment.hash(line);
+    }
+
+    @Override
+    public void appendKey(String line, StringBuilder out) {
+        segment.appendKey(line, out);
+    }
+}
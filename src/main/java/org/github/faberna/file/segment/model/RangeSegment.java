@@ -1,5 +1,8 @@
 package org.github.faberna.file.segment.model;
 
+import org.github.faberna.file.segment.util.NumericKeyParser;
+import org.github.faberna.file.segment.util.SegmentUtil;
+
 public record RangeSegment(int start, int end, Mode mode)implements Segment<String> {
 
 
@@ -15,88 +18,103 @@ public record RangeSegment(int start, int end, Mode mode)implements Segment<Stri
 
     @Override
     public int compare(String a, String b) {
+        return compareChars(a, b);
+    }
+
+    @Override
+    public int compareChars(CharSequence a, CharSequence b) {
         return switch (mode) {
             case LEX -> compareLex(a, b);
+            case LEX_IGNORE_CASE -> SegmentUtil.compareRangesIgnoreCase(a, start, end, b, start, end);
             case INT -> Long.compare(parseLongInRange(a, start, end), parseLongInRange(b, start, end));
             case FLOAT -> Double.compare(parseDoubleInRange(a, start, end), parseDoubleInRange(b, start, end));
+            case DECIMAL -> NumericKeyParser.compareDecimal(a, start, end, b, start, end);
         };
     }
 
-    private int compareLex(String a, String b) {
-        for (int i = start; i < end; i++) {
-            char ca = (i < a.length()) ? a.charAt(i) : 0;
-            char cb = (i < b.length()) ? b.charAt(i) : 0;
-            if (ca != cb) return Character.compare(ca, cb);
-        }
-        return 0;
+    /** INT, FLOAT and DECIMAL ranges keep the parsed (DECIMAL: scaled) number; LEX ranges are compared in place. */
+    @Override
+    public boolean columnar() {
+        return mode != Mode.LEX && mode != Mode.LEX_IGNORE_CASE;
     }
 
-    private static long parseLongInRange(String s, int start, int end) {
-        int n = s.length();
-        int i = Math.min(start, n);
-        int to = Math.min(end, n);
+    @Override
+    public long column(CharSequence line) {
+        return switch (mode) {
+            case LEX, LEX_IGNORE_CASE -> 0;
+            case INT -> parseLongInRange(line, start, end);
+            case FLOAT -> Double.doubleToRawLongBits(parseDoubleInRange(line, start, end));
+            case DECIMAL -> NumericKeyParser.scaledDecimal(line, start, end);
+        };
+    }
 
-        while (i < to && s.charAt(i) <= ' ') i++;
+    @Override
+    public int compareColumns(CharSequence a, long columnA, CharSequence b, long columnB) {
+        return switch (mode) {
+            case LEX -> compareLex(a, b);
+            case LEX_IGNORE_CASE -> SegmentUtil.compareRangesIgnoreCase(a, start, end, b, start, end);
+            case INT -> Long.compare(columnA, columnB);
+            case FLOAT -> Double.compare(Double.longBitsToDouble(columnA), Double.longBitsToDouble(columnB));
+            case DECIMAL -> columnA != NumericKeyParser.NOT_SCALED && columnB != NumericKeyParser.NOT_SCALED
+                    ? Long.compare(columnA, columnB)
+                    : NumericKeyParser.compareDecimal(a, start, end, b, start, end);
+        };
+    }
 
-        boolean neg = false;
-        if (i < to) {
-            char c = s.charAt(i);
-            if (c == '-' || c == '+') { neg = (c == '-'); i++; }
-        }
+    @Override
+    public boolean encodable() {
+        return true;
+    }
 
-        long val = 0;
-        boolean any = false;
-        while (i < to) {
-            char c = s.charAt(i);
-            if (c < '0' || c > '9') break;
-            any = true;
-            val = val * 10 + (c - '0');
-            i++;
+    @Override
+    public void encodeKey(CharSequence line, KeyEncoder.Output out) {
+        switch (mode) {
+            case LEX -> out.chars(line, start, end);
+            case LEX_IGNORE_CASE -> out.foldedChars(line, start, end);
+            case INT -> out.int64(parseLongInRange(line, start, end));
+            case FLOAT -> out.float64(parseDoubleInRange(line, start, end));
+            case DECIMAL -> out.decimal(line, start, end);
         }
-
-        if (!any) return 0;
-        return neg ? -val : val;
     }
 
-    private static double parseDoubleInRange(String s, int start, int end) {
-        int n = s.length();
-        int i = Math.min(start, n);
-        int to = Math.min(end, n);
-
-        while (i < to && s.charAt(i) <= ' ') i++;
+    @Override
+    public boolean emptyKey(CharSequence line) {
+        return FieldBounds.empty(this, line);
+    }
 
-        boolean neg = false;
-        if (i < to) {
-            char c = s.charAt(i);
-            if (c == '-' || c == '+') { neg = (c == '-'); i++; }
-        }
+    @Override
+    public int hash(String line) {
+        return switch (mode) {
+            case LEX -> SegmentUtil.hashRange(line, start, end);
+            case LEX_IGNORE_CASE -> SegmentUtil.hashRangeIgnoreCase(line, start, end);
+            case INT -> Long.hashCode(parseLongInRange(line, start, end));
+            case FLOAT -> Double.hashCode(parseDoubleInRange(line, start, end));
+            case DECIMAL -> NumericKeyParser.hashDecimal(line, start, end);
+        };
+    }
 
-        double val = 0.0;
-        boolean any = false;
+    /** The number compared in {@link Mode#INT} (0 when the range holds no digits). */
+    public long parseLong(CharSequence line) {
+        return parseLongInRange(line, start, end);
+    }
 
-        while (i < to) {
-            char c = s.charAt(i);
-            if (c < '0' || c > '9') break;
-            any = true;
-            val = val * 10.0 + (c - '0');
-            i++;
+    private int compareLex(CharSequence a, CharSequence b) {
+        // past both lines every char is 0: stop there (end may be Integer.MAX_VALUE for "to the end of the line")
+        int to = Math.min(end, Math.max(a.length(), b.length()));
+        for (int i = start; i < to; i++) {
+            char ca = (i < a.length()) ? a.charAt(i) : 0;
+            char cb = (i < b.length()) ? b.charAt(i) : 0;
+            if (ca != cb) return Character.compare(ca, cb);
         }
+        return 0;
+    }
 
-        if (i < to && s.charAt(i) == '.') {
-            i++;
-            double div = 10.0;
-            while (i < to) {
-                char c = s.charAt(i);
-                if (c < '0' || c > '9') break;
-                any = true;
-                val += (c - '0') / div;
-                div *= 10.0;
-                i++;
-            }
-        }
+    private static long parseLongInRange(CharSequence s, int start, int end) {
+        return NumericKeyParser.parseLong(s, start, end);
+    }
 
-        if (!any) return 0.0;
-        return neg ? -val : val;
+    private static double parseDoubleInRange(CharSequence s, int start, int end) {
+        return NumericKeyParser.parseDouble(s, start, end);
     }
 
     @Override
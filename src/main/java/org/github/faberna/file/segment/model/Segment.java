@@ -10,6 +10,86 @@ public  interface Segment<T> {
      */
     int compare(T a, T b);
 
+    /**
+     * Same as {@link #compare} on any char sequence, e.g. a view over the raw bytes of a buffered record,
+     * so that sort buffers can compare without decoding every record into a String.
+     * Only meaningful for String segments: the default materializes both values and delegates to {@link #compare}.
+     * @param a first line to compare
+     * @param b second line to compare
+     * @return a negative integer, zero, or a positive integer as the first argument is less than, equal to, or greater than the second
+     */
+    @SuppressWarnings("unchecked")
+    default int compareChars(CharSequence a, CharSequence b) {
+        return compare((T) a.toString(), (T) b.toString());
+    }
+
+    /**
+     * True if {@link #column} pre-extracts something worth keeping next to the record (field offsets, parsed number),
+     * so that sorts and merges tokenize each record once instead of on every comparison.
+     */
+    default boolean columnar() {
+        return false;
+    }
+
+    /**
+     * The key segment of the line reduced to a long, computed once per record: e.g. the packed field offsets
+     * or the parsed number. Only used when {@link #columnar()}.
+     * @param line the line to extract the key segment from
+     * @return the column value to pass to {@link #compareColumns}
+     */
+    default long column(CharSequence line) {
+        return 0;
+    }
+
+    /**
+     * Same result as {@link #compareChars}, given the {@link #column} of both lines.
+     * @param a first line
+     * @param columnA column of the first line
+     * @param b second line
+     * @param columnB column of the second line
+     * @return a negative integer, zero, or a positive integer as the first argument is less than, equal to, or greater than the second
+     */
+    default int compareColumns(CharSequence a, long columnA, CharSequence b, long columnB) {
+        return compareChars(a, b);
+    }
+
+    /** True if {@link #encodeKey} is implemented, so the segment can be part of a {@link KeyEncoder} key. */
+    default boolean encodable() {
+        return false;
+    }
+
+    /**
+     * Appends the binary form of the key segment: the unsigned byte order of two encodings is the order of
+     * {@link #compareChars}, and equal keys give equal bytes. Only called when {@link #encodable()}.
+     * @param line the line to encode the key segment of
+     * @param out the key being built
+     */
+    default void encodeKey(CharSequence line, KeyEncoder.Output out) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " has no binary key encoding");
+    }
+
+    /**
+     * True if comparing the text is costly (e.g. a locale collation) and sorts should rather compare the
+     * {@link #encodeKey} bytes, computed once per record. Only meaningful when {@link #encodable()}.
+     */
+    default boolean keyed() {
+        return false;
+    }
+
+    /**
+     * True if the key segment of the line is empty: no chars but spaces, e.g. a range past the end of the line or a
+     * missing field. {@link OrderedSegment} places these lines first or last ({@link EmptyKeys}).
+     * The default materializes the key via {@link #appendKey}, implementations should override it to avoid the allocation.
+     * @param line the line to check the key segment of
+     * @return true if the key segment is empty
+     */
+    @SuppressWarnings("unchecked")
+    default boolean emptyKey(CharSequence line) {
+        StringBuilder sb = new StringBuilder();
+        appendKey((T) line.toString(), sb);
+        return sb.toString().isBlank();
+    }
+
     /**
      * Append the key segment of the line to the output StringBuilder.
      * Method used to build the output it's used only for debug purposes, as it allocates a new String for the key segment.
@@ -19,6 +99,17 @@ public  interface Segment<T> {
      */
     void appendKey(T value, StringBuilder out);
 
-
+    /**
+     * Hash of the key segment, consistent with {@link #compare}: values that compare equal must return the same hash.
+     * Used to route records with equal keys to the same hash partition.
+     * The default materializes the key via {@link #appendKey}, implementations should override it to avoid the allocation.
+     * @param value the line to hash the key segment of
+     * @return the hash of the key segment
+     */
+    default int hash(T value) {
+        StringBuilder sb = new StringBuilder();
+        appendKey(value, sb);
+        return sb.toString().hashCode();
+    }
 
 }
\ No newline at end of file
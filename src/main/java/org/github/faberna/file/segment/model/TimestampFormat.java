@@ -0,0 +1,296 @@
+package org.github.faberna.file.segment.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Textual date-time format of a {@link TimestampSegment}, parsed in place (no allocation) into epoch nanoseconds.
+ *
+ * Formats:
+ * - {@link #ISO}: ISO-8601 {@code yyyy-MM-dd[('T'|' ')HH:mm[:ss[.fraction]]][Z|±hh[:mm]]}
+ * - {@link #EPOCH_MILLIS}, {@link #EPOCH_SECONDS}: a (signed) number
+ * - {@link #ofPattern}: the pattern letters {@code yyyy yy MM M dd d HH H mm ss S..S X} (as in DateTimeFormatter,
+ *   {@code X} being {@code Z} or a {@code ±hh[[:]mm]} offset), quoted or other literal chars matched as is
+ *
+ * A date-time without offset is read as UTC: the order is the one of the wall clock.
+ * Epoch nanoseconds cover 1677-09-21 to 2262-04-11, later instants saturate. Text that does not match the format
+ * parses to {@link #INVALID}, which sorts before every valid instant.
+ */
+public final class TimestampFormat {
+
+    /** Key of a text that does not match the format. */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    public static final TimestampFormat ISO = new TimestampFormat("ISO", Kind.ISO, null);
+    public static final TimestampFormat EPOCH_MILLIS = new TimestampFormat("EPOCH_MILLIS", Kind.EPOCH_MILLIS, null);
+    public static final TimestampFormat EPOCH_SECONDS = new TimestampFormat("EPOCH_SECONDS", Kind.EPOCH_SECONDS, null);
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long MAX_SECONDS = Long.MAX_VALUE / NANOS_PER_SECOND;
+
+    private enum Kind { ISO, EPOCH_MILLIS, EPOCH_SECONDS, PATTERN }
+
+    private enum Field { YEAR, YEAR2, MONTH, DAY, HOUR, MINUTE, SECOND, FRACTION, OFFSET, LITERAL }
+
+    /** One pattern element: a field of {@code width} digits (0 = 1 or 2 digits), or a literal char. */
+    private record Element(Field field, int width, char literal) {}
+
+    private final String name;
+    private final Kind kind;
+    private final Element[] elements;
+
+    private TimestampFormat(String name, Kind kind, Element[] elements) {
+        this.name = name;
+        this.kind = kind;
+        this.elements = elements;
+    }
+
+    /** A fixed pattern, e.g. {@code dd/MM/yyyy HH:mm:ss} or {@code yyyyMMdd'T'HHmmss.SSSX}. */
+    public static TimestampFormat ofPattern(String pattern) {
+        if (pattern == null || pattern.isEmpty()) throw new IllegalArgumentException("pattern is required");
+        List<Element> elements = new ArrayList<>();
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                int close = pattern.indexOf('\'', i + 1);
+                if (close < 0) throw new IllegalArgumentException("unterminated quote in pattern: " + pattern);
+                for (int k = i + 1; k < close; k++) elements.add(new Element(Field.LITERAL, 0, pattern.charAt(k)));
+                i = close + 1;
+                continue;
+            }
+            int run = 1;
+            while (i + run < pattern.length() && pattern.charAt(i + run) == c) run++;
+            switch (c) {
+                case 'y' -> {
+                    if (run == 4) elements.add(new Element(Field.YEAR, 4, c));
+                    else if (run == 2) elements.add(new Element(Field.YEAR2, 2, c));
+                    else throw new IllegalArgumentException("year must be yyyy or yy: " + pattern);
+                }
+                case 'M' -> elements.add(new Element(Field.MONTH, twoDigits(run, pattern), c));
+                case 'd' -> elements.add(new Element(Field.DAY, twoDigits(run, pattern), c));
+                case 'H' -> elements.add(new Element(Field.HOUR, twoDigits(run, pattern), c));
+                case 'm' -> elements.add(new Element(Field.MINUTE, twoDigits(run, pattern), c));
+                case 's' -> elements.add(new Element(Field.SECOND, twoDigits(run, pattern), c));
+                case 'S' -> {
+                    if (run > 9) throw new IllegalArgumentException("at most 9 fraction digits: " + pattern);
+                    elements.add(new Element(Field.FRACTION, run, c));
+                }
+                case 'X' -> elements.add(new Element(Field.OFFSET, run, c));
+                default -> {
+                    if (Character.isLetter(c)) throw new IllegalArgumentException("unsupported pattern letter '" + c + "': " + pattern);
+                    for (int k = 0; k < run; k++) elements.add(new Element(Field.LITERAL, 0, c));
+                }
+            }
+            i += run;
+        }
+        return new TimestampFormat(pattern, Kind.PATTERN, elements.toArray(new Element[0]));
+    }
+
+    private static int twoDigits(int run, String pattern) {
+        if (run > 2) throw new IllegalArgumentException("at most 2 letters for a 2-digit field: " + pattern);
+        return run == 2 ? 2 : 0;
+    }
+
+    /** Epoch nanoseconds of the text in {@code s[start, end)} (clamped to the line), or {@link #INVALID}. */
+    public long parse(CharSequence s, int start, int end) {
+        int from = Math.min(Math.max(0, start), s.length());
+        int to = Math.min(end, s.length());
+        while (from < to && s.charAt(from) <= ' ') from++;
+        while (to > from && s.charAt(to - 1) <= ' ') to--;
+        if (from >= to) return INVALID;
+        return switch (kind) {
+            case ISO -> parseIso(s, from, to);
+            case EPOCH_MILLIS -> epoch(s, from, to, 1_000_000L);
+            case EPOCH_SECONDS -> epoch(s, from, to, NANOS_PER_SECOND);
+            case PATTERN -> parsePattern(s, from, to);
+        };
+    }
+
+    private long parsePattern(CharSequence s, int from, int to) {
+        int year = 1970, month = 1, day = 1, hour = 0, minute = 0, second = 0, offsetSeconds = 0;
+        long nanos = 0;
+        int i = from;
+        for (Element e : elements) {
+            if (e.field() == Field.LITERAL) {
+                if (i >= to || s.charAt(i) != e.literal()) return INVALID;
+                i++;
+                continue;
+            }
+            if (e.field() == Field.OFFSET) {
+                long packed = offset(s, i, to);
+                if (packed == INVALID) return INVALID;
+                offsetSeconds = (int) (packed >> 32);
+                i = (int) packed;
+                continue;
+            }
+            int width = e.width();
+            int digits = 0;
+            int value = 0;
+            int max = width == 0 ? 2 : width;
+            while (digits < max && i < to && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+                value = value * 10 + (s.charAt(i++) - '0');
+                digits++;
+            }
+            if (digits == 0 || (width != 0 && digits != width)) return INVALID;
+            switch (e.field()) {
+                case YEAR -> year = value;
+                case YEAR2 -> year = 2000 + value;
+                case MONTH -> month = value;
+                case DAY -> day = value;
+                case HOUR -> hour = value;
+                case MINUTE -> minute = value;
+                case SECOND -> second = value;
+                case FRACTION -> nanos = value * POW10[9 - digits];
+                default -> throw new IllegalStateException(e.field().name());
+            }
+        }
+        if (i != to) return INVALID;
+        return instant(year, month, day, hour, minute, second, nanos, offsetSeconds);
+    }
+
+    private static long parseIso(CharSequence s, int from, int to) {
+        int i = from;
+        boolean negYear = false;
+        if (s.charAt(i) == '-' || s.charAt(i) == '+') negYear = s.charAt(i++) == '-';
+        int yearStart = i;
+        int year = 0;
+        while (i < to && s.charAt(i) >= '0' && s.charAt(i) <= '9' && i - yearStart < 9) year = year * 10 + (s.charAt(i++) - '0');
+        if (i - yearStart < 4 || !expect(s, i++, to, '-')) return INVALID;
+        if (negYear) year = -year;
+        int month = digits2(s, i, to);
+        i += 2;
+        if (month < 0 || !expect(s, i++, to, '-')) return INVALID;
+        int day = digits2(s, i, to);
+        i += 2;
+        if (day < 0) return INVALID;
+        if (i == to) return instant(year, month, day, 0, 0, 0, 0, 0);
+
+        char sep = s.charAt(i++);
+        if (sep != 'T' && sep != 't' && sep != ' ') return INVALID;
+        int hour = digits2(s, i, to);
+        i += 2;
+        if (hour < 0 || !expect(s, i++, to, ':')) return INVALID;
+        int minute = digits2(s, i, to);
+        i += 2;
+        if (minute < 0) return INVALID;
+        int second = 0;
+        long nanos = 0;
+        if (i < to && s.charAt(i) == ':') {
+            second = digits2(s, i + 1, to);
+            i += 3;
+            if (second < 0) return INVALID;
+            if (i < to && (s.charAt(i) == '.' || s.charAt(i) == ',')) {
+                i++;
+                int digits = 0;
+                while (i < to && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+                    // past nanoseconds the digits are dropped
+                    if (digits < 9) nanos = nanos * 10 + (s.charAt(i) - '0');
+                    digits++;
+                    i++;
+                }
+                if (digits == 0) return INVALID;
+                if (digits < 9) nanos *= POW10[9 - digits];
+            }
+        }
+        int offsetSeconds = 0;
+        if (i < to) {
+            long packed = offset(s, i, to);
+            if (packed == INVALID || (int) packed != to) return INVALID;
+            offsetSeconds = (int) (packed >> 32);
+        }
+        return instant(year, month, day, hour, minute, second, nanos, offsetSeconds);
+    }
+
+    /** {@code Z} or {@code ±hh[[:]mm]}: the offset in seconds (high 32 bits) and the index after it (low 32 bits). */
+    private static long offset(CharSequence s, int i, int to) {
+        if (i >= to) return INVALID;
+        char c = s.charAt(i);
+        if (c == 'Z' || c == 'z') return pack(0, i + 1);
+        if (c != '+' && c != '-') return INVALID;
+        int hours = digits2(s, i + 1, to);
+        if (hours < 0 || hours > 18) return INVALID;
+        int j = i + 3;
+        int minutes = 0;
+        if (j < to) {
+            boolean colon = s.charAt(j) == ':';
+            int m = digits2(s, colon ? j + 1 : j, to);
+            if (m >= 0) {
+                minutes = m;
+                j += colon ? 3 : 2;
+            } else if (colon) {
+                return INVALID;
+            }
+        }
+        if (minutes > 59) return INVALID;
+        int seconds = hours * 3600 + minutes * 60;
+        return pack(c == '-' ? -seconds : seconds, j);
+    }
+
+    private static long pack(int offsetSeconds, int index) {
+        return ((long) offsetSeconds << 32) | (index & 0xFFFFFFFFL);
+    }
+
+    private static long epoch(CharSequence s, int from, int to, long nanosPerUnit) {
+        int i = from;
+        boolean neg = false;
+        if (s.charAt(i) == '-' || s.charAt(i) == '+') neg = s.charAt(i++) == '-';
+        if (i >= to) return INVALID;
+        long value = 0;
+        for (; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return INVALID;
+            if (value > Long.MAX_VALUE / 10) return neg ? INVALID + 1 : Long.MAX_VALUE;
+            value = value * 10 + (c - '0');
+        }
+        if (value > Long.MAX_VALUE / nanosPerUnit) return neg ? INVALID + 1 : Long.MAX_VALUE;
+        return neg ? -value * nanosPerUnit : value * nanosPerUnit;
+    }
+
+    private static long instant(int year, int month, int day, int hour, int minute, int second, long nanos, int offsetSeconds) {
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) return INVALID;
+        if (hour > 23 || minute > 59 || second > 59) return INVALID;
+        long seconds = epochDay(year, month, day) * 86_400L + hour * 3600L + minute * 60L + second - offsetSeconds;
+        // outside the range of epoch nanos: saturate (never INVALID, which is reserved for unparseable text)
+        if (seconds >= MAX_SECONDS) return Long.MAX_VALUE;
+        if (seconds <= -MAX_SECONDS) return INVALID + 1;
+        return seconds * NANOS_PER_SECOND + nanos;
+    }
+
+    /** Days since 1970-01-01 of a proleptic Gregorian date (H. Hinnant's days_from_civil). */
+    static long epochDay(long year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146_097 + doe - 719_468;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    private static int digits2(CharSequence s, int i, int to) {
+        if (i < 0 || i + 1 >= to) return -1;
+        char a = s.charAt(i);
+        char b = s.charAt(i + 1);
+        if (a < '0' || a > '9' || b < '0' || b > '9') return -1;
+        return (a - '0') * 10 + (b - '0');
+    }
+
+    private static boolean expect(CharSequence s, int i, int to, char c) {
+        return i < to && s.charAt(i) == c;
+    }
+
+    private static final long[] POW10 = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000, 1_000_000_000};
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
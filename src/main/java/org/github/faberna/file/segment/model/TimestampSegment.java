@@ -0,0 +1,79 @@
+package org.github.faberna.file.segment.model;
+
+/**
+ * A date-time key: the text of {@code field} (a {@link RangeSegment}, a {@link DelimitedSegment}, a
+ * {@link JsonFieldSegment} or a {@link CsvSegment}, whose mode is ignored) is parsed with {@code format} into
+ * epoch nanoseconds, and the instants are compared as longs.
+ *
+ * The parse allocates nothing and is done once per record by the sorts and merges ({@link #columnar()}, binary
+ * key via {@link KeyEncoder}); values that do not match the format sort first.
+ */
+public record TimestampSegment(Segment<String> field, TimestampFormat format) implements Segment<String> {
+
+    public TimestampSegment {
+        FieldBounds.requireField(field);
+        if (format == null) throw new IllegalArgumentException("format is required");
+    }
+
+    /** An ISO-8601 timestamp in the chars {@code [start, end)}. */
+    public TimestampSegment(int start, int end) {
+        this(new RangeSegment(start, end), TimestampFormat.ISO);
+    }
+
+    @Override
+    public int compare(String a, String b) {
+        return compareChars(a, b);
+    }
+
+    @Override
+    public int compareChars(CharSequence a, CharSequence b) {
+        return Long.compare(epochNanos(a), epochNanos(b));
+    }
+
+    /** Always columnar: the column is the parsed instant. */
+    @Override
+    public boolean columnar() {
+        return true;
+    }
+
+    @Override
+    public long column(CharSequence line) {
+        return epochNanos(line);
+    }
+
+    @Override
+    public int compareColumns(CharSequence a, long columnA, CharSequence b, long columnB) {
+        return Long.compare(columnA, columnB);
+    }
+
+    @Override
+    public boolean encodable() {
+        return true;
+    }
+
+    @Override
+    public void encodeKey(CharSequence line, KeyEncoder.Output out) {
+        out.int64(epochNanos(line));
+    }
+
+    @Override
+    public boolean emptyKey(CharSequence line) {
+        return FieldBounds.empty(field, line);
+    }
+
+    @Override
+    public int hash(String line) {
+        return Long.hashCode(epochNanos(line));
+    }
+
+    @Override
+    public void appendKey(String line, StringBuilder out) {
+        field.appendKey(line, out);
+    }
+
+    /** The instant of the line in epoch nanoseconds, {@link TimestampFormat#INVALID} if it does not match the format. */
+    public long epochNanos(CharSequence line) {
+        long bounds = FieldBounds.of(field, line);
+        return format.parse(line, FieldBounds.start(bounds), FieldBounds.end(bounds));
+    }
+}
@@ -0,0 +1,395 @@
+package org.github.faberna.file.segment.util;
+
+import java.math.BigInteger;
+
+/**
+ * Parsers of the numeric keys ({@code Mode.INT}, {@code Mode.FLOAT}, {@code Mode.DECIMAL}) shared by the segments,
+ * in place on a char range.
+ *
+ * All skip leading blanks (chars {@code <= ' '}), take an optional sign and stop at the first char that does not
+ * belong to the number; a range without digits is 0.
+ * - integers: 8 digits at a time (SWAR on the packed chars), overflow wraps like {@code val * 10 + digit}
+ * - doubles: {@code digits[.digits][(e|E)[sign]digits]}, correctly rounded (same value as {@link Double#parseDouble}):
+ *   Clinger's exact path for small mantissas and exponents, then Eisel-Lemire, then {@link Double#parseDouble}
+ *   for the rare inputs neither can decide (more than 19 significant digits, halfway cases)
+ * - decimals: {@code digits[.digits]} of any length, compared exactly on the digits (sign, number of integer digits,
+ *   then the digits without leading and trailing zeros), or as a long scaled by {@link #DECIMAL_SCALE} when it fits
+ */
+public final class NumericKeyParser {
+
+    private static final long ZEROS = 0x3030303030303030L;
+    private static final long HIGH_NIBBLES = 0xF0F0F0F0F0F0F0F0L;
+    private static final int MAX_EXPONENT = 100_000;
+
+    /** Fraction digits of {@link #scaledDecimal}. */
+    public static final int DECIMAL_SCALE = 6;
+    /** {@link #scaledDecimal} of a decimal that does not fit a long at {@link #DECIMAL_SCALE}. */
+    public static final long NOT_SCALED = Long.MIN_VALUE;
+    private static final int MAX_SCALED_INTEGER_DIGITS = 12;
+
+    private static final double[] EXACT_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private NumericKeyParser() {
+        /* This utility class should not be instantiated */
+    }
+
+    /** The integer in {@code s[start, end)} (clamped to the line). */
+    public static long parseLong(CharSequence s, int start, int end) {
+        int n = s.length();
+        int i = Math.min(start, n);
+        int to = Math.min(end, n);
+        while (i < to && s.charAt(i) <= ' ') i++;
+
+        boolean neg = false;
+        if (i < to) {
+            char c = s.charAt(i);
+            if (c == '-' || c == '+') { neg = (c == '-'); i++; }
+        }
+
+        long val = 0;
+        boolean any = false;
+        while (i + 8 <= to) {
+            long chunk = eightDigits(s, i);
+            if (chunk < 0) break;
+            val = val * 100_000_000L + chunk;
+            any = true;
+            i += 8;
+        }
+        while (i < to) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') break;
+            any = true;
+            val = val * 10 + (c - '0');
+            i++;
+        }
+
+        if (!any) return 0;
+        return neg ? -val : val;
+    }
+
+    /** The number in {@code s[start, end)} (clamped to the line). */
+    public static double parseDouble(CharSequence s, int start, int end) {
+        int n = s.length();
+        int i = Math.min(start, n);
+        int to = Math.min(end, n);
+        while (i < to && s.charAt(i) <= ' ') i++;
+
+        boolean neg = false;
+        if (i < to) {
+            char c = s.charAt(i);
+            if (c == '-' || c == '+') { neg = (c == '-'); i++; }
+        }
+        int digitsStart = i;
+
+        // significant digits in the mantissa (up to 19 fit an unsigned long), the rest only moves the exponent
+        long mantissa = 0;
+        int significant = 0;
+        boolean truncated = false;
+        int exponent = 0;
+        boolean any = false;
+
+        while (i < to) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') break;
+            any = true;
+            if (significant < 19) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) significant++;
+            } else {
+                exponent++;
+                truncated |= c != '0';
+            }
+            i++;
+        }
+        if (i < to && s.charAt(i) == '.') {
+            i++;
+            while (i < to) {
+                char c = s.charAt(i);
+                if (c < '0' || c > '9') break;
+                any = true;
+                if (significant < 19) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) significant++;
+                    exponent--;
+                } else {
+                    truncated |= c != '0';
+                }
+                i++;
+            }
+        }
+        if (!any) return 0.0;
+        int digitsEnd = i;
+
+        if (i + 1 < to && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            int j = i + 1;
+            boolean negExp = false;
+            char c = s.charAt(j);
+            if (c == '-' || c == '+') { negExp = (c == '-'); j++; }
+            if (j < to && s.charAt(j) >= '0' && s.charAt(j) <= '9') {
+                int exp = 0;
+                while (j < to && s.charAt(j) >= '0' && s.charAt(j) <= '9') {
+                    if (exp < MAX_EXPONENT) exp = exp * 10 + (s.charAt(j) - '0');
+                    j++;
+                }
+                exponent += negExp ? -exp : exp;
+            }
+        }
+
+        if (mantissa == 0) return neg ? -0.0 : 0.0;
+        if (!truncated) {
+            // Clinger: the mantissa and the power of ten are both exact doubles, one rounding
+            if (Long.compareUnsigned(mantissa, 1L << 53) <= 0 && exponent >= -22 && exponent <= 22) {
+                double value = mantissa;
+                value = exponent < 0 ? value / EXACT_POWERS_OF_TEN[-exponent] : value * EXACT_POWERS_OF_TEN[exponent];
+                return neg ? -value : value;
+            }
+            long bits = eiselLemire(mantissa, exponent);
+            if (bits >= 0) return Double.longBitsToDouble(neg ? bits | Long.MIN_VALUE : bits);
+        }
+        return slowParse(s, digitsStart, digitsEnd, exponent(s, digitsEnd, to), neg);
+    }
+
+    /** Exact order of the decimals in {@code a[aStart, aEnd)} and {@code b[bStart, bEnd)} (clamped to the lines). */
+    public static int compareDecimal(CharSequence a, int aStart, int aEnd, CharSequence b, int bStart, int bEnd) {
+        int toA = Math.min(aEnd, a.length());
+        int toB = Math.min(bEnd, b.length());
+        int fromA = Math.min(Math.max(0, aStart), toA);
+        int fromB = Math.min(Math.max(0, bStart), toB);
+
+        int intA = decimalDigits(a, fromA, toA);
+        int intB = decimalDigits(b, fromB, toB);
+        int intEndA = digitsEnd(a, intA, toA);
+        int intEndB = digitsEnd(b, intB, toB);
+        int fracA = fractionStart(a, intEndA, toA);
+        int fracB = fractionStart(b, intEndB, toB);
+        int fracEndA = fractionEnd(a, fracA, toA);
+        int fracEndB = fractionEnd(b, fracB, toB);
+
+        int signA = decimalSign(a, fromA, intA, intEndA - intA + fracEndA - fracA);
+        int signB = decimalSign(b, fromB, intB, intEndB - intB + fracEndB - fracB);
+        if (signA != signB) return Integer.compare(signA, signB);
+        if (signA == 0) return 0;
+
+        // same sign: more integer digits is a larger magnitude, then the digits in order
+        int cmp = Integer.compare(intEndA - intA, intEndB - intB);
+        if (cmp == 0) cmp = compareDigits(a, intA, intEndA, b, intB, intEndB);
+        if (cmp == 0) cmp = compareDigits(a, fracA, fracEndA, b, fracB, fracEndB);
+        return signA < 0 ? -cmp : cmp;
+    }
+
+    /**
+     * The decimal in {@code s[start, end)} (clamped to the line) times 10^{@link #DECIMAL_SCALE}, exact,
+     * or {@link #NOT_SCALED} if it has more than 12 integer digits or more than 6 significant fraction digits.
+     */
+    public static long scaledDecimal(CharSequence s, int start, int end) {
+        int to = Math.min(end, s.length());
+        int from = Math.min(Math.max(0, start), to);
+        int digits = decimalDigits(s, from, to);
+        int intEnd = digitsEnd(s, digits, to);
+        int frac = fractionStart(s, intEnd, to);
+        int fracEnd = fractionEnd(s, frac, to);
+        if (intEnd - digits > MAX_SCALED_INTEGER_DIGITS || fracEnd - frac > DECIMAL_SCALE) return NOT_SCALED;
+
+        long value = 0;
+        for (int i = digits; i < intEnd; i++) value = value * 10 + (s.charAt(i) - '0');
+        for (int k = 0; k < DECIMAL_SCALE; k++) {
+            value = value * 10 + (frac + k < fracEnd ? s.charAt(frac + k) - '0' : 0);
+        }
+        return negativeDecimal(s, from, digits) ? -value : value;
+    }
+
+    /** Hash of the decimal in {@code s[start, end)}, equal for decimals that {@link #compareDecimal} finds equal. */
+    public static int hashDecimal(CharSequence s, int start, int end) {
+        int to = Math.min(end, s.length());
+        int from = Math.min(Math.max(0, start), to);
+        int i = decimalDigits(s, from, to);
+        int intEnd = digitsEnd(s, i, to);
+        int frac = fractionStart(s, intEnd, to);
+        int fracEnd = fractionEnd(s, frac, to);
+
+        int h = decimalSign(s, from, i, intEnd - i + fracEnd - frac);
+        for (int k = i; k < intEnd; k++) h = 31 * h + s.charAt(k);
+        h = 31 * h + '.';
+        for (int k = frac; k < fracEnd; k++) h = 31 * h + s.charAt(k);
+        return h;
+    }
+
+    /** Index of the first significant integer digit: after the blanks, the sign and the leading zeros. */
+    public static int decimalDigits(CharSequence s, int from, int to) {
+        int i = from;
+        while (i < to && s.charAt(i) <= ' ') i++;
+        if (i < to && (s.charAt(i) == '-' || s.charAt(i) == '+')) i++;
+        while (i < to && s.charAt(i) == '0') i++;
+        return i;
+    }
+
+    /** Index after the digits from {@code i}. */
+    public static int digitsEnd(CharSequence s, int i, int to) {
+        while (i < to && s.charAt(i) >= '0' && s.charAt(i) <= '9') i++;
+        return i;
+    }
+
+    /** Index of the first fraction digit, or {@code intEnd} if there is no fraction. */
+    public static int fractionStart(CharSequence s, int intEnd, int to) {
+        return intEnd < to && s.charAt(intEnd) == '.' ? intEnd + 1 : intEnd;
+    }
+
+    /** Index after the last non-zero fraction digit. */
+    public static int fractionEnd(CharSequence s, int fractionStart, int to) {
+        int end = fractionStart;
+        for (int i = fractionStart; i < to && s.charAt(i) >= '0' && s.charAt(i) <= '9'; i++) {
+            if (s.charAt(i) != '0') end = i + 1;
+        }
+        return end;
+    }
+
+    /** True if the decimal from {@code from} to its first significant digit at {@code digits} has a minus sign. */
+    public static boolean negativeDecimal(CharSequence s, int from, int digits) {
+        int i = from;
+        while (i < digits && s.charAt(i) <= ' ') i++;
+        return i < digits && s.charAt(i) == '-';
+    }
+
+    /** -1, 0 or 1: a decimal without significant digits is 0 whatever its sign. */
+    private static int decimalSign(CharSequence s, int from, int digits, int significant) {
+        if (significant == 0) return 0;
+        return negativeDecimal(s, from, digits) ? -1 : 1;
+    }
+
+    private static int compareDigits(CharSequence a, int i, int endA, CharSequence b, int j, int endB) {
+        for (; i < endA && j < endB; i++, j++) {
+            char ca = a.charAt(i);
+            char cb = b.charAt(j);
+            if (ca != cb) return Character.compare(ca, cb);
+        }
+        // integer digits have the same count; a longer fraction ends with a non-zero digit
+        return Integer.compare(endA - i, endB - j);
+    }
+
+    /**
+     * The value of 8 digit chars from {@code s[i]}, or -1 if one of them is not a digit.
+     * The chars are packed one per byte (first char lowest), checked and converted in 3 multiplications.
+     */
+    static long eightDigits(CharSequence s, int i) {
+        long packed = 0;
+        int wide = 0;
+        for (int k = 0; k < 8; k++) {
+            char c = s.charAt(i + k);
+            wide |= c;
+            packed |= (long) (c & 0xFF) << (k << 3);
+        }
+        if ((wide & 0xFF00) != 0) return -1;
+        // every byte is 0x30..0x39: high nibble 3, and still 3 after adding 6
+        if ((packed & HIGH_NIBBLES) != ZEROS || ((packed + 0x0606060606060606L) & HIGH_NIBBLES) != ZEROS) return -1;
+
+        long v = packed - ZEROS;
+        v = (v * 10 + (v >>> 8)) & 0x00FF00FF00FF00FFL;
+        v = (v * 100 + (v >>> 16)) & 0x0000FFFF0000FFFFL;
+        return (v * 10_000 + (v >>> 32)) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Eisel-Lemire: the bits of {@code mantissa * 10^exponent} correctly rounded, or -1 when the 128-bit
+     * approximation of the power of ten cannot decide (the caller then parses exactly).
+     */
+    static long eiselLemire(long mantissa, int exponent) {
+        if (exponent < Powers.MIN_EXPONENT) return 0;
+        if (exponent > Powers.MAX_EXPONENT) return Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+
+        int clz = Long.numberOfLeadingZeros(mantissa);
+        long man = mantissa << clz;
+        long retExp2 = ((217706L * exponent) >> 16) + 64 + 1023 - clz;
+
+        int index = exponent - Powers.MIN_EXPONENT;
+        long xHi = Math.unsignedMultiplyHigh(man, Powers.HIGH[index]);
+        long xLo = man * Powers.HIGH[index];
+        if ((xHi & 0x1FF) == 0x1FF && Long.compareUnsigned(xLo + man, man) < 0) {
+            // the low bits of the product may carry: widen with the low half of the power
+            long yHi = Math.unsignedMultiplyHigh(man, Powers.LOW[index]);
+            long yLo = man * Powers.LOW[index];
+            long mergedHi = xHi;
+            long mergedLo = xLo + yHi;
+            if (Long.compareUnsigned(mergedLo, xLo) < 0) mergedHi++;
+            if ((mergedHi & 0x1FF) == 0x1FF && mergedLo + 1 == 0 && Long.compareUnsigned(yLo + man, man) < 0) {
+                return -1;
+            }
+            xHi = mergedHi;
+            xLo = mergedLo;
+        }
+
+        long msb = xHi >>> 63;
+        long retMantissa = xHi >>> (msb + 9);
+        retExp2 -= 1 ^ msb;
+        if (xLo == 0 && (xHi & 0x1FF) == 0 && (retMantissa & 3) == 1) return -1; // halfway between two doubles
+
+        retMantissa += retMantissa & 1;
+        retMantissa >>>= 1;
+        if (retMantissa >>> 53 > 0) {
+            retMantissa >>>= 1;
+            retExp2++;
+        }
+        if (retExp2 - 1 >= 0x7FF - 1 || retExp2 - 1 < 0) return -1; // subnormal or infinite: exact path
+        return retExp2 << 52 | retMantissa & 0x000FFFFFFFFFFFFFL;
+    }
+
+    private static int exponent(CharSequence s, int from, int to) {
+        if (from + 1 >= to || (s.charAt(from) != 'e' && s.charAt(from) != 'E')) return 0;
+        int j = from + 1;
+        boolean negExp = false;
+        char c = s.charAt(j);
+        if (c == '-' || c == '+') { negExp = (c == '-'); j++; }
+        int exp = 0;
+        while (j < to && s.charAt(j) >= '0' && s.charAt(j) <= '9') {
+            if (exp < MAX_EXPONENT) exp = exp * 10 + (s.charAt(j) - '0');
+            j++;
+        }
+        return negExp ? -exp : exp;
+    }
+
+    /** Exact parse of the digits through {@link Double#parseDouble}, in a canonical form. */
+    private static double slowParse(CharSequence s, int from, int to, int exp, boolean neg) {
+        StringBuilder sb = new StringBuilder(to - from + 16);
+        if (neg) sb.append('-');
+        int fractionDigits = 0;
+        boolean fraction = false;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '.') {
+                fraction = true;
+            } else {
+                sb.append(c);
+                if (fraction) fractionDigits++;
+            }
+        }
+        sb.append('E').append((long) exp - fractionDigits);
+        return Double.parseDouble(sb.toString());
+    }
+
+    /** 128-bit approximations (rounded down) of the powers of ten, normalized to a set top bit. Built on first use. */
+    private static final class Powers {
+        static final int MIN_EXPONENT = -348;
+        static final int MAX_EXPONENT = 347;
+        static final long[] HIGH = new long[MAX_EXPONENT - MIN_EXPONENT + 1];
+        static final long[] LOW = new long[HIGH.length];
+
+        static {
+            BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+            for (int e = MIN_EXPONENT; e <= MAX_EXPONENT; e++) {
+                BigInteger value;
+                if (e >= 0) {
+                    BigInteger p = BigInteger.TEN.pow(e);
+                    int shift = p.bitLength() - 128;
+                    value = shift >= 0 ? p.shiftRight(shift) : p.shiftLeft(-shift);
+                } else {
+                    BigInteger d = BigInteger.TEN.pow(-e);
+                    value = BigInteger.ONE.shiftLeft(d.bitLength() + 127).divide(d);
+                }
+                HIGH[e - MIN_EXPONENT] = value.shiftRight(64).longValue();
+                LOW[e - MIN_EXPONENT] = value.and(mask).longValue();
+            }
+        }
+    }
+}
@@ -3,7 +3,7 @@ package org.github.faberna.file.segment.util;
 public final class SegmentUtil {
     private SegmentUtil() {}
 
-    public static int compareRangesCharByChar(String a, int aStart, int aEnd, String b, int bStart, int bEnd) {
+    public static int compareRangesCharByChar(CharSequence a, int aStart, int aEnd, CharSequence b, int bStart, int bEnd) {
         int aLen = a.length();
         int bLen = b.length();
 
@@ -22,6 +22,74 @@ public final class SegmentUtil {
         return 0;
     }
 
+    /**
+     * Same as {@link #compareRangesCharByChar} on the chars folded by {@link #foldCase}: the order of
+     * {@link String#CASE_INSENSITIVE_ORDER}, without lower-casing copies of the lines.
+     */
+    public static int compareRangesIgnoreCase(CharSequence a, int aStart, int aEnd, CharSequence b, int bStart, int bEnd) {
+        int aStop = Math.min(aEnd, a.length());
+        int bStop = Math.min(bEnd, b.length());
+
+        int ai = Math.max(0, aStart);
+        int bi = Math.max(0, bStart);
+
+        while (ai < aStop || bi < bStop) {
+            char ca = ai < aStop ? a.charAt(ai) : 0;
+            char cb = bi < bStop ? b.charAt(bi) : 0;
+            if (ca != cb) {
+                ca = foldCase(ca);
+                cb = foldCase(cb);
+                if (ca != cb) return Character.compare(ca, cb);
+            }
+            ai++; bi++;
+        }
+        return 0;
+    }
+
+    /**
+     * The char compared by the case-insensitive modes: {@code toLowerCase(toUpperCase(c))}, as
+     * {@link String#CASE_INSENSITIVE_ORDER}. ASCII chars are folded without branches: {@code A-Z} get 32 added.
+     */
+    public static char foldCase(char c) {
+        if (c < 0x80) {
+            // (c - 'A') | ('Z' - c) is negative unless c is in A..Z
+            return (char) (c + (((((c - 'A') | ('Z' - c)) >>> 31) ^ 1) << 5));
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /** Same as {@link #hashRange} on the chars folded by {@link #foldCase}. */
+    public static int hashRangeIgnoreCase(String line, int start, int end) {
+        int s = Math.max(0, start);
+        int e = Math.min(end, line.length());
+        while (e > s && line.charAt(e - 1) == 0) e--;
+        int h = 0;
+        for (int i = s; i < e; i++) {
+            h = 31 * h + foldCase(line.charAt(i));
+        }
+        return h;
+    }
+
+    /**
+     * Hashes the chars of `line` from `start` (inclusive) to `end` (exclusive), handling out-of-bounds gracefully.
+     * Trailing NUL chars are ignored, because range comparisons treat missing chars as 0:
+     * two ranges that compare equal always hash equal.
+     * @param line
+     * @param start
+     * @param end
+     * @return
+     */
+    public static int hashRange(String line, int start, int end) {
+        int s = Math.max(0, start);
+        int e = Math.min(end, line.length());
+        while (e > s && line.charAt(e - 1) == 0) e--;
+        int h = 0;
+        for (int i = s; i < e; i++) {
+            h = 31 * h + line.charAt(i);
+        }
+        return h;
+    }
+
     /**
      * Appends the substring of `line` from `start` (inclusive) to `end` (exclusive) to `out`, handling out-of-bounds gracefully.
      * @param line
@@ -44,7 +112,7 @@ public final class SegmentUtil {
      * @param n
      * @return
      */
-    public static int nthDelimiterIndex(String line, char delimiter, int n) {
+    public static int nthDelimiterIndex(CharSequence line, char delimiter, int n) {
         int count = 0;
         for (int i = 0; i < line.length(); i++) {
             if (line.charAt(i) == delimiter) {
@@ -55,4 +123,18 @@ public final class SegmentUtil {
         return -1;
     }
 
+    /**
+     * Returns the index of the first `delimiter` in `line` at or after `from`, or -1 if not found.
+     * @param line
+     * @param delimiter
+     * @param from
+     * @return
+     */
+    public static int indexOf(CharSequence line, char delimiter, int from) {
+        for (int i = Math.max(0, from); i < line.length(); i++) {
+            if (line.charAt(i) == delimiter) return i;
+        }
+        return -1;
+    }
+
 }
@@ -1,20 +1,39 @@
 package org.github.faberna.file.split;
 
 import org.github.faberna.file.split.config.IOConfig;
+import org.github.faberna.file.split.config.SortConfig;
 import org.github.faberna.file.split.plan.SplitPlan;
+import org.github.faberna.file.split.model.FixedLengthSeparator;
+import org.github.faberna.file.split.model.LengthPrefixedSeparator;
 import org.github.faberna.file.split.model.Separator;
 import org.github.faberna.file.split.plan.SplitPlanner;
+import org.github.faberna.file.split.sorter.BudgetedRunWriter;
 import org.github.faberna.file.split.sorter.InMemorySortingPartWriter;
 import org.github.faberna.file.split.sorter.PartWriter;
 import org.github.faberna.file.segment.model.KeySpec;
 import org.github.faberna.file.split.sorter.PartWriterFactory;
+import org.github.faberna.file.split.sorter.PipelinedPartWriter;
+import org.github.faberna.file.split.sorter.ReplacementSelectionRunWriter;
+import org.github.faberna.file.split.sorter.RunPathAllocator;
+import org.github.faberna.file.split.sorter.RunStats;
 import org.github.faberna.file.split.splitter.ParallelRangeSplitter;
+import org.github.faberna.file.split.splitter.StreamingRunSplitter;
+import org.github.faberna.file.split.util.MemoryBudget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 
 /**
@@ -24,24 +43,35 @@ import java.util.Objects;
  * - Splits the input into part files using SplitEngine.
  * - Each part is sorted IN-MEMORY before being written (contextual split+sort), using the provided KeySpec.
  * - Preserves original line endings (LF/CRLF/CR) because the PartWriter receives the detected ending per line.
+ * - Fixed-length records ({@link FixedLengthSeparator}) are cut, sorted and written as blocks, without terminators.
+ * - Length-prefixed records ({@link LengthPrefixedSeparator}) are sorted by payload and written with their prefix.
  *
  * Notes:
  * - This produces "sorted runs" (each part internally sorted). Global ordering requires a merge step.
  * - For now, sorting is supported only in sequential mode (IOConfig.preferSequential() = true).
+ * - In sequential mode, {@link SortConfig#pipelined()} overlaps reading with the sort and the write of previous parts.
+ * - {@link SortConfig#sortPool()} sorts each large part with all the threads of a ForkJoinPool.
  */
 public final class SortedSplitEngine {
-
+    private static final Logger log = LoggerFactory.getLogger(SortedSplitEngine.class);
 
     private final SplitEngine splitEngine;
     private final KeySpec keySpec;
     private final Comparator<String> keyComparator;
+    private final SortConfig sortConfig;
     private final SplitPlanner planner = new SplitPlanner();
     private final ParallelRangeSplitter parallel = new ParallelRangeSplitter();
+    private final StreamingRunSplitter streaming = new StreamingRunSplitter();
 
     public SortedSplitEngine(SplitEngine splitEngine, KeySpec keySpec, Comparator<String> keyComparator) {
+        this(splitEngine, keySpec, keyComparator, SortConfig.defaults());
+    }
+
+    public SortedSplitEngine(SplitEngine splitEngine, KeySpec keySpec, Comparator<String> keyComparator, SortConfig sortConfig) {
         this.splitEngine = Objects.requireNonNull(splitEngine, "splitEngine is required");
         this.keySpec = Objects.requireNonNull(keySpec, "keySpec is required");
         this.keyComparator = Objects.requireNonNull(keyComparator, "keyComparator is required");
+        this.sortConfig = Objects.requireNonNull(sortConfig, "sortConfig is required");
     }
 
     /**
@@ -74,10 +104,10 @@ public final class SortedSplitEngine {
             throw new IllegalArgumentException("maxBytesPerPart must be > 0");
         }
 
-         PartWriterFactory factory = () -> new InMemorySortingPartWriter(keySpec, keyComparator, charset);
+         PartWriterFactory factory = () -> new InMemorySortingPartWriter(keySpec, keyComparator, charset, sortConfig, separator);
 
          if (io.preferSequential()) {
-             splitEngine.splitByMaxBytes(input, outputDir, maxBytesPerPart, separator, io, factory.create());
+             runSequential(factory, writer -> splitEngine.splitByMaxBytes(input, outputDir, maxBytesPerPart, separator, io, writer));
              return;
          }
 
@@ -89,7 +119,7 @@ public final class SortedSplitEngine {
          );
 
          if (io.parallelism() > 1) {
-             parallel.execute(plan, io,factory);
+             parallel.execute(plan, io, factory, separator);
          } else {
              // Reuse the parallel executor with a single thread (no separate SequentialRangeSplitter needed)
              parallel.execute(plan, new IOConfig(
@@ -98,7 +128,7 @@ public final class SortedSplitEngine {
                      false,
                      io.filePrefix(),
                      io.fileExtension()
-             ),factory);
+             ), factory, separator);
          }
     }
 
@@ -134,8 +164,10 @@ public final class SortedSplitEngine {
             // 2) Sort each part file using KeySpec
             // If you want zero-allocation comparisons, use keySpec.comparator().
             // If you want to allow a custom keyComparator on the materialized key, use keySpec.comparator(keyComparator).
-            PartWriter writer = new InMemorySortingPartWriter(keySpec, keyComparator, charset);
-            splitEngine.splitByParts(input, outputDir, parts, separator, io, writer);
+            runSequential(
+                    () -> new InMemorySortingPartWriter(keySpec, keyComparator, charset, sortConfig, separator),
+                    writer -> splitEngine.splitByParts(input, outputDir, parts, separator, io, writer)
+            );
         }else {
 
         SplitPlan plan = planner.planByParts(
@@ -146,9 +178,9 @@ public final class SortedSplitEngine {
         );
 
         PartWriterFactory factory =
-                () -> new InMemorySortingPartWriter(keySpec, keyComparator, charset);
+                () -> new InMemorySortingPartWriter(keySpec, keyComparator, charset, sortConfig, separator);
         if (io.parallelism() > 1) {
-            parallel.execute(plan, io,factory);
+            parallel.execute(plan, io, factory, separator);
         } else {
             // Reuse the parallel executor with a single thread (no separate SequentialRangeSplitter needed)
             parallel.execute(plan, new IOConfig(
@@ -157,16 +189,289 @@ public final class SortedSplitEngine {
                     false,
                     io.filePrefix(),
                     io.fileExtension()
-            ),factory);
+            ), factory, separator);
+        }
+        }
+
+
+
+    }
+
+    /**
+     * Split the input file in parts of exactly {@code recordsPerPart} lines, then sort each produced part in-memory.
+     */
+    public void splitByRecords(
+            Path input,
+            Path outputDir,
+            long recordsPerPart,
+            Separator separator,
+            IOConfig io
+    ) throws IOException {
+        splitByRecordsSorted(input, outputDir, recordsPerPart, separator, io, StandardCharsets.UTF_8);
+    }
+
+    void splitByRecordsSorted(
+            Path input,
+            Path outputDir,
+            long recordsPerPart,
+            Separator separator,
+            IOConfig io,
+            Charset charset
+    ) throws IOException {
+
+        requireInputs(input, outputDir, separator, io, charset);
+        if (recordsPerPart <= 0) throw new IllegalArgumentException("recordsPerPart must be > 0");
+
+        PartWriterFactory factory = () -> new InMemorySortingPartWriter(keySpec, keyComparator, charset, sortConfig, separator);
+
+        if (io.preferSequential()) {
+            runSequential(factory, writer -> splitEngine.splitByRecords(input, outputDir, recordsPerPart, separator, io, writer));
+            return;
+        }
+
+        SplitPlan plan = planner.planByRecords(
+                input,
+                outputDir,
+                recordsPerPart,
+                separator,
+                Math.max(1, io.parallelism())
+        );
+
+        if (io.parallelism() > 1) {
+            parallel.execute(plan, io, factory, separator);
+        } else {
+            parallel.execute(plan, new IOConfig(
+                    io.copyBufferBytes(),
+                    1,
+                    false,
+                    io.filePrefix(),
+                    io.fileExtension()
+            ), factory, separator);
+        }
+    }
+
+    /**
+     * Hash-partition the input file by the KeySpec key, then sort each produced part in-memory, in parallel.
+     * Equal keys are co-located in the same part and each part is a sorted run of its own keys.
+     * Each part must fit in memory: pick {@code partitions} accordingly.
+     * @return the part files, in partition order (empty partitions included)
+     */
+    public List<Path> splitByHash(
+            Path input,
+            Path outputDir,
+            int partitions,
+            Separator separator,
+            IOConfig io
+    ) throws IOException {
+        return splitByHashSorted(input, outputDir, partitions, separator, io, StandardCharsets.UTF_8);
+    }
+
+    List<Path> splitByHashSorted(
+            Path input,
+            Path outputDir,
+            int partitions,
+            Separator separator,
+            IOConfig io,
+            Charset charset
+    ) throws IOException {
+
+        requireInputs(input, outputDir, separator, io, charset);
+        if (partitions <= 0) throw new IllegalArgumentException("partitions must be > 0");
+
+        List<Path> parts = splitEngine.splitByHash(input, outputDir, partitions, separator, io, keySpec);
+
+        PartWriterFactory factory = () -> new InMemorySortingPartWriter(keySpec, keyComparator, charset, sortConfig);
+        parallel.executeInPlace(parts, io, factory);
+        return parts;
+    }
+
+    /**
+     * Split the input file into sorted runs sized by memory instead of by bytes of input.
+     * Every worker ({@code io.parallelism()}, 0 = CPU count; one when {@code io.preferSequential()}) reads its own
+     * range and buffers lines until the budget shared by all of them is used up, then sorts and spills a run.
+     * The number of runs therefore follows the data (short or long lines, skewed ranges) and {@code memoryBudgetBytes}.
+     * The returned runs can be merged with {@code MergeEngine.kWayMerge}.
+     * @return the run files: spilled runs ({@code <prefix>spill-NNNNNN<ext>}) then the last run of each worker
+     */
+    public List<Path> splitByMemoryBudget(
+            Path input,
+            Path outputDir,
+            long memoryBudgetBytes,
+            Separator separator,
+            IOConfig io
+    ) throws IOException {
+        return splitByMemoryBudgetSorted(input, outputDir, memoryBudgetBytes, separator, io, StandardCharsets.UTF_8);
+    }
+
+    List<Path> splitByMemoryBudgetSorted(
+            Path input,
+            Path outputDir,
+            long memoryBudgetBytes,
+            Separator separator,
+            IOConfig io,
+            Charset charset
+    ) throws IOException {
+
+        requireInputs(input, outputDir, separator, io, charset);
+        requireTerminatedRecords(separator);
+        if (memoryBudgetBytes <= 0) throw new IllegalArgumentException("memoryBudgetBytes must be > 0");
+
+        Files.createDirectories(outputDir);
+        MemoryBudget budget = new MemoryBudget(memoryBudgetBytes);
+        RunPathAllocator spills = new RunPathAllocator(outputDir, io.filePrefix(), io.fileExtension());
+
+        int workers;
+        SplitPlan plan = null;
+        if (io.preferSequential()) {
+            workers = 1;
+        } else {
+            workers = io.parallelism() > 0 ? io.parallelism() : Runtime.getRuntime().availableProcessors();
+            plan = planner.planByParts(input, outputDir, workers, separator);
+            workers = plan.parts().size();
         }
+        int writers = workers;
+        PartWriterFactory factory = () -> new BudgetedRunWriter(keySpec, keyComparator, charset, budget, spills, writers);
+        if (plan == null) {
+            splitEngine.splitByMaxBytes(input, outputDir, Long.MAX_VALUE, separator, io, factory.create());
+        } else {
+            parallel.execute(plan, io, factory);
         }
 
+        List<Path> runs = new ArrayList<>(spills.allocated());
+        for (int i = 1; i <= workers; i++) {
+            Path last = outputDir.resolve(
+                    String.format(Locale.ROOT, "%s%04d%s", io.filePrefix(), i, io.fileExtension())
+            );
+            if (Files.exists(last)) runs.add(last);
+        }
+        return runs;
+    }
+
+    /**
+     * Split the input file into sorted runs by replacement selection, reading it sequentially.
+     * A heap of {@code memoryBudgetBytes} lines keeps extending the current run with every line not smaller than
+     * the last one written: runs are about twice the budget on random input, and nearly sorted input (time-ordered
+     * logs) often gives a single run, so the merge has fewer runs or nothing to do.
+     * The achieved run lengths are logged, see {@link RunStats}.
+     * @return the run files, in run order (the last one is {@code <prefix>0001<ext>})
+     */
+    public List<Path> splitByReplacementSelection(
+            Path input,
+            Path outputDir,
+            long memoryBudgetBytes,
+            Separator separator,
+            IOConfig io
+    ) throws IOException {
+        return splitByReplacementSelectionSorted(input, outputDir, memoryBudgetBytes, separator, io, StandardCharsets.UTF_8);
+    }
+
+    List<Path> splitByReplacementSelectionSorted(
+            Path input,
+            Path outputDir,
+            long memoryBudgetBytes,
+            Separator separator,
+            IOConfig io,
+            Charset charset
+    ) throws IOException {
+
+        requireInputs(input, outputDir, separator, io, charset);
+        requireTerminatedRecords(separator);
+        if (memoryBudgetBytes <= 0) throw new IllegalArgumentException("memoryBudgetBytes must be > 0");
+
+        Files.createDirectories(outputDir);
+        RunPathAllocator spills = new RunPathAllocator(outputDir, io.filePrefix(), io.fileExtension());
+        ReplacementSelectionRunWriter writer =
+                new ReplacementSelectionRunWriter(keyComparator, charset, memoryBudgetBytes, spills);
+
+        // one stream, one heap: always sequential
+        IOConfig sequential = new IOConfig(io.copyBufferBytes(), 1, true, io.filePrefix(), io.fileExtension());
+        splitEngine.splitByMaxBytes(input, outputDir, Long.MAX_VALUE, separator, sequential, writer);
+
+        RunStats stats = writer.runStats();
+        log.info("Replacement selection: {} runs, {} records, run length min/avg/max {}/{}/{}, {} records in memory",
+                stats.runs(), stats.records(), stats.minRunRecords(), Math.round(stats.averageRunRecords()),
+                stats.maxRunRecords(), stats.bufferedRecords());
+
+        List<Path> runs = new ArrayList<>(spills.allocated());
+        Path last = outputDir.resolve(String.format(Locale.ROOT, "%s%04d%s", io.filePrefix(), 1, io.fileExtension()));
+        if (Files.exists(last)) runs.add(last);
+        return runs;
+    }
+
+    /**
+     * Cut a non-seekable stream (pipe, HTTP body, decompressor, stdin) into sorted runs as the bytes arrive,
+     * without staging an unsorted copy on disk. Runs are sorted and written on {@code io.parallelism()} workers
+     * (0 = CPU count) while reading continues; all buffered runs together stay within {@code memoryBudgetBytes}.
+     * The returned runs can be merged with {@code MergeEngine.kWayMerge}. The channel is not closed.
+     * @return the run files, in input order
+     */
+    public List<Path> splitStream(
+            ReadableByteChannel in,
+            Path outputDir,
+            long memoryBudgetBytes,
+            Separator separator,
+            IOConfig io
+    ) throws IOException {
+        return splitStreamSorted(in, outputDir, memoryBudgetBytes, separator, io, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Same as {@link #splitStream(ReadableByteChannel, Path, long, Separator, IOConfig)} for an InputStream.
+     * The stream is not closed.
+     */
+    public List<Path> splitStream(
+            InputStream in,
+            Path outputDir,
+            long memoryBudgetBytes,
+            Separator separator,
+            IOConfig io
+    ) throws IOException {
+        Objects.requireNonNull(in, "in is required");
+        return splitStream(Channels.newChannel(in), outputDir, memoryBudgetBytes, separator, io);
+    }
+
+    List<Path> splitStreamSorted(
+            ReadableByteChannel in,
+            Path outputDir,
+            long memoryBudgetBytes,
+            Separator separator,
+            IOConfig io,
+            Charset charset
+    ) throws IOException {
 
+        Objects.requireNonNull(in, "in is required");
+        Objects.requireNonNull(outputDir, "outputDir is required");
+        Objects.requireNonNull(separator, "separator is required");
+        Objects.requireNonNull(io, "io is required");
+        Objects.requireNonNull(charset, "charset is required");
+        if (memoryBudgetBytes <= 0) throw new IllegalArgumentException("memoryBudgetBytes must be > 0");
 
+        PartWriterFactory factory = () -> new InMemorySortingPartWriter(keySpec, keyComparator, charset, sortConfig);
+        return streaming.execute(in, outputDir, memoryBudgetBytes, separator, io, factory);
     }
 
     // ------------------------- helpers -------------------------
 
+    /** A sequential split fed to a single PartWriter. */
+    @FunctionalInterface
+    private interface SequentialSplit {
+        void run(PartWriter writer) throws IOException;
+    }
+
+    /**
+     * Runs a sequential split with one writer, or through a {@link PipelinedPartWriter} when
+     * {@link SortConfig#pipelined()} is set (reading continues while previous parts are sorted and written).
+     */
+    private void runSequential(PartWriterFactory factory, SequentialSplit split) throws IOException {
+        if (!sortConfig.pipelined()) {
+            split.run(factory.create());
+            return;
+        }
+        try (PipelinedPartWriter writer = new PipelinedPartWriter(factory, sortConfig)) {
+            split.run(writer);
+        }
+    }
+
     private static void requireInputs(Path input, Path outputDir, Separator separator, IOConfig io, Charset charset) {
         Objects.requireNonNull(input, "input is required");
         Objects.requireNonNull(outputDir, "outputDir is required");
@@ -175,5 +480,12 @@ public final class SortedSplitEngine {
         Objects.requireNonNull(charset, "charset is required");
     }
 
+    /** Run writers terminate every record: fixed-length and framed records go through splitByMaxBytes/Parts/Records. */
+    private static void requireTerminatedRecords(Separator separator) {
+        if (separator instanceof FixedLengthSeparator || separator instanceof LengthPrefixedSeparator) {
+            throw new IllegalArgumentException(separator + " is supported by splitByMaxBytes, splitByParts and splitByRecords");
+        }
+    }
+
 
 }
\ No newline at end of file
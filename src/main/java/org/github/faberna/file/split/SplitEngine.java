@@ -1,17 +1,22 @@
 package org.github.faberna.file.split;
 
+import org.github.faberna.file.segment.model.KeySpec;
 import org.github.faberna.file.split.config.IOConfig;
 import org.github.faberna.file.split.plan.SplitPlan;
+import org.github.faberna.file.split.model.NewlineSeparator;
 import org.github.faberna.file.split.model.Separator;
 import org.github.faberna.file.split.plan.SplitPlanner;
 import org.github.faberna.file.split.sorter.PartWriter;
+import org.github.faberna.file.split.splitter.HashPartitionSplitter;
 import org.github.faberna.file.split.splitter.ParallelRangeSplitter;
 import org.github.faberna.file.split.splitter.SequentialStreamingSplitter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.List;
 
  public final class SplitEngine {
 
@@ -20,6 +25,7 @@ import java.nio.file.Path;
      private final SplitPlanner planner = new SplitPlanner();
     private final ParallelRangeSplitter parallel = new ParallelRangeSplitter();
     private final SequentialStreamingSplitter streaming = new SequentialStreamingSplitter();
+    private final HashPartitionSplitter hashing = new HashPartitionSplitter();
 
     public void splitByMaxBytes(
             Path input,
@@ -159,4 +165,114 @@ import java.nio.file.Path;
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Split the input file in parts of exactly {@code recordsPerPart} records (the last part may hold fewer).
+     * Sequential mode streams the file once; parallel mode counts records per range in parallel,
+     * locates the exact part boundaries, then copies the parts in parallel with transferTo.
+     * @param input
+     * @param outputDir
+     * @param recordsPerPart
+     * @param sep
+     * @param io
+     * @throws IOException
+     */
+    public void splitByRecords(
+            Path input,
+            Path outputDir,
+            long recordsPerPart,
+            Separator sep,
+            IOConfig io
+    ) throws IOException {
+
+        if (io == null) io = IOConfig.defaults();
+
+        if (io.preferSequential()) {
+            streaming.splitByRecords(input, outputDir, recordsPerPart, sep, io);
+            return;
+        }
+
+        SplitPlan plan = planner.planByRecords(
+                input,
+                outputDir,
+                recordsPerPart,
+                sep,
+                Math.max(1, io.parallelism())
+        );
+
+        if (io.parallelism() > 1) {
+            parallel.execute(plan, io);
+        } else {
+            parallel.execute(plan, new IOConfig(
+                    io.copyBufferBytes(),
+                    1,
+                    false,
+                    io.filePrefix(),
+                    io.fileExtension()
+            ));
+        }
+    }
+
+    /**
+     * Split the input file in parts of exactly {@code recordsPerPart} lines, handing each line to a PartWriter.
+     * @param input
+     * @param outputDir
+     * @param recordsPerPart
+     * @param sep
+     * @param io
+     * @param partWriter
+     * @throws IOException
+     */
+    public void splitByRecords(
+            Path input,
+            Path outputDir,
+            long recordsPerPart,
+            Separator sep,
+            IOConfig io,
+            PartWriter partWriter
+    ) throws IOException {
+
+        if (io == null) io = IOConfig.defaults();
+        if (partWriter == null) throw new IllegalArgumentException("partWriter is required");
+        if (io.preferSequential()) {
+            streaming.splitByRecords(input, outputDir, recordsPerPart, sep, io, partWriter);
+            return;
+        }
+
+        // For now, PartWriter mode is supported only in sequential streaming.
+        throw new UnsupportedOperationException("PartWriter mode currently supported only with IOConfig.preferSequential()=true");
+    }
+
+    /**
+     * Split the input file into {@code partitions} parts by the hash of the KeySpec key (line-safe).
+     * Lines with equal keys always land in the same part; there is no order between or inside the parts.
+     * The input is scanned in parallel ({@code io.parallelism()} ranges), regardless of {@code preferSequential}.
+     * @param input
+     * @param outputDir
+     * @param partitions
+     * @param sep
+     * @param io
+     * @param keySpec
+     * @return the part files, in partition order (empty partitions included)
+     * @throws IOException
+     */
+    public List<Path> splitByHash(
+            Path input,
+            Path outputDir,
+            int partitions,
+            Separator sep,
+            IOConfig io,
+            KeySpec keySpec
+    ) throws IOException {
+        if (io == null) io = IOConfig.defaults();
+        if (partitions <= 0) throw new IllegalArgumentException("partitions must be > 0");
+        if (keySpec == null) throw new IllegalArgumentException("keySpec is required");
+        if (!(sep instanceof NewlineSeparator)) {
+            throw new IllegalArgumentException("Hash partitioning currently supports only NewlineSeparator");
+        }
+
+        int ranges = io.parallelism() > 0 ? io.parallelism() : Runtime.getRuntime().availableProcessors();
+        SplitPlan plan = planner.planByParts(input, outputDir, ranges, sep);
+        return hashing.execute(plan, partitions, io, keySpec, StandardCharsets.UTF_8);
+    }
+
+}
@@ -2,6 +2,7 @@ package org.github.faberna.file.split;
 
 import org.github.faberna.file.split.model.LineEnding;
 import org.github.faberna.file.split.sorter.PartWriter;
+import org.github.faberna.file.split.util.LineBuffer;
 
 import java.io.ByteArrayOutputStream;
 import java.nio.charset.Charset;
@@ -12,9 +13,10 @@ public class SplitUtil {
         /* This utility class should not be instantiated */
     }
 
+    /** Hands the buffered line to the writer as raw bytes (without a copy from a {@link LineBuffer}), then resets it. */
     public static void emitLine(PartWriter writer, ByteArrayOutputStream lineBuf, LineEnding ending, Charset charset) {
-        String line = lineBuf.toString(charset);
-        writer.acceptLine(line, ending);
+        byte[] bytes = lineBuf instanceof LineBuffer line ? line.array() : lineBuf.toByteArray();
+        writer.acceptRecord(bytes, 0, lineBuf.size(), charset, ending);
         lineBuf.reset();
     }
 
@@ -33,6 +35,21 @@ public class SplitUtil {
         return (long) lineSize + (long) endingBytes;
     }
 
+    /** Appends the original bytes of the given line ending (nothing for {@link LineEnding#NONE}). */
+    public static void appendEnding(ByteArrayOutputStream out, LineEnding ending) {
+        switch (ending) {
+            case LF -> out.write('\n');
+            case CRLF -> {
+                out.write('\r');
+                out.write('\n');
+            }
+            case CR -> out.write('\r');
+            case NONE -> {
+                // last line of the input, no terminator
+            }
+        }
+    }
+
 }
 
 
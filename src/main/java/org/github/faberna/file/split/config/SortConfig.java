@@ -0,0 +1,78 @@
+package org.github.faberna.file.split.config;
+
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tuning of the in-memory sort of each part (the IO side is {@link IOConfig}).
+ *
+ * @param pipelined sequential mode only: keep reading while previous parts are sorted and written on other threads
+ * @param sortThreads number of threads sorting parts concurrently in pipelined mode
+ * @param memoryBudgetBytes heap budget for the parts handed off to the pipeline (queued, sorting or being written)
+ * @param sortPool pool sorting a single part in parallel, or {@code null} to sort each part on one thread
+ * @param parallelSortThreshold parts with fewer records are sorted on one thread even with a {@code sortPool}
+ * @param offHeap buffer the records of each part outside the Java heap (FFM memory segments), released once written
+ */
+public record SortConfig(
+        boolean pipelined,
+        int sortThreads,
+        long memoryBudgetBytes,
+        ForkJoinPool sortPool,
+        int parallelSortThreshold,
+        boolean offHeap
+) {
+    /** Records per part below which a parallel sort does not pay off. */
+    public static final int DEFAULT_PARALLEL_SORT_THRESHOLD = 1 << 13;
+
+    public SortConfig {
+        if (sortThreads <= 0) {
+            throw new IllegalArgumentException("sortThreads must be positive");
+        }
+        if (memoryBudgetBytes <= 0) {
+            throw new IllegalArgumentException("memoryBudgetBytes must be positive");
+        }
+        if (parallelSortThreshold <= 0) {
+            throw new IllegalArgumentException("parallelSortThreshold must be positive");
+        }
+    }
+
+    /** Each part sorted on one thread, in a heap buffer. */
+    public SortConfig(boolean pipelined, int sortThreads, long memoryBudgetBytes) {
+        this(pipelined, sortThreads, memoryBudgetBytes, null, DEFAULT_PARALLEL_SORT_THRESHOLD, false);
+    }
+
+    /** Not pipelined, each part sorted on one thread; when enabled: one sort thread per spare core and half of the max heap. */
+    public static SortConfig defaults() {
+        return new SortConfig(
+                false,
+                Math.max(1, Runtime.getRuntime().availableProcessors() - 1), // one core is left to the reader
+                Runtime.getRuntime().maxMemory() / 2
+        );
+    }
+
+    public SortConfig withPipelined(boolean pipelined) {
+        return new SortConfig(pipelined, sortThreads, memoryBudgetBytes, sortPool, parallelSortThreshold, offHeap);
+    }
+
+    public SortConfig withSortThreads(int sortThreads) {
+        return new SortConfig(pipelined, sortThreads, memoryBudgetBytes, sortPool, parallelSortThreshold, offHeap);
+    }
+
+    public SortConfig withMemoryBudgetBytes(long memoryBudgetBytes) {
+        return new SortConfig(pipelined, sortThreads, memoryBudgetBytes, sortPool, parallelSortThreshold, offHeap);
+    }
+
+    /** Sorts each large part on {@code sortPool} (e.g. {@link ForkJoinPool#commonPool()}), {@code null} to disable. */
+    public SortConfig withSortPool(ForkJoinPool sortPool) {
+        return new SortConfig(pipelined, sortThreads, memoryBudgetBytes, sortPool, parallelSortThreshold, offHeap);
+    }
+
+    public SortConfig withParallelSortThreshold(int parallelSortThreshold) {
+        return new SortConfig(pipelined, sortThreads, memoryBudgetBytes, sortPool, parallelSortThreshold, offHeap);
+    }
+
+    /** Buffers parts off-heap: the heap can stay small while a single part holds tens of GB. */
+    public SortConfig withOffHeap(boolean offHeap) {
+        return new SortConfig(pipelined, sortThreads, memoryBudgetBytes, sortPool, parallelSortThreshold, offHeap);
+    }
+}
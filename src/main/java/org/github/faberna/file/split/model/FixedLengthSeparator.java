@@ -0,0 +1,48 @@
+package org.github.faberna.file.split.model;
+
+import java.nio.channels.FileChannel;
+
+/**
+ * Records of exactly {@code recordLength} bytes with nothing between them (mainframe-style exports); only the last
+ * record of a file may be shorter. There are no separator bytes ({@link #bytes()} is empty): record boundaries are
+ * the multiples of the record length, computed without reading the file.
+ */
+public final class FixedLengthSeparator implements Separator {
+
+    private static final byte[] NONE = new byte[0];
+
+    private final int recordLength;
+
+    public FixedLengthSeparator(int recordLength) {
+        if (recordLength <= 0) throw new IllegalArgumentException("recordLength must be > 0");
+        this.recordLength = recordLength;
+    }
+
+    public int recordLength() {
+        return recordLength;
+    }
+
+    @Override
+    public byte[] bytes() {
+        return NONE;
+    }
+
+    /** The first record boundary at or after {@code from} (never 0), or -1 if it would be past EOF. */
+    @Override
+    public long findNextSeparatorEnd(FileChannel ch, long from, long fileSize) {
+        if (from < 0) from = 0;
+        if (from >= fileSize) return -1;
+        long boundary = Math.max(1, (from + recordLength - 1) / recordLength) * recordLength;
+        return boundary <= fileSize ? boundary : -1;
+    }
+
+    /** Records in a part of at least {@code bytes} bytes: {@code ceil(bytes / recordLength)}, at least one. */
+    public long recordsFor(long bytes) {
+        return Math.max(1, bytes / recordLength + (bytes % recordLength == 0 ? 0 : 1));
+    }
+
+    @Override
+    public String toString() {
+        return "FixedLengthSeparator[" + recordLength + "]";
+    }
+}
@@ -0,0 +1,305 @@
+package org.github.faberna.file.split.model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Records framed by a length prefix instead of a terminator, for binary payloads (protobuf, Avro blobs) in which any
+ * separator byte could occur. Each record is a {@link Prefix} holding the payload length, then the payload: record
+ * boundaries are found by hopping from prefix to prefix, the payload bytes are never looked at.
+ * <p>
+ * Hopping needs a known record start, so an offset in the middle of the file cannot be resolved on its own.
+ * A producer may write sync blocks between records ({@link #writeSync}): the reserved length {@link #SYNC_LENGTH}
+ * followed by the {@code syncMarker} bytes. With a sync marker, a boundary after any offset is the next sync block;
+ * without one, it is found by hopping from the start of the file. A sync block belongs to the record after it.
+ * <p>
+ * {@link #bytes()} is empty: the records handed to a PartWriter and read by the merge are the payloads, and writers
+ * frame them again with {@link #writePrefix}.
+ */
+public final class LengthPrefixedSeparator implements Separator {
+
+    /** Encoding of the payload length. */
+    public enum Prefix {
+        /** 4 bytes, big-endian. */
+        INT32,
+        /** Unsigned LEB128 varint, as in protobuf: 1 to 5 bytes. */
+        VARINT
+    }
+
+    /** The length announcing a sync block instead of a record: -1 as an INT32, 2^32-1 as a varint. */
+    public static final long SYNC_LENGTH = 0xFFFFFFFFL;
+    /** Sync markers shorter than this would be found in the payloads too often. */
+    public static final int MIN_SYNC_MARKER_BYTES = 8;
+
+    static final int MAX_PREFIX_BYTES = 5;
+    private static final byte[] NONE = new byte[0];
+    private static final int WINDOW_BYTES = 64 * 1024;
+
+    private final Prefix prefix;
+    private final byte[] syncMarker;
+    // the sync length encoded with the prefix, followed by the marker
+    private final byte[] syncBlock;
+
+    /** Records without sync blocks: boundaries are found by hopping from the start of the file. */
+    public LengthPrefixedSeparator(Prefix prefix) {
+        this(prefix, NONE);
+    }
+
+    /** Records with sync blocks made of {@code syncMarker} (e.g. 16 random bytes chosen by the producer). */
+    public LengthPrefixedSeparator(Prefix prefix, byte[] syncMarker) {
+        this.prefix = Objects.requireNonNull(prefix, "prefix is required");
+        Objects.requireNonNull(syncMarker, "syncMarker is required");
+        if (syncMarker.length != 0 && syncMarker.length < MIN_SYNC_MARKER_BYTES) {
+            throw new IllegalArgumentException("syncMarker must be empty or at least " + MIN_SYNC_MARKER_BYTES + " bytes");
+        }
+        this.syncMarker = syncMarker.clone();
+        byte[] encoded = new byte[MAX_PREFIX_BYTES];
+        int len = encode(SYNC_LENGTH, encoded);
+        this.syncBlock = new byte[len + syncMarker.length];
+        System.arraycopy(encoded, 0, syncBlock, 0, len);
+        System.arraycopy(syncMarker, 0, syncBlock, len, syncMarker.length);
+    }
+
+    public Prefix prefix() {
+        return prefix;
+    }
+
+    public byte[] syncMarker() {
+        return syncMarker.clone();
+    }
+
+    public boolean hasSyncMarker() {
+        return syncMarker.length > 0;
+    }
+
+    @Override
+    public byte[] bytes() {
+        return NONE;
+    }
+
+    /**
+     * The end of the first record ending at or after {@code from} (never 0), or -1 if none ends before EOF.
+     * With a sync marker this is the start of the next sync block (a record end too); without one, the records are
+     * hopped over from the start of the file, which costs one small read per record: planners hop once instead.
+     */
+    @Override
+    public long findNextSeparatorEnd(FileChannel ch, long from, long fileSize) throws IOException {
+        Objects.requireNonNull(ch, "ch");
+        if (from < 0) from = 0;
+        if (from >= fileSize) return -1;
+        if (hasSyncMarker()) return nextSyncBlock(ch, Math.max(1, from), fileSize);
+
+        Hopper hopper = hopper(ch, fileSize);
+        long pos = 0;
+        while (true) {
+            long end = hopper.recordEnd(pos);
+            if (end < 0 || end >= from) return end;
+            pos = end;
+        }
+    }
+
+    /** Start of the first sync block at or after {@code from}, or -1. */
+    private long nextSyncBlock(FileChannel ch, long from, long fileSize) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(Math.max(WINDOW_BYTES, syncBlock.length * 2));
+        byte[] arr = buf.array();
+        long pos = from;
+        while (pos + syncBlock.length <= fileSize) {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), fileSize - pos));
+            while (buf.hasRemaining()) {
+                if (ch.read(buf, pos + buf.position()) <= 0) break;
+            }
+            int read = buf.position();
+            if (read < syncBlock.length) return -1;
+            for (int i = 0; i + syncBlock.length <= read; i++) {
+                if (Arrays.equals(arr, i, i + syncBlock.length, syncBlock, 0, syncBlock.length)) return pos + i;
+            }
+            // overlap the windows so that a block across them is found in the next one
+            pos += read - syncBlock.length + 1;
+        }
+        return -1;
+    }
+
+    /** Bytes of the prefix of a payload of {@code length} bytes. */
+    public int prefixLength(long length) {
+        if (prefix == Prefix.INT32) return 4;
+        int n = 1;
+        while ((length >>>= 7) != 0) n++;
+        return n;
+    }
+
+    /** Writes the prefix of a payload of {@code length} bytes. */
+    public void writePrefix(OutputStream out, int length) throws IOException {
+        if (length < 0) throw new IllegalArgumentException("length must be >= 0");
+        byte[] encoded = new byte[MAX_PREFIX_BYTES];
+        out.write(encoded, 0, encode(length, encoded));
+    }
+
+    /** Writes a sync block, for producers: between two records, e.g. every few MB. */
+    public void writeSync(OutputStream out) throws IOException {
+        if (!hasSyncMarker()) throw new IllegalStateException("no sync marker configured");
+        out.write(syncBlock);
+    }
+
+    private int encode(long length, byte[] dst) {
+        if (prefix == Prefix.INT32) {
+            for (int i = 0; i < 4; i++) dst[i] = (byte) (length >>> (24 - 8 * i));
+            return 4;
+        }
+        int n = 0;
+        while (length >= 0x80) {
+            dst[n++] = (byte) (length | 0x80);
+            length >>>= 7;
+        }
+        dst[n++] = (byte) length;
+        return n;
+    }
+
+    /** A payload length read from a prefix: fails on lengths a record cannot have. */
+    static long checkLength(long length) {
+        if (length > Integer.MAX_VALUE && length != SYNC_LENGTH) {
+            throw new IllegalStateException("malformed length prefix: " + length);
+        }
+        return length;
+    }
+
+    /** Reads the payloads of consecutive records from {@code in}, which must start on a record boundary. */
+    public Reader reader(InputStream in) {
+        return new Reader(Objects.requireNonNull(in, "in"));
+    }
+
+    /** Finds record ends in a file by reading the prefixes only, through a window of the file. */
+    public Hopper hopper(FileChannel ch, long fileSize) {
+        return new Hopper(Objects.requireNonNull(ch, "ch"), fileSize);
+    }
+
+    /** Payloads of consecutive records, sync blocks skipped. */
+    public final class Reader {
+        private final InputStream in;
+        private long position;
+
+        private Reader(InputStream in) {
+            this.in = in;
+        }
+
+        /** The payload of the next record, or null at EOF. */
+        public byte[] next() throws IOException {
+            while (true) {
+                long length = readPrefix();
+                if (length < 0) return null;
+                if (length == SYNC_LENGTH) {
+                    if (!hasSyncMarker()) throw new IllegalStateException("sync block found but no sync marker configured");
+                    in.skipNBytes(syncMarker.length);
+                    position += syncMarker.length;
+                    continue;
+                }
+                byte[] payload = in.readNBytes((int) length);
+                if (payload.length < length) throw new EOFException("truncated record at " + position);
+                position += length;
+                return payload;
+            }
+        }
+
+        /** Bytes consumed so far, prefixes and sync blocks included. */
+        public long position() {
+            return position;
+        }
+
+        private long readPrefix() throws IOException {
+            long value = 0;
+            int n = 0;
+            while (true) {
+                int b = in.read();
+                if (b < 0) {
+                    if (n == 0) return -1;
+                    throw new EOFException("truncated length prefix at " + position);
+                }
+                position++;
+                if (prefix == Prefix.INT32) {
+                    value = value << 8 | b;
+                    if (++n == 4) return checkLength(value);
+                } else {
+                    value |= (long) (b & 0x7F) << (7 * n);
+                    if (++n == MAX_PREFIX_BYTES && (b & 0x80) != 0) {
+                        throw new IllegalStateException("malformed varint length prefix at " + position);
+                    }
+                    if ((b & 0x80) == 0) return checkLength(value);
+                }
+            }
+        }
+    }
+
+    /** Record ends found through positional reads of the prefixes only. */
+    public final class Hopper {
+        private final FileChannel ch;
+        private final long fileSize;
+        private final ByteBuffer window = ByteBuffer.allocate(WINDOW_BYTES);
+        private long windowStart = -1;
+
+        private Hopper(FileChannel ch, long fileSize) {
+            this.ch = ch;
+            this.fileSize = fileSize;
+        }
+
+        /**
+         * The end of the record starting at {@code pos} (after the sync block starting there, if any), or -1 if
+         * {@code pos} is at EOF or the record runs past it.
+         */
+        public long recordEnd(long pos) throws IOException {
+            while (pos < fileSize) {
+                int avail = fill(pos);
+                int at = (int) (pos - windowStart);
+                long value = 0;
+                int n = 0;
+                long length = -1;
+                while (length < 0) {
+                    if (n == avail) throw new EOFException("truncated length prefix at " + pos);
+                    int b = window.get(at + n) & 0xFF;
+                    if (prefix == Prefix.INT32) {
+                        value = value << 8 | b;
+                        if (++n == 4) length = checkLength(value);
+                    } else {
+                        value |= (long) (b & 0x7F) << (7 * n);
+                        if (++n == MAX_PREFIX_BYTES && (b & 0x80) != 0) {
+                            throw new IllegalStateException("malformed varint length prefix at " + pos);
+                        }
+                        if ((b & 0x80) == 0) length = checkLength(value);
+                    }
+                }
+                if (length != SYNC_LENGTH) {
+                    long end = pos + n + length;
+                    return end <= fileSize ? end : -1;
+                }
+                if (!hasSyncMarker()) throw new IllegalStateException("sync block found but no sync marker configured");
+                pos += n + syncMarker.length;
+            }
+            return -1;
+        }
+
+        /** Makes the window hold the bytes from {@code pos} (at least a prefix, unless at EOF); returns their count. */
+        private int fill(long pos) throws IOException {
+            long windowEnd = windowStart + window.limit();
+            if (windowStart < 0 || pos < windowStart || pos + MAX_PREFIX_BYTES > windowEnd && windowEnd < fileSize) {
+                window.clear();
+                window.limit((int) Math.min(window.capacity(), fileSize - pos));
+                while (window.hasRemaining()) {
+                    if (ch.read(window, pos + window.position()) <= 0) break;
+                }
+                window.flip();
+                windowStart = pos;
+            }
+            return (int) Math.min(window.limit() - (pos - windowStart), MAX_PREFIX_BYTES);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LengthPrefixedSeparator[" + prefix + (hasSyncMarker() ? ", sync " + syncMarker.length + " bytes" : "") + "]";
+    }
+}
@@ -0,0 +1,262 @@
+package org.github.faberna.file.split.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Finds record ends inside consecutive chunks of a byte stream, with the same rules as
+ * {@link Separator#findNextSeparatorEnd}: the returned index is immediately AFTER the separator.
+ * <p>
+ * The scanner is stateful: a separator spanning two chunks (CRLF, multi-byte separators) is resolved on the next call,
+ * so chunks must be fed in stream order. One instance per thread/range.
+ */
+public abstract sealed class SeparatorScanner {
+
+    /**
+     * Returns the index immediately after the next separator end in {@code buf[from, to)} (absolute indexes,
+     * position and limit are ignored), or -1 if none.
+     * The returned index may be {@code from} itself when a separator started in the previous chunk ended there.
+     */
+    public abstract int nextEnd(ByteBuffer buf, int from, int to);
+
+    /**
+     * True if the stream ended right after a separator that could not be resolved yet (a trailing CR).
+     * At EOF (or at the end of a record-safe range) this counts as a record end.
+     */
+    public abstract boolean pendingEnd();
+
+    /** Forget any partial separator, e.g. before scanning a new range. */
+    public abstract void reset();
+
+    public static SeparatorScanner of(Separator separator) {
+        if (separator == null) throw new IllegalArgumentException("separator is required");
+        if (separator instanceof NewlineSeparator) return new Newline();
+        if (separator instanceof SingleByteSeparator sbs) return new SingleByte(sbs.getSep());
+        if (separator instanceof FixedLengthSeparator fixed) return new FixedLength(fixed.recordLength());
+        if (separator instanceof LengthPrefixedSeparator framed) return new LengthPrefixed(framed);
+        byte[] bytes = separator.bytes();
+        if (bytes == null || bytes.length == 0) {
+            throw new IllegalArgumentException("Unsupported separator implementation: " + separator.getClass());
+        }
+        return bytes.length == 1 ? new SingleByte(bytes[0]) : new MultiByte(bytes);
+    }
+
+    /** LF, CRLF and CR, like {@link NewlineSeparator}. */
+    private static final class Newline extends SeparatorScanner {
+        private boolean pendingCR;
+
+        @Override
+        public int nextEnd(ByteBuffer buf, int from, int to) {
+            int i = from;
+            if (pendingCR && i < to) {
+                pendingCR = false;
+                // CRLF across chunks, or a lone CR that ended exactly at the chunk boundary
+                return buf.get(i) == (byte) '\n' ? i + 1 : i;
+            }
+            for (; i < to; i++) {
+                byte b = buf.get(i);
+                if (b == (byte) '\n') return i + 1;
+                if (b == (byte) '\r') {
+                    if (i + 1 < to) {
+                        return buf.get(i + 1) == (byte) '\n' ? i + 2 : i + 1;
+                    }
+                    pendingCR = true;
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public boolean pendingEnd() {
+            return pendingCR;
+        }
+
+        @Override
+        public void reset() {
+            pendingCR = false;
+        }
+    }
+
+    private static final class SingleByte extends SeparatorScanner {
+        private final byte sep;
+
+        private SingleByte(byte sep) {
+            this.sep = sep;
+        }
+
+        @Override
+        public int nextEnd(ByteBuffer buf, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (buf.get(i) == sep) return i + 1;
+            }
+            return -1;
+        }
+
+        @Override
+        public boolean pendingEnd() {
+            return false;
+        }
+
+        @Override
+        public void reset() {
+            // stateless
+        }
+    }
+
+    /** A record ends every {@code recordLength} bytes: counted, not scanned. */
+    private static final class FixedLength extends SeparatorScanner {
+        private final int recordLength;
+        // bytes of the current record seen in previous chunks
+        private int filled;
+
+        private FixedLength(int recordLength) {
+            this.recordLength = recordLength;
+        }
+
+        @Override
+        public int nextEnd(ByteBuffer buf, int from, int to) {
+            int need = recordLength - filled;
+            if (to - from >= need) {
+                filled = 0;
+                return from + need;
+            }
+            filled += to - from;
+            return -1;
+        }
+
+        @Override
+        public boolean pendingEnd() {
+            return false;
+        }
+
+        @Override
+        public void reset() {
+            filled = 0;
+        }
+    }
+
+    /**
+     * Hops over the payloads: only the length prefixes are decoded. A sync block is skipped and belongs to the
+     * record after it, so scanning must start on a record (or sync block) boundary.
+     */
+    private static final class LengthPrefixed extends SeparatorScanner {
+        private final boolean varint;
+        private final int syncMarkerLength;
+        // prefix being decoded across chunks
+        private long value;
+        private int prefixBytes;
+        // bytes left to skip: a payload if inPayload, else a sync marker
+        private long skip;
+        private boolean inPayload;
+
+        private LengthPrefixed(LengthPrefixedSeparator separator) {
+            this.varint = separator.prefix() == LengthPrefixedSeparator.Prefix.VARINT;
+            this.syncMarkerLength = separator.syncMarker().length;
+        }
+
+        @Override
+        public int nextEnd(ByteBuffer buf, int from, int to) {
+            int i = from;
+            while (true) {
+                if (skip > 0) {
+                    int n = (int) Math.min(skip, to - i);
+                    i += n;
+                    skip -= n;
+                    if (skip > 0) return -1;
+                    if (inPayload) {
+                        inPayload = false;
+                        return i;
+                    }
+                }
+                if (i >= to) return -1;
+                byte b = buf.get(i++);
+                if (varint) {
+                    value |= (long) (b & 0x7F) << (7 * prefixBytes);
+                    if (++prefixBytes == LengthPrefixedSeparator.MAX_PREFIX_BYTES && b < 0) {
+                        throw new IllegalStateException("malformed varint length prefix");
+                    }
+                    if (b < 0) continue;
+                } else {
+                    value = value << 8 | (b & 0xFF);
+                    if (++prefixBytes < 4) continue;
+                }
+                long length = LengthPrefixedSeparator.checkLength(value);
+                value = 0;
+                prefixBytes = 0;
+                if (length == LengthPrefixedSeparator.SYNC_LENGTH) {
+                    if (syncMarkerLength == 0) {
+                        throw new IllegalStateException("sync block found but no sync marker configured");
+                    }
+                    skip = syncMarkerLength;
+                } else if (length == 0) {
+                    return i;
+                } else {
+                    skip = length;
+                    inPayload = true;
+                }
+            }
+        }
+
+        @Override
+        public boolean pendingEnd() {
+            return false;
+        }
+
+        @Override
+        public void reset() {
+            value = 0;
+            prefixBytes = 0;
+            skip = 0;
+            inPayload = false;
+        }
+    }
+
+    private static final class MultiByte extends SeparatorScanner {
+        private final byte[] sep;
+        private int match;
+
+        private MultiByte(byte[] sep) {
+            this.sep = sep;
+        }
+
+        @Override
+        public int nextEnd(ByteBuffer buf, int from, int to) {
+            for (int i = from; i < to; i++) {
+                byte b = buf.get(i);
+                while (match > 0 && b != sep[match]) {
+                    match = fallback(match);
+                }
+                if (b == sep[match]) {
+                    match++;
+                    if (match == sep.length) {
+                        match = 0;
+                        return i + 1;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        /** Longest proper prefix of sep[0, matched) that is also a suffix of it (naive, separators are short). */
+        private int fallback(int matched) {
+            for (int len = matched - 1; len > 0; len--) {
+                boolean ok = true;
+                for (int k = 0; k < len && ok; k++) {
+                    ok = sep[k] == sep[matched - len + k];
+                }
+                if (ok) return len;
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean pendingEnd() {
+            return false;
+        }
+
+        @Override
+        public void reset() {
+            match = 0;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.github.faberna.file.split.model;
 
+import org.github.faberna.file.split.util.DirectBufferPool;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -36,7 +37,16 @@ public final class SingleByteSeparator implements Separator {
         if (from < 0) from = 0;
         if (from >= fileSize) return -1;
 
-        ByteBuffer buf = ByteBuffer.allocateDirect(bufferSize);
+        // Direct buffer usually gives better IO performance; pooled because this runs once per boundary
+        ByteBuffer buf = DirectBufferPool.shared().acquire(bufferSize);
+        try {
+            return scan(ch, buf, from, fileSize);
+        } finally {
+            DirectBufferPool.shared().release(buf);
+        }
+    }
+
+    private long scan(FileChannel ch, ByteBuffer buf, long from, long fileSize) throws IOException {
         long pos = from;
 
         while (pos < fileSize) {
@@ -1,16 +1,23 @@
 package org.github.faberna.file.split.plan;
 
+import org.github.faberna.file.split.model.FixedLengthSeparator;
+import org.github.faberna.file.split.model.LengthPrefixedSeparator;
 import org.github.faberna.file.split.model.Range;
 import org.github.faberna.file.split.model.Separator;
+import org.github.faberna.file.split.model.SeparatorScanner;
+import org.github.faberna.file.split.util.DirectBufferPool;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.*;
 
 public final class SplitPlanner {
 
+    private static final int SCAN_BUFFER_BYTES = 256 * 1024;
 
     public SplitPlan planByMaxBytes(Path input, Path outDir, long maxBytes, Separator sep) throws IOException {
         try (FileChannel ch = FileChannel.open(input, StandardOpenOption.READ)) {
@@ -28,7 +35,197 @@ public final class SplitPlanner {
         }
     }
 
+    /**
+     * Plans parts of exactly {@code recordsPerPart} records (the last part may hold fewer).
+     * <p>
+     * Avoids a single-threaded scan of the whole file:
+     * 1. the file is cut into {@code parallelism} record-safe scan ranges and the records of each range are counted in parallel;
+     * 2. a prefix sum over the counts gives the global index of the first record of every range;
+     * 3. the ranges containing a part boundary are scanned again, in parallel, to locate its exact byte offset.
+     * The returned ranges can be copied with transferTo.
+     * With a {@link FixedLengthSeparator} the boundaries are multiples of the record length: nothing is read.
+     * With a {@link LengthPrefixedSeparator} without sync marker, a single pass hops from prefix to prefix.
+     */
+    public SplitPlan planByRecords(Path input, Path outDir, long recordsPerPart, Separator sep, int parallelism) throws IOException {
+        if (recordsPerPart <= 0) throw new IllegalArgumentException("recordsPerPart must be > 0");
+        if (sep == null) throw new IllegalArgumentException("separator is required");
+        int threads = Math.max(1, parallelism);
+        if (sep instanceof FixedLengthSeparator fixed) {
+            long partBytes = recordsPerPart > Long.MAX_VALUE / fixed.recordLength()
+                    ? Long.MAX_VALUE
+                    : recordsPerPart * fixed.recordLength();
+            return new SplitPlan(input, outDir, fixedLengthRanges(Files.size(input), partBytes));
+        }
+        if (sep instanceof LengthPrefixedSeparator framed && !framed.hasSyncMarker()) {
+            try (FileChannel ch = FileChannel.open(input, StandardOpenOption.READ)) {
+                return new SplitPlan(input, outDir, hopRanges(ch, ch.size(), Long.MAX_VALUE, recordsPerPart, framed));
+            }
+        }
+
+        try (FileChannel ch = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = ch.size();
+            List<Range> scanRanges = computeRanges(ch, size, Math.max(1, size / threads), sep);
+            if (scanRanges.isEmpty()) {
+                return new SplitPlan(input, outDir, List.of());
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, scanRanges.size()));
+            try {
+                // pass 1: count records per scan range
+                List<Future<Long>> counts = new ArrayList<>(scanRanges.size());
+                for (Range r : scanRanges) {
+                    counts.add(pool.submit(() -> scanRecordEnds(ch, r, sep, null)));
+                }
+                long[] firstRecord = new long[scanRanges.size() + 1];
+                for (int i = 0; i < scanRanges.size(); i++) {
+                    firstRecord[i + 1] = firstRecord[i] + await(counts.get(i));
+                }
+                long totalRecords = firstRecord[scanRanges.size()];
+
+                // pass 2: locate the end of every recordsPerPart-th record (the last record never starts a new part)
+                List<Future<long[]>> cuts = new ArrayList<>(scanRanges.size());
+                for (int i = 0; i < scanRanges.size(); i++) {
+                    long first = firstRecord[i];
+                    long last = Math.min(firstRecord[i + 1], totalRecords - 1);
+                    long firstCut = (first / recordsPerPart + 1) * recordsPerPart; // 1-based ordinal of a part's last record
+                    if (firstCut > last) {
+                        cuts.add(null);
+                        continue;
+                    }
+                    int cutCount = (int) ((last - firstCut) / recordsPerPart + 1);
+                    long[] ordinals = new long[cutCount];
+                    for (int k = 0; k < cutCount; k++) {
+                        ordinals[k] = firstCut + k * recordsPerPart - first;
+                    }
+                    Range r = scanRanges.get(i);
+                    cuts.add(pool.submit(() -> {
+                        scanRecordEnds(ch, r, sep, ordinals);
+                        return ordinals;
+                    }));
+                }
+
+                List<Range> ranges = new ArrayList<>();
+                long start = 0;
+                for (Future<long[]> f : cuts) {
+                    if (f == null) continue;
+                    for (long end : await(f)) {
+                        ranges.add(new Range(start, end));
+                        start = end;
+                    }
+                }
+                ranges.add(new Range(start, size));
+                return new SplitPlan(input, outDir, ranges);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Scans a record-safe range and counts its records (a trailing record without separator counts as one).
+     * If {@code ordinals} is given (ascending, 1-based within the range), each entry is replaced in place by the
+     * absolute offset immediately after that record.
+     */
+    private static long scanRecordEnds(FileChannel ch, Range r, Separator sep, long[] ordinals) throws IOException {
+        SeparatorScanner scanner = SeparatorScanner.of(sep);
+        ByteBuffer buf = DirectBufferPool.shared().acquire(SCAN_BUFFER_BYTES);
+        try {
+            return scanRecordEnds(ch, r, scanner, buf, ordinals);
+        } finally {
+            DirectBufferPool.shared().release(buf);
+        }
+    }
+
+    private static long scanRecordEnds(FileChannel ch, Range r, SeparatorScanner scanner, ByteBuffer buf, long[] ordinals)
+            throws IOException {
+        long records = 0;
+        int nextOrdinal = 0;
+        long pos = r.startInclusive();
+        boolean tail = false; // bytes after the last record end
+
+        while (pos < r.endExclusive()) {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), r.endExclusive() - pos));
+            int read = ch.read(buf, pos);
+            if (read <= 0) break;
+
+            int from = 0;
+            int end;
+            while ((end = scanner.nextEnd(buf, from, read)) >= 0) {
+                records++;
+                if (ordinals != null && nextOrdinal < ordinals.length && ordinals[nextOrdinal] == records) {
+                    ordinals[nextOrdinal++] = pos + end;
+                    if (nextOrdinal == ordinals.length) return records;
+                }
+                from = end;
+            }
+            tail = from < read || scanner.pendingEnd();
+            pos += read;
+        }
+        if (scanner.pendingEnd() || tail) {
+            records++;
+            if (ordinals != null && nextOrdinal < ordinals.length && ordinals[nextOrdinal] == records) {
+                ordinals[nextOrdinal] = r.endExclusive();
+            }
+        }
+        return records;
+    }
+
+    private static <T> T await(Future<T> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while planning", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioe) throw ioe;
+            throw new IOException("Planning failed", e.getCause());
+        }
+    }
+
+    /** Consecutive ranges of {@code partBytes} (a whole number of records), the last one ending at EOF. */
+    private static List<Range> fixedLengthRanges(long size, long partBytes) {
+        List<Range> ranges = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            long end = size - start <= partBytes ? size : start + partBytes;
+            ranges.add(new Range(start, end));
+            start = end;
+        }
+        return ranges;
+    }
+
+    /**
+     * Ranges of whole length-prefixed records, cut once a range reaches {@code targetBytes} or holds
+     * {@code targetRecords} records, found in one pass reading the prefixes only.
+     * Bytes after the last complete record join the last range.
+     */
+    private static List<Range> hopRanges(FileChannel ch, long size, long targetBytes, long targetRecords,
+                                         LengthPrefixedSeparator sep) throws IOException {
+        List<Range> ranges = new ArrayList<>();
+        LengthPrefixedSeparator.Hopper hopper = sep.hopper(ch, size);
+        long start = 0;
+        long pos = 0;
+        long records = 0;
+        while (pos < size) {
+            long end = hopper.recordEnd(pos);
+            if (end < 0) break;
+            pos = end;
+            if (pos - start >= targetBytes || ++records == targetRecords) {
+                ranges.add(new Range(start, pos));
+                start = pos;
+                records = 0;
+            }
+        }
+        if (start < size) ranges.add(new Range(start, size));
+        return ranges;
+    }
+
     private List<Range> computeRanges(FileChannel ch, long fileSize, long targetChunk, Separator sep) throws IOException {
+        if (sep instanceof LengthPrefixedSeparator framed && !framed.hasSyncMarker()) {
+            // findNextSeparatorEnd would hop from the start of the file for every boundary
+            return hopRanges(ch, fileSize, targetChunk, Long.MAX_VALUE, framed);
+        }
         List<Long> boundaries = new ArrayList<>();
         boundaries.add(0L);
 
@@ -0,0 +1,163 @@
+package org.github.faberna.file.split.sorter;
+
+import org.github.faberna.file.segment.model.KeySpec;
+import org.github.faberna.file.split.model.LineEnding;
+import org.github.faberna.file.split.util.MemoryBudget;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * Run generator driven by a memory budget instead of a part size.
+ *
+ * Every accepted line is charged (its encoded bytes, and its binary sort key with a collated KeySpec) to a
+ * {@link MemoryBudget} shared by all the parallel workers.
+ * When the budget is used up, a writer holding its fair share of it (budget / writers) sorts and spills what it
+ * holds as a run (named by a shared {@link RunPathAllocator}) and gives it back; a writer holding less waits for
+ * the larger holders to spill, so runs stay large and their number and size follow the data and the available
+ * memory rather than a guessed byte size.
+ * {@link #endPart(Path)} sorts and writes whatever is left into the part file itself.
+ */
+public final class BudgetedRunWriter implements PartWriter {
+
+    private final InMemorySortingPartWriter buffer;
+    private final MemoryBudget budget;
+    private final RunPathAllocator spills;
+    // share of the budget this writer fills before spilling, when the budget is used up
+    private final long fairShareBytes;
+    // encoded bytes of a char, for lines received as Strings (UTF-8 is counted exactly)
+    private final float maxBytesPerChar;
+
+    // bytes of the shared budget held by this writer
+    private long reservedBytes;
+    // part of buffer.keyBytes() included in reservedBytes
+    private long chargedKeyBytes;
+    private int spilledRuns;
+
+    /** A writer alone on {@code budget}: it spills only when it holds the whole budget. */
+    public BudgetedRunWriter(KeySpec keySpec,
+                             Comparator<String> keyComparator,
+                             Charset charset,
+                             MemoryBudget budget,
+                             RunPathAllocator spills) {
+        this(keySpec, keyComparator, charset, budget, spills, 1);
+    }
+
+    /**
+     * One of {@code writers} writers filling {@code budget} at the same time.
+     * @param writers upper bound of the writers sharing the budget concurrently: each one spills when it would
+     *                exceed {@code budget / writers}, which keeps them from all waiting on each other
+     */
+    public BudgetedRunWriter(KeySpec keySpec,
+                             Comparator<String> keyComparator,
+                             Charset charset,
+                             MemoryBudget budget,
+                             RunPathAllocator spills,
+                             int writers) {
+        if (writers <= 0) throw new IllegalArgumentException("writers must be > 0");
+        this.buffer = new InMemorySortingPartWriter(keySpec, keyComparator, charset);
+        this.budget = Objects.requireNonNull(budget, "budget is required");
+        this.spills = Objects.requireNonNull(spills, "spills is required");
+        this.fairShareBytes = budget.limitBytes() / writers;
+        this.maxBytesPerChar = charset.newEncoder().maxBytesPerChar();
+    }
+
+    @Override
+    public Charset getCharset() {
+        return buffer.getCharset();
+    }
+
+    /** Number of runs spilled before reaching the end of the part. */
+    public int spilledRuns() {
+        return spilledRuns;
+    }
+
+    /**
+     * Buffers the line if the shared budget has room for it, otherwise spills the buffered lines first when this
+     * writer holds its fair share, or blocks until the other writers spill.
+     */
+    @Override
+    public void acceptLine(String line, LineEnding ending) {
+        reserve(MemoryBudget.estimateLine(encodedLength(line)));
+        buffer.acceptLine(line, ending);
+    }
+
+    @Override
+    public void acceptRecord(byte[] bytes, int offset, int length, Charset charset, LineEnding ending) {
+        reserve(MemoryBudget.estimateLine(length));
+        buffer.acceptRecord(bytes, offset, length, charset, ending);
+    }
+
+    /** Bytes of the line once buffered in the writer charset, without encoding it. */
+    private int encodedLength(String line) {
+        int n = line.length();
+        if (!getCharset().equals(StandardCharsets.UTF_8)) {
+            return (int) Math.min(Integer.MAX_VALUE, (long) Math.ceil(n * (double) maxBytesPerChar));
+        }
+        int bytes = n;
+        for (int i = 0; i < n; i++) {
+            char c = line.charAt(i);
+            if (c >= 0x800) bytes += Character.isSurrogate(c) ? 1 : 2;
+            else if (c >= 0x80) bytes++;
+        }
+        return bytes;
+    }
+
+    /**
+     * Reserves the cost of the next line. When the budget is used up, spills what is buffered first if that
+     * would take this writer past its fair share; below it, waits for the writers holding more to spill
+     * (they cannot all be below their share with the budget used up, so one of them always spills).
+     */
+    private void reserve(long lineCost) {
+        // binary sort keys are encoded as the records arrive: the key of the previous record is charged now
+        long cost = lineCost + buffer.keyBytes() - chargedKeyBytes;
+        if (!budget.tryReserve(cost)) {
+            if (reservedBytes > 0 && reservedBytes + cost > fairShareBytes) {
+                try {
+                    spill();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                cost = lineCost;
+            }
+            try {
+                budget.reserve(cost);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for memory budget", e);
+            }
+        }
+        reservedBytes += cost;
+        chargedKeyBytes = buffer.keyBytes();
+    }
+
+    @Override
+    public void endPart(Path partFile) throws IOException {
+        Objects.requireNonNull(partFile, "partFile is required");
+        try {
+            buffer.endPart(partFile);
+        } finally {
+            releaseAll();
+        }
+    }
+
+    private void spill() throws IOException {
+        try {
+            buffer.endPart(spills.next());
+            spilledRuns++;
+        } finally {
+            releaseAll();
+        }
+    }
+
+    private void releaseAll() {
+        budget.release(reservedBytes);
+        reservedBytes = 0;
+        chargedKeyBytes = 0;
+    }
+}
@@ -0,0 +1,68 @@
+package org.github.faberna.file.split.sorter;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Reusable view over a slice of a byte array or of an off-heap memory segment, one char per byte (Latin-1).
+ * For ASCII records this is exactly the decoded line, so segments can compare buffered records without decoding them.
+ * Not thread-safe: one instance per comparing thread.
+ */
+final class ByteCharSequence implements CharSequence {
+    private byte[] bytes;
+    // set instead of bytes for off-heap records
+    private MemorySegment segment;
+    private long offset;
+    private int length;
+
+    ByteCharSequence reset(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.segment = null;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    ByteCharSequence reset(MemorySegment segment, long offset, int length) {
+        this.bytes = null;
+        this.segment = segment;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        Objects.checkIndex(index, length);
+        if (segment != null) return (char) (segment.get(ValueLayout.JAVA_BYTE, offset + index) & 0xFF);
+        return (char) (bytes[(int) offset + index] & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        Objects.checkFromToIndex(start, end, length);
+        return new String(toBytes(start, end), StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public String toString() {
+        return new String(toBytes(0, length), StandardCharsets.ISO_8859_1);
+    }
+
+    private byte[] toBytes(int start, int end) {
+        byte[] out = new byte[end - start];
+        if (segment != null) {
+            MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, offset + start, out, 0, out.length);
+        } else {
+            System.arraycopy(bytes, (int) offset + start, out, 0, out.length);
+        }
+        return out;
+    }
+}
@@ -1,19 +1,28 @@
 package org.github.faberna.file.split.sorter;
 
+import org.github.faberna.file.split.config.SortConfig;
+import org.github.faberna.file.split.util.MemoryBudget;
+import org.github.faberna.file.split.model.FixedLengthSeparator;
+import org.github.faberna.file.split.model.LengthPrefixedSeparator;
 import org.github.faberna.file.split.model.LineEnding;
+import org.github.faberna.file.split.model.Separator;
+import org.github.faberna.file.segment.model.KeyEncoder;
 import org.github.faberna.file.segment.model.KeySpec;
-import org.github.faberna.file.split.model.LineRecord;
+import org.github.faberna.file.segment.model.RangeSegment;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
 /**
  * Buffers an entire part in memory, sorts it using KeySpec, then writes it once.
@@ -23,27 +32,109 @@ import java.util.Objects;
  * - sort in memory
  * - write the part exactly once (no read-back)
  *
+ * Splitters hand over raw line bytes ({@link #acceptRecord}): they are written back byte for byte, and a line
+ * is decoded only when it is not ASCII and has to be compared, or when a custom comparator needs Strings.
+ * Lines are buffered in a {@link RecordArena} (raw bytes in pages + packed references), or an
+ * {@link OffHeapRecordArena} with {@link SortConfig#offHeap()}, and sorted as an int index.
+ * With the KeySpec default comparator, ASCII lines are compared without decoding; any other comparator
+ * gets the decoded lines. With a {@link SortConfig#sortPool()}, a large part is sorted by all the threads of the pool;
+ * otherwise a key made of one LEX or INT {@link RangeSegment} is radix sorted ({@link RadixSort}).
+ * Each line is compared with the previous one as it arrives: a part received already in order is not sorted at all
+ * ({@link #isPresorted()}).
+ *
  * Newline preservation:
  * - each line is written back with the SAME newline style detected in input.
+ * - records of a {@link FixedLengthSeparator} have no terminator and are written back to back.
+ * - records of a {@link LengthPrefixedSeparator} are the payloads, each written after its length prefix.
  */
 public final class InMemorySortingPartWriter implements PartWriter {
 
+    // heap cost of a binary key on top of its bytes: array header, slot in the key table
+    private static final int KEY_OVERHEAD_BYTES = 24;
+    // largest array the VM reliably allocates
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
     private final KeySpec keySpec;
     private final Comparator<String> keyComparator;
 
     private final Charset charset;
+    private final ForkJoinPool sortPool;
+    private final int parallelSortThreshold;
 
-    private final List<LineRecord> buffer = new ArrayList<>();
+    private final RecordBuffer arena;
+    private final byte[][] endingBytes;
+    // false for fixed-length and length-prefixed records: no terminator is added between them
+    private final boolean terminated;
+    // non-null for length-prefixed records: writes the prefix before each payload
+    private final LengthPrefixedSeparator framing;
+    // sorted record indexes, null until sort()
+    private int[] order;
+    // true while every line accepted so far is >= the previous one (key, then whole line)
+    private boolean presorted = true;
+    // previous line, kept for custom comparators only
+    private String lastLine;
+    private final ByteCharSequence lastView = new ByteCharSequence();
+    private final ByteCharSequence view = new ByteCharSequence();
+    // keyed KeySpecs (collation): the binary key of every record, encoded as it arrives, and their heap cost
+    private final KeyEncoder encoder;
+    private byte[][] keys;
+    private long keyBytes;
 
 
+    @Override
     public Charset getCharset() {
         return charset;
     }
 
     public InMemorySortingPartWriter(KeySpec keySpec, Comparator<String> keyComparator, Charset charset) {
+        this(keySpec, keyComparator, charset, null, SortConfig.DEFAULT_PARALLEL_SORT_THRESHOLD, false, null);
+    }
+
+    /**
+     * Sorts each part on {@link SortConfig#sortPool()} when set and the part is large enough,
+     * and buffers it off-heap with {@link SortConfig#offHeap()}.
+     */
+    public InMemorySortingPartWriter(KeySpec keySpec, Comparator<String> keyComparator, Charset charset, SortConfig sortConfig) {
+        this(keySpec, keyComparator, charset, sortConfig.sortPool(), sortConfig.parallelSortThreshold(), sortConfig.offHeap(), null);
+    }
+
+    /**
+     * Same as {@link #InMemorySortingPartWriter(KeySpec, Comparator, Charset, SortConfig)} for the records cut by
+     * {@code separator}: with a {@link FixedLengthSeparator} the sorted records are written without terminators,
+     * with a {@link LengthPrefixedSeparator} each one after its prefix (the charset must be ASCII-compatible, e.g.
+     * ISO-8859-1 for binary payloads, so that the payload bytes are written back unchanged).
+     */
+    public InMemorySortingPartWriter(KeySpec keySpec, Comparator<String> keyComparator, Charset charset, SortConfig sortConfig,
+                                     Separator separator) {
+        this(keySpec, keyComparator, charset, sortConfig.sortPool(), sortConfig.parallelSortThreshold(), sortConfig.offHeap(),
+                Objects.requireNonNull(separator, "separator is required"));
+    }
+
+    /** {@code separator} null: lines. */
+    @SuppressWarnings("unchecked")
+    private InMemorySortingPartWriter(KeySpec keySpec, Comparator<String> keyComparator, Charset charset,
+                                      ForkJoinPool sortPool, int parallelSortThreshold, boolean offHeap, Separator separator) {
+        this.terminated = !(separator instanceof FixedLengthSeparator || separator instanceof LengthPrefixedSeparator);
+        this.framing = separator instanceof LengthPrefixedSeparator framed ? framed : null;
+        if (framing != null && charset != null && !RecordArena.isAsciiCompatible(charset)) {
+            throw new IllegalArgumentException("length-prefixed records need an ASCII-compatible charset, not " + charset);
+        }
+        this.sortPool = sortPool;
+        this.parallelSortThreshold = parallelSortThreshold;
         this.keySpec = Objects.requireNonNull(keySpec, "keySpec is required");
-        this.keyComparator = Objects.requireNonNull(keyComparator, "keyComparator is required");
+        Objects.requireNonNull(keyComparator, "keyComparator is required");
+        // KeySpec order: compare through the class generated for the KeySpec
+        this.keyComparator = keyComparator instanceof KeySpec.SegmentComparator<?> segments
+                ? (Comparator<String>) segments.withCompiled() : keyComparator;
         this.charset = Objects.requireNonNull(charset, "charset is required");
+        this.arena = offHeap ? new OffHeapRecordArena(charset) : new RecordArena(charset);
+        this.encoder = keyComparator instanceof KeySpec.SegmentComparator<?> segments && segments.keySpec().keyed()
+                ? new KeyEncoder(segments.keySpec()) : null;
+        this.keys = encoder != null ? new byte[16][] : null;
+        this.endingBytes = new byte[LineEnding.values().length][];
+        for (LineEnding e : LineEnding.values()) {
+            endingBytes[e.ordinal()] = e.text().getBytes(charset);
+        }
     }
 
     /**
@@ -53,7 +144,97 @@ public final class InMemorySortingPartWriter implements PartWriter {
      */
     @Override
     public void acceptLine(String line, LineEnding ending) {
-        buffer.add(new LineRecord(line, ending));
+        arena.add(line, ending);
+        if (encoder != null) encodeKey();
+        if (presorted) checkOrder(line);
+        order = null;
+    }
+
+    /**
+     * Buffers the raw bytes as they are: they are written back unchanged (even malformed input) and decoded only
+     * when a non-ASCII line is compared or a custom comparator needs Strings. Bytes in another charset are decoded.
+     */
+    @Override
+    public void acceptRecord(byte[] bytes, int offset, int length, Charset charset, LineEnding ending) {
+        if (!this.charset.equals(charset)) {
+            acceptLine(new String(bytes, offset, length, charset), ending);
+            return;
+        }
+        arena.add(bytes, offset, length, ending);
+        if (encoder != null) encodeKey();
+        if (presorted) checkOrder(null);
+        order = null;
+    }
+
+    /**
+     * Encodes the binary key of the last record now rather than in {@link #sort()}: its size is known
+     * ({@link #bytes()}) while the part is filled, and the order check compares keys instead of collating.
+     */
+    private void encodeKey() {
+        int rec = arena.size() - 1;
+        if (rec == keys.length) keys = Arrays.copyOf(keys, keys.length * 2);
+        byte[] key = encoder.encode(arena.chars(rec, view));
+        keys[rec] = key;
+        keyBytes += KEY_OVERHEAD_BYTES + key.length;
+    }
+
+    /**
+     * Estimated heap held by the buffered records: their {@link MemoryBudget#estimateLine cost} plus, for keyed
+     * KeySpecs, the binary keys the sort compares.
+     */
+    public long bytes() {
+        return arena.bytes() + (long) arena.size() * MemoryBudget.RECORD_OVERHEAD_BYTES + keyBytes;
+    }
+
+    /** Heap held by the binary keys of the buffered records (keyed KeySpecs only, 0 otherwise). */
+    public long keyBytes() {
+        return keyBytes;
+    }
+
+    /** One comparison with the previous record, in the order of the sort: key, then whole line. */
+    private void checkOrder(String line) {
+        int rec = arena.size() - 1;
+        if (keyComparator instanceof KeySpec.SegmentComparator<?> segments) {
+            if (rec == 0) return;
+            int c = keys != null
+                    ? KeyEncoder.compare(keys[rec - 1], keys[rec])
+                    : segments.compareChars(arena.chars(rec - 1, lastView), arena.chars(rec, view));
+            if (c == 0) c = arena.compareLines(rec - 1, rec, lastView, view);
+            presorted = c <= 0;
+        } else {
+            if (line == null) line = arena.string(rec);
+            if (lastLine != null) {
+                int c = keyComparator.compare(lastLine, line);
+                presorted = (c != 0 ? c : lastLine.compareTo(line)) <= 0;
+            }
+            lastLine = line;
+        }
+    }
+
+    /** True if the lines buffered for the current part arrived in sorted order (the sort is then skipped). */
+    public boolean isPresorted() {
+        return presorted;
+    }
+
+    /**
+     * Bytes that {@link #writeTo(Path)} drops from a presorted part compared to its input: the terminator of the
+     * last line, when it is the default one of the part. Lets a caller copy the original bytes instead of writing.
+     */
+    public int droppedTailBytes() {
+        int size = arena.size();
+        if (size == 0) return 0;
+        LineEnding last = arena.ending(size - 1);
+        if (last == LineEnding.NONE) return 0;
+        for (int rec = 0; rec < size; rec++) {
+            LineEnding ending = arena.ending(rec);
+            if (ending != LineEnding.NONE) return ending == last ? endingBytes[last.ordinal()].length : 0;
+        }
+        return 0;
+    }
+
+    /** Drops the buffered lines without writing them (the caller wrote the part another way). */
+    public void discard() {
+        reset();
     }
 
     /**
@@ -65,45 +246,179 @@ public final class InMemorySortingPartWriter implements PartWriter {
     @Override
     public void endPart(Path partFile) throws IOException {
         Objects.requireNonNull(partFile, "partFile is required");
+        sort();
+        writeTo(partFile);
+    }
 
+    /**
+     * First half of {@link #endPart(Path)}: sorts the buffered lines (CPU only, no IO).
+     * Lets a pipeline run the sort and the write on different threads.
+     */
+    public void sort() {
+        int[] idx = identity(arena.size());
+        if (presorted) {
+            // lines arrived in order: the identity is the sorted order
+            order = idx;
+            return;
+        }
+        Supplier<IndexSort.IntComparator> comparators;
 
-            Comparator<String> primary = keyComparator;
-
-            Comparator<String> totalOrder = (a, b) -> {
-                int c = primary.compare(a, b);
+        if (keyComparator instanceof KeySpec.SegmentComparator<?> segments) {
+            // zero-allocation path: segments compare views over the raw bytes (one set of views per sorting thread)
+            KeySpec<?> spec = segments.keySpec();
+            if (keys != null) {
+                comparators = keyComparators();
+            } else if (spec.columnar()) {
+                comparators = columnComparators(spec);
+            } else {
+                comparators = () -> {
+                    ByteCharSequence viewA = new ByteCharSequence();
+                    ByteCharSequence viewB = new ByteCharSequence();
+                    ByteCharSequence tieA = new ByteCharSequence();
+                    ByteCharSequence tieB = new ByteCharSequence();
+                    return (a, b) -> {
+                        int c = segments.compareChars(arena.chars(a, viewA), arena.chars(b, viewB));
+                        if (c != 0) return c;
+                        return arena.compareLines(a, b, tieA, tieB);
+                    };
+                };
+            }
+        } else {
+            // custom comparator on Strings: decode every line once for the duration of the sort
+            String[] lines = new String[arena.size()];
+            for (int i = 0; i < lines.length; i++) lines[i] = arena.string(i);
+            comparators = () -> (a, b) -> {
+                int c = keyComparator.compare(lines[a], lines[b]);
                 if (c != 0) return c;
-                return a.compareTo(b);
+                return lines[a].compareTo(lines[b]);
             };
+        }
 
-            buffer.sort((r1, r2) -> totalOrder.compare(r1.line(), r2.line()));
+        RangeSegment radixKey = keyComparator instanceof KeySpec.SegmentComparator<?> segments
+                ? RadixSort.radixKey(segments.keySpec())
+                : null;
+        if (sortPool != null && idx.length > parallelSortThreshold) {
+            IndexSort.parallelSort(idx, comparators, sortPool, parallelSortThreshold);
+        } else if (radixKey != null && RadixSort.supports(radixKey, arena)) {
+            RadixSort.sort(idx, arena, radixKey, comparators.get());
+        } else {
+            IndexSort.sort(idx, comparators.get());
+        }
+        order = idx;
+    }
 
-            LineEnding defaultEnding = buffer.stream()
-                    .map(LineRecord::ending)
-                    .filter(e -> e != LineEnding.NONE)
-                    .findFirst()
-                    .orElse(LineEnding.LF);
+    /**
+     * Decorate-sort-undecorate on binary keys, for segments costly to compare (collation): every record was encoded
+     * once as it arrived ({@link KeyEncoder}) and the comparisons are unsigned byte comparisons.
+     */
+    private Supplier<IndexSort.IntComparator> keyComparators() {
+        byte[][] keys = this.keys;
+        return () -> {
+            ByteCharSequence viewA = new ByteCharSequence();
+            ByteCharSequence viewB = new ByteCharSequence();
+            return (a, b) -> {
+                int c = KeyEncoder.compare(keys[a], keys[b]);
+                if (c != 0) return c;
+                return arena.compareLines(a, b, viewA, viewB);
+            };
+        };
+    }
 
-            Path tmp = partFile.resolveSibling(partFile.getFileName().toString() + ".tmp");
-            try (BufferedWriter w = Files.newBufferedWriter(tmp, charset)) {
-                for (int i = 0; i < buffer.size(); i++) {
-                    LineRecord r = buffer.get(i);
-                    w.write(r.line());
+    /**
+     * Decorate-sort-undecorate: every record is tokenized once ({@link KeySpec#columns}) and the comparisons
+     * use the extracted columns (field offsets, parsed numbers) instead of scanning the records again.
+     */
+    private Supplier<IndexSort.IntComparator> columnComparators(KeySpec<?> spec) {
+        int width = spec.segment().size();
+        long[] columns = new long[columnCells(arena.size(), width)];
+        ByteCharSequence view = new ByteCharSequence();
+        for (int rec = 0; rec < arena.size(); rec++) {
+            spec.columns(arena.chars(rec, view), columns, rec * width);
+        }
+        return () -> {
+            ByteCharSequence viewA = new ByteCharSequence();
+            ByteCharSequence viewB = new ByteCharSequence();
+            return (a, b) -> {
+                int c = spec.compareColumns(arena.chars(a, viewA), columns, a * width, arena.chars(b, viewB), columns, b * width);
+                if (c != 0) return c;
+                return arena.compareLines(a, b, viewA, viewB);
+            };
+        };
+    }
 
-                    boolean last = (i == buffer.size() - 1);
-                    LineEnding ending = r.ending();
+    /** Size of the column table of {@code records} records: fails clearly instead of overflowing an int. */
+    static int columnCells(int records, int width) {
+        long cells = (long) records * width;
+        if (cells > MAX_ARRAY_LENGTH) {
+            throw new IllegalStateException("Part too large to pre-extract its key columns: " + records
+                    + " records x " + width + " segments exceed " + MAX_ARRAY_LENGTH + " cells; use smaller parts");
+        }
+        return (int) cells;
+    }
 
-                    if (ending == LineEnding.NONE && !last) ending = defaultEnding;
-                    if (last && ending == defaultEnding) ending = LineEnding.NONE;
+    /**
+     * Second half of {@link #endPart(Path)}: writes the buffered lines in their current order, then clears the buffer.
+     */
+    public void writeTo(Path partFile) throws IOException {
+        Objects.requireNonNull(partFile, "partFile is required");
+        int[] idx = order != null ? order : identity(arena.size());
 
-                    w.write(ending.text());
-                }
+        LineEnding defaultEnding = LineEnding.LF;
+        for (int rec : idx) {
+            if (arena.ending(rec) != LineEnding.NONE) {
+                defaultEnding = arena.ending(rec);
+                break;
             }
+        }
 
-            try {
-                Files.move(tmp, partFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
-            } finally {
-                buffer.clear();
+        Path tmp = partFile.resolveSibling(partFile.getFileName().toString() + ".tmp");
+        if (arena.asciiCompatible()) {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+                for (int i = 0; i < idx.length; i++) {
+                    if (framing != null) framing.writePrefix(out, arena.length(idx[i]));
+                    arena.writeRecord(idx[i], out);
+                    out.write(endingBytes[endingOf(idx, i, defaultEnding).ordinal()]);
+                }
+            }
+        } else {
+            try (BufferedWriter w = Files.newBufferedWriter(tmp, charset)) {
+                for (int i = 0; i < idx.length; i++) {
+                    w.write(arena.string(idx[i]));
+                    w.write(endingOf(idx, i, defaultEnding).text());
+                }
             }
+        }
+
+        try {
+            Files.move(tmp, partFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            reset();
+        }
+    }
+
+    private void reset() {
+        arena.clear();
+        order = null;
+        presorted = true;
+        lastLine = null;
+        if (keys != null) Arrays.fill(keys, null);
+        keyBytes = 0;
+    }
+
+    /** A line without terminator is terminated unless last; the last line drops the default terminator. */
+    private LineEnding endingOf(int[] idx, int i, LineEnding defaultEnding) {
+        if (!terminated) return LineEnding.NONE;
+        boolean last = (i == idx.length - 1);
+        LineEnding ending = arena.ending(idx[i]);
+
+        if (ending == LineEnding.NONE && !last) ending = defaultEnding;
+        if (last && ending == defaultEnding) ending = LineEnding.NONE;
+        return ending;
+    }
 
+    private static int[] identity(int n) {
+        int[] idx = new int[n];
+        for (int i = 0; i < n; i++) idx[i] = i;
+        return idx;
     }
 }
@@ -0,0 +1,213 @@
+package org.github.faberna.file.split.sorter;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * Sorts an array of record indexes with a primitive comparator (no boxing, no comparator over objects).
+ * Merge sort: O(n log n) worst case, and nearly sorted inputs cost ~n comparisons.
+ * {@link #parallelSort} forks both the halves and the merges on a ForkJoinPool.
+ */
+final class IndexSort {
+
+    /** Runs shorter than this are sorted by insertion. */
+    private static final int INSERTION_THRESHOLD = 32;
+
+    private IndexSort() {
+        /* This utility class should not be instantiated */
+    }
+
+    @FunctionalInterface
+    interface IntComparator {
+        int compare(int a, int b);
+    }
+
+    static void sort(int[] a, IntComparator cmp) {
+        if (a.length < 2) return;
+        int[] aux = a.clone();
+        mergeSort(aux, a, 0, a.length, cmp);
+    }
+
+    /** Sorts a[from, to) only. */
+    static void sort(int[] a, int from, int to, IntComparator cmp) {
+        if (to - from < INSERTION_THRESHOLD) {
+            insertionSort(a, from, to, cmp);
+            return;
+        }
+        int[] range = Arrays.copyOfRange(a, from, to);
+        sort(range, cmp);
+        System.arraycopy(range, 0, a, from, range.length);
+    }
+
+    /**
+     * Same result as {@link #sort}, on {@code pool}. Comparators often hold scratch state (views over the records),
+     * so every task gets its own from {@code comparators}.
+     * @param threshold ranges up to this size are sorted (or merged) by a single task
+     */
+    static void parallelSort(int[] a, Supplier<IntComparator> comparators, ForkJoinPool pool, int threshold) {
+        if (a.length < 2) return;
+        if (a.length <= threshold) {
+            sort(a, comparators.get());
+            return;
+        }
+        int[] aux = a.clone();
+        pool.invoke(new SortTask(aux, a, 0, a.length, comparators, Math.max(INSERTION_THRESHOLD, threshold)));
+    }
+
+    /** Sorts src[from, to) into dst[from, to), like {@link #mergeSort}. */
+    private static final class SortTask extends RecursiveAction {
+        private final int[] src;
+        private final int[] dst;
+        private final int from;
+        private final int to;
+        private final Supplier<IntComparator> comparators;
+        private final int threshold;
+
+        SortTask(int[] src, int[] dst, int from, int to, Supplier<IntComparator> comparators, int threshold) {
+            this.src = src;
+            this.dst = dst;
+            this.from = from;
+            this.to = to;
+            this.comparators = comparators;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                mergeSort(src, dst, from, to, comparators.get());
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(
+                    new SortTask(dst, src, from, mid, comparators, threshold),
+                    new SortTask(dst, src, mid, to, comparators, threshold)
+            );
+            new MergeTask(src, from, mid, mid, to, dst, from, comparators, threshold).compute();
+        }
+    }
+
+    /** Merges the sorted src[lo1, hi1) and src[lo2, hi2) into dst from {@code at}, splitting large merges in two. */
+    private static final class MergeTask extends RecursiveAction {
+        private final int[] src;
+        private final int lo1;
+        private final int hi1;
+        private final int lo2;
+        private final int hi2;
+        private final int[] dst;
+        private final int at;
+        private final Supplier<IntComparator> comparators;
+        private final int threshold;
+
+        MergeTask(int[] src, int lo1, int hi1, int lo2, int hi2, int[] dst, int at,
+                  Supplier<IntComparator> comparators, int threshold) {
+            this.src = src;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.dst = dst;
+            this.at = at;
+            this.comparators = comparators;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            IntComparator cmp = comparators.get();
+            int n1 = hi1 - lo1;
+            int n2 = hi2 - lo2;
+            if (n1 + n2 <= threshold) {
+                merge(cmp);
+                return;
+            }
+            int split1;
+            int split2;
+            // split the larger run in the middle; equal records of the left run stay first (stable)
+            if (n1 >= n2) {
+                split1 = (lo1 + hi1) >>> 1;
+                split2 = lowerBound(src, lo2, hi2, src[split1], cmp);
+            } else {
+                split2 = (lo2 + hi2) >>> 1;
+                split1 = upperBound(src, lo1, hi1, src[split2], cmp);
+            }
+            int middle = at + (split1 - lo1) + (split2 - lo2);
+            invokeAll(
+                    new MergeTask(src, lo1, split1, lo2, split2, dst, at, comparators, threshold),
+                    new MergeTask(src, split1, hi1, split2, hi2, dst, middle, comparators, threshold)
+            );
+        }
+
+        private void merge(IntComparator cmp) {
+            int i = lo1;
+            int j = lo2;
+            int k = at;
+            while (i < hi1 && j < hi2) {
+                dst[k++] = cmp.compare(src[i], src[j]) <= 0 ? src[i++] : src[j++];
+            }
+            System.arraycopy(src, i, dst, k, hi1 - i);
+            System.arraycopy(src, j, dst, k + (hi1 - i), hi2 - j);
+        }
+    }
+
+    /** First position in a[from, to) whose record is not smaller than {@code rec}. */
+    private static int lowerBound(int[] a, int from, int to, int rec, IntComparator cmp) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (cmp.compare(a[mid], rec) < 0) from = mid + 1;
+            else to = mid;
+        }
+        return from;
+    }
+
+    /** First position in a[from, to) whose record is greater than {@code rec}. */
+    private static int upperBound(int[] a, int from, int to, int rec, IntComparator cmp) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (cmp.compare(a[mid], rec) <= 0) from = mid + 1;
+            else to = mid;
+        }
+        return from;
+    }
+
+    /** Sorts src[from, to) into dst[from, to); both start with the same content. */
+    private static void mergeSort(int[] src, int[] dst, int from, int to, IntComparator cmp) {
+        int n = to - from;
+        if (n < INSERTION_THRESHOLD) {
+            insertionSort(dst, from, to, cmp);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        // swap roles: halves are sorted into src, then merged into dst
+        mergeSort(dst, src, from, mid, cmp);
+        mergeSort(dst, src, mid, to, cmp);
+
+        if (cmp.compare(src[mid - 1], src[mid]) <= 0) {
+            System.arraycopy(src, from, dst, from, n);
+            return;
+        }
+        int i = from;
+        int j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < mid && cmp.compare(src[i], src[j]) <= 0)) {
+                dst[k] = src[i++];
+            } else {
+                dst[k] = src[j++];
+            }
+        }
+    }
+
+    private static void insertionSort(int[] a, int from, int to, IntComparator cmp) {
+        for (int i = from + 1; i < to; i++) {
+            int v = a[i];
+            int j = i - 1;
+            while (j >= from && cmp.compare(a[j], v) > 0) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = v;
+        }
+    }
+}
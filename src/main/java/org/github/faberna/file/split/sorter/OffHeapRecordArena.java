@@ -0,0 +1,264 @@
+package org.github.faberna.file.split.sorter;
+
+import org.github.faberna.file.split.model.LineEnding;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link RecordArena} with the record bytes and the per-record references outside the Java heap, in memory segments
+ * of a shared {@link Arena}. The heap only holds the page lists, the sort index and the Strings of non-ASCII records,
+ * so a part of tens of GB does not need a heap of tens of GB (nor give up compressed oops).
+ *
+ * Same layout as RecordArena: pages of record bytes, and per record a long reference (page, offset) and an int
+ * (length, ending, ASCII flag), stored in index chunks of {@link #INDEX_CHUNK} records.
+ * {@link #clear()} closes the arena: the memory is released right away, not at the next GC.
+ * Appends are single-threaded; reads may come from any thread (the arena is shared) until {@link #clear()}.
+ */
+final class OffHeapRecordArena implements RecordBuffer {
+
+    static final long MAX_PAGE_BYTES = 64L << 20;
+    private static final long FIRST_PAGE_BYTES = 1L << 20;
+    static final int INDEX_CHUNK = 1 << 16;
+
+    private static final int ASCII_FLAG = 1;
+    private static final int ENDING_SHIFT = 1;
+    private static final int LENGTH_SHIFT = 3;
+    private static final LineEnding[] ENDINGS = LineEnding.values();
+
+    private final Charset charset;
+    private final boolean asciiCompatible;
+
+    private Arena arena;
+    private final List<MemorySegment> pages = new ArrayList<>();
+    private MemorySegment page;
+    private long pagePos;
+
+    private final List<MemorySegment> offsetChunks = new ArrayList<>();
+    private final List<MemorySegment> metaChunks = new ArrayList<>();
+    // decoded lines of the non-ASCII records only, allocated on the first one
+    private String[] strings;
+    private int size;
+    private long bytes;
+
+    // encoding scratch for add, copy scratch for writeRecord
+    private byte[] scratch = new byte[1024];
+    private final byte[] writeScratch = new byte[1 << 16];
+
+    OffHeapRecordArena(Charset charset) {
+        this.charset = charset;
+        this.asciiCompatible = RecordArena.isAsciiCompatible(charset);
+    }
+
+    @Override
+    public void add(String line, LineEnding ending) {
+        int len = line.length();
+        boolean ascii = asciiCompatible && RecordArena.isAscii(line);
+        byte[] encoded;
+        if (ascii) {
+            if (scratch.length < len) scratch = new byte[Math.max(len, scratch.length * 2)];
+            for (int i = 0; i < len; i++) scratch[i] = (byte) line.charAt(i);
+            encoded = scratch;
+        } else {
+            encoded = line.getBytes(charset);
+            len = encoded.length;
+        }
+        if (len > RecordArena.MAX_RECORD_BYTES) throw new IllegalArgumentException("record too large: " + len + " bytes");
+
+        ensureRecordCapacity();
+        reservePage(len);
+        MemorySegment.copy(encoded, 0, page, ValueLayout.JAVA_BYTE, pagePos, len);
+        if (!ascii) {
+            if (strings == null) strings = new String[offsetChunks.size() * INDEX_CHUNK];
+            strings[size] = line;
+        }
+
+        index(len, ending, ascii);
+    }
+
+    /** Appends the raw bytes unchanged; a non-ASCII record is decoded only when read as chars. */
+    @Override
+    public void add(byte[] src, int offset, int length, LineEnding ending) {
+        if (!asciiCompatible) {
+            add(new String(src, offset, length, charset), ending);
+            return;
+        }
+        if (length > RecordArena.MAX_RECORD_BYTES) throw new IllegalArgumentException("record too large: " + length + " bytes");
+        boolean ascii = RecordArena.isAscii(src, offset, length);
+
+        ensureRecordCapacity();
+        reservePage(length);
+        MemorySegment.copy(src, offset, page, ValueLayout.JAVA_BYTE, pagePos, length);
+        if (!ascii && strings == null) strings = new String[offsetChunks.size() * INDEX_CHUNK];
+        index(length, ending, ascii);
+    }
+
+    private void index(int len, LineEnding ending, boolean ascii) {
+        MemorySegment offsets = offsetChunks.get(size / INDEX_CHUNK);
+        MemorySegment meta = metaChunks.get(size / INDEX_CHUNK);
+        offsets.setAtIndex(ValueLayout.JAVA_LONG, size % INDEX_CHUNK, ((long) (pages.size() - 1) << 32) | pagePos);
+        meta.setAtIndex(ValueLayout.JAVA_INT, size % INDEX_CHUNK,
+                (len << LENGTH_SHIFT) | (ending.ordinal() << ENDING_SHIFT) | (ascii ? ASCII_FLAG : 0));
+        pagePos += len;
+        bytes += len;
+        size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean asciiCompatible() {
+        return asciiCompatible;
+    }
+
+    @Override
+    public boolean allAscii() {
+        return asciiCompatible && strings == null;
+    }
+
+    @Override
+    public long bytes() {
+        return bytes;
+    }
+
+    @Override
+    public int length(int rec) {
+        return meta(rec) >>> LENGTH_SHIFT;
+    }
+
+    @Override
+    public int byteAt(int rec, int pos) {
+        if (pos >= length(rec)) return 0;
+        long ref = offset(rec);
+        return pages.get((int) (ref >>> 32)).get(ValueLayout.JAVA_BYTE, (int) ref + (long) pos) & 0xFF;
+    }
+
+    @Override
+    public LineEnding ending(int rec) {
+        return ENDINGS[(meta(rec) >>> ENDING_SHIFT) & 0b11];
+    }
+
+    @Override
+    public CharSequence chars(int rec, ByteCharSequence view) {
+        int meta = meta(rec);
+        if ((meta & ASCII_FLAG) == 0) return decoded(rec);
+        long ref = offset(rec);
+        return view.reset(pages.get((int) (ref >>> 32)), (int) ref, meta >>> LENGTH_SHIFT);
+    }
+
+    @Override
+    public String string(int rec) {
+        int meta = meta(rec);
+        if ((meta & ASCII_FLAG) == 0) return decoded(rec);
+        byte[] out = new byte[meta >>> LENGTH_SHIFT];
+        long ref = offset(rec);
+        MemorySegment.copy(pages.get((int) (ref >>> 32)), ValueLayout.JAVA_BYTE, (int) ref, out, 0, out.length);
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+
+    /** The String of a non-ASCII record, decoded on first use (racing sorting threads decode the same String). */
+    private String decoded(int rec) {
+        String line = strings[rec];
+        if (line == null) {
+            byte[] raw = new byte[length(rec)];
+            long ref = offset(rec);
+            MemorySegment.copy(pages.get((int) (ref >>> 32)), ValueLayout.JAVA_BYTE, (int) ref, raw, 0, raw.length);
+            line = new String(raw, charset);
+            strings[rec] = line;
+        }
+        return line;
+    }
+
+    /** Two ASCII records are compared as unsigned bytes with a (vectorized) mismatch, UTF-16 chars otherwise. */
+    @Override
+    public int compareLines(int a, int b, ByteCharSequence viewA, ByteCharSequence viewB) {
+        int metaA = meta(a);
+        int metaB = meta(b);
+        if ((metaA & metaB & ASCII_FLAG) != 0) {
+            long ra = offset(a);
+            long rb = offset(b);
+            long offA = (int) ra;
+            long offB = (int) rb;
+            int lenA = metaA >>> LENGTH_SHIFT;
+            int lenB = metaB >>> LENGTH_SHIFT;
+            MemorySegment pageA = pages.get((int) (ra >>> 32));
+            MemorySegment pageB = pages.get((int) (rb >>> 32));
+            long i = pageA.asSlice(offA, lenA).mismatch(pageB.asSlice(offB, lenB));
+            if (i < 0) return 0;
+            if (i == lenA || i == lenB) return lenA - lenB;
+            return Integer.compare(pageA.get(ValueLayout.JAVA_BYTE, offA + i) & 0xFF,
+                    pageB.get(ValueLayout.JAVA_BYTE, offB + i) & 0xFF);
+        }
+        return CharSequence.compare(chars(a, viewA), chars(b, viewB));
+    }
+
+    @Override
+    public void writeRecord(int rec, OutputStream out) throws IOException {
+        long ref = offset(rec);
+        MemorySegment src = pages.get((int) (ref >>> 32));
+        long from = (int) ref;
+        int left = length(rec);
+        while (left > 0) {
+            int n = Math.min(left, writeScratch.length);
+            MemorySegment.copy(src, ValueLayout.JAVA_BYTE, from, writeScratch, 0, n);
+            out.write(writeScratch, 0, n);
+            from += n;
+            left -= n;
+        }
+    }
+
+    /** Releases all the off-heap memory of the part. */
+    @Override
+    public void clear() {
+        if (arena != null) arena.close();
+        arena = null;
+        pages.clear();
+        page = null;
+        pagePos = 0;
+        offsetChunks.clear();
+        metaChunks.clear();
+        strings = null;
+        size = 0;
+        bytes = 0;
+    }
+
+    private long offset(int rec) {
+        return offsetChunks.get(rec / INDEX_CHUNK).getAtIndex(ValueLayout.JAVA_LONG, rec % INDEX_CHUNK);
+    }
+
+    private int meta(int rec) {
+        return metaChunks.get(rec / INDEX_CHUNK).getAtIndex(ValueLayout.JAVA_INT, rec % INDEX_CHUNK);
+    }
+
+    private Arena arena() {
+        if (arena == null) arena = Arena.ofShared();
+        return arena;
+    }
+
+    private void reservePage(int len) {
+        if (page != null && pagePos + len <= page.byteSize()) return;
+        // small parts stay small: pages grow up to MAX_PAGE_BYTES
+        long next = page == null ? FIRST_PAGE_BYTES : Math.min(MAX_PAGE_BYTES, page.byteSize() * 2);
+        page = arena().allocate(Math.max(next, len), 8);
+        pagePos = 0;
+        pages.add(page);
+    }
+
+    private void ensureRecordCapacity() {
+        if (size < offsetChunks.size() * INDEX_CHUNK) return;
+        offsetChunks.add(arena().allocate((long) INDEX_CHUNK * Long.BYTES, Long.BYTES));
+        metaChunks.add(arena().allocate((long) INDEX_CHUNK * Integer.BYTES, Integer.BYTES));
+        if (strings != null) strings = Arrays.copyOf(strings, offsetChunks.size() * INDEX_CHUNK);
+    }
+}
@@ -3,6 +3,8 @@ package org.github.faberna.file.split.sorter;
 import org.github.faberna.file.split.model.LineEnding;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.Comparator;
 
@@ -18,6 +20,23 @@ public interface PartWriter {
      */
     void acceptLine(String line, LineEnding ending);
 
+    /**
+     * Accept one line as raw bytes WITHOUT newline characters, encoded in {@code charset}.
+     * The bytes are only valid during the call. By default the line is decoded and passed to
+     * {@link #acceptLine(String, LineEnding)}; writers that buffer bytes keep them unchanged instead.
+     */
+    default void acceptRecord(byte[] bytes, int offset, int length, Charset charset, LineEnding ending) {
+        acceptLine(new String(bytes, offset, length, charset), ending);
+    }
+
+    /**
+     * Charset the writer buffers and writes its lines in: splitters hand raw records over in it, so that they are
+     * kept byte for byte instead of being decoded. UTF-8 unless the writer says otherwise.
+     */
+    default Charset getCharset() {
+        return StandardCharsets.UTF_8;
+    }
+
     /**
      * Finalize current part and write it to {@code partFile}.
      * Implementations may sort and/or buffer content.
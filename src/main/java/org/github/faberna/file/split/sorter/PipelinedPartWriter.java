@@ -0,0 +1,208 @@
+package org.github.faberna.file.split.sorter;
+
+import org.github.faberna.file.split.config.SortConfig;
+import org.github.faberna.file.split.model.LineEnding;
+import org.github.faberna.file.split.util.MemoryBudget;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * PartWriter that overlaps reading, sorting and writing of consecutive parts.
+ *
+ * The caller (the sequential splitter) keeps feeding lines; {@link #endPart(Path)} only hands the filled writer off:
+ * - reader (caller thread) -> bounded queue -> {@code sortThreads} sort workers
+ * - sort workers -> bounded queue -> one dedicated writer thread
+ *
+ * Parts handed off are charged to a {@link MemoryBudget} until they are written, so {@code endPart} blocks
+ * (back-pressure on the reader) when the budget is used up. Writers that cannot be split in sort + write
+ * (anything but {@link InMemorySortingPartWriter}) are finalized by the sort workers with {@code endPart}.
+ *
+ * Must be closed: {@link #close()} waits for the pending parts and rethrows the first failure.
+ */
+public final class PipelinedPartWriter implements PartWriter, AutoCloseable {
+
+    private record Job(PartWriter writer, Path partFile, long bytes) {
+    }
+
+    private static final Job END = new Job(null, null, 0);
+
+    private final PartWriterFactory factory;
+    private final MemoryBudget budget;
+    private final int sortThreads;
+    private final BlockingQueue<Job> toSort;
+    private final BlockingQueue<Job> toWrite;
+    private final ExecutorService pool;
+    private final AtomicInteger sortersLeft;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    // charset of the writers created by the factory
+    private final Charset charset;
+
+    private PartWriter current;
+    private long currentBytes;
+    private boolean closed;
+
+    public PipelinedPartWriter(PartWriterFactory factory, SortConfig config) {
+        this.factory = Objects.requireNonNull(factory, "factory is required");
+        Objects.requireNonNull(config, "config is required");
+        this.budget = new MemoryBudget(config.memoryBudgetBytes());
+        this.sortThreads = config.sortThreads();
+        this.toSort = new ArrayBlockingQueue<>(sortThreads);
+        this.toWrite = new ArrayBlockingQueue<>(sortThreads);
+        this.sortersLeft = new AtomicInteger(sortThreads);
+        this.current = newWriter();
+        this.charset = current.getCharset();
+
+        this.pool = Executors.newFixedThreadPool(sortThreads + 1);
+        for (int i = 0; i < sortThreads; i++) {
+            pool.submit(this::sortLoop);
+        }
+        pool.submit(this::writeLoop);
+    }
+
+    /** The charset of the writers the factory creates: records handed over in it reach them unchanged. */
+    @Override
+    public Charset getCharset() {
+        return charset;
+    }
+
+    @Override
+    public void acceptLine(String line, LineEnding ending) {
+        current.acceptLine(line, ending);
+        currentBytes += MemoryBudget.estimateLine(line.length());
+    }
+
+    @Override
+    public void acceptRecord(byte[] bytes, int offset, int length, Charset charset, LineEnding ending) {
+        current.acceptRecord(bytes, offset, length, charset, ending);
+        currentBytes += MemoryBudget.estimateLine(length);
+    }
+
+    /**
+     * Hands the current part to the sort workers and starts a new one.
+     * Blocks while the memory budget is used up by parts still in the pipeline.
+     */
+    @Override
+    public void endPart(Path partFile) throws IOException {
+        Objects.requireNonNull(partFile, "partFile is required");
+        if (closed) throw new IllegalStateException("writer is closed");
+        rethrowFailure();
+
+        // a sorting writer knows what it holds, binary sort keys included
+        long bytes = current instanceof InMemorySortingPartWriter sorting ? sorting.bytes() : currentBytes;
+        Job job = new Job(current, partFile, bytes);
+        try {
+            budget.reserve(job.bytes());
+            try {
+                toSort.put(job);
+            } catch (InterruptedException e) {
+                budget.release(job.bytes());
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while handing off part " + partFile, e);
+        }
+        current = newWriter();
+        currentBytes = 0;
+    }
+
+    /** Waits until every part handed off is written. Lines accepted after the last endPart are discarded. */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            for (int i = 0; i < sortThreads; i++) {
+                toSort.put(END);
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                // parts are still being sorted/written
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for pending parts", e);
+        } finally {
+            if (current instanceof InMemorySortingPartWriter sorting) sorting.discard();
+        }
+        rethrowFailure();
+    }
+
+    private PartWriter newWriter() {
+        PartWriter writer = factory.create();
+        if (writer == null) throw new IllegalStateException("PartWriterFactory returned null writer");
+        return writer;
+    }
+
+    private Void sortLoop() throws InterruptedException {
+        while (true) {
+            Job job = toSort.take();
+            if (job == END) {
+                // the last sorter to stop stops the writer
+                if (sortersLeft.decrementAndGet() == 0) toWrite.put(END);
+                return null;
+            }
+            if (failure.get() != null) {
+                // keep draining so that the reader never blocks forever
+                discard(job);
+                budget.release(job.bytes());
+                continue;
+            }
+            try {
+                if (job.writer() instanceof InMemorySortingPartWriter sorting) {
+                    sorting.sort();
+                    toWrite.put(job);
+                } else {
+                    job.writer().endPart(job.partFile());
+                    budget.release(job.bytes());
+                }
+            } catch (IOException | RuntimeException e) {
+                failure.compareAndSet(null, e);
+                discard(job);
+                budget.release(job.bytes());
+            }
+        }
+    }
+
+    private Void writeLoop() throws InterruptedException {
+        while (true) {
+            Job job = toWrite.take();
+            if (job == END) return null;
+            try {
+                if (failure.get() == null) {
+                    ((InMemorySortingPartWriter) job.writer()).writeTo(job.partFile());
+                }
+            } catch (IOException | RuntimeException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                // skipped or failed parts still hold their buffer (off-heap memory is only freed by a clear)
+                discard(job);
+                budget.release(job.bytes());
+            }
+        }
+    }
+
+    /** Frees the records of a part that is not written, or what is left of a written one. */
+    private static void discard(Job job) {
+        if (job.writer() instanceof InMemorySortingPartWriter sorting) sorting.discard();
+    }
+
+    private void rethrowFailure() throws IOException {
+        Throwable t = failure.get();
+        if (t == null) return;
+        if (t instanceof IOException ioe) throw ioe;
+        if (t instanceof RuntimeException re) throw re;
+        throw new IOException("Pipelined part writer failed", t);
+    }
+}
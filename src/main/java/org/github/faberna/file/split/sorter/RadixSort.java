@@ -0,0 +1,127 @@
+package org.github.faberna.file.split.sorter;
+
+import org.github.faberna.file.segment.model.KeySpec;
+import org.github.faberna.file.segment.model.Mode;
+import org.github.faberna.file.segment.model.RangeSegment;
+
+import java.util.Arrays;
+
+/**
+ * Radix sorts of record indexes for keys made of a single {@link RangeSegment}, giving the same order as the
+ * comparison sort (key, then whole line):
+ * - {@link Mode#LEX} on ASCII records: MSD radix on the key bytes, small buckets by comparison
+ * - {@link Mode#INT}: LSD radix on the parsed 64-bit values (sign bit flipped), equal values by comparison
+ *
+ * Below {@link #MIN_RECORDS} the comparison sort is faster (see RadixSortTest for the benchmark).
+ */
+final class RadixSort {
+
+    /** Parts smaller than this are sorted by comparison. */
+    static final int MIN_RECORDS = 1 << 10;
+    /** MSD buckets smaller than this are sorted by comparison. */
+    private static final int MSD_CUTOFF = 64;
+    private static final int RADIX = 256;
+
+    private RadixSort() {
+        /* This utility class should not be instantiated */
+    }
+
+    /** The segment to radix sort on, or null if the KeySpec is not a single LEX or INT range. */
+    static RangeSegment radixKey(KeySpec<?> keySpec) {
+        if (keySpec.segment().size() != 1) return null;
+        if (!(keySpec.segment().get(0) instanceof RangeSegment range)) return null;
+        return range.mode() == Mode.LEX || range.mode() == Mode.INT ? range : null;
+    }
+
+    /** True if {@link #sort} applies to this arena. */
+    static boolean supports(RangeSegment key, RecordBuffer arena) {
+        return arena.size() >= MIN_RECORDS && (key.mode() == Mode.INT || arena.allAscii());
+    }
+
+    /**
+     * Sorts the record indexes by {@code key}, then by {@code cmp} among equal keys.
+     * @param cmp full order (key then line), used for small buckets and equal keys
+     */
+    static void sort(int[] idx, RecordBuffer arena, RangeSegment key, IndexSort.IntComparator cmp) {
+        if (key.mode() == Mode.INT) {
+            sortInt(idx, arena, key, cmp);
+        } else {
+            int maxLength = 0;
+            for (int rec : idx) maxLength = Math.max(maxLength, arena.length(rec));
+            int limit = Math.min(key.end(), maxLength);
+            msd(idx, new int[idx.length], 0, idx.length, key.start(), limit, arena, cmp);
+        }
+    }
+
+    /** MSD radix on the byte at {@code depth}, for idx[from, to). */
+    private static void msd(int[] idx, int[] aux, int from, int to, int depth, int limit,
+                            RecordBuffer arena, IndexSort.IntComparator cmp) {
+        if (to - from < MSD_CUTOFF || depth >= limit) {
+            // few records, or equal keys: the comparison order decides
+            IndexSort.sort(idx, from, to, cmp);
+            return;
+        }
+        int[] start = new int[RADIX + 1];
+        for (int i = from; i < to; i++) start[arena.byteAt(idx[i], depth) + 1]++;
+        for (int b = 0; b < RADIX; b++) start[b + 1] += start[b];
+
+        int[] next = start.clone();
+        for (int i = from; i < to; i++) {
+            int rec = idx[i];
+            aux[from + next[arena.byteAt(rec, depth)]++] = rec;
+        }
+        System.arraycopy(aux, from, idx, from, to - from);
+
+        for (int b = 0; b < RADIX; b++) {
+            int lo = from + start[b];
+            int hi = from + start[b + 1];
+            if (hi - lo > 1) msd(idx, aux, lo, hi, depth + 1, limit, arena, cmp);
+        }
+    }
+
+    /** LSD radix on the parsed values, 8 bits per pass, skipping the passes where every value has the same byte. */
+    private static void sortInt(int[] idx, RecordBuffer arena, RangeSegment key, IndexSort.IntComparator cmp) {
+        int n = idx.length;
+        if (n < 2) return;
+        long[] keys = new long[n];
+        ByteCharSequence view = new ByteCharSequence();
+        for (int i = 0; i < n; i++) {
+            // flipping the sign bit makes the unsigned order of the values their signed order
+            keys[i] = key.parseLong(arena.chars(idx[i], view)) ^ Long.MIN_VALUE;
+        }
+
+        long[] keysAux = new long[n];
+        int[] idxAux = new int[n];
+        int[] count = new int[RADIX];
+        for (int shift = 0; shift < Long.SIZE; shift += 8) {
+            Arrays.fill(count, 0);
+            for (int i = 0; i < n; i++) count[(int) (keys[i] >>> shift) & 0xFF]++;
+            if (count[(int) (keys[0] >>> shift) & 0xFF] == n) continue;
+
+            int sum = 0;
+            for (int b = 0; b < RADIX; b++) {
+                int c = count[b];
+                count[b] = sum;
+                sum += c;
+            }
+            for (int i = 0; i < n; i++) {
+                int to = count[(int) (keys[i] >>> shift) & 0xFF]++;
+                keysAux[to] = keys[i];
+                idxAux[to] = idx[i];
+            }
+            long[] k = keys;
+            keys = keysAux;
+            keysAux = k;
+            System.arraycopy(idxAux, 0, idx, 0, n);
+        }
+
+        // equal values: order by the whole line
+        int runStart = 0;
+        for (int i = 1; i <= n; i++) {
+            if (i == n || keys[i] != keys[runStart]) {
+                if (i - runStart > 1) IndexSort.sort(idx, runStart, i, cmp);
+                runStart = i;
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package org.github.faberna.file.split.sorter;
+
+import org.github.faberna.file.split.model.LineEnding;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact sort buffer: the raw bytes of the records are appended to large pages and each record is described by
+ * a packed reference, instead of one String + LineRecord + list slot per line.
+ *
+ * Per record:
+ * - {@code offsets[i]}: page index (high 32 bits) and offset within the page (low 32 bits)
+ * - {@code meta[i]}: length (bits 31..3), line ending ordinal (bits 2..1), ASCII flag (bit 0)
+ *
+ * That is 12 bytes per record on top of its bytes. ASCII records (the common case) are compared through a
+ * {@link ByteCharSequence} view; the few non-ASCII ones keep their String, so they are decoded only once.
+ * Records never span pages: a record larger than a page gets a page of its own.
+ * Not thread-safe.
+ */
+final class RecordArena implements RecordBuffer {
+
+    static final int PAGE_BYTES = 1 << 20;
+    private static final int FIRST_PAGE_BYTES = 64 * 1024;
+    static final int MAX_RECORD_BYTES = (1 << 29) - 1;
+
+    private static final int ASCII_FLAG = 1;
+    private static final int ENDING_SHIFT = 1;
+    private static final int LENGTH_SHIFT = 3;
+    private static final LineEnding[] ENDINGS = LineEnding.values();
+
+    private final Charset charset;
+    private final boolean asciiCompatible;
+
+    private final List<byte[]> pages = new ArrayList<>();
+    private byte[] page;
+    private int pagePos;
+
+    private long[] offsets = new long[1024];
+    private int[] meta = new int[1024];
+    // decoded lines of the non-ASCII records only, allocated on the first one
+    private String[] strings;
+    private int size;
+    private long bytes;
+
+    RecordArena(Charset charset) {
+        this.charset = charset;
+        this.asciiCompatible = isAsciiCompatible(charset);
+    }
+
+    /** True if ASCII chars encode to the same single bytes (UTF-8, US-ASCII, ISO-8859-x, windows-125x...). */
+    static boolean isAsciiCompatible(Charset charset) {
+        char[] ascii = new char[128];
+        byte[] expected = new byte[128];
+        for (int c = 0; c < 128; c++) {
+            ascii[c] = (char) c;
+            expected[c] = (byte) c;
+        }
+        return charset.canEncode() && Arrays.equals(new String(ascii).getBytes(charset), expected);
+    }
+
+    @Override
+    public void add(String line, LineEnding ending) {
+        int len = line.length();
+        boolean ascii = asciiCompatible && isAscii(line);
+        byte[] encoded = ascii ? null : line.getBytes(charset);
+        if (!ascii) len = encoded.length;
+        if (len > MAX_RECORD_BYTES) throw new IllegalArgumentException("record too large: " + len + " bytes");
+
+        ensureRecordCapacity();
+        reservePage(len);
+        if (ascii) {
+            for (int i = 0; i < len; i++) {
+                page[pagePos + i] = (byte) line.charAt(i);
+            }
+        } else {
+            System.arraycopy(encoded, 0, page, pagePos, len);
+            if (strings == null) strings = new String[offsets.length];
+            strings[size] = line;
+        }
+
+        index(len, ending, ascii);
+    }
+
+    /**
+     * Appends the raw bytes unchanged. A non-ASCII record is only decoded if it is read as chars
+     * ({@link #chars}, {@link #string}), e.g. by a comparison; a charset that is not ASCII-compatible decodes right away.
+     */
+    @Override
+    public void add(byte[] src, int offset, int length, LineEnding ending) {
+        if (!asciiCompatible) {
+            add(new String(src, offset, length, charset), ending);
+            return;
+        }
+        if (length > MAX_RECORD_BYTES) throw new IllegalArgumentException("record too large: " + length + " bytes");
+        boolean ascii = isAscii(src, offset, length);
+
+        ensureRecordCapacity();
+        reservePage(length);
+        System.arraycopy(src, offset, page, pagePos, length);
+        if (!ascii && strings == null) strings = new String[offsets.length];
+        index(length, ending, ascii);
+    }
+
+    private void index(int len, LineEnding ending, boolean ascii) {
+        offsets[size] = ((long) (pages.size() - 1) << 32) | pagePos;
+        meta[size] = (len << LENGTH_SHIFT) | (ending.ordinal() << ENDING_SHIFT) | (ascii ? ASCII_FLAG : 0);
+        pagePos += len;
+        bytes += len;
+        size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** False for charsets like UTF-16 where raw record bytes cannot be concatenated: write decoded lines instead. */
+    @Override
+    public boolean asciiCompatible() {
+        return asciiCompatible;
+    }
+
+    /** Bytes of the records (without line endings). */
+    @Override
+    public long bytes() {
+        return bytes;
+    }
+
+    /** True if every record is ASCII, so each char of a record is one of its bytes. */
+    @Override
+    public boolean allAscii() {
+        return asciiCompatible && strings == null;
+    }
+
+    @Override
+    public int length(int rec) {
+        return meta[rec] >>> LENGTH_SHIFT;
+    }
+
+    /** Unsigned byte at {@code pos} of an ASCII record, 0 past its end (like the char padding of a LEX range). */
+    @Override
+    public int byteAt(int rec, int pos) {
+        if (pos >= length(rec)) return 0;
+        long ref = offsets[rec];
+        return pages.get((int) (ref >>> 32))[(int) ref + pos] & 0xFF;
+    }
+
+    @Override
+    public LineEnding ending(int rec) {
+        return ENDINGS[(meta[rec] >>> ENDING_SHIFT) & 0b11];
+    }
+
+    /** The record as chars: a view over its bytes when ASCII (reusing {@code view}), its decoded String otherwise. */
+    @Override
+    public CharSequence chars(int rec, ByteCharSequence view) {
+        if ((meta[rec] & ASCII_FLAG) == 0) return decoded(rec);
+        long ref = offsets[rec];
+        return view.reset(pages.get((int) (ref >>> 32)), (int) ref, length(rec));
+    }
+
+    /** The record decoded (allocates). */
+    @Override
+    public String string(int rec) {
+        if ((meta[rec] & ASCII_FLAG) == 0) return decoded(rec);
+        long ref = offsets[rec];
+        return new String(pages.get((int) (ref >>> 32)), (int) ref, length(rec), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Total order on the whole line, same as {@code String.compareTo}: for two ASCII records an unsigned
+     * byte comparison (vectorized by the JDK), UTF-16 chars otherwise.
+     */
+    @Override
+    public int compareLines(int a, int b, ByteCharSequence viewA, ByteCharSequence viewB) {
+        if ((meta[a] & meta[b] & ASCII_FLAG) != 0) {
+            long ra = offsets[a];
+            long rb = offsets[b];
+            int offA = (int) ra;
+            int offB = (int) rb;
+            return Arrays.compareUnsigned(
+                    pages.get((int) (ra >>> 32)), offA, offA + length(a),
+                    pages.get((int) (rb >>> 32)), offB, offB + length(b));
+        }
+        return CharSequence.compare(chars(a, viewA), chars(b, viewB));
+    }
+
+    /** The String of a non-ASCII record, decoded on first use when it was added as bytes. */
+    private String decoded(int rec) {
+        String line = strings[rec];
+        if (line == null) {
+            // sorting threads may race here: each decodes the same immutable String, any of them can be kept
+            long ref = offsets[rec];
+            line = new String(pages.get((int) (ref >>> 32)), (int) ref, length(rec), charset);
+            strings[rec] = line;
+        }
+        return line;
+    }
+
+    /** Writes the raw bytes of a record (without its ending). */
+    @Override
+    public void writeRecord(int rec, OutputStream out) throws IOException {
+        long ref = offsets[rec];
+        out.write(pages.get((int) (ref >>> 32)), (int) ref, length(rec));
+    }
+
+    @Override
+    public void clear() {
+        pages.clear();
+        page = null;
+        pagePos = 0;
+        strings = null;
+        size = 0;
+        bytes = 0;
+    }
+
+    private void reservePage(int len) {
+        if (page != null && pagePos + len <= page.length) return;
+        // small parts stay small: pages grow up to PAGE_BYTES
+        int next = page == null ? FIRST_PAGE_BYTES : Math.min(PAGE_BYTES, page.length * 2);
+        page = new byte[Math.max(next, len)];
+        pagePos = 0;
+        pages.add(page);
+    }
+
+    private void ensureRecordCapacity() {
+        if (size < offsets.length) return;
+        int newCap = offsets.length + (offsets.length >> 1);
+        offsets = Arrays.copyOf(offsets, newCap);
+        meta = Arrays.copyOf(meta, newCap);
+        if (strings != null) strings = Arrays.copyOf(strings, newCap);
+    }
+
+    static boolean isAscii(byte[] bytes, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (bytes[i] < 0) return false;
+        }
+        return true;
+    }
+
+    static boolean isAscii(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+}
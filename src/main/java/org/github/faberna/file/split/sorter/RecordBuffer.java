@@ -0,0 +1,52 @@
+package org.github.faberna.file.split.sorter;
+
+import org.github.faberna.file.split.model.LineEnding;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Sort buffer of one part: records are appended, then read back by record index (0 to size - 1).
+ * Implementations: {@link RecordArena} (heap pages) and {@link OffHeapRecordArena} (FFM memory segments).
+ * Not thread-safe for writes; reads may run on several sorting threads, each with its own views.
+ */
+interface RecordBuffer {
+
+    void add(String line, LineEnding ending);
+
+    /** Appends a record as raw bytes in the buffer charset, written back unchanged. */
+    void add(byte[] src, int offset, int length, LineEnding ending);
+
+    int size();
+
+    /** False for charsets like UTF-16 where raw record bytes cannot be concatenated: write decoded lines instead. */
+    boolean asciiCompatible();
+
+    /** True if every record is ASCII, so each char of a record is one of its bytes. */
+    boolean allAscii();
+
+    /** Bytes of the records (without line endings). */
+    long bytes();
+
+    int length(int rec);
+
+    /** Unsigned byte at {@code pos} of an ASCII record, 0 past its end (like the char padding of a LEX range). */
+    int byteAt(int rec, int pos);
+
+    LineEnding ending(int rec);
+
+    /** The record as chars: a view over its bytes when ASCII (reusing {@code view}), its decoded String otherwise. */
+    CharSequence chars(int rec, ByteCharSequence view);
+
+    /** The record decoded (allocates). */
+    String string(int rec);
+
+    /** Total order on the whole line, same as {@code String.compareTo}. */
+    int compareLines(int a, int b, ByteCharSequence viewA, ByteCharSequence viewB);
+
+    /** Writes the raw bytes of a record (without its ending). */
+    void writeRecord(int rec, OutputStream out) throws IOException;
+
+    /** Drops every record and gives their memory back. */
+    void clear();
+}
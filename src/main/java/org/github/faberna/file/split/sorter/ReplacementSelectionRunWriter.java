@@ -0,0 +1,211 @@
+package org.github.faberna.file.split.sorter;
+
+import org.github.faberna.file.segment.model.KeyEncoder;
+import org.github.faberna.file.segment.model.KeySpec;
+import org.github.faberna.file.split.model.LineEnding;
+import org.github.faberna.file.split.util.MemoryBudget;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/**
+ * Run generator using replacement selection instead of sort-and-spill.
+ *
+ * Lines go into a heap ordered by (run, key, line). Once the heap holds {@code memoryBudgetBytes}, every new line
+ * pushes the smallest one out to the current run. A line smaller than the last one written cannot join the current
+ * run and is tagged for the next run; the current run ends when only next-run lines are left.
+ * On random input runs are about twice the memory; on nearly sorted input (time-ordered logs) there is often one run.
+ *
+ * Runs are named by the {@link RunPathAllocator}, except the last one, written to the file given to
+ * {@link #endPart(Path)}. Line endings follow the {@link InMemorySortingPartWriter} rules, with the first
+ * terminator of the input as the default one.
+ * Not thread-safe.
+ */
+public final class ReplacementSelectionRunWriter implements PartWriter {
+
+    // key: binary key encoded once per line (KeySpec comparators), or null to compare the lines;
+    // bytes: heap cost charged for the entry, given back when it is written
+    private record Entry(int run, String line, LineEnding ending, byte[] key, int bytes) {}
+
+    // per buffered line, on top of its chars: String (24) and its array header (16), Entry (32), heap slot (8)
+    static final int ENTRY_OVERHEAD_BYTES = 80;
+    // header of the binary key array, when there is one
+    static final int KEY_OVERHEAD_BYTES = 16;
+
+    private final Charset charset;
+    private final long memoryBudgetBytes;
+    private final RunPathAllocator spills;
+    private final PriorityQueue<Entry> heap;
+    private final KeyEncoder encoder;
+
+    private long heapBytes;
+    private int currentRun;
+
+    // current run output
+    private Path runFile;
+    private BufferedWriter out;
+    private Entry lastWritten;
+    private LineEnding pendingEnding;
+    // first terminator of the input: lines are written before their run is complete
+    private LineEnding defaultEnding;
+    private long runRecords;
+
+    // statistics over the writer lifetime
+    private int runs;
+    private long records;
+    private long minRunRecords = Long.MAX_VALUE;
+    private long maxRunRecords;
+    private long bufferedRecords;
+
+    public ReplacementSelectionRunWriter(Comparator<String> keyComparator,
+                                         Charset charset,
+                                         long memoryBudgetBytes,
+                                         RunPathAllocator spills) {
+        Objects.requireNonNull(keyComparator, "keyComparator is required");
+        this.charset = Objects.requireNonNull(charset, "charset is required");
+        this.spills = Objects.requireNonNull(spills, "spills is required");
+        if (memoryBudgetBytes <= 0) throw new IllegalArgumentException("memoryBudgetBytes must be > 0");
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        // a KeySpec key is parsed once per line, not on every heap comparison
+        this.encoder = keyComparator instanceof KeySpec.SegmentComparator<?> segments
+                && KeyEncoder.supports(segments.keySpec()) ? new KeyEncoder(segments.keySpec()) : null;
+        Comparator<Entry> byKey = encoder != null
+                ? (a, b) -> KeyEncoder.compare(a.key(), b.key())
+                : Comparator.comparing(Entry::line, keyComparator);
+        this.heap = new PriorityQueue<>(Comparator.comparingInt(Entry::run)
+                .thenComparing(byKey)
+                .thenComparing(Entry::line));
+    }
+
+    @Override
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /** Run lengths achieved so far (runs still in progress are not counted). */
+    public RunStats runStats() {
+        return new RunStats(runs, records, runs == 0 ? 0 : minRunRecords, maxRunRecords, bufferedRecords);
+    }
+
+    /**
+     * Estimated heap cost of a buffered line: unlike the {@link MemoryBudget#estimateLine packed records} of the
+     * sorting writers, each line is a String (one byte per char when all of them are Latin-1, two otherwise)
+     * held by an Entry in the heap, with its binary {@code key} if any.
+     */
+    static int estimateEntry(String line, byte[] key) {
+        int n = line.length();
+        int perChar = 1;
+        for (int i = 0; i < n && perChar == 1; i++) {
+            if (line.charAt(i) > 0xFF) perChar = 2;
+        }
+        int bytes = ENTRY_OVERHEAD_BYTES + align(n * perChar);
+        return key == null ? bytes : bytes + KEY_OVERHEAD_BYTES + align(key.length);
+    }
+
+    private static int align(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    @Override
+    public void acceptLine(String line, LineEnding ending) {
+        byte[] key = encoder != null ? encoder.encode(line) : null;
+        int cost = estimateEntry(line, key);
+        try {
+            while (!heap.isEmpty() && heapBytes + cost > memoryBudgetBytes) {
+                writeSmallest();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // smaller than what the current run already holds: wait for the next run
+        Entry entry = new Entry(currentRun, line, ending, key, cost);
+        if (lastWritten != null && heap.comparator().compare(entry, lastWritten) < 0) {
+            entry = new Entry(currentRun + 1, line, ending, key, cost);
+        }
+        if (defaultEnding == null && ending != LineEnding.NONE) defaultEnding = ending;
+        heap.add(entry);
+        heapBytes += cost;
+        bufferedRecords = Math.max(bufferedRecords, heap.size());
+    }
+
+    /**
+     * Writes every buffered line: the current run is completed, and the next-run lines form the last run,
+     * written to {@code partFile}. An empty writer writes an empty {@code partFile}.
+     */
+    @Override
+    public void endPart(Path partFile) throws IOException {
+        Objects.requireNonNull(partFile, "partFile is required");
+        try {
+            while (!heap.isEmpty()) {
+                writeSmallest();
+            }
+            if (out == null) openRun();
+            closeRun(partFile);
+        } finally {
+            if (out != null) {
+                out.close();
+                Files.deleteIfExists(runFile);
+                out = null;
+            }
+            heap.clear();
+            heapBytes = 0;
+            currentRun = 0;
+            lastWritten = null;
+        }
+    }
+
+    private void writeSmallest() throws IOException {
+        Entry e = heap.poll();
+        heapBytes -= e.bytes();
+        if (e.run() != currentRun) {
+            // only next-run lines are left: the current run is complete
+            closeRun(spills.next());
+            currentRun = e.run();
+        }
+        if (out == null) openRun();
+
+        // the previous line is not the last: a line without terminator gets the default one
+        if (pendingEnding != null) {
+            out.write((pendingEnding == LineEnding.NONE ? fallbackEnding() : pendingEnding).text());
+        }
+        out.write(e.line());
+        pendingEnding = e.ending();
+        lastWritten = e;
+        runRecords++;
+    }
+
+    private LineEnding fallbackEnding() {
+        return defaultEnding != null ? defaultEnding : LineEnding.LF;
+    }
+
+    private void openRun() throws IOException {
+        runFile = Files.createTempFile(spills.dir(), "run-", ".tmp");
+        out = Files.newBufferedWriter(runFile, charset);
+        pendingEnding = null;
+        runRecords = 0;
+    }
+
+    private void closeRun(Path target) throws IOException {
+        if (out == null) return;
+        // the last line drops the default terminator
+        if (pendingEnding != null && pendingEnding != LineEnding.NONE && pendingEnding != fallbackEnding()) {
+            out.write(pendingEnding.text());
+        }
+        out.close();
+        out = null;
+        Files.move(runFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        runs++;
+        records += runRecords;
+        minRunRecords = Math.min(minRunRecords, runRecords);
+        maxRunRecords = Math.max(maxRunRecords, runRecords);
+    }
+}
@@ -0,0 +1,47 @@
+package org.github.faberna.file.split.sorter;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out unique run file names to writers that spill on their own (shared by parallel workers)
+ * and remembers them, so the caller can merge every run at the end.
+ * Names: {@code <prefix>spill-<6 digits><extension>}.
+ */
+public final class RunPathAllocator {
+
+    private final Path dir;
+    private final String prefix;
+    private final String extension;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Path> allocated = new ConcurrentLinkedQueue<>();
+
+    public RunPathAllocator(Path dir, String prefix, String extension) {
+        this.dir = Objects.requireNonNull(dir, "dir is required");
+        this.prefix = Objects.requireNonNull(prefix, "prefix is required");
+        this.extension = Objects.requireNonNull(extension, "extension is required");
+    }
+
+    /** Directory of the runs, also used by writers for their in-progress files. */
+    public Path dir() {
+        return dir;
+    }
+
+    public Path next() {
+        Path run = dir.resolve(String.format(Locale.ROOT, "%sspill-%06d%s", prefix, next.incrementAndGet(), extension));
+        allocated.add(run);
+        return run;
+    }
+
+    /** Every path handed out so far, in allocation order. */
+    public List<Path> allocated() {
+        List<Path> runs = new ArrayList<>(allocated);
+        runs.sort(null);
+        return runs;
+    }
+}
@@ -0,0 +1,21 @@
+package org.github.faberna.file.split.sorter;
+
+/**
+ * Run lengths achieved by a run generator.
+ * @param runs number of runs written
+ * @param records records written over all the runs
+ * @param minRunRecords records of the shortest run (0 when there is no run)
+ * @param maxRunRecords records of the longest run
+ * @param bufferedRecords most records held in memory at once
+ */
+public record RunStats(int runs, long records, long minRunRecords, long maxRunRecords, long bufferedRecords) {
+
+    public double averageRunRecords() {
+        return runs == 0 ? 0 : (double) records / runs;
+    }
+
+    /** Average run length over what fits in memory: about 1 for sort-and-spill, about 2 for replacement selection on random input. */
+    public double runToMemoryRatio() {
+        return bufferedRecords == 0 ? 0 : averageRunRecords() / bufferedRecords;
+    }
+}
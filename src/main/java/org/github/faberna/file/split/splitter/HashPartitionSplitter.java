@@ -0,0 +1,270 @@
+package org.github.faberna.file.split.splitter;
+
+import org.github.faberna.file.segment.model.KeySpec;
+import org.github.faberna.file.split.config.IOConfig;
+import org.github.faberna.file.split.model.LineEnding;
+import org.github.faberna.file.split.model.Range;
+import org.github.faberna.file.split.plan.SplitPlan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.nio.file.StandardOpenOption.*;
+import static org.github.faberna.file.split.SplitUtil.appendEnding;
+
+/**
+ * Routes every line to one of N part files by the hash of its KeySpec key.
+ * <p>
+ * There is no total order between (or inside) the parts, but all lines with equal keys land in the same part,
+ * which is all group-by and join workloads need. Each part can then be processed (or sorted) on its own.
+ * <p>
+ * The input is scanned in parallel, one task per plan range. Every task keeps one output buffer per partition
+ * and appends it to the shared part file only when it is full, so threads rarely contend on the same channel.
+ * Lines are copied byte-for-byte with their original line ending; only the key is decoded for hashing. The last line
+ * of the input keeps its missing terminator: it is appended to its part once every task is done, after all the lines
+ * of that part.
+ */
+public final class HashPartitionSplitter {
+    private static final Logger log = LoggerFactory.getLogger(HashPartitionSplitter.class);
+
+    /**
+     * Hash-partition the plan ranges into {@code partitions} part files.
+     * All part files are created, even the empty ones, so the same key always maps to the same part index.
+     * @param plan ranges to scan in parallel (record-safe, e.g. from {@code SplitPlanner.planByParts})
+     * @param partitions number of output parts
+     * @param io buffer size, parallelism and part naming
+     * @param keySpec key used to hash each line
+     * @param charset charset used to decode the key
+     * @return the part files, in partition order
+     * @throws IOException
+     */
+    public List<Path> execute(SplitPlan plan, int partitions, IOConfig io, KeySpec keySpec, Charset charset) throws IOException {
+        log.info("Starting hash partition splitter");
+        if (plan == null) throw new IllegalArgumentException("plan is required");
+        if (partitions <= 0) throw new IllegalArgumentException("partitions must be > 0");
+        if (keySpec == null) throw new IllegalArgumentException("keySpec is required");
+        if (charset == null) throw new IllegalArgumentException("charset is required");
+        if (io == null) io = IOConfig.defaults();
+        final int bufferSize = io.copyBufferBytes();
+
+        Files.createDirectories(plan.outputDir());
+
+        List<Path> partFiles = new ArrayList<>(partitions);
+        for (int p = 0; p < partitions; p++) {
+            partFiles.add(plan.outputDir().resolve(
+                    String.format(Locale.ROOT, "%s%04d%s", io.filePrefix(), p + 1, io.fileExtension())
+            ));
+        }
+
+        FileChannel[] outs = new FileChannel[partitions];
+        AtomicReference<Tail> tail = new AtomicReference<>();
+        try (FileChannel in = FileChannel.open(plan.input(), StandardOpenOption.READ)) {
+            for (int p = 0; p < partitions; p++) {
+                outs[p] = FileChannel.open(partFiles.get(p), WRITE, CREATE, TRUNCATE_EXISTING);
+            }
+
+            List<Range> ranges = plan.parts();
+            if (ranges != null && !ranges.isEmpty()) {
+                ExecutorService pool = Executors.newFixedThreadPool(ParallelRangeSplitter.getThreads(io, ranges));
+                List<Future<?>> futures = new ArrayList<>(ranges.size());
+                for (Range r : ranges) {
+                    futures.add(pool.submit(() -> {
+                        try {
+                            new RangePartitioner(outs, bufferSize, keySpec, charset, tail).partition(in, r.startInclusive(), r.endExclusive());
+                        } catch (IOException e) {
+                            throw new CompletionException(e);
+                        }
+                    }));
+                }
+                ParallelRangeSplitter.doShutdown(pool, futures);
+            }
+            Tail last = tail.get();
+            if (last != null) {
+                outs[last.part()].write(ByteBuffer.wrap(last.bytes()));
+            }
+        } finally {
+            closeAll(outs);
+        }
+        log.info("Finished hash partition splitter");
+        return partFiles;
+    }
+
+    private static void closeAll(FileChannel[] outs) throws IOException {
+        IOException first = null;
+        for (FileChannel out : outs) {
+            if (out == null) continue;
+            try {
+                out.close();
+            } catch (IOException e) {
+                if (first == null) first = e;
+            }
+        }
+        if (first != null) throw first;
+    }
+
+    /** The unterminated last line of the input and its partition. */
+    private record Tail(int part, byte[] bytes) {}
+
+    /**
+     * Partitions a single range. Not thread-safe: one instance per task.
+     */
+    private static final class RangePartitioner {
+        private final FileChannel[] outs;
+        private final ByteArrayOutputStream[] buffers;
+        private final int flushBytes;
+        private final KeySpec keySpec;
+        private final Charset charset;
+
+        // Bytes of a line spanning more than one read buffer
+        private final ByteArrayOutputStream carry = new ByteArrayOutputStream(1024);
+        // Where the last line of the input goes when it has no terminator: written after every other line of its part
+        private final AtomicReference<Tail> tail;
+
+        RangePartitioner(FileChannel[] outs, int bufferSize, KeySpec keySpec, Charset charset, AtomicReference<Tail> tail) {
+            this.outs = outs;
+            this.buffers = new ByteArrayOutputStream[outs.length];
+            // keep the per-task footprint bounded: partitions * flushBytes
+            this.flushBytes = Math.max(4 * 1024, Math.min(bufferSize, 1 << 20));
+            this.keySpec = keySpec;
+            this.charset = charset;
+            this.tail = tail;
+        }
+
+        void partition(FileChannel in, long start, long end) throws IOException {
+            if (start < 0 || end < start) throw new IllegalArgumentException("Invalid range: [" + start + "," + end + ")");
+
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.max(1, Math.min(flushBytes, end - start)));
+            byte[] arr = buf.array();
+            boolean pendingCR = false;
+            long pos = start;
+
+            while (pos < end) {
+                buf.clear();
+                buf.limit((int) Math.min(arr.length, end - pos));
+                int read = in.read(buf, pos);
+                if (read <= 0) break;
+
+                int lineStart = 0;
+                for (int i = 0; i < read; i++) {
+                    byte b = arr[i];
+
+                    // Resolve CR carried from previous buffer
+                    if (pendingCR) {
+                        pendingCR = false;
+                        if (b == (byte) '\n') {
+                            emitCarry(LineEnding.CRLF);
+                            lineStart = i + 1;
+                            continue;
+                        }
+                        emitCarry(LineEnding.CR);
+                        lineStart = i;
+                    }
+
+                    if (b == (byte) '\n') {
+                        emitSlice(arr, lineStart, i, LineEnding.LF);
+                        lineStart = i + 1;
+                    } else if (b == (byte) '\r') {
+                        if (i + 1 < read) {
+                            if (arr[i + 1] == (byte) '\n') {
+                                emitSlice(arr, lineStart, i, LineEnding.CRLF);
+                                i++; // consume '\n'
+                            } else {
+                                emitSlice(arr, lineStart, i, LineEnding.CR);
+                            }
+                            lineStart = i + 1;
+                        } else {
+                            // CR at end of this buffer: decide in next buffer
+                            carry.write(arr, lineStart, i - lineStart);
+                            pendingCR = true;
+                            lineStart = i + 1;
+                        }
+                    }
+                }
+                if (lineStart < read) {
+                    carry.write(arr, lineStart, read - lineStart);
+                }
+                pos += read;
+            }
+
+            if (pendingCR) {
+                emitCarry(LineEnding.CR);
+            } else if (carry.size() > 0) {
+                emitCarry(LineEnding.NONE);
+            }
+
+            for (int p = 0; p < buffers.length; p++) {
+                flush(p);
+            }
+        }
+
+        private void emitSlice(byte[] arr, int from, int to, LineEnding ending) throws IOException {
+            if (carry.size() > 0) {
+                carry.write(arr, from, to - from);
+                emitCarry(ending);
+            } else {
+                route(arr, from, to - from, ending);
+            }
+        }
+
+        private void emitCarry(LineEnding ending) throws IOException {
+            byte[] line = carry.toByteArray();
+            carry.reset();
+            route(line, 0, line.length, ending);
+        }
+
+        private void route(byte[] bytes, int off, int len, LineEnding ending) throws IOException {
+            int p = partitionOf(new String(bytes, off, len, charset));
+            if (ending == LineEnding.NONE) {
+                // lines of other ranges may still be appended to the same part: keep it for the end
+                tail.set(new Tail(p, Arrays.copyOfRange(bytes, off, off + len)));
+                return;
+            }
+            ByteArrayOutputStream out = buffers[p];
+            if (out == null) {
+                out = new ByteArrayOutputStream(Math.min(flushBytes, 8 * 1024));
+                buffers[p] = out;
+            }
+            out.write(bytes, off, len);
+            appendEnding(out, ending);
+            if (out.size() >= flushBytes) {
+                flush(p);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private int partitionOf(String line) {
+            int h = keySpec.hash(line);
+            h ^= (h >>> 16); // spread high bits, like HashMap
+            return Math.floorMod(h, buffers.length);
+        }
+
+        private void flush(int p) throws IOException {
+            ByteArrayOutputStream out = buffers[p];
+            if (out == null || out.size() == 0) return;
+            FileChannel ch = outs[p];
+            // the whole buffer is appended atomically, so lines of different tasks never interleave
+            synchronized (ch) {
+                out.writeTo(Channels.newOutputStream(ch));
+            }
+            out.reset();
+        }
+    }
+}
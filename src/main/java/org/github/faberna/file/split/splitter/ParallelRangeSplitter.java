@@ -2,16 +2,22 @@ package org.github.faberna.file.split.splitter;
 
 import org.github.faberna.file.split.config.IOConfig;
 import org.github.faberna.file.split.plan.SplitPlan;
+import org.github.faberna.file.split.model.FixedLengthSeparator;
+import org.github.faberna.file.split.model.LengthPrefixedSeparator;
 import org.github.faberna.file.split.model.LineEnding;
 import org.github.faberna.file.split.model.Range;
+import org.github.faberna.file.split.model.Separator;
 import org.github.faberna.file.split.sorter.InMemorySortingPartWriter;
+import org.github.faberna.file.split.util.DirectBufferPool;
+import org.github.faberna.file.split.util.LineBuffer;
 import org.github.faberna.file.split.sorter.PartWriter;
 import org.github.faberna.file.split.sorter.PartWriterFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
@@ -77,6 +83,16 @@ public final class ParallelRangeSplitter {
 
 
     public void execute(SplitPlan plan, IOConfig io, PartWriterFactory factory) throws IOException {
+        execute(plan, io, factory, null);
+    }
+
+    /**
+     * Same as {@link #execute(SplitPlan, IOConfig, PartWriterFactory)} for the records cut by {@code separator}:
+     * a {@link FixedLengthSeparator} hands each range to the writers as blocks of the record length, a
+     * {@link LengthPrefixedSeparator} as payloads (the ranges of the plan must start on a record boundary),
+     * any other separator as lines (LF/CRLF/CR).
+     */
+    public void execute(SplitPlan plan, IOConfig io, PartWriterFactory factory, Separator separator) throws IOException {
         log.info("Starting parallel splitter");
         if (plan == null) throw new IllegalArgumentException("plan is required");
         if (io == null) io = IOConfig.defaults();
@@ -106,10 +122,26 @@ public final class ParallelRangeSplitter {
                 futures.add(pool.submit(() -> {
                     PartWriter writer = factory.create();
                     if (writer == null) throw new IllegalStateException("PartWriterFactory returned null writer");
-                    InMemorySortingPartWriter inMemorySortingPartWriter = (InMemorySortingPartWriter) writer;
                     try {
-                        processRangeAsLines(in, r.startInclusive(), r.endExclusive(), copyBufferBytes, inMemorySortingPartWriter.getCharset(), writer);
-                        writer.endPart(out);
+                        if (separator instanceof FixedLengthSeparator fixed) {
+                            processRangeAsRecords(in, r.startInclusive(), r.endExclusive(), copyBufferBytes,
+                                    fixed.recordLength(), writer.getCharset(), writer);
+                        } else if (separator instanceof LengthPrefixedSeparator framed) {
+                            processRangeAsFramedRecords(in, r.startInclusive(), r.endExclusive(), copyBufferBytes,
+                                    framed, writer.getCharset(), writer);
+                        } else {
+                            processRangeAsLines(in, r.startInclusive(), r.endExclusive(), copyBufferBytes, writer.getCharset(), writer);
+                        }
+                        if (writer instanceof InMemorySortingPartWriter sorting && sorting.isPresorted()) {
+                            // the range is already in order: copy its bytes instead of re-encoding the lines
+                            long end = r.endExclusive() - sorting.droppedTailBytes();
+                            sorting.discard();
+                            try (FileChannel outCh = FileChannel.open(out, WRITE, CREATE, TRUNCATE_EXISTING)) {
+                                copyRange(in, outCh, r.startInclusive(), end);
+                            }
+                        } else {
+                            writer.endPart(out);
+                        }
                     } catch (IOException e) {
                         throw new CompletionException(e);
                     }
@@ -120,6 +152,42 @@ public final class ParallelRangeSplitter {
         log.info("Finished parallel splitter");
     }
 
+    /**
+     * Rewrite every file through its own PartWriter, in parallel (e.g. sort each hash partition in place).
+     * Each file is read fully before {@link PartWriter#endPart(Path)} is called with the same path,
+     * so writers that replace the target atomically (tmp + move) can safely rewrite their own input.
+     */
+    public void executeInPlace(List<Path> files, IOConfig io, PartWriterFactory factory) throws IOException {
+        log.info("Starting in-place parallel rewrite");
+        if (files == null) throw new IllegalArgumentException("files is required");
+        if (io == null) io = IOConfig.defaults();
+        if (factory == null) throw new IllegalArgumentException("factory is required");
+        if (files.isEmpty()) return;
+        final int copyBufferBytes = io.copyBufferBytes();
+
+        ExecutorService pool = Executors.newFixedThreadPool(getThreads(io, files));
+        List<Future<?>> futures = new ArrayList<>(files.size());
+
+        for (Path file : files) {
+            futures.add(pool.submit(() -> {
+                PartWriter writer = factory.create();
+                if (writer == null) throw new IllegalStateException("PartWriterFactory returned null writer");
+                try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                    processRangeAsLines(in, 0, in.size(), copyBufferBytes, writer.getCharset(), writer);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+                try {
+                    writer.endPart(file);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }));
+        }
+        doShutdown(pool, futures);
+        log.info("Finished in-place parallel rewrite");
+    }
+
     /** Determine the number of threads to use based on IOConfig and number of parts.
      * If io.parallelism() is set to a positive value, use that.
      * Otherwise, use the minimum of available processors and number of parts to avoid oversubscription.
@@ -127,14 +195,14 @@ public final class ParallelRangeSplitter {
      * @param parts
      * @return
      **/
-    private static int getThreads(IOConfig io, List<Range> parts) {
+    static int getThreads(IOConfig io, List<?> parts) {
         return io.parallelism() > 0
                 ? io.parallelism()
                 : Math.min(Runtime.getRuntime().availableProcessors(), parts.size());
     }
 
 
-    private void doShutdown(ExecutorService pool,List<Future<?>> futures ) throws IOException {
+    static void doShutdown(ExecutorService pool,List<Future<?>> futures ) throws IOException {
         pool.shutdown();
 
         for (Future<?> f : futures) {
@@ -170,8 +238,24 @@ public final class ParallelRangeSplitter {
         if (start < 0 || end < start) throw new IllegalArgumentException("Invalid range: [" + start + "," + end + ")");
         if (bufferSize <= 0) throw new IllegalArgumentException("bufferSize must be > 0");
 
-        ByteBuffer buf = ByteBuffer.allocateDirect(bufferSize);
-        ByteArrayOutputStream lineBuf = new ByteArrayOutputStream(1024);
+        ByteBuffer buf = DirectBufferPool.shared().acquire(bufferSize);
+        try {
+            processRangeAsLines(in, start, end, bufferSize, charset, writer, buf);
+        } finally {
+            DirectBufferPool.shared().release(buf);
+        }
+    }
+
+    private static void processRangeAsLines(
+            FileChannel in,
+            long start,
+            long end,
+            int bufferSize,
+            Charset charset,
+            PartWriter writer,
+            ByteBuffer buf
+    ) throws IOException {
+        LineBuffer lineBuf = new LineBuffer(1024);
 
         boolean pendingCR = false;
         long pos = start;
@@ -241,6 +325,93 @@ public final class ParallelRangeSplitter {
     }
 
 
+    /**
+     * Reads bytes in the range [start..end) and emits one record every {@code recordLength} bytes (the last one may
+     * be shorter), straight from the read buffer: boundaries are counted, no byte is scanned.
+     */
+    private static void processRangeAsRecords(
+            FileChannel in,
+            long start,
+            long end,
+            int bufferSize,
+            int recordLength,
+            Charset charset,
+            PartWriter writer
+    ) throws IOException {
+        if (start < 0 || end < start) throw new IllegalArgumentException("Invalid range: [" + start + "," + end + ")");
+        if (bufferSize <= 0) throw new IllegalArgumentException("bufferSize must be > 0");
+
+        // whole records per read, so that no record spans two buffers
+        int chunk = Math.max(1, bufferSize / recordLength) * recordLength;
+        ByteBuffer buf = ByteBuffer.allocate(chunk);
+        byte[] arr = buf.array();
+        long pos = start;
+        while (pos < end) {
+            buf.clear();
+            buf.limit((int) Math.min(chunk, end - pos));
+            while (buf.hasRemaining()) {
+                if (in.read(buf, pos + buf.position()) <= 0) break;
+            }
+            int read = buf.position();
+            if (read == 0) break;
+            buf.flip();
+
+            for (int off = 0; off < read; off += recordLength) {
+                writer.acceptRecord(arr, off, Math.min(recordLength, read - off), charset, LineEnding.NONE);
+            }
+            pos += read;
+        }
+    }
+
+    /** Length-prefixed records of a range, handed to the writer as payloads: only the prefixes are decoded. */
+    private static void processRangeAsFramedRecords(
+            FileChannel in,
+            long start,
+            long end,
+            int bufferSize,
+            LengthPrefixedSeparator framing,
+            Charset charset,
+            PartWriter writer
+    ) throws IOException {
+        if (start < 0 || end < start) throw new IllegalArgumentException("Invalid range: [" + start + "," + end + ")");
+        if (bufferSize <= 0) throw new IllegalArgumentException("bufferSize must be > 0");
+
+        LengthPrefixedSeparator.Reader records =
+                framing.reader(new BufferedInputStream(new RangeInputStream(in, start, end), bufferSize));
+        byte[] payload;
+        while ((payload = records.next()) != null) {
+            writer.acceptRecord(payload, 0, payload.length, charset, LineEnding.NONE);
+        }
+    }
+
+    /** Positional reads of [pos, end): the channel is shared by the range tasks. */
+    private static final class RangeInputStream extends InputStream {
+        private final FileChannel ch;
+        private final long end;
+        private long pos;
+
+        private RangeInputStream(FileChannel ch, long start, long end) {
+            this.ch = ch;
+            this.pos = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (pos >= end) return -1;
+            int n = ch.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - pos)), pos);
+            if (n > 0) pos += n;
+            return n;
+        }
+    }
+
     /**
      * Copy the specified byte range from the input channel to the output channel using transferTo. an API NIO provides for efficient file copying ( zero-copy )
      * @param in
@@ -1,12 +1,18 @@
 package org.github.faberna.file.split.splitter;
 
 import org.github.faberna.file.split.config.IOConfig;
+import org.github.faberna.file.split.model.FixedLengthSeparator;
+import org.github.faberna.file.split.model.LengthPrefixedSeparator;
 import org.github.faberna.file.split.model.LineEnding;
 import org.github.faberna.file.split.model.NewlineSeparator;
 import org.github.faberna.file.split.model.Separator;
+import org.github.faberna.file.split.model.SeparatorScanner;
 import org.github.faberna.file.split.model.SingleByteSeparator;
 import org.github.faberna.file.split.sorter.PartWriter;
+import org.github.faberna.file.split.util.DirectBufferPool;
+import org.github.faberna.file.split.util.LineBuffer;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
@@ -31,7 +37,7 @@ public final class SequentialStreamingSplitter {
             throws IOException {
         if (maxBytesPerPart <= 0) throw new IllegalArgumentException("maxBytesPerPart must be > 0");
         if (partWriter == null) throw new IllegalArgumentException("partWriter is required");
-        splitInternalWithWriter(input, outputDir, maxBytesPerPart, separator, io, partWriter);
+        splitInternalWithWriter(input, outputDir, maxBytesPerPart, Long.MAX_VALUE, separator, io, partWriter);
     }
     /** 1-pass split by number of parts (record-safe) + contextual PartWriter (split+sort before writing). */
     public void splitByParts(Path input, Path outputDir, int parts, Separator separator, IOConfig io, PartWriter partWriter)
@@ -40,40 +46,59 @@ public final class SequentialStreamingSplitter {
         if (partWriter == null) throw new IllegalArgumentException("partWriter is required");
         long fileSize = Files.size(input);
         long target = Math.max(1, (fileSize + parts - 1L) / parts); // ceil
-        splitInternalWithWriter(input, outputDir, target, separator, io, partWriter);
+        splitInternalWithWriter(input, outputDir, target, Long.MAX_VALUE, separator, io, partWriter);
+    }
+    /** 1-pass split in parts of exactly {@code recordsPerPart} lines (last part may hold fewer) + contextual PartWriter. */
+    public void splitByRecords(Path input, Path outputDir, long recordsPerPart, Separator separator, IOConfig io, PartWriter partWriter)
+            throws IOException {
+        if (recordsPerPart <= 0) throw new IllegalArgumentException("recordsPerPart must be > 0");
+        if (partWriter == null) throw new IllegalArgumentException("partWriter is required");
+        splitInternalWithWriter(input, outputDir, Long.MAX_VALUE, recordsPerPart, separator, io, partWriter);
     }
     /**
      * Internal split method that emits lines (with detected endings) to a PartWriter.
-     * Preserves CR/LF/CRLF/NONE endings and splits at line boundaries.
+     * Preserves CR/LF/CRLF/NONE endings and splits at line boundaries,
+     * once the part reaches {@code targetBytes} or holds {@code targetRecords} lines, whichever comes first.
      */
-    private void splitInternalWithWriter(Path input, Path outputDir, long targetBytes, Separator separator, IOConfig io, PartWriter partWriter)
+    private void splitInternalWithWriter(Path input, Path outputDir, long targetBytes, long targetRecords, Separator separator, IOConfig io, PartWriter partWriter)
             throws IOException {
 
         if (separator == null) throw new IllegalArgumentException("separator is required");
+        if (separator instanceof FixedLengthSeparator fixed) {
+            splitFixedLengthWithWriter(input, outputDir, Math.min(targetRecords, fixed.recordsFor(targetBytes)),
+                    fixed.recordLength(), io == null ? IOConfig.defaults() : io, partWriter);
+            return;
+        }
+        if (separator instanceof LengthPrefixedSeparator framed) {
+            splitFramedWithWriter(input, outputDir, targetBytes, targetRecords, framed,
+                    io == null ? IOConfig.defaults() : io, partWriter);
+            return;
+        }
         if (!(separator instanceof NewlineSeparator)) {
-            throw new IllegalArgumentException("PartWriter mode currently supports only NewlineSeparator");
+            throw new IllegalArgumentException(
+                    "PartWriter mode supports only NewlineSeparator, FixedLengthSeparator and LengthPrefixedSeparator");
         }
         if (io == null) io = IOConfig.defaults();
 
         Files.createDirectories(outputDir);
 
-        // NOTE: We decode lines as UTF-8 because PartWriter accepts String. Ensure the writer uses the same charset.
-        final java.nio.charset.Charset decodeCharset = java.nio.charset.StandardCharsets.UTF_8;
+        // Lines are handed over in the charset of the writer: raw bytes it keeps as they are, not re-decoded as UTF-8
+        final java.nio.charset.Charset decodeCharset = partWriter.getCharset();
         int bufSize = Math.max(io.copyBufferBytes(), 256 * 1024);
 
         try (FileChannel in = FileChannel.open(input, READ)) {
             long fileSize = in.size();
             if (fileSize == 0) return;
 
-            //ByteBuffer buf = ByteBuffer.allocateDirect(io.copyBufferBytes());
             ByteBuffer buf = ByteBuffer.allocate(bufSize); // heap buffer -> enables fast bulk appends
             int partIndex = 1;
             long partBytes = 0;
+            long partRecords = 0;
             boolean splitArmed = false;
             boolean wroteAnyLineInPart = false;
 
             // Accumulate bytes of the current line across buffers
-            java.io.ByteArrayOutputStream lineBuf = new java.io.ByteArrayOutputStream(1024);
+            LineBuffer lineBuf = new LineBuffer(1024);
 
             // Only needed for CRLF spanning buffers
             boolean pendingCR = false;
@@ -99,6 +124,7 @@ public final class SequentialStreamingSplitter {
                             long emitted = emitLineBytes(partWriter, lineBuf, LineEnding.CRLF, decodeCharset);
                             wroteAnyLineInPart = true;
                             partBytes += emitted;
+                            partRecords++;
                             pendingCR = false;
                             lineStart = i + 1; // skip '\n'
                             continue;
@@ -106,12 +132,22 @@ public final class SequentialStreamingSplitter {
                             long emitted = emitLineBytes(partWriter, lineBuf, LineEnding.CR, decodeCharset);
                             wroteAnyLineInPart = true;
                             partBytes += emitted;
+                            partRecords++;
                             pendingCR = false;
                             // re-process current byte normally
                             //i--;
                             //continue;
                             // do NOT consume current byte; it belongs to the next line
                             lineStart = i;
+                            // the current byte may end another line: honor an exact record limit first
+                            if (partRecords >= targetRecords) {
+                                partWriter.endPart(partPath(outputDir, io, partIndex));
+                                partIndex++;
+                                partBytes = 0;
+                                partRecords = 0;
+                                splitArmed = false;
+                                wroteAnyLineInPart = false;
+                            }
                             // continue normal processing below (fall-through)
                         }
                     }
@@ -125,6 +161,7 @@ public final class SequentialStreamingSplitter {
                         long emitted = emitLineBytes(partWriter, lineBuf, LineEnding.LF, decodeCharset);
                         wroteAnyLineInPart = true;
                         partBytes += emitted;
+                        partRecords++;
                         lineStart = i + 1;
 
                     } else if (b == (byte) '\r') {
@@ -141,12 +178,14 @@ public final class SequentialStreamingSplitter {
                                 long emitted = emitLineBytes(partWriter, lineBuf, LineEnding.CRLF, decodeCharset);
                                 wroteAnyLineInPart = true;
                                 partBytes += emitted;
+                                partRecords++;
                                 i++; // consume '\n'
                                 lineStart = i + 1;
                             } else {
                                 long emitted = emitLineBytes(partWriter, lineBuf, LineEnding.CR, decodeCharset);
                                 wroteAnyLineInPart = true;
                                 partBytes += emitted;
+                                partRecords++;
                             }
                         } else {
                             // CR at end of buffer -> decide on next buffer
@@ -158,7 +197,7 @@ public final class SequentialStreamingSplitter {
                     }
 
                     // Arm split once we hit the target; split happens ONLY after a line ending
-                    if (!splitArmed && partBytes >= targetBytes) {
+                    if (!splitArmed && (partBytes >= targetBytes || partRecords >= targetRecords)) {
                         splitArmed = true;
                     }
 
@@ -166,6 +205,7 @@ public final class SequentialStreamingSplitter {
                         partWriter.endPart(partPath(outputDir, io, partIndex));
                         partIndex++;
                         partBytes = 0;
+                        partRecords = 0;
                         splitArmed = false;
                         wroteAnyLineInPart = false;
                     }
@@ -200,6 +240,78 @@ public final class SequentialStreamingSplitter {
 
 
 
+    /**
+     * Fixed-length records to a PartWriter: each read holds whole records, handed over as blocks of
+     * {@code recordLength} bytes (the last one may be shorter), {@code recordsPerPart} per part.
+     */
+    private void splitFixedLengthWithWriter(Path input, Path outputDir, long recordsPerPart, int recordLength, IOConfig io,
+                                            PartWriter partWriter) throws IOException {
+        Files.createDirectories(outputDir);
+        final java.nio.charset.Charset decodeCharset = partWriter.getCharset();
+        int chunk = Math.max(1, Math.max(io.copyBufferBytes(), 256 * 1024) / recordLength) * recordLength;
+
+        try (FileChannel in = FileChannel.open(input, READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(chunk);
+            byte[] arr = buf.array();
+            int partIndex = 1;
+            long partRecords = 0;
+            while (true) {
+                buf.clear();
+                // fill the buffer: only the last read of the file may end inside a record
+                int n;
+                do {
+                    n = in.read(buf);
+                } while (n > 0 && buf.hasRemaining());
+                int read = buf.position();
+                if (read == 0) break;
+                buf.flip();
+
+                for (int off = 0; off < read; off += recordLength) {
+                    partWriter.acceptRecord(arr, off, Math.min(recordLength, read - off), decodeCharset, LineEnding.NONE);
+                    if (++partRecords == recordsPerPart) {
+                        partWriter.endPart(partPath(outputDir, io, partIndex++));
+                        partRecords = 0;
+                    }
+                }
+                if (read < chunk) break;
+            }
+            if (partRecords > 0) {
+                partWriter.endPart(partPath(outputDir, io, partIndex));
+            }
+        }
+    }
+
+    /**
+     * Length-prefixed records to a PartWriter, as payloads: a part ends once its framed bytes reach
+     * {@code targetBytes} or it holds {@code targetRecords} records.
+     */
+    private void splitFramedWithWriter(Path input, Path outputDir, long targetBytes, long targetRecords,
+                                       LengthPrefixedSeparator framing, IOConfig io, PartWriter partWriter)
+            throws IOException {
+        Files.createDirectories(outputDir);
+        final java.nio.charset.Charset decodeCharset = partWriter.getCharset();
+        int bufSize = Math.max(io.copyBufferBytes(), 256 * 1024);
+
+        try (BufferedInputStream in = new BufferedInputStream(Files.newInputStream(input), bufSize)) {
+            LengthPrefixedSeparator.Reader records = framing.reader(in);
+            int partIndex = 1;
+            long partStart = 0;
+            long partRecords = 0;
+            byte[] payload;
+            while ((payload = records.next()) != null) {
+                partWriter.acceptRecord(payload, 0, payload.length, decodeCharset, LineEnding.NONE);
+                if (++partRecords >= targetRecords || records.position() - partStart >= targetBytes) {
+                    partWriter.endPart(partPath(outputDir, io, partIndex++));
+                    partStart = records.position();
+                    partRecords = 0;
+                }
+            }
+            if (partRecords > 0) {
+                partWriter.endPart(partPath(outputDir, io, partIndex));
+            }
+        }
+    }
+
     private static Path partPath(Path outputDir, IOConfig io, int idx) {
         return outputDir.resolve(String.format(Locale.ROOT, "%s%04d%s", io.filePrefix(), idx, io.fileExtension()));
     }
@@ -213,10 +325,93 @@ public final class SequentialStreamingSplitter {
         splitInternal(input, outputDir, target, separator, io);
     }
 
+    /**
+     * 1-pass split in parts of exactly {@code recordsPerPart} records (the last part may hold fewer).
+     * Bytes are copied unchanged; a trailing record without separator belongs to the last part.
+     */
+    public void splitByRecords(Path input, Path outputDir, long recordsPerPart, Separator separator, IOConfig io)
+            throws IOException {
+        if (recordsPerPart <= 0) throw new IllegalArgumentException("recordsPerPart must be > 0");
+        splitByScannedRecords(input, outputDir, Long.MAX_VALUE, recordsPerPart, separator, io);
+    }
+
+    /**
+     * Copies whole records found by a {@link SeparatorScanner}: a part ends once it holds {@code recordsPerPart}
+     * records or reaches {@code targetBytes}, whichever comes first.
+     */
+    private void splitByScannedRecords(Path input, Path outputDir, long targetBytes, long recordsPerPart,
+                                       Separator separator, IOConfig io) throws IOException {
+        if (separator == null) throw new IllegalArgumentException("separator is required");
+        if (io == null) io = IOConfig.defaults();
+        SeparatorScanner scanner = SeparatorScanner.of(separator);
+        Files.createDirectories(outputDir);
+
+        try (FileChannel in = FileChannel.open(input, READ)) {
+            if (in.size() == 0) return;
+
+            ByteBuffer buf = DirectBufferPool.shared().acquire(io.copyBufferBytes());
+            int partIndex = 0;
+            long partRecords = 0;
+            // offset of the part start, and of the buffer start
+            long partStart = 0;
+            long bufStart = 0;
+            // opened lazily, so that a file ending exactly on a part boundary does not produce an empty part
+            FileChannel out = null;
+
+            try {
+                while (true) {
+                    buf.clear();
+                    int read = in.read(buf);
+                    if (read <= 0) break;
+
+                    // bytes [chunkStart..end) of consecutive records of the same part are written in one call
+                    int chunkStart = 0;
+                    int end;
+                    int scanFrom = 0;
+                    while ((end = scanner.nextEnd(buf, scanFrom, read)) >= 0) {
+                        scanFrom = end;
+                        if (++partRecords == recordsPerPart || bufStart + end - partStart >= targetBytes) {
+                            if (end > chunkStart) {
+                                if (out == null) out = openPartChannel(outputDir, io, ++partIndex);
+                                writeSlice(out, buf, chunkStart, end - chunkStart);
+                            }
+                            if (out != null) out.close();
+                            out = null;
+                            partRecords = 0;
+                            partStart = bufStart + end;
+                            chunkStart = end;
+                        }
+                    }
+
+                    // records of the current part and the tail of an incomplete record
+                    if (chunkStart < read) {
+                        if (out == null) out = openPartChannel(outputDir, io, ++partIndex);
+                        writeSlice(out, buf, chunkStart, read - chunkStart);
+                    }
+                    bufStart += read;
+                }
+                // A trailing CR was already written with the tail; at EOF it simply ends the last record.
+            } finally {
+                DirectBufferPool.shared().release(buf);
+                if (out != null) out.close();
+            }
+        }
+    }
+
     private void splitInternal(Path input, Path outputDir, long targetBytes, Separator separator, IOConfig io)
             throws IOException {
 
         if (separator == null) throw new IllegalArgumentException("separator is required");
+        if (separator instanceof FixedLengthSeparator fixed) {
+            // parts of whole records: the byte target is a record count
+            splitByRecords(input, outputDir, fixed.recordsFor(targetBytes), separator, io);
+            return;
+        }
+        if (separator instanceof LengthPrefixedSeparator) {
+            // the scanner hops over the payloads
+            splitByScannedRecords(input, outputDir, targetBytes, Long.MAX_VALUE, separator, io);
+            return;
+        }
         if (io == null) io = IOConfig.defaults();
         boolean isNewlineSep = separator instanceof NewlineSeparator;
         boolean isSingleByteSep = separator instanceof SingleByteSeparator;
@@ -232,11 +427,10 @@ public final class SequentialStreamingSplitter {
             long fileSize = in.size();
             if (fileSize == 0) return;
 
-            ByteBuffer buf = ByteBuffer.allocateDirect(io.copyBufferBytes());
-
             int partIndex = 1;
             //FileChannel out = openPart(outputDir, io, partIndex);
             java.io.BufferedOutputStream out = openPart(outputDir, io, partIndex);
+            ByteBuffer buf = DirectBufferPool.shared().acquire(io.copyBufferBytes());
 
             long partBytes = 0;
             boolean splitArmed = false;
@@ -343,6 +537,7 @@ public final class SequentialStreamingSplitter {
                 // If file ends with pendingCR=true, we already wrote '\r' in the tail.
                 // It acts as a separator at EOF; no special action needed.
             } finally {
+                DirectBufferPool.shared().release(buf);
                 out.close();
             }
         }
@@ -364,6 +559,10 @@ public final class SequentialStreamingSplitter {
         return FileChannel.open(out, WRITE, CREATE, TRUNCATE_EXISTING);
     }*/
 
+    private static FileChannel openPartChannel(Path outputDir, IOConfig io, int idx) throws IOException {
+        return FileChannel.open(partPath(outputDir, io, idx), WRITE, CREATE, TRUNCATE_EXISTING);
+    }
+
     private static java.io.BufferedOutputStream openPart(Path outputDir, IOConfig io, int idx) throws IOException {
         Path out = outputDir.resolve(String.format(Locale.ROOT, "%s%04d%s", io.filePrefix(), idx, io.fileExtension()));
         return new java.io.BufferedOutputStream(
@@ -0,0 +1,237 @@
+package org.github.faberna.file.split.splitter;
+
+import org.github.faberna.file.split.config.IOConfig;
+import org.github.faberna.file.split.model.LineEnding;
+import org.github.faberna.file.split.model.NewlineSeparator;
+import org.github.faberna.file.split.model.Separator;
+import org.github.faberna.file.split.model.SeparatorScanner;
+import org.github.faberna.file.split.sorter.PartWriter;
+import org.github.faberna.file.split.sorter.PartWriterFactory;
+import org.github.faberna.file.split.util.MemoryBudget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cuts a non-seekable byte stream (pipe, socket, decompressor, stdin) into runs, as the bytes arrive.
+ * <p>
+ * There is no plan: the input size is unknown and cannot be scanned twice. Lines are handed to a PartWriter
+ * until the run reaches its share of the memory budget, then the writer is finalized ({@code endPart}, e.g. sort + write)
+ * on a worker thread while the caller keeps reading into a fresh writer. At most {@code sorters} runs are in flight,
+ * so the memory held is bounded by the budget: {@code (sorters + 1)} runs of {@code memoryBudgetBytes / (sorters + 1)}.
+ * <p>
+ * The produced run files are what {@code MergeEngine.kWayMerge} expects when the writers sort them.
+ */
+public final class StreamingRunSplitter {
+    private static final Logger log = LoggerFactory.getLogger(StreamingRunSplitter.class);
+
+    // consecutive reads of 0 bytes tolerated before failing: a blocking channel returns at least one byte or EOF
+    static final int MAX_EMPTY_READS = 1024;
+
+    /**
+     * Reads {@code in} until EOF and writes one run per memory-budget share.
+     * The channel is not closed.
+     * @param in source of the records, read sequentially; must be blocking (a channel that keeps returning 0 bytes
+     *           fails after {@link #MAX_EMPTY_READS} reads instead of being polled forever)
+     * @param outputDir where run files are created (named with the IOConfig prefix/extension)
+     * @param memoryBudgetBytes heap budget for all the buffered runs, reading and in-flight ones together
+     * @param separator only NewlineSeparator is supported (PartWriter receives lines)
+     * @param io read buffer size, number of concurrent sorters (parallelism, 0 = CPU count) and run naming
+     * @param factory creates one writer per run
+     * @return the run files, in input order (empty if the stream is empty)
+     * @throws IOException
+     */
+    public List<Path> execute(ReadableByteChannel in,
+                              Path outputDir,
+                              long memoryBudgetBytes,
+                              Separator separator,
+                              IOConfig io,
+                              PartWriterFactory factory) throws IOException {
+        log.info("Starting streaming run splitter");
+        if (in == null) throw new IllegalArgumentException("in is required");
+        if (outputDir == null) throw new IllegalArgumentException("outputDir is required");
+        if (memoryBudgetBytes <= 0) throw new IllegalArgumentException("memoryBudgetBytes must be > 0");
+        if (!(separator instanceof NewlineSeparator)) {
+            throw new IllegalArgumentException("PartWriter mode currently supports only NewlineSeparator");
+        }
+        if (factory == null) throw new IllegalArgumentException("factory is required");
+        if (io == null) io = IOConfig.defaults();
+
+        Files.createDirectories(outputDir);
+
+        int sorters = io.parallelism() > 0 ? io.parallelism() : Runtime.getRuntime().availableProcessors();
+        long runBytes = Math.max(1, memoryBudgetBytes / (sorters + 1));
+
+        ExecutorService pool = Executors.newFixedThreadPool(sorters);
+        RunCutter cutter = new RunCutter(outputDir, io, factory, runBytes, sorters, pool);
+        try {
+            // heap buffer: lines are emitted as slices of its array
+            cutter.read(in, ByteBuffer.allocate(io.copyBufferBytes()), SeparatorScanner.of(separator));
+        } catch (IOException | RuntimeException e) {
+            pool.shutdownNow();
+            throw e;
+        }
+        ParallelRangeSplitter.doShutdown(pool, cutter.futures);
+        log.info("Finished streaming run splitter: {} runs", cutter.runs.size());
+        return cutter.runs;
+    }
+
+    /**
+     * Reading side: splits lines and rotates writers. Runs on the caller thread only.
+     */
+    private static final class RunCutter {
+        private final Path outputDir;
+        private final IOConfig io;
+        private final PartWriterFactory factory;
+        private final long runBytes;
+        private final Semaphore inFlight;
+        private final ExecutorService pool;
+        private final AtomicBoolean failed = new AtomicBoolean();
+
+        private final List<Path> runs = new ArrayList<>();
+        private final List<Future<?>> futures = new ArrayList<>();
+
+        // Bytes of a line spanning more than one read buffer
+        private final ByteArrayOutputStream carry = new ByteArrayOutputStream(1024);
+
+        private PartWriter writer;
+        private Charset charset;
+        private long bufferedBytes;
+        private boolean bufferedAny;
+
+        RunCutter(Path outputDir, IOConfig io, PartWriterFactory factory, long runBytes, int sorters, ExecutorService pool) {
+            this.outputDir = outputDir;
+            this.io = io;
+            this.factory = factory;
+            this.runBytes = runBytes;
+            this.inFlight = new Semaphore(sorters);
+            this.pool = pool;
+        }
+
+        void read(ReadableByteChannel in, ByteBuffer buf, SeparatorScanner scanner) throws IOException {
+            newWriter();
+            byte[] arr = buf.array();
+            int emptyReads = 0;
+
+            while (true) {
+                buf.clear();
+                int read = in.read(buf);
+                if (read < 0) break;
+                if (read == 0) {
+                    if (++emptyReads >= MAX_EMPTY_READS) {
+                        throw new IOException("Channel returned no bytes " + emptyReads + " times in a row: is it non-blocking?");
+                    }
+                    Thread.onSpinWait();
+                    continue;
+                }
+                emptyReads = 0;
+
+                int from = 0;
+                int end;
+                while ((end = scanner.nextEnd(buf, from, read)) >= 0) {
+                    if (carry.size() > 0) {
+                        carry.write(arr, from, end - from);
+                        emitCarry();
+                    } else {
+                        emit(arr, from, end - from);
+                    }
+                    from = end;
+                }
+                if (from < read) {
+                    carry.write(arr, from, read - from);
+                }
+            }
+
+            // EOF: a trailing CR ends with the carry, anything else is a last line without terminator
+            if (carry.size() > 0) emitCarry();
+            if (bufferedAny) submitRun();
+        }
+
+        private void emitCarry() throws IOException {
+            byte[] line = carry.toByteArray();
+            carry.reset();
+            emit(line, 0, line.length);
+        }
+
+        /** Emits one record given with its terminator bytes (if any). */
+        private void emit(byte[] bytes, int off, int len) throws IOException {
+            LineEnding ending = LineEnding.NONE;
+            if (len > 0 && bytes[off + len - 1] == (byte) '\n') {
+                boolean crlf = len > 1 && bytes[off + len - 2] == (byte) '\r';
+                ending = crlf ? LineEnding.CRLF : LineEnding.LF;
+            } else if (len > 0 && bytes[off + len - 1] == (byte) '\r') {
+                ending = LineEnding.CR;
+            }
+            int lineLen = len - switch (ending) {
+                case CRLF -> 2;
+                case CR, LF -> 1;
+                case NONE -> 0;
+            };
+
+            writer.acceptRecord(bytes, off, lineLen, charset, ending);
+            bufferedAny = true;
+            bufferedBytes += MemoryBudget.estimateLine(lineLen);
+            if (bufferedBytes >= runBytes) {
+                submitRun();
+                newWriter();
+            }
+        }
+
+        private void newWriter() {
+            writer = factory.create();
+            if (writer == null) throw new IllegalStateException("PartWriterFactory returned null writer");
+            charset = writer.getCharset();
+            bufferedBytes = 0;
+            bufferedAny = false;
+        }
+
+        /** Finalizes the current writer on a worker, waiting first if all the sorters are busy. */
+        private void submitRun() throws IOException {
+            if (failed.get()) {
+                // stop reading: rethrows the failure of the run that failed
+                ParallelRangeSplitter.doShutdown(pool, futures);
+            }
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while splitting", e);
+            }
+
+            PartWriter full = writer;
+            Path run = outputDir.resolve(
+                    String.format(Locale.ROOT, "%s%04d%s", io.filePrefix(), runs.size() + 1, io.fileExtension())
+            );
+            runs.add(run);
+            futures.add(pool.submit(() -> {
+                try {
+                    full.endPart(run);
+                } catch (IOException e) {
+                    failed.set(true);
+                    throw new CompletionException(e);
+                } catch (RuntimeException e) {
+                    failed.set(true);
+                    throw e;
+                } finally {
+                    inFlight.release();
+                }
+            }));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.github.faberna.file.split.util;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe pool of direct ByteBuffers shared by separator scans, planners and splitters.
+ * <p>
+ * Direct buffers are slow to allocate and their native memory is only released when the GC gets to them,
+ * so allocating one per boundary search (10k+ per plan) or per range wastes time and native memory.
+ * <p>
+ * Buffers are pooled by exact capacity (callers reuse a handful of configured sizes) in one pool shared by all
+ * threads and bounded by {@code maxPooledBytes}: the splitters run on short-lived executors, so a per-thread cache
+ * would die with its threads. A buffer not found in the pool is allocated (a miss); released buffers that do not fit
+ * the bound are dropped.
+ * <p>
+ * Heap buffers (and NIO reads into them) are never pooled: reading a FileChannel into a heap buffer makes the JDK
+ * use its own per-thread temporary direct buffer anyway, sized like the read and cached per thread without bound.
+ */
+public final class DirectBufferPool {
+
+    /** Default bound of the shared pool. */
+    public static final long DEFAULT_MAX_POOLED_BYTES = 64L * 1024 * 1024;
+
+    private static final DirectBufferPool SHARED = new DirectBufferPool(DEFAULT_MAX_POOLED_BYTES);
+
+    private final long maxPooledBytes;
+    private final ConcurrentHashMap<Integer, Queue<ByteBuffer>> pooled = new ConcurrentHashMap<>();
+    private final AtomicLong pooledBytes = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public DirectBufferPool(long maxPooledBytes) {
+        if (maxPooledBytes < 0) throw new IllegalArgumentException("maxPooledBytes must be >= 0");
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+    /** The pool used by scanners and splitters. */
+    public static DirectBufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns a cleared direct buffer of exactly {@code capacity} bytes.
+     * The buffer must be given back with {@link #release(ByteBuffer)} once, and not used afterwards.
+     */
+    public ByteBuffer acquire(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be > 0");
+
+        Queue<ByteBuffer> queue = pooled.get(capacity);
+        ByteBuffer b = queue == null ? null : queue.poll();
+        if (b != null) {
+            pooledBytes.addAndGet(-capacity);
+            hits.increment();
+            return b.clear();
+        }
+
+        misses.increment();
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    /** Gives a buffer obtained from {@link #acquire(int)} back to the pool. Null and heap buffers are ignored. */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) return;
+
+        int capacity = buffer.capacity();
+        if (pooledBytes.addAndGet(capacity) > maxPooledBytes) {
+            // over the bound: let the GC reclaim it
+            pooledBytes.addAndGet(-capacity);
+            return;
+        }
+        pooled.computeIfAbsent(capacity, c -> new ConcurrentLinkedQueue<>()).offer(buffer);
+    }
+
+    /** Number of acquisitions served by a pooled buffer. */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /** Number of acquisitions that had to allocate a new direct buffer. */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /** Bytes currently held by the pool. */
+    public long pooledBytes() {
+        return pooledBytes.get();
+    }
+}
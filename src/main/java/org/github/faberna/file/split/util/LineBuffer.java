@@ -0,0 +1,19 @@
+package org.github.faberna.file.split.util;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Line accumulator of the splitters: a ByteArrayOutputStream whose bytes can be handed over without the copy
+ * of {@link #toByteArray()}. The array is only valid until the next write or {@link #reset()}.
+ */
+public final class LineBuffer extends ByteArrayOutputStream {
+
+    public LineBuffer(int size) {
+        super(size);
+    }
+
+    /** The backing array: the line is {@code array()[0, size())}. */
+    public byte[] array() {
+        return buf;
+    }
+}
@@ -0,0 +1,60 @@
+package org.github.faberna.file.split.util;
+
+/**
+ * Heap budget shared by the stages that buffer records (readers, sorters, writers).
+ * <p>
+ * Sizes are estimates: a buffered line costs its bytes plus {@link #RECORD_OVERHEAD_BYTES}
+ * (packed reference in the sort buffer, sort index and its merge scratch, page slack).
+ * A single reservation larger than the whole budget is granted when nothing else is reserved,
+ * so an oversized part slows the pipeline down instead of deadlocking it.
+ */
+public final class MemoryBudget {
+
+    /** Estimated heap cost of a buffered line on top of its bytes. */
+    public static final int RECORD_OVERHEAD_BYTES = 24;
+
+    private final long limitBytes;
+    private long reservedBytes;
+
+    public MemoryBudget(long limitBytes) {
+        if (limitBytes <= 0) throw new IllegalArgumentException("limitBytes must be > 0");
+        this.limitBytes = limitBytes;
+    }
+
+    /** Estimated heap cost of a buffered line of {@code lineBytes} bytes. */
+    public static long estimateLine(int lineBytes) {
+        return (long) lineBytes + RECORD_OVERHEAD_BYTES;
+    }
+
+    /** Blocks until {@code bytes} fit in the budget, then reserves them. */
+    public synchronized void reserve(long bytes) throws InterruptedException {
+        if (bytes < 0) throw new IllegalArgumentException("bytes must be >= 0");
+        while (reservedBytes > 0 && reservedBytes + bytes > limitBytes) {
+            wait();
+        }
+        reservedBytes += bytes;
+    }
+
+    /** Reserves {@code bytes} only if they fit in the budget right now. */
+    public synchronized boolean tryReserve(long bytes) {
+        if (bytes < 0) throw new IllegalArgumentException("bytes must be >= 0");
+        if (reservedBytes + bytes > limitBytes) return false;
+        reservedBytes += bytes;
+        return true;
+    }
+
+    /** Gives back bytes obtained with {@link #reserve(long)} or {@link #tryReserve(long)}. */
+    public synchronized void release(long bytes) {
+        if (bytes < 0) throw new IllegalArgumentException("bytes must be >= 0");
+        reservedBytes = Math.max(0, reservedBytes - bytes);
+        notifyAll();
+    }
+
+    public synchronized long reservedBytes() {
+        return reservedBytes;
+    }
+
+    public long limitBytes() {
+        return limitBytes;
+    }
+}
@@ -1,12 +1,19 @@
 package org.github.faberna.file;
 
 import org.github.faberna.file.merge.MergeEngine;
+import org.github.faberna.file.segment.model.CsvSegment;
+import org.github.faberna.file.segment.model.Direction;
+import org.github.faberna.file.segment.model.EmptyKeys;
 import org.github.faberna.file.segment.model.KeySpec;
+import org.github.faberna.file.segment.model.Mode;
+import org.github.faberna.file.segment.model.OrderedSegment;
 import org.github.faberna.file.segment.model.RangeSegment;
 import org.github.faberna.file.segment.model.Segment;
 import org.github.faberna.file.split.SortedSplitEngine;
 import org.github.faberna.file.split.SplitEngine;
 import org.github.faberna.file.split.config.IOConfig;
+import org.github.faberna.file.split.model.FixedLengthSeparator;
+import org.github.faberna.file.split.model.LengthPrefixedSeparator;
 import org.github.faberna.file.split.model.NewlineSeparator;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
@@ -18,7 +25,11 @@ import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -243,4 +254,237 @@ class SortAndMergeFileTest {
         assertThat(totalBytes).isLessThanOrEqualTo(Files.size(out));
         assertThat(parts.size()).isEqualTo(numParts);
     }
+
+    @Test
+    void kWayMerge_shouldMergeSortedRunsCutFromAStream() throws IOException {
+        Path input = Path.of("src/test/resources/unsorted.txt");
+        Segment segment = new RangeSegment(0,10);
+        KeySpec keySpec = new KeySpec(List.of(segment));
+        SortedSplitEngine engine = new SortedSplitEngine(new SplitEngine(), keySpec, keySpec.comparator());
+        NewlineSeparator separator = new NewlineSeparator(64, null);
+
+        List<Path> runs;
+        try (var in = Files.newInputStream(input)) {
+            // tiny budget: several runs, sorted and written while the stream is read
+            runs = engine.splitStream(in, tempDir, 2 * 1024, separator, new IOConfig(64, 2, false, "streamRun-", ".txt"));
+        }
+        assertThat(runs).hasSizeGreaterThan(1);
+
+        Path out = tempDir.resolve("out-stream.txt");
+        MergeEngine.kWayMerge(runs, out, keySpec, StandardCharsets.UTF_8, separator);
+
+        List<String> expected = Files.readAllLines(input, StandardCharsets.UTF_8).stream()
+                .sorted(keySpec.comparator())
+                .toList();
+        List<String> merged = Files.readAllLines(out, StandardCharsets.UTF_8);
+        assertThat(merged).hasSameSizeAs(expected).isSortedAccordingTo(keySpec.comparator());
+        assertThat(merged).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    @Test
+    void kWayMerge_shouldSortAndMergeFixedLengthRecords() throws IOException {
+        // 500 records of 8 bytes, back to back: a 5-char key, then a payload that may hold any byte (even '\n')
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < 500; i++) keys.add(i);
+        Collections.shuffle(keys, new Random(46));
+        List<String> records = new ArrayList<>();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            String record = String.format("%05d", keys.get(i)) + (i % 7 == 0 ? "\n\r" : "ab") + (char) ('a' + i % 26);
+            records.add(record);
+            content.append(record);
+        }
+        Path input = tempDir.resolve("fixed.bin");
+        Files.writeString(input, content, StandardCharsets.US_ASCII);
+
+        KeySpec keySpec = new KeySpec(List.of(new RangeSegment(0, 5)));
+        SortedSplitEngine engine = new SortedSplitEngine(new SplitEngine(), keySpec, keySpec.comparator());
+        FixedLengthSeparator separator = new FixedLengthSeparator(8);
+        String expected = String.join("", records.stream().sorted(keySpec.comparator()).toList());
+
+        for (boolean sequential : List.of(true, false)) {
+            Path dir = Files.createDirectories(tempDir.resolve("fixed-" + sequential));
+            // 1000 bytes is not a multiple of 8: parts are still cut on record boundaries
+            engine.splitByMaxBytes(input, dir, 1000, separator, new IOConfig(100, 2, sequential, "fixedPart-", ".bin"));
+            List<Path> parts;
+            try (var files = Files.list(dir)) {
+                parts = files.sorted().toList();
+            }
+            assertThat(parts).hasSizeGreaterThan(1);
+            for (Path part : parts) assertEquals(0, Files.size(part) % 8, part.toString());
+
+            Path out = tempDir.resolve("out-fixed-" + sequential + ".bin");
+            MergeEngine.kWayMerge(parts, out, keySpec, StandardCharsets.US_ASCII, separator);
+            assertEquals(expected, Files.readString(out, StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    void kWayMerge_shouldSortAndMergeLengthPrefixedRecords() throws IOException {
+        // binary payloads after a 5-digit key: any byte may occur, separators and prefixes included
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < 400; i++) keys.add(i);
+        Collections.shuffle(keys, new Random(47));
+        Random random = new Random(47);
+        List<byte[]> payloads = new ArrayList<>();
+        for (int key : keys) {
+            byte[] payload = new byte[5 + random.nextInt(200)];
+            random.nextBytes(payload);
+            System.arraycopy(String.format("%05d", key).getBytes(StandardCharsets.US_ASCII), 0, payload, 0, 5);
+            payloads.add(payload);
+        }
+        KeySpec keySpec = new KeySpec(List.of(new RangeSegment(0, 5)));
+        SortedSplitEngine engine = new SortedSplitEngine(new SplitEngine(), keySpec, keySpec.comparator());
+        byte[] sync = "sync-marker-0047".getBytes(StandardCharsets.US_ASCII);
+
+        for (LengthPrefixedSeparator separator : List.of(
+                new LengthPrefixedSeparator(LengthPrefixedSeparator.Prefix.VARINT),
+                new LengthPrefixedSeparator(LengthPrefixedSeparator.Prefix.INT32, sync))) {
+            java.io.ByteArrayOutputStream input = new java.io.ByteArrayOutputStream();
+            java.io.ByteArrayOutputStream expected = new java.io.ByteArrayOutputStream();
+            for (int i = 0; i < payloads.size(); i++) {
+                if (separator.hasSyncMarker() && i % 50 == 49) separator.writeSync(input);
+                separator.writePrefix(input, payloads.get(i).length);
+                input.write(payloads.get(i));
+            }
+            for (byte[] payload : payloads.stream()
+                    .sorted(java.util.Comparator.comparing(p -> new String(p, 0, 5, StandardCharsets.US_ASCII)))
+                    .toList()) {
+                separator.writePrefix(expected, payload.length);
+                expected.write(payload);
+            }
+            Path in = tempDir.resolve("framed-" + separator.prefix() + ".bin");
+            Files.write(in, input.toByteArray());
+
+            for (boolean sequential : List.of(true, false)) {
+                Path dir = Files.createDirectories(tempDir.resolve("framed-" + separator.prefix() + "-" + sequential));
+                engine.splitByMaxBytes(in, dir, 8 * 1024, separator, new IOConfig(256, 2, sequential, "framedPart-", ".bin"));
+                List<Path> parts;
+                try (var files = Files.list(dir)) {
+                    parts = files.sorted().toList();
+                }
+                assertThat(parts).hasSizeGreaterThan(1);
+
+                Path out = tempDir.resolve("out-framed-" + separator.prefix() + "-" + sequential + ".bin");
+                MergeEngine.kWayMerge(parts, out, keySpec, StandardCharsets.ISO_8859_1, separator);
+                assertThat(Files.readAllBytes(out)).as("%s sequential=%s", separator, sequential)
+                        .isEqualTo(expected.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    void kWayMerge_shouldMergeRunsSizedByASharedMemoryBudget() throws IOException {
+        Path input = Path.of("src/test/resources/unsorted.txt");
+        Segment segment = new RangeSegment(0,10);
+        KeySpec keySpec = new KeySpec(List.of(segment));
+        SortedSplitEngine engine = new SortedSplitEngine(new SplitEngine(), keySpec, keySpec.comparator());
+        NewlineSeparator separator = new NewlineSeparator(64, null);
+
+        List<String> expected = Files.readAllLines(input, StandardCharsets.UTF_8).stream()
+                .sorted(keySpec.comparator())
+                .toList();
+
+        for (boolean sequential : List.of(true, false)) {
+            Path dir = Files.createDirectories(tempDir.resolve("budget-" + sequential));
+            // budget for a handful of lines: the workers spill several runs
+            List<Path> runs = engine.splitByMemoryBudget(input, dir, 1024, separator,
+                    new IOConfig(64, 2, sequential, "budgetRun-", ".txt"));
+            assertThat(runs).hasSizeGreaterThan(2).allMatch(Files::exists);
+
+            Path out = dir.resolve("out-budget.txt");
+            MergeEngine.kWayMerge(runs, out, keySpec, StandardCharsets.UTF_8, separator);
+
+            List<String> merged = Files.readAllLines(out, StandardCharsets.UTF_8);
+            assertThat(merged).hasSameSizeAs(expected).isSortedAccordingTo(keySpec.comparator());
+            assertThat(merged).containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+
+    @Test
+    void kWayMerge_shouldMergeReplacementSelectionRuns() throws IOException {
+        Path input = Path.of("src/test/resources/unsorted.txt");
+        Segment segment = new RangeSegment(0,10);
+        KeySpec keySpec = new KeySpec(List.of(segment));
+        SortedSplitEngine engine = new SortedSplitEngine(new SplitEngine(), keySpec, keySpec.comparator());
+        NewlineSeparator separator = new NewlineSeparator(64, null);
+
+        List<Path> runs = engine.splitByReplacementSelection(input, tempDir, 1024, separator,
+                new IOConfig(64, 2, false, "selectionRun-", ".txt"));
+        assertThat(runs).hasSizeGreaterThan(1).allMatch(Files::exists);
+
+        Path out = tempDir.resolve("out-selection.txt");
+        MergeEngine.kWayMerge(runs, out, keySpec, StandardCharsets.UTF_8, separator);
+
+        List<String> expected = Files.readAllLines(input, StandardCharsets.UTF_8).stream()
+                .sorted(keySpec.comparator())
+                .toList();
+        List<String> merged = Files.readAllLines(out, StandardCharsets.UTF_8);
+        assertThat(merged).hasSameSizeAs(expected).isSortedAccordingTo(keySpec.comparator());
+        assertThat(merged).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    @Test
+    void kWayMerge_shouldCopyAnAlreadySortedInputThroughSplitAndMerge() throws IOException {
+        KeySpec keySpec = KeySpec.of(new RangeSegment(0, 10));
+        SortedSplitEngine engine = new SortedSplitEngine(new SplitEngine(), keySpec, keySpec.comparator());
+        NewlineSeparator separator = new NewlineSeparator(64, null);
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) sb.append(String.format("%010d,row-%d%n", i, i));
+        Path input = tempDir.resolve("sorted-input.txt");
+        Files.writeString(input, sb.toString(), StandardCharsets.UTF_8);
+
+        Path dir = Files.createDirectories(tempDir.resolve("presorted"));
+        engine.splitByMaxBytes(input, dir, 8 * 1024, separator, new IOConfig(64, 2, false, "presorted-", ".txt"));
+        List<Path> parts;
+        try (var files = Files.list(dir)) {
+            parts = files.sorted().toList();
+        }
+        assertThat(parts).hasSizeGreaterThan(2);
+
+        Path out = tempDir.resolve("out-presorted.txt");
+        MergeEngine.kWayMerge(parts, out, keySpec, StandardCharsets.UTF_8, separator);
+
+        // the parts are copied ranges of the input and the merge concatenates them back
+        assertEquals(sb.toString(), Files.readString(out, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void kWayMerge_shouldSortAndMergeMixedDirectionKeys() throws IOException {
+        // ORDER BY day DESC (empty days last), id ASC
+        KeySpec<String> keySpec = KeySpec.of(
+                new OrderedSegment(new CsvSegment(1), Direction.DESC, EmptyKeys.LAST),
+                new CsvSegment(0, Mode.INT));
+        SortedSplitEngine engine = new SortedSplitEngine(new SplitEngine(), keySpec, keySpec.comparator());
+        NewlineSeparator separator = new NewlineSeparator(64, null);
+
+        Random random = new Random(50);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 3_000; i++) {
+            String day = random.nextInt(10) == 0 ? "" : "2024-02-" + (10 + random.nextInt(19));
+            lines.add(i + "," + day + ",\"payload, " + i + "\"");
+        }
+        Collections.shuffle(lines, random);
+        Path input = tempDir.resolve("mixed-input.csv");
+        Files.write(input, lines, StandardCharsets.UTF_8);
+
+        Path dir = Files.createDirectories(tempDir.resolve("mixed"));
+        engine.splitByMaxBytes(input, dir, 16 * 1024, separator, new IOConfig(64, 2, false, "mixed-", ".csv"));
+        List<Path> parts;
+        try (var files = Files.list(dir)) {
+            parts = files.sorted().toList();
+        }
+        assertThat(parts).hasSizeGreaterThan(2);
+
+        Path out = tempDir.resolve("out-mixed.csv");
+        MergeEngine.kWayMerge(parts, out, keySpec, StandardCharsets.UTF_8, separator);
+
+        Comparator<String> expected = Comparator
+                .comparing((String line) -> line.split(",")[1].isEmpty() ? null : line.split(",")[1],
+                        Comparator.nullsLast(Comparator.<String>reverseOrder()))
+                .thenComparingInt(line -> Integer.parseInt(line.split(",")[0]));
+        List<String> merged = Files.readAllLines(out, StandardCharsets.UTF_8);
+        assertThat(merged).isEqualTo(lines.stream().sorted(expected).toList());
+    }
 }
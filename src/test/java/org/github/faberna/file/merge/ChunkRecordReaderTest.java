@@ -1,6 +1,7 @@
 package org.github.faberna.file.merge;
 
 import org.github.faberna.file.merge.model.HeapItem;
+import org.github.faberna.file.split.model.FixedLengthSeparator;
 import org.github.faberna.file.split.model.NewlineSeparator;
 import org.github.faberna.file.split.model.Separator;
 import org.github.faberna.file.split.model.SingleByteSeparator;
@@ -139,6 +140,47 @@ class ChunkRecordReaderTest {
         }
     }
 
+    @Test
+    void lastRecord_shouldMatchTheLastRecordReadForward(@TempDir Path tmp) throws IOException {
+        Separator sep = new SingleByteSeparator((byte) '\n', 8 * 1024);
+        Path p = tmp.resolve("chunk-last.txt");
+
+        Files.writeString(p, "aa\nbb\n", StandardCharsets.UTF_8);
+        assertArrayEquals("bb".getBytes(StandardCharsets.UTF_8), ChunkRecordReader.lastRecord(p, sep));
+
+        Files.writeString(p, "aa\n" + "x".repeat(200_000), StandardCharsets.UTF_8);
+        assertArrayEquals("x".repeat(200_000).getBytes(StandardCharsets.UTF_8), ChunkRecordReader.lastRecord(p, sep));
+
+        Files.writeString(p, "single", StandardCharsets.UTF_8);
+        assertArrayEquals("single".getBytes(StandardCharsets.UTF_8), ChunkRecordReader.lastRecord(p, sep));
+
+        Files.writeString(p, "", StandardCharsets.UTF_8);
+        assertNull(ChunkRecordReader.lastRecord(p, sep));
+    }
+
+    @Test
+    void fixedLengthRecords_shouldBeReadAsBlocks(@TempDir Path tmp) throws IOException {
+        Separator sep = new FixedLengthSeparator(3);
+        Path p = tmp.resolve("chunk-fixed.bin");
+
+        // no separators: "a\nb" is a record like any other, the short tail is the last record
+        Files.writeString(p, "abca\nbxyzqq", StandardCharsets.UTF_8);
+        try (ChunkRecordReader r = ChunkRecordReader.open(p, sep)) {
+            assertArrayEquals("abc".getBytes(StandardCharsets.UTF_8), r.nextRecord());
+            assertArrayEquals("a\nb".getBytes(StandardCharsets.UTF_8), r.nextRecord());
+            assertArrayEquals("xyz".getBytes(StandardCharsets.UTF_8), r.nextRecord());
+            assertArrayEquals("qq".getBytes(StandardCharsets.UTF_8), r.nextRecord());
+            assertNull(r.nextRecord());
+        }
+        assertArrayEquals("qq".getBytes(StandardCharsets.UTF_8), ChunkRecordReader.lastRecord(p, sep));
+
+        Files.writeString(p, "abcxyz", StandardCharsets.UTF_8);
+        assertArrayEquals("xyz".getBytes(StandardCharsets.UTF_8), ChunkRecordReader.lastRecord(p, sep));
+
+        Files.writeString(p, "", StandardCharsets.UTF_8);
+        assertNull(ChunkRecordReader.lastRecord(p, sep));
+    }
+
     private static byte[] concat(byte[]... parts) {
         int len = 0;
         for (byte[] p : parts) len += p.length;
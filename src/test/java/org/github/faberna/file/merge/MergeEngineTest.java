@@ -1,5 +1,6 @@
 package org.github.faberna.file.merge;
 
+import org.github.faberna.file.segment.model.DelimitedSegment;
 import org.github.faberna.file.segment.model.KeySpec;
 import org.github.faberna.file.segment.model.Mode;
 import org.github.faberna.file.segment.model.RangeSegment;
@@ -71,6 +72,29 @@ class MergeEngineTest {
         assertEquals("dddd", tokens[3]);
     }
 
+    @Test
+    void kWayMerge_shouldConcatenateRunsAlreadyInOrder() throws IOException {
+        Separator sep = new SingleByteSeparator((byte) '\n', 8 * 1024);
+        KeySpec keySpec = KeySpec.of(new RangeSegment(0, 1));
+        Path c1 = tmp.resolve("ordered1.txt");
+        Path c2 = tmp.resolve("ordered2.txt");
+        Path c3 = tmp.resolve("ordered3.txt");
+        writeChunk(c1, sep, false, "a1", "a2");
+        writeChunk(c2, sep, "b1", "c1");
+        writeChunk(c3, sep, false, "d1");
+
+        assertTrue(MergeEngine.runsInOrder(List.of(c1, c2, c3), keySpec.comparator(), StandardCharsets.UTF_8, sep));
+        Path out = tmp.resolve("ordered-out.txt");
+        MergeEngine.kWayMerge(List.of(c1, c2, c3), out, keySpec, StandardCharsets.UTF_8, sep);
+        assertEquals("a1\na2\nb1\nc1\nd1\n", Files.readString(out, StandardCharsets.UTF_8));
+
+        // equal keys across runs: the heap merge decides, not the concatenation
+        writeChunk(c2, sep, "a3", "c1");
+        assertFalse(MergeEngine.runsInOrder(List.of(c1, c2, c3), keySpec.comparator(), StandardCharsets.UTF_8, sep));
+        MergeEngine.kWayMerge(List.of(c1, c2, c3), out, keySpec, StandardCharsets.UTF_8, sep);
+        assertEquals("a1\na3\na2\nc1\nd1\n", Files.readString(out, StandardCharsets.UTF_8));
+    }
+
     private static void writeChunk(Path file, Separator sep, String... records) throws IOException {
         writeChunk(file, sep, true, records);
     }
@@ -228,5 +252,23 @@ class MergeEngineTest {
         assertEquals("0001;A2", tokens[2]);
         assertEquals("0001;B2", tokens[3]);
     }
+
+    @Test
+    void kWayMerge_shouldMergeOnPreExtractedDelimitedColumns() throws IOException {
+        Separator sep = new SingleByteSeparator((byte) '\n', 8 * 1024);
+        Path c1 = tmp.resolve("csv1.txt");
+        Path c2 = tmp.resolve("csv2.txt");
+        Path out = tmp.resolve("csv-out.txt");
+        // sorted on the third column as a number
+        writeChunk(c1, sep, "x,a,-5,z", "x,b,3,z", "x,c,40,z");
+        writeChunk(c2, sep, "y,d,-7,z", "y,e,4,z", "y,f,100,z");
+
+        KeySpec keySpec = KeySpec.of(new DelimitedSegment(',', 1, null, Mode.INT));
+        assertTrue(keySpec.columnar());
+        MergeEngine.kWayMerge(List.of(c1, c2), out, keySpec, StandardCharsets.UTF_8, sep);
+
+        assertEquals(List.of("y,d,-7,z", "x,a,-5,z", "x,b,3,z", "y,e,4,z", "x,c,40,z", "y,f,100,z"),
+                Files.readAllLines(out, StandardCharsets.UTF_8));
+    }
 }
 
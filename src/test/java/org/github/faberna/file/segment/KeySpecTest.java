@@ -221,4 +221,69 @@ class KeySpecTest {
         // first char equal, compare part after delimiter: "bb" vs "bc"
         assertThat(cmp.compare("a|bb|x", "a|bc|x")).isLessThan(0);
     }
-}
\ No newline at end of file
+
+    @Test
+    void hashShouldBeConsistentWithComparator() {
+        var spec = KeySpec.of(
+                new RangeSegment(0, 4, Mode.INT),
+                new DelimitedSegment('|', 0, null, Mode.LEX)
+        );
+        var cmp = spec.comparator();
+
+        // equal keys (numeric "0025" == "25", rest of the line ignored) => equal hashes
+        assertThat(cmp.compare("0025|ab|x", "  25|ab|y")).isZero();
+        assertThat(spec.hash("0025|ab|x")).isEqualTo(spec.hash("  25|ab|y"));
+
+        // range padding: missing chars compare as NUL
+        var lex = KeySpec.of(new RangeSegment(0, 5));
+        assertThat(lex.comparator().compare("ab", "ab\0")).isZero();
+        assertThat(lex.hash("ab")).isEqualTo(lex.hash("ab\0"));
+
+        assertThat(spec.hash("0025|ab|x")).isNotEqualTo(spec.hash("0026|ab|x"));
+    }
+
+    @Test
+    void compareCharsShouldMatchDefaultComparatorOnAnyCharSequence() {
+        KeySpec<String> spec = KeySpec.of(
+                new RangeSegment(0, 3),
+                new DelimitedSegment(';', 0, null, Mode.INT)
+        );
+        String[] lines = {"abc;10", "abc;9", "abd;1", "ab;5", "abc;-3", ""};
+
+        assertThat(spec.comparator()).isInstanceOf(KeySpec.SegmentComparator.class);
+        for (String a : lines) {
+            for (String b : lines) {
+                int expected = Integer.signum(spec.comparator().compare(a, b));
+                assertThat(Integer.signum(spec.compareChars(new StringBuilder(a), new StringBuilder(b))))
+                        .as("%s vs %s", a, b)
+                        .isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    void compareColumnsShouldMatchCompareChars() {
+        KeySpec<String> spec = KeySpec.of(
+                new DelimitedSegment(';', 1, null),
+                new DelimitedSegment(';', 0, null, Mode.INT),
+                new DelimitedSegment(';', 2, 2, Mode.FLOAT),
+                new RangeSegment(0, 2),
+                new RangeSegment(0, 3, Mode.INT)
+        );
+        String[] lines = {"12;b;x;1.5", "12;a;x;1.25", "9;a;y;-2", "9;a;y;-2.5", "9;a", "", ";;;", "-3;b;z;7"};
+
+        assertThat(spec.columnar()).isTrue();
+        assertThat(KeySpec.of(new RangeSegment(0, 3)).columnar()).isFalse();
+        long[] columns = new long[lines.length * 5];
+        for (int i = 0; i < lines.length; i++) spec.columns(lines[i], columns, i * 5);
+
+        for (int i = 0; i < lines.length; i++) {
+            for (int j = 0; j < lines.length; j++) {
+                int expected = Integer.signum(spec.compareChars(lines[i], lines[j]));
+                assertThat(Integer.signum(spec.compareColumns(lines[i], columns, i * 5, lines[j], columns, j * 5)))
+                        .as("%s vs %s", lines[i], lines[j])
+                        .isEqualTo(expected);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.github.faberna.file.segment.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CollatedSegmentTest {
+
+    private static final List<String> WORDS = List.of("peach", "Péché", "péché", "pêche", "Peach", "cote", "côte",
+            "Côté", "coté", "zebra", "Ångström", "angstrom", "", "a\u0000b", "a");
+
+    @Test
+    void shouldOrderLikeTheCollatorInComparisonsAndKeys() {
+        for (int strength : new int[]{Collator.PRIMARY, Collator.SECONDARY, Collator.TERTIARY}) {
+            Collator collator = Collator.getInstance(Locale.FRENCH);
+            collator.setStrength(strength);
+            CollatedSegment segment = new CollatedSegment(new DelimitedSegment('|', 0, null), Locale.FRENCH, strength);
+            KeyEncoder encoder = new KeyEncoder(KeySpec.of(segment, new RangeSegment(0, 1)));
+
+            for (String a : WORDS) {
+                for (String b : WORDS) {
+                    String lineA = "1|" + a + "|x";
+                    String lineB = "2|" + b + "|y";
+                    int expected = Integer.signum(collator.compare(a, b));
+                    assertThat(Integer.signum(segment.compare(lineA, lineB))).as("%s vs %s", a, b).isEqualTo(expected);
+                    int keys = Integer.signum(KeyEncoder.compare(encoder.encode(lineA), encoder.encode(lineB)));
+                    // equal collation keys: the next segment decides
+                    assertThat(keys).as("%s vs %s", a, b).isEqualTo(expected != 0 ? expected : -1);
+                    if (expected == 0) assertThat(segment.hash(lineA)).isEqualTo(segment.hash(lineB));
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldBeKeyedOnlyWhenEveryOtherSegmentIsEncodable() {
+        CollatedSegment segment = new CollatedSegment(new RangeSegment(0, 10), Locale.ITALIAN);
+
+        assertThat(KeySpec.of(segment).keyed()).isTrue();
+        assertThat(KeySpec.of(new RangeSegment(0, 10)).keyed()).isFalse();
+        assertThat(KeySpec.of(segment, (Segment<String>) new Segment<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return a.compareTo(b);
+            }
+
+            @Override
+            public void appendKey(String value, StringBuilder out) {
+                out.append(value);
+            }
+        }).keyed()).isFalse();
+
+        List<String> sorted = new ArrayList<>(List.of("b", "B", "á", "a"));
+        sorted.sort(KeySpec.of(segment).comparator().thenComparing(Comparator.naturalOrder()));
+        assertThat(sorted).containsExactly("a", "á", "b", "B");
+    }
+
+    @Test
+    void shouldRejectInvalidArguments() {
+        RangeSegment field = new RangeSegment(0, 3);
+
+        assertThrows(IllegalArgumentException.class, () -> new CollatedSegment(field, null));
+        assertThrows(IllegalArgumentException.class, () -> new CollatedSegment(field, Locale.ROOT, 7));
+        assertThrows(IllegalArgumentException.class,
+                () -> new CollatedSegment(new TimestampSegment(0, 10), Locale.ROOT));
+        assertThat(new CollatedSegment(field, Locale.ROOT))
+                .isEqualTo(new CollatedSegment(field, Locale.ROOT, Collator.TERTIARY));
+    }
+}
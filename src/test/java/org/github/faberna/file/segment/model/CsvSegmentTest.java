@@ -0,0 +1,129 @@
+package org.github.faberna.file.segment.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvSegmentTest {
+
+    private static String key(CsvSegment segment, String line) {
+        StringBuilder out = new StringBuilder();
+        segment.appendKey(line, out);
+        return out.toString();
+    }
+
+    @Test
+    void shouldReadQuotedFieldsAndEscapes() {
+        String line = "7,\"Smith, John\",\"say \"\"hi\"\"\",,\"\",plain \"x\",\"a\"tail,last";
+
+        assertThat(key(new CsvSegment(0), line)).isEqualTo("7");
+        assertThat(key(new CsvSegment(1), line)).isEqualTo("Smith, John");
+        assertThat(key(new CsvSegment(2), line)).isEqualTo("say \"hi\"");
+        assertThat(key(new CsvSegment(3), line)).isEmpty();
+        assertThat(key(new CsvSegment(4), line)).isEmpty();
+        // quotes inside an unquoted field are kept; text after a closing quote is dropped
+        assertThat(key(new CsvSegment(5), line)).isEqualTo("plain \"x\"");
+        assertThat(key(new CsvSegment(6), line)).isEqualTo("a");
+        assertThat(key(new CsvSegment(7), line)).isEqualTo("last");
+        assertThat(key(new CsvSegment(8), line)).isEmpty();
+        // an unterminated quote runs to the end of the line
+        assertThat(key(new CsvSegment(1), "a,\"open, field")).isEqualTo("open, field");
+
+        CsvFormat backslash = new CsvFormat(';', '\'', '\\');
+        String escaped = "x;'it\\'s; \\\\ok';y";
+        assertThat(key(new CsvSegment(1, Mode.LEX, backslash), escaped)).isEqualTo("it's; \\ok");
+        assertThat(key(new CsvSegment(2, Mode.LEX, backslash), escaped)).isEqualTo("y");
+    }
+
+    @Test
+    void shouldRejectInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new CsvFormat(',', ',', '"'));
+        assertThrows(IllegalArgumentException.class, () -> new CsvFormat(',', '"', ','));
+        assertThrows(IllegalArgumentException.class, () -> new CsvSegment(-1));
+        assertThrows(IllegalArgumentException.class, () -> new CsvSegment(0, Mode.LEX, null));
+    }
+
+    @Test
+    void modesShouldOrderTheValuesInEveryForm() {
+        Random random = new Random(49);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            long n = random.nextLong(-1_000_000, 1_000_000);
+            String text = switch (i % 3) {
+                case 0 -> "\"k" + Math.abs(n) + ", x\"";
+                case 1 -> "\"k" + Math.abs(n) + "\"\"q\"";
+                default -> "k" + Math.abs(n);
+            };
+            lines.add("\"a,b\"," + (i % 2 == 0 ? n : "\"" + n + "\"") + "," + text);
+        }
+        for (Mode mode : List.of(Mode.INT, Mode.FLOAT, Mode.DECIMAL, Mode.LEX, Mode.LEX_IGNORE_CASE)) {
+            boolean text = mode == Mode.LEX || mode == Mode.LEX_IGNORE_CASE;
+            CsvSegment segment = new CsvSegment(text ? 2 : 1, mode);
+            Comparator<String> expected = text
+                    ? Comparator.comparing((String line) -> key(segment, line))
+                    : Comparator.comparingLong((String line) -> Long.parseLong(key(segment, line)));
+            KeyEncoder encoder = new KeyEncoder(new KeySpec<>(List.of(segment)));
+            for (int i = 0; i + 1 < lines.size(); i++) {
+                String a = lines.get(i);
+                String b = lines.get(i + 1);
+                int sign = Integer.signum(expected.compare(a, b));
+                assertThat(Integer.signum(segment.compareChars(a, b))).as("%s %s %s", mode, a, b).isEqualTo(sign);
+                assertThat(Integer.signum(segment.compareColumns(a, segment.column(a), b, segment.column(b))))
+                        .isEqualTo(sign);
+                assertThat(Integer.signum(KeyEncoder.compare(encoder.encode(a), encoder.encode(b)))).isEqualTo(sign);
+                if (sign == 0) assertThat(segment.hash(a)).isEqualTo(segment.hash(b));
+            }
+        }
+    }
+
+    @Test
+    void escapedAndPlainFieldsWithTheSameContentShouldBeEqual() {
+        CsvSegment segment = new CsvSegment(0, Mode.LEX_IGNORE_CASE);
+        String escaped = "\"A\"\"b\",1";
+        String plain = "a\"B,2";
+        assertThat(segment.compareChars(escaped, plain)).isZero();
+        assertThat(segment.hash(escaped)).isEqualTo(segment.hash(plain));
+        assertThat(segment.compareChars(escaped, "a\"c")).isNegative();
+        assertThat(segment.compareChars("\"a\"\"\"", "a")).isPositive();
+    }
+
+    @Test
+    void numericModesShouldParseTheUnescapedField() {
+        CsvFormat backslash = new CsvFormat(';', '\'', '\\');
+        // '1\0' holds the number 10 once unescaped; '\-2.5' holds -2.5
+        String escaped = "'1\\0';'\\-2.5'";
+        String plain = "10;-2.5";
+        for (Mode mode : List.of(Mode.INT, Mode.FLOAT, Mode.DECIMAL)) {
+            int field = mode == Mode.INT ? 0 : 1;
+            CsvSegment segment = new CsvSegment(field, mode, backslash);
+            KeyEncoder encoder = new KeyEncoder(KeySpec.of(segment));
+            assertThat(segment.compareChars(escaped, plain)).as("%s", mode).isZero();
+            assertThat(segment.column(escaped)).isEqualTo(segment.column(plain));
+            assertThat(segment.hash(escaped)).isEqualTo(segment.hash(plain));
+            assertThat(encoder.encode(escaped)).isEqualTo(encoder.encode(plain));
+        }
+        assertThat(new CsvSegment(0, Mode.INT, backslash).compareChars(escaped, "9;x")).isPositive();
+    }
+
+    @Test
+    void decimalsTooLongToScaleShouldCompareTheirDigits() {
+        CsvSegment segment = new CsvSegment(1, Mode.DECIMAL);
+        String a = "x,\"12345678901234567.5\"";
+        String b = "\"y,z\",12345678901234567.25";
+        assertThat(segment.compareChars(a, b)).isPositive();
+        assertThat(segment.compareColumns(a, segment.column(a), b, segment.column(b))).isPositive();
+        assertThat(segment.compareChars(b, a)).isNegative();
+    }
+
+    @Test
+    void shouldBeTheFieldOfTimestampSegments() {
+        TimestampSegment ts = new TimestampSegment(new CsvSegment(1), TimestampFormat.ISO);
+        assertThat(ts.compare("x,\"2024-01-01T10:00:00+02:00\"", "\"y,z\",2024-01-01T09:00:00Z")).isNegative();
+    }
+}
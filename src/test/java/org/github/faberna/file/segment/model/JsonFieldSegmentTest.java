@@ -0,0 +1,93 @@
+package org.github.faberna.file.segment.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonFieldSegmentTest {
+
+    private static String key(JsonFieldSegment segment, String line) {
+        StringBuilder out = new StringBuilder();
+        segment.appendKey(line, out);
+        return out.toString();
+    }
+
+    @Test
+    void shouldLocateNestedMembersAndElements() {
+        String line = "{\"id\": 7, \"tags\": [\"a\", {\"x\": [1, 2]}], \"event\": { \"name\": \"a \\\"quoted\\\" }\","
+                + " \"ts\" : \"2024-01-02T03:04:05Z\" , \"n\": -12.5e1 }, \"empty\": {}, \"nothing\": null}";
+
+        assertThat(key(new JsonFieldSegment("$.event.ts"), line)).isEqualTo("2024-01-02T03:04:05Z");
+        assertThat(key(new JsonFieldSegment("event.n"), line)).isEqualTo("-12.5e1");
+        // escapes are kept: the raw text between the quotes
+        assertThat(key(new JsonFieldSegment("$.event.name"), line)).isEqualTo("a \\\"quoted\\\" }");
+        assertThat(key(new JsonFieldSegment("$.tags[1].x[1]"), line)).isEqualTo("2");
+        assertThat(key(new JsonFieldSegment("$['tags'][0]"), line)).isEqualTo("a");
+        assertThat(key(new JsonFieldSegment("$.tags[1]"), line)).isEqualTo("{\"x\": [1, 2]}");
+        assertThat(key(new JsonFieldSegment("$.id"), line)).isEqualTo("7");
+
+        // missing, null and out of range: empty
+        for (String path : List.of("$.nothing", "$.missing", "$.event.ts.deeper", "$.tags[2]", "$.empty.a", "$.id[0]")) {
+            assertThat(key(new JsonFieldSegment(path), line)).as(path).isEmpty();
+        }
+        assertThat(key(new JsonFieldSegment("$"), " \"top\" ")).isEqualTo("top");
+        // malformed records never fail
+        for (String bad : List.of("", "not json", "{\"event\": {\"ts\": \"unterminated", "{\"event\"", "[1, 2")) {
+            assertThat(key(new JsonFieldSegment("$.event.ts"), bad)).as(bad).isEmpty();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"$.", "$..a", "$[", "$[x]", "$[-1]", "$ a", "$.a["})
+    void shouldRejectInvalidPaths(String path) {
+        assertThrows(IllegalArgumentException.class, () -> new JsonFieldSegment(path));
+    }
+
+    @Test
+    void modesShouldOrderTheValuesInEveryForm() {
+        Random random = new Random(48);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            long n = random.nextLong(-1_000_000, 1_000_000);
+            // members in any order, the field appearing after nested values
+            lines.add(i % 2 == 0
+                    ? "{\"meta\": {\"a\": [1, {\"b\": \"}\"}]}, \"event\": {\"n\": " + n + ", \"s\": \"k" + Math.abs(n) + "\"}}"
+                    : "{\"event\": {\"s\": \"k" + Math.abs(n) + "\", \"n\": " + n + "}}");
+        }
+        for (Mode mode : List.of(Mode.INT, Mode.FLOAT, Mode.DECIMAL, Mode.LEX)) {
+            JsonFieldSegment segment = new JsonFieldSegment(mode == Mode.LEX ? "$.event.s" : "$.event.n", mode);
+            Comparator<String> expected = mode == Mode.LEX
+                    ? Comparator.comparing((String line) -> key(segment, line))
+                    : Comparator.comparingLong((String line) -> Long.parseLong(key(segment, line)));
+            KeyEncoder encoder = new KeyEncoder(new KeySpec<>(List.of(segment)));
+            for (int i = 0; i + 1 < lines.size(); i++) {
+                String a = lines.get(i);
+                String b = lines.get(i + 1);
+                int sign = Integer.signum(expected.compare(a, b));
+                assertThat(Integer.signum(segment.compareChars(a, b))).as("%s %s %s", mode, a, b).isEqualTo(sign);
+                assertThat(Integer.signum(segment.compareColumns(a, segment.column(a), b, segment.column(b))))
+                        .isEqualTo(sign);
+                assertThat(Integer.signum(KeyEncoder.compare(encoder.encode(a), encoder.encode(b)))).isEqualTo(sign);
+                if (sign == 0) assertThat(segment.hash(a)).isEqualTo(segment.hash(b));
+            }
+        }
+    }
+
+    @Test
+    void shouldBeTheFieldOfTimestampAndCollatedSegments() {
+        TimestampSegment ts = new TimestampSegment(new JsonFieldSegment("$.event.ts"), TimestampFormat.ISO);
+        String early = "{\"event\": {\"ts\": \"2024-01-01T10:00:00+02:00\"}}";
+        String late = "{\"event\": {\"id\": 1, \"ts\": \"2024-01-01T09:00:00Z\"}}";
+        assertThat(ts.compare(early, late)).isNegative();
+        assertThat(new CollatedSegment(new JsonFieldSegment("$.name"), java.util.Locale.FRENCH)
+                .compare("{\"name\": \"été\"}", "{\"name\": \"Zèbre\"}")).isNegative();
+    }
+}
@@ -0,0 +1,81 @@
+package org.github.faberna.file.segment.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class KeyEncoderTest {
+
+    private static final String CHARS = "ab\u0000é€😀,-.0123456789 ";
+
+    @Test
+    void unsignedByteOrderShouldBeTheKeySpecOrder() {
+        List<KeySpec<String>> specs = List.of(
+                KeySpec.of(new RangeSegment(0, 4)),
+                KeySpec.of(new RangeSegment(0, Integer.MAX_VALUE)),
+                KeySpec.of(new RangeSegment(0, 3, Mode.INT), new RangeSegment(1, 5, Mode.FLOAT)),
+                KeySpec.of(new DelimitedSegment(',', 0, null), new DelimitedSegment(',', 1, 4, Mode.INT),
+                        new DelimitedSegment(',', 0, 3, Mode.FLOAT)));
+        List<String> lines = randomLines(new Random(11), 600);
+
+        for (KeySpec<String> spec : specs) {
+            KeyEncoder encoder = new KeyEncoder(spec);
+            List<byte[]> keys = lines.stream().map(encoder::encode).toList();
+            for (int i = 0; i < lines.size(); i++) {
+                for (int j = i; j < Math.min(lines.size(), i + 40); j++) {
+                    assertThat(Integer.signum(KeyEncoder.compare(keys.get(i), keys.get(j))))
+                            .as("%s: %s vs %s", spec, lines.get(i), lines.get(j))
+                            .isEqualTo(Integer.signum(spec.compareChars(lines.get(i), lines.get(j))));
+                }
+            }
+        }
+    }
+
+    @Test
+    void descendingSegmentsShouldReverseOnlyTheirOwnOrder() {
+        KeySpec<String> spec = KeySpec.of(new RangeSegment(0, 1), new RangeSegment(1, 4, Mode.INT));
+        KeyEncoder encoder = new KeyEncoder(spec, false, true);
+
+        assertThat(KeyEncoder.compare(encoder.encode("a 10"), encoder.encode("a  9"))).isNegative();
+        assertThat(KeyEncoder.compare(encoder.encode("a-10"), encoder.encode("b 99"))).isNegative();
+        assertThat(KeyEncoder.compare(encoder.encode("a 10"), encoder.encode("a+10"))).isZero();
+
+        KeyEncoder lexDescending = new KeyEncoder(KeySpec.of(new RangeSegment(0, 8)), true);
+        assertThat(KeyEncoder.compare(lexDescending.encode("ab"), lexDescending.encode("abc"))).isPositive();
+        assertThat(KeyEncoder.compare(lexDescending.encode("ab\u0000"), lexDescending.encode("ab"))).isZero();
+    }
+
+    @Test
+    void shouldRejectSegmentsWithoutEncodingAndWrongDirections() {
+        Segment<String> custom = new Segment<>() {
+            @Override
+            public int compare(String a, String b) {
+                return a.compareTo(b);
+            }
+
+            @Override
+            public void appendKey(String value, StringBuilder out) {
+                out.append(value);
+            }
+        };
+        assertThat(KeyEncoder.supports(KeySpec.of(custom))).isFalse();
+        assertThrows(IllegalArgumentException.class, () -> new KeyEncoder(KeySpec.of(custom)));
+        assertThrows(IllegalArgumentException.class, () -> new KeyEncoder(KeySpec.of(new RangeSegment(0, 1)), true, false));
+    }
+
+    private static List<String> randomLines(Random random, int n) {
+        List<String> lines = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            StringBuilder sb = new StringBuilder();
+            int len = random.nextInt(9);
+            for (int c = 0; c < len; c++) sb.append(CHARS.charAt(random.nextInt(CHARS.length())));
+            lines.add(sb.toString());
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,83 @@
+package org.github.faberna.file.segment.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeySpecCompilerTest {
+
+    @Test
+    void shouldGenerateAHiddenClassPerKeySpec() {
+        KeySpec<String> lex = KeySpec.of(new RangeSegment(0, 3));
+        KeySpec<String> mixed = KeySpec.of(new DelimitedSegment(',', 1, 2, Mode.INT), new RangeSegment(0, 3, Mode.FLOAT));
+
+        KeyComparator<String> first = KeySpecCompiler.compile(lex);
+        KeyComparator<String> second = KeySpecCompiler.compile(mixed);
+
+        assertThat(first.getClass().isHidden()).isTrue();
+        assertThat(second.getClass().isHidden()).isTrue();
+        assertThat(first.getClass()).isNotEqualTo(second.getClass());
+    }
+
+    @Test
+    void shouldDefineOneClassPerDistinctKeySpec() {
+        KeySpec<String> spec = KeySpec.of(new RangeSegment(2, 5, Mode.INT), new DelimitedSegment(';', 1, 2, Mode.LEX));
+        KeySpec<String> equal = KeySpec.of(new RangeSegment(2, 5, Mode.INT), new DelimitedSegment(';', 1, 2, Mode.LEX));
+
+        KeyComparator<String> compiled = KeySpecCompiler.compile(spec);
+
+        assertThat(KeySpecCompiler.compile(spec)).isSameAs(compiled);
+        assertThat(KeySpecCompiler.compile(equal)).isSameAs(compiled);
+        assertThat(((KeySpec.SegmentComparator<String>) spec.compiledComparator()).compiled()).isSameAs(compiled);
+        KeySpec.SegmentComparator<String> plain = (KeySpec.SegmentComparator<String>) spec.comparator();
+        assertThat(plain.withCompiled().compiled()).isSameAs(compiled);
+    }
+
+    @Test
+    void shouldFallBackToTheSegmentLoopBeyondTheUnrolledSegments() {
+        Segment[] segments = new Segment[GeneratedKeyComparator.MAX_SEGMENTS + 1];
+        for (int i = 0; i < segments.length; i++) segments[i] = new RangeSegment(i, i + 1);
+
+        KeyComparator<String> compiled = KeySpecCompiler.compile(KeySpec.of(segments));
+
+        assertThat(compiled).isInstanceOf(KeySpecCompiler.Interpreted.class);
+        assertThat(compiled.compare("abcdef", "abcdeg")).isZero();
+        assertThat(compiled.compare("abcde", "abcdf")).isNegative();
+    }
+
+    @Test
+    void shouldOrderLikeTheSegmentLoop() {
+        Random random = new Random(7);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            lines.add(String.format(Locale.ROOT, "%c%c,%d,%.2f,%s",
+                    'a' + random.nextInt(3), 'a' + random.nextInt(3), random.nextInt(20) - 10,
+                    random.nextDouble() * 10, Integer.toHexString(random.nextInt(64))));
+        }
+        List<KeySpec<String>> specs = List.of(
+                KeySpec.of(new RangeSegment(0, 2)),
+                KeySpec.of(new RangeSegment(0, 1), new DelimitedSegment(',', 1, 2, Mode.INT)),
+                KeySpec.of(new RangeSegment(1, 2), new DelimitedSegment(',', 2, 3, Mode.FLOAT),
+                        new DelimitedSegment(',', 3, 4)),
+                KeySpec.of(new RangeSegment(0, 1), new RangeSegment(1, 2), new DelimitedSegment(',', 1, 2, Mode.INT),
+                        new DelimitedSegment(',', 3, 4)));
+
+        for (KeySpec<String> spec : specs) {
+            Comparator<String> interpreted = spec.comparator();
+            KeySpec.SegmentComparator<String> compiled = (KeySpec.SegmentComparator<String>) spec.compiledComparator();
+            for (int i = 0; i + 1 < lines.size(); i++) {
+                String a = lines.get(i);
+                String b = lines.get(i + 1);
+                assertThat(Integer.signum(compiled.compare(a, b))).isEqualTo(Integer.signum(interpreted.compare(a, b)));
+                assertThat(Integer.signum(compiled.compareChars(new StringBuilder(a), b)))
+                        .isEqualTo(Integer.signum(spec.compareChars(a, b)));
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.github.faberna.file.segment.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OrderedSegmentTest {
+
+    // "day,amount,name": day and amount may be empty
+    private static List<String> lines() {
+        Random random = new Random(50);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            String day = random.nextInt(6) == 0 ? (i % 2 == 0 ? "" : "  ") : "2024-01-" + (10 + random.nextInt(5));
+            String amount = random.nextInt(5) == 0 ? "" : Integer.toString(random.nextInt(-50, 50));
+            lines.add(day + "," + amount + "," + (char) ('a' + random.nextInt(26)));
+        }
+        return lines;
+    }
+
+    private static String field(String line, int index) {
+        return line.split(",", -1)[index].trim();
+    }
+
+    private static <K extends Comparable<K>> Comparator<String> reference(
+            Function<String, K> key, Direction direction, EmptyKeys emptyKeys) {
+        Comparator<K> values = direction == Direction.DESC ? Comparator.reverseOrder() : Comparator.naturalOrder();
+        Comparator<K> withEmpty = switch (emptyKeys) {
+            case FIRST -> Comparator.nullsFirst(values);
+            case LAST -> Comparator.nullsLast(values);
+            case NATURAL -> values;
+        };
+        return Comparator.comparing(key, withEmpty);
+    }
+
+    private static void assertSameOrder(KeySpec<String> spec, Comparator<String> expected, List<String> lines) {
+        KeyEncoder encoder = new KeyEncoder(spec);
+        Comparator<String> compiled = spec.compiledComparator();
+        int n = spec.segment().size();
+        for (int i = 0; i + 1 < lines.size(); i++) {
+            String a = lines.get(i);
+            String b = lines.get(i + 1);
+            int sign = Integer.signum(expected.compare(a, b));
+            long[] ca = new long[n];
+            long[] cb = new long[n];
+            spec.columns(a, ca, 0);
+            spec.columns(b, cb, 0);
+            assertThat(Integer.signum(spec.comparator().compare(a, b))).as("%s | %s", a, b).isEqualTo(sign);
+            assertThat(Integer.signum(spec.compareChars(a, b))).isEqualTo(sign);
+            assertThat(Integer.signum(compiled.compare(a, b))).isEqualTo(sign);
+            assertThat(Integer.signum(spec.compareColumns(a, ca, 0, b, cb, 0))).isEqualTo(sign);
+            assertThat(Integer.signum(KeyEncoder.compare(encoder.encode(a), encoder.encode(b)))).isEqualTo(sign);
+            if (sign == 0) assertThat(spec.hash(a)).isEqualTo(spec.hash(b));
+        }
+    }
+
+    @Test
+    void shouldOrderEachSegmentInItsDirectionWithEmptyKeysPlaced() {
+        List<String> lines = lines();
+        for (Direction direction : Direction.values()) {
+            for (EmptyKeys emptyKeys : List.of(EmptyKeys.FIRST, EmptyKeys.LAST)) {
+                // ORDER BY day <direction> <emptyKeys>, amount DESC NULLS LAST, name
+                KeySpec<String> spec = KeySpec.of(
+                        new OrderedSegment(new CsvSegment(0), direction, emptyKeys),
+                        new OrderedSegment(new CsvSegment(1, Mode.INT), Direction.DESC, EmptyKeys.LAST),
+                        new CsvSegment(2));
+                Comparator<String> expected = reference((String line) -> field(line, 0).isEmpty() ? null : field(line, 0),
+                        direction, emptyKeys)
+                        .thenComparing(reference((String line) -> field(line, 1).isEmpty() ? null : Long.parseLong(field(line, 1)),
+                                Direction.DESC, EmptyKeys.LAST))
+                        .thenComparing(line -> field(line, 2));
+                assertSameOrder(spec, expected, lines);
+            }
+        }
+    }
+
+    @Test
+    void naturalEmptyKeysShouldOnlyReverseTheSegment() {
+        List<String> lines = new ArrayList<>();
+        Random random = new Random(51);
+        for (int i = 0; i < 300; i++) lines.add(String.format("%-6s%5d", "k" + random.nextInt(40), random.nextInt(-999, 999)));
+        // a range segment is not columnar in LEX mode: the wrapper compares in place
+        KeySpec<String> spec = KeySpec.of(OrderedSegment.desc(new RangeSegment(0, 6)),
+                new OrderedSegment(new RangeSegment(6, 11, Mode.INT), Direction.ASC));
+        Comparator<String> expected = Comparator.comparing((String line) -> line.substring(0, 6).trim(), Comparator.reverseOrder())
+                .thenComparingInt(line -> Integer.parseInt(line.substring(6).trim()));
+        assertSameOrder(spec, expected, lines);
+    }
+
+    @Test
+    void emptyKeysShouldFollowTheSegmentsDefinitionOfEmpty() {
+        assertThat(new RangeSegment(4, 8).emptyKey("abc")).isTrue();
+        assertThat(new RangeSegment(0, 4).emptyKey("    x")).isTrue();
+        assertThat(new RangeSegment(0, 4).emptyKey("  1 ")).isFalse();
+        assertThat(new DelimitedSegment(',', 1, null).emptyKey("a,b")).isTrue();
+        assertThat(new JsonFieldSegment("$.a").emptyKey("{\"a\": null}")).isTrue();
+        assertThat(new CsvSegment(1).emptyKey("x,\"\",y")).isTrue();
+        assertThat(new TimestampSegment(new CsvSegment(1), TimestampFormat.ISO).emptyKey("x")).isTrue();
+
+        OrderedSegment last = new OrderedSegment(new RangeSegment(0, 3, Mode.INT), Direction.ASC, EmptyKeys.LAST);
+        // an empty INT parses as 0, but is placed after every number
+        assertThat(last.compareChars("", "999")).isPositive();
+        assertThat(last.compareChars("   ", "")).isZero();
+        assertThat(last.compareChars("-5", "  0")).isNegative();
+    }
+
+    @Test
+    void shouldRejectMissingArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new OrderedSegment(null, Direction.ASC));
+        assertThrows(IllegalArgumentException.class, () -> new OrderedSegment(new RangeSegment(0, 1), null));
+        assertThrows(IllegalArgumentException.class,
+                () -> new OrderedSegment(new RangeSegment(0, 1), Direction.ASC, null));
+    }
+}
@@ -2,10 +2,43 @@ package org.github.faberna.file.segment.model;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 class RangeSegmentCompareTest {
 
+    @Test
+    void lexIgnoreCaseShouldMatchTheCaseInsensitiveStringOrder() {
+        RangeSegment range = new RangeSegment(0, Integer.MAX_VALUE, Mode.LEX_IGNORE_CASE);
+        DelimitedSegment field = new DelimitedSegment(';', 0, null, Mode.LEX_IGNORE_CASE);
+        KeyEncoder encoder = new KeyEncoder(KeySpec.of(range));
+        String chars = "aAzZ@[`{éÉßΣσς0";
+        Random random = new Random(17);
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int k = random.nextInt(5); k > 0; k--) sb.append(chars.charAt(random.nextInt(chars.length())));
+            values.add(sb.toString());
+        }
+
+        for (String a : values) {
+            for (String b : values) {
+                int expected = Integer.signum(String.CASE_INSENSITIVE_ORDER.compare(a, b));
+                assertThat(Integer.signum(range.compare(a, b))).as("%s vs %s", a, b).isEqualTo(expected);
+                String lineA = "x;" + a;
+                String lineB = "y;" + b;
+                assertThat(Integer.signum(field.compareColumns(lineA, field.column(lineA), lineB, field.column(lineB))))
+                        .as("%s vs %s", a, b).isEqualTo(expected);
+                assertThat(Integer.signum(KeyEncoder.compare(encoder.encode(a), encoder.encode(b))))
+                        .as("%s vs %s", a, b).isEqualTo(expected);
+                if (expected == 0) assertThat(range.hash(a)).isEqualTo(range.hash(b));
+            }
+        }
+    }
+
     @Test
     void compareShouldUseLexModeWhenModeIsLex() {
         RangeSegment segment = new RangeSegment(0, 3, Mode.LEX);
@@ -0,0 +1,100 @@
+package org.github.faberna.file.segment.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TimestampSegmentTest {
+
+    @Test
+    void isoShouldParseLikeJavaTime() {
+        Random random = new Random(7);
+        for (int i = 0; i < 5_000; i++) {
+            Instant instant = Instant.ofEpochSecond(random.nextLong(-5_000_000_000L, 5_000_000_000L), random.nextInt(1_000_000_000));
+            ZoneOffset offset = ZoneOffset.ofTotalSeconds(random.nextInt(-14 * 60, 14 * 60 + 1) * 60);
+            String text = OffsetDateTime.ofInstant(instant, offset).toString();
+
+            assertThat(TimestampFormat.ISO.parse(text, 0, text.length())).as(text).isEqualTo(nanos(instant));
+        }
+        assertThat(TimestampFormat.ISO.parse("2024-02-29", 0, 10))
+                .isEqualTo(nanos(Instant.parse("2024-02-29T00:00:00Z")));
+        assertThat(TimestampFormat.ISO.parse("2024-02-29 10:15:30.5+0100", 0, 26))
+                .isEqualTo(nanos(Instant.parse("2024-02-29T09:15:30.5Z")));
+    }
+
+    @Test
+    void patternShouldParseLikeJavaTime() {
+        String pattern = "dd/MM/yyyy HH:mm:ss.SSS";
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
+        TimestampFormat format = TimestampFormat.ofPattern(pattern);
+        Random random = new Random(3);
+        for (int i = 0; i < 5_000; i++) {
+            LocalDateTime time = LocalDateTime.ofEpochSecond(random.nextLong(-2_000_000_000L, 6_000_000_000L),
+                    random.nextInt(1000) * 1_000_000, ZoneOffset.UTC);
+            String text = formatter.format(time);
+
+            assertThat(format.parse(text, 0, text.length())).as(text).isEqualTo(nanos(time.toInstant(ZoneOffset.UTC)));
+        }
+        TimestampFormat compact = TimestampFormat.ofPattern("yyyyMMdd'T'HHmmssX");
+        assertThat(compact.parse("20240131T235959-02:30", 0, 21))
+                .isEqualTo(nanos(Instant.parse("2024-02-01T02:29:59Z")));
+    }
+
+    @Test
+    void shouldParseEpochNumbersAndRejectInvalidText() {
+        assertThat(TimestampFormat.EPOCH_MILLIS.parse("x1700000000123", 1, 14)).isEqualTo(1_700_000_000_123_000_000L);
+        assertThat(TimestampFormat.EPOCH_SECONDS.parse("-86400", 0, 6)).isEqualTo(-86_400_000_000_000L);
+
+        for (String bad : List.of("", "2024-13-01", "2024-02-30", "2024-01-01T24:00", "2024-01-01X", "abc")) {
+            assertThat(TimestampFormat.ISO.parse(bad, 0, bad.length())).as(bad).isEqualTo(TimestampFormat.INVALID);
+        }
+        assertThat(TimestampFormat.ofPattern("dd/MM/yyyy").parse("1/02/2024", 0, 9)).isEqualTo(TimestampFormat.INVALID);
+        assertThat(TimestampFormat.ofPattern("d/M/yyyy").parse("1/2/2024", 0, 8))
+                .isEqualTo(nanos(Instant.parse("2024-02-01T00:00:00Z")));
+        assertThrows(IllegalArgumentException.class, () -> TimestampFormat.ofPattern("yyy-MM"));
+        assertThrows(IllegalArgumentException.class, () -> TimestampFormat.ofPattern("dd MMM yyyy"));
+    }
+
+    @Test
+    void shouldOrderLinesByInstantInComparatorsColumnsAndEncodedKeys() {
+        TimestampSegment segment = new TimestampSegment(new DelimitedSegment(';', 0, null), TimestampFormat.ISO);
+        List<String> lines = new ArrayList<>(List.of(
+                "a;2024-01-01T10:00:00+02:00;x",
+                "b;2024-01-01T09:00:00Z;x",
+                "c;2024-01-01T08:30:00-01:00",
+                "d;not a date",
+                "e;2023-12-31"));
+        lines.sort(Comparator.comparing(l -> l.substring(2), Comparator.reverseOrder()));
+
+        List<String> sorted = new ArrayList<>(lines);
+        sorted.sort(segment::compare);
+        assertThat(sorted).extracting(l -> l.charAt(0)).containsExactly('d', 'e', 'a', 'b', 'c');
+
+        KeyEncoder encoder = new KeyEncoder(KeySpec.of(segment));
+        for (String a : lines) {
+            for (String b : lines) {
+                int expected = Integer.signum(segment.compare(a, b));
+                assertThat(Integer.signum(segment.compareColumns(a, segment.column(a), b, segment.column(b)))).isEqualTo(expected);
+                assertThat(Integer.signum(KeyEncoder.compare(encoder.encode(a), encoder.encode(b)))).isEqualTo(expected);
+            }
+        }
+        StringBuilder key = new StringBuilder();
+        segment.appendKey(lines.get(0), key);
+        assertThat(key.toString()).isEqualTo(lines.get(0).substring(2));
+    }
+
+    private static long nanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+}
@@ -0,0 +1,128 @@
+package org.github.faberna.file.segment.util;
+
+import org.github.faberna.file.segment.model.KeyEncoder;
+import org.github.faberna.file.segment.model.KeySpec;
+import org.github.faberna.file.segment.model.Mode;
+import org.github.faberna.file.segment.model.RangeSegment;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NumericKeyParserTest {
+
+    @Test
+    void parseLongShouldMatchTheDigitLoop() {
+        assertThat(NumericKeyParser.parseLong("  -1234567890123456789x", 0, 100)).isEqualTo(-1234567890123456789L);
+        assertThat(NumericKeyParser.parseLong("ab+12345678|", 2, 11)).isEqualTo(12345678L);
+        assertThat(NumericKeyParser.parseLong("1234567８9", 0, 10)).isEqualTo(1234567L);
+        assertThat(NumericKeyParser.parseLong("x123", 0, 4)).isZero();
+        assertThat(NumericKeyParser.parseLong("123", 5, 9)).isZero();
+
+        Random random = new Random(3);
+        for (int i = 0; i < 10_000; i++) {
+            String s = random.nextInt(3) == 0 ? Long.toString(random.nextLong()) : Integer.toString(random.nextInt());
+            String padded = "  " + s + (i % 2 == 0 ? "|tail" : "");
+            assertThat(NumericKeyParser.parseLong(padded, 0, padded.length())).isEqualTo(Long.parseLong(s));
+        }
+        // overflow wraps like val * 10 + digit
+        assertThat(NumericKeyParser.parseLong("99999999999999999999", 0, 20)).isEqualTo(digitLoop("99999999999999999999"));
+    }
+
+    @Test
+    void parseDoubleShouldBeCorrectlyRounded() {
+        Random random = new Random(5);
+        for (int i = 0; i < 50_000; i++) {
+            String s = switch (i % 5) {
+                case 0 -> Double.toString(Double.longBitsToDouble(random.nextLong() & 0x7FEFFFFFFFFFFFFFL));
+                case 1 -> String.format(Locale.ROOT, "%.6f", random.nextDouble() * 1e6);
+                case 2 -> random.nextInt(1_000_000) + "e" + (random.nextInt(80) - 40);
+                case 3 -> randomDigits(random, 1 + random.nextInt(30)) + "." + randomDigits(random, random.nextInt(30))
+                        + "E" + (random.nextInt(700) - 350);
+                default -> "-" + random.nextLong(1L << 53) + "." + random.nextInt(1000);
+            };
+            assertThat(NumericKeyParser.parseDouble(s, 0, s.length())).as(s).isEqualTo(Double.parseDouble(s));
+        }
+    }
+
+    @Test
+    void parseDoubleShouldKeepTheSegmentConventions() {
+        assertThat(NumericKeyParser.parseDouble("  1.5|x", 0, 100)).isEqualTo(1.5);
+        assertThat(NumericKeyParser.parseDouble("2.5e3", 0, 5)).isEqualTo(2500.0);
+        assertThat(NumericKeyParser.parseDouble("2.5e", 0, 4)).isEqualTo(2.5);
+        assertThat(NumericKeyParser.parseDouble("2.5e3", 0, 3)).isEqualTo(2.5);
+        assertThat(NumericKeyParser.parseDouble(".25", 0, 3)).isEqualTo(0.25);
+        assertThat(NumericKeyParser.parseDouble("-0", 0, 2)).isEqualTo(-0.0);
+        assertThat(NumericKeyParser.parseDouble("-", 0, 1)).isEqualTo(0.0);
+        assertThat(NumericKeyParser.parseDouble("abc", 0, 3)).isEqualTo(0.0);
+        assertThat(NumericKeyParser.parseDouble("1e400", 0, 5)).isEqualTo(Double.POSITIVE_INFINITY);
+        assertThat(NumericKeyParser.parseDouble("1e-400", 0, 6)).isEqualTo(0.0);
+        assertThat(NumericKeyParser.parseDouble("4.9e-324", 0, 8)).isEqualTo(Double.MIN_VALUE);
+    }
+
+    @Test
+    void decimalsShouldCompareExactlyAndAgreeInEveryForm() {
+        Random random = new Random(13);
+        List<String> values = new ArrayList<>(List.of("-00012345.6700", "-12345.67", "0", "-0.000", "", ".5", "5.",
+                "12345678901234567890.1", "12345678901234567890.10000000000000000001", "0.0000001", "1000000000000"));
+        for (int i = 0; i < 400; i++) {
+            String sign = switch (random.nextInt(3)) { case 0 -> "-"; case 1 -> "+"; default -> ""; };
+            String fraction = random.nextBoolean() ? "" : "." + randomDigits(random, random.nextInt(10));
+            values.add(sign + "0".repeat(random.nextInt(3)) + randomDigits(random, random.nextInt(16)) + fraction);
+        }
+        KeyEncoder encoder = new KeyEncoder(KeySpec.of(new RangeSegment(0, 60, Mode.DECIMAL)));
+
+        for (String a : values) {
+            long scaled = NumericKeyParser.scaledDecimal(a, 0, a.length());
+            if (scaled != NumericKeyParser.NOT_SCALED) {
+                assertThat(BigDecimal.valueOf(scaled, NumericKeyParser.DECIMAL_SCALE)).isEqualByComparingTo(decimal(a));
+            }
+            for (String b : values) {
+                int expected = decimal(a).compareTo(decimal(b));
+                assertThat(Integer.signum(NumericKeyParser.compareDecimal(a, 0, a.length(), b, 0, b.length())))
+                        .as("%s vs %s", a, b).isEqualTo(expected);
+                assertThat(Integer.signum(KeyEncoder.compare(encoder.encode(a), encoder.encode(b))))
+                        .as("%s vs %s", a, b).isEqualTo(expected);
+                if (expected == 0) {
+                    assertThat(NumericKeyParser.hashDecimal(a, 0, a.length()))
+                            .isEqualTo(NumericKeyParser.hashDecimal(b, 0, b.length()));
+                }
+            }
+        }
+        assertThat(NumericKeyParser.scaledDecimal("-00012345.6700|x", 0, 16)).isEqualTo(-12_345_670_000L);
+        assertThat(NumericKeyParser.scaledDecimal("0.0000001", 0, 9)).isEqualTo(NumericKeyParser.NOT_SCALED);
+    }
+
+    @Test
+    void eightDigitsShouldRejectAnyNonDigit() {
+        assertThat(NumericKeyParser.eightDigits("01234567", 0)).isEqualTo(1234567L);
+        assertThat(NumericKeyParser.eightDigits("99999999", 0)).isEqualTo(99_999_999L);
+        for (char bad : new char[]{'/', ':', ' ', 'a', 'İ', '０'}) {
+            assertThat(NumericKeyParser.eightDigits("1234" + bad + "567", 0)).as("%c", bad).isEqualTo(-1);
+        }
+    }
+
+    private static String randomDigits(Random random, int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) sb.append((char) ('0' + random.nextInt(10)));
+        return sb.toString();
+    }
+
+    private static long digitLoop(String s) {
+        long val = 0;
+        for (int i = 0; i < s.length(); i++) val = val * 10 + (s.charAt(i) - '0');
+        return val;
+    }
+
+    private static BigDecimal decimal(String s) {
+        String digits = s.isEmpty() || s.equals(".") ? "0" : s.startsWith(".") ? "0" + s : s;
+        if (digits.endsWith(".")) digits += "0";
+        if (digits.equals("-") || digits.equals("+")) digits = "0";
+        return new BigDecimal(digits);
+    }
+}
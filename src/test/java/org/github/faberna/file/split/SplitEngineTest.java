@@ -9,6 +9,7 @@ import org.github.faberna.file.segment.model.KeySpec;
 import org.github.faberna.file.segment.model.RangeSegment;
 import org.github.faberna.file.segment.model.Segment;
 import org.github.faberna.file.split.config.IOConfig;
+import org.github.faberna.file.split.config.SortConfig;
 import org.github.faberna.file.split.model.NewlineSeparator;
 import org.github.faberna.file.split.model.Separator;
 import org.github.faberna.file.split.plan.SplitPlan;
@@ -20,6 +21,7 @@ import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
@@ -681,6 +683,114 @@ class SplitEngineTest {
 
 
 
+    @Test
+    void shouldHashPartitionAndSortEachPart() throws Exception {
+        Path input = tempDir.resolve("hash-in.txt");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 200; i > 0; i--) {
+            sb.append(String.format("%04d", i % 50)).append(" row-").append(i).append('\n');
+        }
+        Files.writeString(input, sb.toString());
+
+        Segment<String> segment = new RangeSegment(0, 4);
+        KeySpec keySpec = new KeySpec(List.of(segment));
+        SortedSplitEngine engine = new SortedSplitEngine(new SplitEngine(), keySpec, keySpec.comparator());
+
+        IOConfig io = new IOConfig(1024, 3, false, "hashSorted-", ".txt");
+        List<Path> parts = engine.splitByHash(input, tempDir.resolve("out"), 4, new NewlineSeparator(64, null), io);
+
+        assertThat(parts).hasSize(4);
+        long lines = 0;
+        for (Path part : parts) {
+            List<String> content = Files.readAllLines(part);
+            lines += content.size();
+            assertThat(content).isSortedAccordingTo(keySpec.comparator().thenComparing(java.util.Comparator.naturalOrder()));
+        }
+        assertThat(lines).isEqualTo(200);
+    }
+
+    @Test
+    void splitByRecords_parallelShouldProduceSamePartsAsSequential() throws Exception {
+        Path input = Path.of("src/test/resources/unsorted.txt");
+        SplitEngine engine = new SplitEngine();
+        Separator sep = new NewlineSeparator(16, null);
+
+        Path seqDir = tempDir.resolve("seq");
+        Path parDir = tempDir.resolve("par");
+        engine.splitByRecords(input, seqDir, 5, sep, new IOConfig(64, 0, true, "rec-", ".txt"));
+        engine.splitByRecords(input, parDir, 5, sep, new IOConfig(64, 3, false, "rec-", ".txt"));
+
+        List<Path> seqParts = Files.list(seqDir).sorted().toList();
+        List<Path> parParts = Files.list(parDir).sorted().toList();
+
+        // 25 lines (the last one without newline) => 5 parts of 5
+        assertThat(seqParts).hasSize(5);
+        assertThat(parParts).hasSize(5);
+        for (int i = 0; i < seqParts.size(); i++) {
+            assertThat(Files.readAllBytes(parParts.get(i))).isEqualTo(Files.readAllBytes(seqParts.get(i)));
+            assertThat(Files.readAllLines(parParts.get(i))).hasSize(5);
+        }
+    }
+
+    @Test
+    void sortedSplitByRecords_shouldSortEachPart() throws Exception {
+        Path input = Path.of("src/test/resources/unsorted.txt");
+        Segment<String> segment = new RangeSegment(0, 10);
+        KeySpec keySpec = new KeySpec(List.of(segment));
+        SortedSplitEngine engine = new SortedSplitEngine(new SplitEngine(), keySpec, keySpec.comparator());
+
+        for (boolean sequential : new boolean[]{true, false}) {
+            Path outDir = tempDir.resolve(sequential ? "seq" : "par");
+            engine.splitByRecords(input, outDir, 7, new NewlineSeparator(16, null), new IOConfig(64, 2, sequential, "rec-", ".txt"));
+
+            List<Path> parts = Files.list(outDir).sorted().toList();
+            assertThat(parts).hasSize(4);
+            for (Path part : parts) {
+                assertThat(Files.readAllLines(part)).isSortedAccordingTo(keySpec.comparator()).hasSizeLessThanOrEqualTo(7);
+            }
+        }
+    }
+
+    @Test
+    void sortedSplitByMaxBytes_pipelinedShouldProduceSamePartsAsSequential() throws Exception {
+        Path input = Path.of("src/test/resources/unsorted.txt");
+        Segment<String> segment = new RangeSegment(0, 10);
+        KeySpec keySpec = new KeySpec(List.of(segment));
+        IOConfig io = new IOConfig(64, 0, true, "sorted-", ".txt");
+
+        Path plainDir = tempDir.resolve("plain");
+        Path pipeDir = tempDir.resolve("pipe");
+        new SortedSplitEngine(new SplitEngine(), keySpec, keySpec.comparator())
+                .splitByMaxBytes(input, plainDir, 100, new NewlineSeparator(16, null), io);
+        new SortedSplitEngine(new SplitEngine(), keySpec, keySpec.comparator(), new SortConfig(true, 2, 256))
+                .splitByMaxBytes(input, pipeDir, 100, new NewlineSeparator(16, null), io);
+
+        List<Path> plainParts = Files.list(plainDir).sorted().toList();
+        List<Path> pipeParts = Files.list(pipeDir).sorted().toList();
+        assertThat(pipeParts).hasSameSizeAs(plainParts).hasSizeGreaterThan(1);
+        for (int i = 0; i < plainParts.size(); i++) {
+            assertThat(Files.readAllBytes(pipeParts.get(i))).isEqualTo(Files.readAllBytes(plainParts.get(i)));
+        }
+    }
+
+    @Test
+    void sortedSplitByMaxBytes_shouldKeepIsoBytesOnEverySequentialPath() throws Exception {
+        Path input = tempDir.resolve("latin1.txt");
+        Files.write(input, "zéro\ncafé\n".getBytes(StandardCharsets.ISO_8859_1));
+        KeySpec keySpec = new KeySpec(List.of(new RangeSegment(0, 8)));
+        IOConfig io = new IOConfig(4, 1, true, "part-", ".txt");
+
+        for (boolean pipelined : List.of(false, true)) {
+            Path outDir = tempDir.resolve("latin1-" + pipelined);
+            new SortedSplitEngine(new SplitEngine(), keySpec, keySpec.comparator(), new SortConfig(pipelined, 2, 1 << 20))
+                    .splitByMaxBytesSorted(input, outDir, Long.MAX_VALUE, new NewlineSeparator(1, null), io,
+                            StandardCharsets.ISO_8859_1);
+
+            assertThat(Files.readAllBytes(outDir.resolve("part-0001.txt"))).as("pipelined=%s", pipelined)
+                    .isEqualTo("café\nzéro".getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
     private static void inject(Object target, String fieldName, Object value) {
         try {
             Field f = target.getClass().getDeclaredField(fieldName);
@@ -0,0 +1,44 @@
+package org.github.faberna.file.split.config;
+
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SortConfigTest {
+
+    @Test
+    void defaults_ShouldNotBePipelined() {
+        SortConfig cfg = SortConfig.defaults();
+
+        assertFalse(cfg.pipelined());
+        assertTrue(cfg.sortThreads() > 0);
+        assertTrue(cfg.memoryBudgetBytes() > 0);
+    }
+
+    @Test
+    void withers_ShouldReplaceOneValue() {
+        SortConfig cfg = SortConfig.defaults().withPipelined(true).withSortThreads(3).withMemoryBudgetBytes(1024);
+
+        assertTrue(cfg.pipelined());
+        assertEquals(3, cfg.sortThreads());
+        assertEquals(1024, cfg.memoryBudgetBytes());
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        SortConfig parallel = cfg.withSortPool(pool).withParallelSortThreshold(10);
+        assertSame(pool, parallel.sortPool());
+        assertEquals(10, parallel.parallelSortThreshold());
+        assertNull(SortConfig.defaults().sortPool());
+        assertFalse(SortConfig.defaults().offHeap());
+        assertTrue(cfg.withOffHeap(true).offHeap());
+    }
+
+    @Test
+    void shouldThrow_WhenValuesAreInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> new SortConfig(true, 0, 1024));
+        assertThrows(IllegalArgumentException.class, () -> new SortConfig(true, 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> SortConfig.defaults().withParallelSortThreshold(0));
+    }
+}
@@ -0,0 +1,145 @@
+package org.github.faberna.file.split.model;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LengthPrefixedSeparatorTest {
+
+    private static final byte[] SYNC = "#SYNC-MARKER-01#".getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+    // lengths around the varint byte boundaries
+    private static final int[] LENGTHS = {0, 1, 127, 128, 300, 16383, 16384, 70000, 5};
+
+    @TempDir
+    Path tmp;
+
+    /** The payloads framed one after the other, with a sync block before every third record; record ends in ends. */
+    private static byte[] frame(LengthPrefixedSeparator sep, List<byte[]> payloads, List<Long> ends) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < payloads.size(); i++) {
+            if (sep.hasSyncMarker() && i % 3 == 1) sep.writeSync(out);
+            sep.writePrefix(out, payloads.get(i).length);
+            out.write(payloads.get(i));
+            ends.add((long) out.size());
+        }
+        return out.toByteArray();
+    }
+
+    /** Binary payloads: every byte value, separators and prefix-looking bytes included. */
+    private static List<byte[]> payloads() {
+        Random random = new Random(47);
+        List<byte[]> payloads = new ArrayList<>();
+        for (int length : LENGTHS) {
+            byte[] payload = new byte[length];
+            random.nextBytes(payload);
+            payloads.add(payload);
+        }
+        return payloads;
+    }
+
+    @ParameterizedTest
+    @EnumSource(LengthPrefixedSeparator.Prefix.class)
+    void readerShouldReturnThePayloadsAndSkipSyncBlocks(LengthPrefixedSeparator.Prefix prefix) throws IOException {
+        for (LengthPrefixedSeparator sep : List.of(new LengthPrefixedSeparator(prefix), new LengthPrefixedSeparator(prefix, SYNC))) {
+            List<byte[]> payloads = payloads();
+            List<Long> ends = new ArrayList<>();
+            byte[] framed = frame(sep, payloads, ends);
+
+            LengthPrefixedSeparator.Reader reader = sep.reader(new ByteArrayInputStream(framed));
+            for (int i = 0; i < payloads.size(); i++) {
+                assertThat(reader.next()).as("%s record %d", sep, i).isEqualTo(payloads.get(i));
+                assertThat(reader.position()).isEqualTo(ends.get(i));
+            }
+            assertThat(reader.next()).isNull();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(LengthPrefixedSeparator.Prefix.class)
+    void scannerShouldHopToEveryRecordEndAcrossChunks(LengthPrefixedSeparator.Prefix prefix) throws IOException {
+        for (LengthPrefixedSeparator sep : List.of(new LengthPrefixedSeparator(prefix), new LengthPrefixedSeparator(prefix, SYNC))) {
+            List<Long> expected = new ArrayList<>();
+            byte[] framed = frame(sep, payloads(), expected);
+
+            for (int chunk : new int[]{1, 2, 3, 7, 100, 4096, framed.length}) {
+                SeparatorScanner scanner = SeparatorScanner.of(sep);
+                List<Long> ends = new ArrayList<>();
+                for (int base = 0; base < framed.length; base += chunk) {
+                    int len = Math.min(chunk, framed.length - base);
+                    ByteBuffer buf = ByteBuffer.allocateDirect(len).put(framed, base, len);
+                    int from = 0;
+                    int end;
+                    while ((end = scanner.nextEnd(buf, from, len)) >= 0) {
+                        ends.add((long) base + end);
+                        from = end;
+                    }
+                }
+                assertThat(ends).as("%s chunk %d", sep, chunk).isEqualTo(expected);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(LengthPrefixedSeparator.Prefix.class)
+    void findNextSeparatorEndShouldReturnARecordBoundary(LengthPrefixedSeparator.Prefix prefix) throws IOException {
+        LengthPrefixedSeparator hopping = new LengthPrefixedSeparator(prefix);
+        List<Long> ends = new ArrayList<>();
+        Path plain = tmp.resolve("plain-" + prefix);
+        Files.write(plain, frame(hopping, payloads(), ends));
+
+        LengthPrefixedSeparator synced = new LengthPrefixedSeparator(prefix, SYNC);
+        List<Long> syncedEnds = new ArrayList<>();
+        Path withSync = tmp.resolve("sync-" + prefix);
+        byte[] framed = frame(synced, payloads(), syncedEnds);
+        Files.write(withSync, framed);
+
+        try (FileChannel ch = FileChannel.open(plain)) {
+            long size = ch.size();
+            for (long from : new long[]{0, 1, ends.get(2) - 1, ends.get(2), ends.get(2) + 1}) {
+                long expected = ends.stream().filter(e -> e >= Math.max(1, from)).findFirst().orElseThrow();
+                assertThat(hopping.findNextSeparatorEnd(ch, from, size)).as("from %d", from).isEqualTo(expected);
+            }
+            assertThat(hopping.findNextSeparatorEnd(ch, size, size)).isEqualTo(-1);
+        }
+        try (FileChannel ch = FileChannel.open(withSync)) {
+            // sync blocks are written before records 1, 4 and 7: they start where records 0, 3 and 6 end
+            assertThat(synced.findNextSeparatorEnd(ch, 0, ch.size())).isEqualTo(syncedEnds.get(0));
+            assertThat(synced.findNextSeparatorEnd(ch, syncedEnds.get(0) + 1, ch.size())).isEqualTo(syncedEnds.get(3));
+            assertThat(synced.findNextSeparatorEnd(ch, syncedEnds.get(6) + 1, ch.size())).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void shouldRejectMalformedFraming() throws IOException {
+        assertThrows(IllegalArgumentException.class,
+                () -> new LengthPrefixedSeparator(LengthPrefixedSeparator.Prefix.INT32, new byte[]{1, 2, 3}));
+
+        LengthPrefixedSeparator varint = new LengthPrefixedSeparator(LengthPrefixedSeparator.Prefix.VARINT);
+        byte[] tooLong = new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 1};
+        assertThrows(IllegalStateException.class, () -> varint.reader(new ByteArrayInputStream(tooLong)).next());
+
+        // a sync block in a file framed without sync marker
+        LengthPrefixedSeparator int32 = new LengthPrefixedSeparator(LengthPrefixedSeparator.Prefix.INT32);
+        byte[] sync = new byte[]{-1, -1, -1, -1, 0};
+        assertThrows(IllegalStateException.class, () -> int32.reader(new ByteArrayInputStream(sync)).next());
+
+        byte[] truncated = Arrays.copyOf(new byte[]{0, 0, 0, 9, 'a', 'b'}, 6);
+        assertThrows(java.io.EOFException.class, () -> int32.reader(new ByteArrayInputStream(truncated)).next());
+    }
+}
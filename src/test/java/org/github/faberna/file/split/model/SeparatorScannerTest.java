@@ -0,0 +1,67 @@
+package org.github.faberna.file.split.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SeparatorScannerTest {
+
+    /** Feeds {@code input} in chunks of {@code chunk} bytes and returns the absolute record end offsets. */
+    private static List<Integer> ends(SeparatorScanner scanner, String input, int chunk) {
+        byte[] all = input.getBytes(StandardCharsets.UTF_8);
+        List<Integer> ends = new ArrayList<>();
+        for (int base = 0; base < all.length; base += chunk) {
+            int len = Math.min(chunk, all.length - base);
+            // direct, like the pooled buffers used by the splitters
+            ByteBuffer buf = ByteBuffer.allocateDirect(len).put(all, base, len);
+            int from = 0;
+            int end;
+            while ((end = scanner.nextEnd(buf, from, len)) >= 0) {
+                ends.add(base + end);
+                from = end;
+            }
+        }
+        if (scanner.pendingEnd()) ends.add(all.length);
+        return ends;
+    }
+
+    @Test
+    void newlineScannerShouldMatchLfCrlfAndCrAcrossChunks() {
+        String input = "a\nbb\r\nccc\rd\r";
+        List<Integer> expected = List.of(2, 6, 10, 12);
+        for (int chunk = 1; chunk <= input.length(); chunk++) {
+            assertThat(ends(SeparatorScanner.of(new NewlineSeparator(1, null)), input, chunk))
+                    .as("chunk %d", chunk)
+                    .containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void singleByteScannerShouldFindEverySeparator() {
+        SeparatorScanner scanner = SeparatorScanner.of(new SingleByteSeparator((byte) '$', 4));
+        assertThat(ends(scanner, "a$$bc$d", 2)).containsExactly(2, 3, 6);
+        assertThat(scanner.pendingEnd()).isFalse();
+    }
+
+    @Test
+    void resetShouldDropPendingCr() {
+        SeparatorScanner scanner = SeparatorScanner.of(new NewlineSeparator(1, null));
+        ByteBuffer cr = ByteBuffer.wrap(new byte[]{'x', '\r'});
+        assertThat(scanner.nextEnd(cr, 0, 2)).isEqualTo(-1);
+        assertThat(scanner.pendingEnd()).isTrue();
+        scanner.reset();
+        assertThat(scanner.pendingEnd()).isFalse();
+    }
+
+    @Test
+    void shouldRejectSeparatorsWithoutBytes() {
+        assertThrows(IllegalArgumentException.class, () -> SeparatorScanner.of(new CustomBytesSeparator()));
+        assertThrows(IllegalArgumentException.class, () -> SeparatorScanner.of(null));
+    }
+}
@@ -0,0 +1,117 @@
+package org.github.faberna.file.split.plan;
+
+import org.github.faberna.file.split.model.FixedLengthSeparator;
+import org.github.faberna.file.split.model.LengthPrefixedSeparator;
+import org.github.faberna.file.split.model.NewlineSeparator;
+import org.github.faberna.file.split.model.Range;
+import org.github.faberna.file.split.model.SingleByteSeparator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SplitPlannerPlanByRecordsTest {
+
+    @TempDir
+    Path tmp;
+
+    /** 10 lines of 4 bytes each ("000\n", "001\n", ...): record k ends at offset 4 * k. */
+    private Path tenLines() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10; i++) sb.append(String.format("%03d\n", i));
+        Path input = tmp.resolve("in.txt");
+        Files.writeString(input, sb.toString(), StandardCharsets.UTF_8);
+        return input;
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "3, 1", "3, 2", "3, 4", "3, 16",
+            "1, 3", "10, 3", "11, 3", "4, 5"
+    })
+    void shouldCutExactlyEveryNRecords_regardlessOfParallelism(long recordsPerPart, int parallelism) throws IOException {
+        Path input = tenLines();
+
+        SplitPlan plan = new SplitPlanner().planByRecords(input, tmp, recordsPerPart, new NewlineSeparator(2, null), parallelism);
+
+        List<Range> parts = plan.parts();
+        long expectedParts = (10 + recordsPerPart - 1) / recordsPerPart;
+        assertEquals(expectedParts, parts.size());
+        long start = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            long records = Math.min(recordsPerPart, 10 - i * recordsPerPart);
+            assertEquals(new Range(start, start + 4 * records), parts.get(i), "part " + i);
+            start += 4 * records;
+        }
+    }
+
+    @Test
+    void shouldCutFixedLengthRecordsWithoutReadingTheFile() throws IOException {
+        Path input = tmp.resolve("fixed.bin");
+        Files.writeString(input, "x".repeat(10 * 6 + 2), StandardCharsets.UTF_8); // 10 records of 6 bytes + a short tail
+
+        SplitPlan plan = new SplitPlanner().planByRecords(input, tmp, 4, new FixedLengthSeparator(6), 3);
+
+        assertEquals(List.of(new Range(0, 24), new Range(24, 48), new Range(48, 62)), plan.parts());
+    }
+
+    @Test
+    void shouldCutLengthPrefixedRecordsByHoppingOrOnSyncBlocks() throws IOException {
+        byte[] sync = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+        for (LengthPrefixedSeparator sep : List.of(
+                new LengthPrefixedSeparator(LengthPrefixedSeparator.Prefix.VARINT),
+                new LengthPrefixedSeparator(LengthPrefixedSeparator.Prefix.VARINT, sync))) {
+            // 10 records "\n\n\n" (a newline separator would see 3 records each), a sync block before record 5
+            java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+            List<Long> ends = new java.util.ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                if (i == 5 && sep.hasSyncMarker()) sep.writeSync(out);
+                sep.writePrefix(out, 3);
+                out.write("\n\n\n".getBytes(StandardCharsets.US_ASCII));
+                ends.add((long) out.size());
+            }
+            Path input = tmp.resolve("framed.bin");
+            Files.write(input, out.toByteArray());
+
+            SplitPlan plan = new SplitPlanner().planByRecords(input, tmp, 4, sep, 3);
+
+            assertEquals(List.of(new Range(0, ends.get(3)), new Range(ends.get(3), ends.get(7)), new Range(ends.get(7), ends.get(9))),
+                    plan.parts(), sep.toString());
+        }
+    }
+
+    @Test
+    void shouldCountTrailingRecordWithoutSeparator() throws IOException {
+        Path input = tmp.resolve("tail.txt");
+        Files.writeString(input, "a$bb$ccc$d", StandardCharsets.UTF_8);
+
+        SplitPlan plan = new SplitPlanner().planByRecords(input, tmp, 2, new SingleByteSeparator((byte) '$', 3), 2);
+
+        assertEquals(List.of(new Range(0, 5), new Range(5, 10)), plan.parts());
+    }
+
+    @Test
+    void shouldReturnEmptyPlanForEmptyFile() throws IOException {
+        Path input = tmp.resolve("empty.txt");
+        Files.writeString(input, "");
+
+        SplitPlan plan = new SplitPlanner().planByRecords(input, tmp, 5, new NewlineSeparator(8, null), 4);
+
+        assertTrue(plan.parts().isEmpty());
+    }
+
+    @Test
+    void shouldRejectNonPositiveRecordsPerPart() throws IOException {
+        Path input = tenLines();
+        SplitPlanner planner = new SplitPlanner();
+        assertThrows(IllegalArgumentException.class, () -> planner.planByRecords(input, tmp, 0, new NewlineSeparator(8, null), 2));
+    }
+}
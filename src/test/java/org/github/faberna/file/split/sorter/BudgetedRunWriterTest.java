@@ -0,0 +1,139 @@
+package org.github.faberna.file.split.sorter;
+
+import org.github.faberna.file.segment.model.CollatedSegment;
+import org.github.faberna.file.segment.model.KeySpec;
+import org.github.faberna.file.segment.model.RangeSegment;
+import org.github.faberna.file.split.model.LineEnding;
+import org.github.faberna.file.split.util.MemoryBudget;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BudgetedRunWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static final KeySpec KEY = KeySpec.of(new RangeSegment(0, 4));
+
+    @Test
+    void shouldSpillSortedRunsWhenTheBudgetIsUsedUp() throws IOException {
+        // room for 10 lines of 8 chars
+        MemoryBudget budget = new MemoryBudget(10 * MemoryBudget.estimateLine(8));
+        RunPathAllocator spills = new RunPathAllocator(tempDir, "run-", ".txt");
+        BudgetedRunWriter writer = new BudgetedRunWriter(KEY, KEY.comparator(), StandardCharsets.UTF_8, budget, spills);
+
+        List<String> all = new ArrayList<>();
+        for (int i = 0; i < 35; i++) {
+            String line = String.format("%04d-abc", (i * 7) % 35);
+            all.add(line);
+            writer.acceptLine(line, LineEnding.LF);
+        }
+        Path last = tempDir.resolve("run-last.txt");
+        writer.endPart(last);
+
+        assertThat(writer.spilledRuns()).isEqualTo(3);
+        assertThat(budget.reservedBytes()).isZero();
+
+        List<Path> runs = new ArrayList<>(spills.allocated());
+        runs.add(last);
+        List<String> written = new ArrayList<>();
+        for (Path run : runs) {
+            List<String> lines = Files.readAllLines(run, StandardCharsets.UTF_8);
+            assertThat(lines).isSorted();
+            written.addAll(lines);
+        }
+        assertThat(written).containsExactlyInAnyOrderElementsOf(all);
+    }
+
+    @Test
+    void writersAtTheirShareShouldSpillInsteadOfBlocking() throws IOException {
+        MemoryBudget budget = new MemoryBudget(4 * MemoryBudget.estimateLine(8));
+        RunPathAllocator spills = new RunPathAllocator(tempDir, "run-", ".txt");
+        BudgetedRunWriter a = new BudgetedRunWriter(KEY, KEY.comparator(), StandardCharsets.UTF_8, budget, spills, 2);
+        BudgetedRunWriter b = new BudgetedRunWriter(KEY, KEY.comparator(), StandardCharsets.UTF_8, budget, spills, 2);
+
+        for (int i = 0; i < 2; i++) a.acceptLine(String.format("%04d-aaa", i), LineEnding.LF);
+        // b fills the other half, then its share is used up: it spills its own lines to make room
+        for (int i = 0; i < 5; i++) b.acceptLine(String.format("%04d-bbb", i), LineEnding.LF);
+
+        assertThat(a.spilledRuns()).isZero();
+        assertThat(b.spilledRuns()).isEqualTo(2);
+        assertThat(spills.allocated()).hasSize(2).allMatch(Files::exists);
+
+        a.endPart(tempDir.resolve("a.txt"));
+        b.endPart(tempDir.resolve("b.txt"));
+        assertThat(budget.reservedBytes()).isZero();
+    }
+
+    @Test
+    void writersBelowTheirShareShouldWaitForTheLargerHoldersToSpill() throws Exception {
+        MemoryBudget budget = new MemoryBudget(4 * MemoryBudget.estimateLine(8));
+        RunPathAllocator spills = new RunPathAllocator(tempDir, "run-", ".txt");
+        BudgetedRunWriter a = new BudgetedRunWriter(KEY, KEY.comparator(), StandardCharsets.UTF_8, budget, spills, 2);
+        BudgetedRunWriter b = new BudgetedRunWriter(KEY, KEY.comparator(), StandardCharsets.UTF_8, budget, spills, 2);
+
+        for (int i = 0; i < 3; i++) a.acceptLine(String.format("%04d-aaa", i), LineEnding.LF);
+        b.acceptLine("0000-bbb", LineEnding.LF);
+        // the budget is used up and b holds a single line: it waits instead of spilling a tiny run
+        Thread waiting = new Thread(() -> b.acceptLine("0001-bbb", LineEnding.LF));
+        waiting.start();
+        waiting.join(200);
+        assertThat(waiting.isAlive()).isTrue();
+
+        // a holds more than its share: its next line spills, which lets b go on
+        a.acceptLine("0003-aaa", LineEnding.LF);
+        waiting.join(10_000);
+        assertThat(waiting.isAlive()).isFalse();
+        assertThat(a.spilledRuns()).isEqualTo(1);
+        assertThat(b.spilledRuns()).isZero();
+
+        a.endPart(tempDir.resolve("a.txt"));
+        b.endPart(tempDir.resolve("b.txt"));
+        assertThat(Files.readAllLines(tempDir.resolve("b.txt"))).containsExactly("0000-bbb", "0001-bbb");
+        assertThat(budget.reservedBytes()).isZero();
+    }
+
+    @Test
+    void shouldChargeTheEncodedBytesOfTheLines() throws IOException {
+        MemoryBudget budget = new MemoryBudget(1 << 20);
+        RunPathAllocator spills = new RunPathAllocator(tempDir, "run-", ".txt");
+        BudgetedRunWriter utf8 = new BudgetedRunWriter(KEY, KEY.comparator(), StandardCharsets.UTF_8, budget, spills);
+
+        // 2 + 3 + 4 bytes
+        utf8.acceptLine("\u00e9\u20ac\ud83d\ude00", LineEnding.LF);
+        assertThat(budget.reservedBytes()).isEqualTo(MemoryBudget.estimateLine(9));
+        byte[] record = "abc".getBytes(StandardCharsets.UTF_8);
+        utf8.acceptRecord(record, 0, record.length, StandardCharsets.UTF_8, LineEnding.LF);
+        assertThat(budget.reservedBytes()).isEqualTo(MemoryBudget.estimateLine(9) + MemoryBudget.estimateLine(3));
+        utf8.endPart(tempDir.resolve("last.txt"));
+        assertThat(budget.reservedBytes()).isZero();
+    }
+
+    @Test
+    void shouldChargeTheCollationKeysOfTheBufferedLines() throws IOException {
+        KeySpec collated = KeySpec.of(new CollatedSegment(new RangeSegment(0, 4), Locale.FRENCH));
+        MemoryBudget budget = new MemoryBudget(1 << 20);
+        RunPathAllocator spills = new RunPathAllocator(tempDir, "run-", ".txt");
+        BudgetedRunWriter writer =
+                new BudgetedRunWriter(collated, collated.comparator(), StandardCharsets.UTF_8, budget, spills);
+
+        writer.acceptLine("b\u00e9b\u00e9", LineEnding.LF);
+        writer.acceptLine("abcd", LineEnding.LF);
+        // the key of the first line is charged with the second one
+        assertThat(budget.reservedBytes()).isGreaterThan(MemoryBudget.estimateLine(6) + MemoryBudget.estimateLine(4));
+
+        writer.endPart(tempDir.resolve("last.txt"));
+        assertThat(budget.reservedBytes()).isZero();
+        assertThat(Files.readAllLines(tempDir.resolve("last.txt"))).containsExactly("abcd", "b\u00e9b\u00e9");
+    }
+}
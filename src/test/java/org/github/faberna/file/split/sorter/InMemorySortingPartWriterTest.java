@@ -1,8 +1,12 @@
 package org.github.faberna.file.split.sorter;
 
+import org.github.faberna.file.segment.model.CollatedSegment;
+import org.github.faberna.file.segment.model.DelimitedSegment;
 import org.github.faberna.file.segment.model.KeySpec;
+import org.github.faberna.file.segment.model.Mode;
 import org.github.faberna.file.segment.model.RangeSegment;
 import org.github.faberna.file.segment.model.Segment;
+import org.github.faberna.file.split.config.SortConfig;
 import org.github.faberna.file.split.model.LineEnding;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -13,7 +17,13 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.text.Collator;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -118,4 +128,200 @@ class InMemorySortingPartWriterTest {
 
         assertEquals("", Files.readString(out2, charset));
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldSortAsciiAndNonAsciiLinesLikeStringsAndKeepTheirBytes() throws Exception {
+        KeySpec ks = KeySpec.of(new RangeSegment(0, 2));
+        InMemorySortingPartWriter writer = new InMemorySortingPartWriter(ks, ks.comparator(), StandardCharsets.UTF_8);
+
+        List<String> lines = List.of("zz", "àb", "ab2", "ab1", "éé", "a", "ab€");
+        for (String line : lines) writer.acceptLine(line, LineEnding.CRLF);
+
+        Path out = tempDir.resolve("part-0005.txt");
+        writer.endPart(out);
+
+        List<String> expected = lines.stream()
+                .sorted(ks.comparator().thenComparing(Comparator.naturalOrder()))
+                .toList();
+        assertEquals(String.join("\r\n", expected), Files.readString(out, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void shouldSortCollatedKeysThroughTheirCollationKeys() throws Exception {
+        KeySpec ks = KeySpec.of(new CollatedSegment(new RangeSegment(0, 10), Locale.FRENCH, Collator.PRIMARY));
+        InMemorySortingPartWriter writer = new InMemorySortingPartWriter(ks, ks.comparator(), StandardCharsets.UTF_8);
+
+        List<String> lines = List.of("côte", "Zèbre", "cote", "Cote", "abc", "Été", "ete");
+        for (String line : lines) writer.acceptLine(line, LineEnding.LF);
+        // the collation keys are part of what the writer holds
+        assertTrue(writer.keyBytes() > 0);
+        InMemorySortingPartWriter plain = new InMemorySortingPartWriter(KeySpec.of(new RangeSegment(0, 10)),
+                KeySpec.of(new RangeSegment(0, 10)).comparator(), StandardCharsets.UTF_8);
+        for (String line : lines) plain.acceptLine(line, LineEnding.LF);
+        assertEquals(0, plain.keyBytes());
+        assertEquals(plain.bytes() + writer.keyBytes(), writer.bytes());
+
+        Path out = tempDir.resolve("part-0007.txt");
+        writer.endPart(out);
+
+        assertEquals("abc\nCote\ncote\ncôte\nete\nÉté\nZèbre", Files.readString(out, StandardCharsets.UTF_8));
+        assertEquals(0, writer.keyBytes());
+    }
+
+    @Test
+    void shouldUseCustomComparatorOnDecodedLines() throws Exception {
+        Comparator<String> byLength = Comparator.comparingInt(String::length);
+        InMemorySortingPartWriter writer = new InMemorySortingPartWriter(keySpecWholeLine(), byLength, StandardCharsets.UTF_8);
+
+        writer.acceptLine("ccc", LineEnding.LF);
+        writer.acceptLine("b", LineEnding.LF);
+        writer.acceptLine("ää", LineEnding.LF);
+        writer.acceptLine("a", LineEnding.LF);
+
+        Path out = tempDir.resolve("part-0006.txt");
+        writer.endPart(out);
+
+        assertEquals("a\nb\nää\nccc", Files.readString(out, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void shouldWriteNonAsciiCompatibleCharsetThroughDecodedLines() throws Exception {
+        InMemorySortingPartWriter writer = new InMemorySortingPartWriter(keySpecWholeLine(), keySpecWholeLine().comparator(), StandardCharsets.UTF_16);
+
+        writer.acceptLine("b", LineEnding.LF);
+        writer.acceptLine("a", LineEnding.LF);
+
+        Path out = tempDir.resolve("part-0007.txt");
+        writer.endPart(out);
+
+        assertEquals("a\nb", Files.readString(out, StandardCharsets.UTF_16));
+    }
+
+    @Test
+    void shouldSortALargePartOnTheSortPoolLikeOnOneThread() throws Exception {
+        KeySpec ks = KeySpec.of(new RangeSegment(0, 3));
+        SortConfig parallel = SortConfig.defaults().withSortPool(new ForkJoinPool(4)).withParallelSortThreshold(64);
+        InMemorySortingPartWriter single = new InMemorySortingPartWriter(ks, ks.comparator(), StandardCharsets.UTF_8);
+        InMemorySortingPartWriter forked = new InMemorySortingPartWriter(ks, ks.comparator(), StandardCharsets.UTF_8, parallel);
+
+        Random random = new Random(7);
+        for (int i = 0; i < 20_000; i++) {
+            String line = String.format("%03d-%s", random.nextInt(1000), i % 5 == 0 ? "é" + i : Integer.toString(i));
+            single.acceptLine(line, LineEnding.LF);
+            forked.acceptLine(line, LineEnding.LF);
+        }
+
+        Path expected = tempDir.resolve("part-single.txt");
+        Path actual = tempDir.resolve("part-forked.txt");
+        single.endPart(expected);
+        forked.endPart(actual);
+
+        assertEquals(Files.readString(expected, StandardCharsets.UTF_8), Files.readString(actual, StandardCharsets.UTF_8));
+        parallel.sortPool().shutdown();
+    }
+
+    @Test
+    void shouldSortOnPreExtractedColumnsLikeOnStrings() throws Exception {
+        KeySpec ks = KeySpec.of(new DelimitedSegment(',', 3, null, Mode.INT), new DelimitedSegment(',', 0, null));
+        InMemorySortingPartWriter writer = new InMemorySortingPartWriter(ks, ks.comparator(), StandardCharsets.UTF_8);
+
+        Random random = new Random(11);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            lines.add("c0,c1,c2,c3," + (random.nextInt(200) - 100) + ",tail-" + random.nextInt(50));
+        }
+        for (String line : lines) writer.acceptLine(line, LineEnding.LF);
+
+        Path out = tempDir.resolve("part-0008.txt");
+        writer.endPart(out);
+
+        List<String> expected = lines.stream()
+                .sorted(((Comparator<String>) ks.comparator()).thenComparing(Comparator.naturalOrder()))
+                .toList();
+        assertEquals(expected, Files.readAllLines(out, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void columnTableSizeShouldFailClearlyInsteadOfOverflowing() {
+        assertEquals(3_000, InMemorySortingPartWriter.columnCells(1_000, 3));
+        // 800M records x 3 segments wraps to a negative int
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> InMemorySortingPartWriter.columnCells(800_000_000, 3));
+        assertTrue(e.getMessage().contains("800000000 records x 3 segments"));
+    }
+
+    @Test
+    void shouldSortOffHeapLikeOnHeap() throws Exception {
+        KeySpec ks = KeySpec.of(new RangeSegment(0, 3));
+        InMemorySortingPartWriter heap = new InMemorySortingPartWriter(ks, ks.comparator(), StandardCharsets.UTF_8);
+        InMemorySortingPartWriter offHeap = new InMemorySortingPartWriter(ks, ks.comparator(), StandardCharsets.UTF_8,
+                SortConfig.defaults().withOffHeap(true));
+
+        Random random = new Random(5);
+        for (int i = 0; i < 5_000; i++) {
+            String line = String.format("%03d-%s", random.nextInt(1000), i % 7 == 0 ? "ü" + i : Integer.toString(i));
+            LineEnding ending = i % 3 == 0 ? LineEnding.CRLF : LineEnding.LF;
+            heap.acceptLine(line, ending);
+            offHeap.acceptLine(line, ending);
+        }
+
+        Path expected = tempDir.resolve("part-heap.txt");
+        Path actual = tempDir.resolve("part-offheap.txt");
+        heap.endPart(expected);
+        offHeap.endPart(actual);
+
+        assertEquals(Files.readString(expected, StandardCharsets.UTF_8), Files.readString(actual, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void shouldDetectAPresortedPartAndWriteItUnchanged() throws Exception {
+        KeySpec ks = KeySpec.of(new RangeSegment(0, 1));
+        InMemorySortingPartWriter writer = new InMemorySortingPartWriter(ks, ks.comparator(), StandardCharsets.UTF_8);
+
+        writer.acceptLine("a2", LineEnding.LF);
+        writer.acceptLine("b1", LineEnding.CRLF);
+        writer.acceptLine("b1", LineEnding.LF);
+        writer.acceptLine("c", LineEnding.LF);
+        assertTrue(writer.isPresorted());
+        assertEquals(1, writer.droppedTailBytes());
+
+        Path out = tempDir.resolve("part-presorted.txt");
+        writer.endPart(out);
+        assertEquals("a2\nb1\r\nb1\nc", Files.readString(out, StandardCharsets.UTF_8));
+
+        // same key, smaller line: out of order under the full order (key, then line)
+        writer.acceptLine("b2", LineEnding.LF);
+        writer.acceptLine("b1", LineEnding.LF);
+        assertFalse(writer.isPresorted());
+        writer.endPart(out);
+        assertEquals("b1\nb2", Files.readString(out, StandardCharsets.UTF_8));
+        assertTrue(writer.isPresorted());
+    }
+
+    @Test
+    void shouldSortRawRecordsAndWriteTheirBytesUnchanged() throws Exception {
+        KeySpec ks = KeySpec.of(new RangeSegment(0, 2));
+        byte[] malformed = {'b', '1', (byte) 0xFF, 'z'};
+        byte[] plain = "a2,plain".getBytes(StandardCharsets.UTF_8);
+        byte[] accented = "c3,é".getBytes(StandardCharsets.UTF_8);
+
+        for (SortConfig config : List.of(SortConfig.defaults(), SortConfig.defaults().withOffHeap(true))) {
+            InMemorySortingPartWriter writer = new InMemorySortingPartWriter(ks, ks.comparator(), StandardCharsets.UTF_8, config);
+            writer.acceptRecord(accented, 0, accented.length, StandardCharsets.UTF_8, LineEnding.LF);
+            writer.acceptRecord(malformed, 0, malformed.length, StandardCharsets.UTF_8, LineEnding.LF);
+            writer.acceptRecord(plain, 0, plain.length, StandardCharsets.UTF_8, LineEnding.LF);
+            assertFalse(writer.isPresorted());
+
+            Path out = tempDir.resolve("part-bytes.txt");
+            writer.endPart(out);
+
+            byte[] expected = new byte[plain.length + malformed.length + accented.length + 2];
+            System.arraycopy(plain, 0, expected, 0, plain.length);
+            expected[plain.length] = '\n';
+            System.arraycopy(malformed, 0, expected, plain.length + 1, malformed.length);
+            expected[plain.length + 1 + malformed.length] = '\n';
+            System.arraycopy(accented, 0, expected, plain.length + malformed.length + 2, accented.length);
+            assertArrayEquals(expected, Files.readAllBytes(out));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.github.faberna.file.split.sorter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IndexSortTest {
+
+    @Test
+    void shouldSortIndexesByTheirKeys() {
+        Random random = new Random(42);
+        for (int n : new int[]{0, 1, 2, 31, 32, 33, 1000, 10_000}) {
+            long[] keys = random.longs(n, 0, 100).toArray();
+            int[] idx = new int[n];
+            for (int i = 0; i < n; i++) idx[i] = i;
+
+            IndexSort.sort(idx, (a, b) -> Long.compare(keys[a], keys[b]));
+
+            long[] sorted = Arrays.stream(idx).mapToLong(i -> keys[i]).toArray();
+            long[] expected = keys.clone();
+            Arrays.sort(expected);
+            assertThat(sorted).as("n=%d", n).containsExactly(expected);
+            assertThat(Arrays.stream(idx).sorted().toArray()).as("permutation n=%d", n)
+                    .containsExactly(java.util.stream.IntStream.range(0, n).toArray());
+        }
+    }
+
+    @Test
+    void shouldBeStableForEqualKeys() {
+        int[] idx = new int[100];
+        for (int i = 0; i < idx.length; i++) idx[i] = i;
+
+        IndexSort.sort(idx, (a, b) -> Integer.compare(a % 3, b % 3));
+
+        for (int i = 1; i < idx.length; i++) {
+            if (idx[i - 1] % 3 == idx[i] % 3) assertThat(idx[i - 1]).isLessThan(idx[i]);
+        }
+    }
+
+    @Test
+    void parallelSortShouldGiveTheSameOrderAsSort() {
+        Random random = new Random(42);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int n : new int[]{0, 1, 100, 10_000, 100_000}) {
+                long[] keys = random.longs(n, 0, 1000).toArray();
+                int[] expected = IntStream.range(0, n).toArray();
+                int[] actual = expected.clone();
+                AtomicInteger comparators = new AtomicInteger();
+
+                IndexSort.sort(expected, (a, b) -> Long.compare(keys[a], keys[b]));
+                IndexSort.parallelSort(actual, () -> {
+                    comparators.incrementAndGet();
+                    return (a, b) -> Long.compare(keys[a], keys[b]);
+                }, pool, 1000);
+
+                // stable on both sides: same permutation, not only the same keys
+                assertThat(actual).as("n=%d", n).containsExactly(expected);
+                if (n > 1000) assertThat(comparators.get()).isGreaterThan(1);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
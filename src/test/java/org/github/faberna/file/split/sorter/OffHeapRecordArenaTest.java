@@ -0,0 +1,86 @@
+package org.github.faberna.file.split.sorter;
+
+import org.github.faberna.file.split.model.LineEnding;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OffHeapRecordArenaTest {
+
+    @Test
+    void shouldKeepBytesEndingsAndCharsOfEveryRecord() throws IOException {
+        OffHeapRecordArena arena = new OffHeapRecordArena(StandardCharsets.UTF_8);
+        arena.add("plain", LineEnding.CRLF);
+        arena.add("çà", LineEnding.CR);
+        arena.add("", LineEnding.NONE);
+
+        assertThat(arena.size()).isEqualTo(3);
+        assertThat(arena.bytes()).isEqualTo(5 + 4);
+        assertThat(arena.allAscii()).isFalse();
+        assertThat(arena.ending(0)).isEqualTo(LineEnding.CRLF);
+        assertThat(arena.ending(1)).isEqualTo(LineEnding.CR);
+        assertThat(arena.ending(2)).isEqualTo(LineEnding.NONE);
+
+        ByteCharSequence view = new ByteCharSequence();
+        assertThat(arena.chars(0, view).toString()).isEqualTo("plain");
+        assertThat(arena.chars(0, view).subSequence(1, 3).toString()).isEqualTo("la");
+        assertThat(arena.chars(1, view).toString()).isEqualTo("çà");
+        assertThat(arena.string(2)).isEmpty();
+        assertThat(arena.byteAt(0, 1)).isEqualTo('l');
+        assertThat(arena.byteAt(0, 5)).isZero();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        arena.writeRecord(1, out);
+        assertThat(out.toByteArray()).isEqualTo("çà".getBytes(StandardCharsets.UTF_8));
+        arena.clear();
+    }
+
+    @Test
+    void compareLinesShouldMatchStringCompareTo() {
+        String[] lines = {"abc", "abd", "ab", "", "~", "é", "\u007f", "aé"};
+        OffHeapRecordArena arena = new OffHeapRecordArena(StandardCharsets.UTF_8);
+        for (String line : lines) arena.add(line, LineEnding.LF);
+
+        ByteCharSequence a = new ByteCharSequence();
+        ByteCharSequence b = new ByteCharSequence();
+        for (int i = 0; i < lines.length; i++) {
+            for (int j = 0; j < lines.length; j++) {
+                assertThat(Integer.signum(arena.compareLines(i, j, a, b)))
+                        .as("%s vs %s", lines[i], lines[j])
+                        .isEqualTo(Integer.signum(lines[i].compareTo(lines[j])));
+            }
+        }
+        arena.clear();
+    }
+
+    @Test
+    void shouldSpanIndexChunksAndPagesAndReleaseThemOnClear() {
+        OffHeapRecordArena arena = new OffHeapRecordArena(StandardCharsets.US_ASCII);
+        int records = OffHeapRecordArena.INDEX_CHUNK * 2 + 5;
+        for (int i = 0; i < records; i++) arena.add("record-" + i, LineEnding.LF);
+        String big = "x".repeat((int) (2 * (1L << 20)) + 10);
+        arena.add(big, LineEnding.NONE);
+
+        assertThat(arena.size()).isEqualTo(records + 1);
+        assertThat(arena.allAscii()).isTrue();
+        assertThat(arena.string(records - 1)).isEqualTo("record-" + (records - 1));
+        assertThat(arena.string(records)).isEqualTo(big);
+
+        ByteCharSequence view = new ByteCharSequence();
+        CharSequence released = arena.chars(0, view);
+        arena.clear();
+        assertThat(arena.size()).isZero();
+        assertThat(arena.bytes()).isZero();
+        // the memory is gone, not waiting for a GC
+        assertThrows(IllegalStateException.class, released::toString);
+
+        arena.add("again", LineEnding.LF);
+        assertThat(arena.string(0)).isEqualTo("again");
+        arena.clear();
+    }
+}
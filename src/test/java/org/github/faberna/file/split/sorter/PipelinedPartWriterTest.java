@@ -0,0 +1,144 @@
+package org.github.faberna.file.split.sorter;
+
+import org.github.faberna.file.segment.model.KeySpec;
+import org.github.faberna.file.segment.model.RangeSegment;
+import org.github.faberna.file.split.config.SortConfig;
+import org.github.faberna.file.split.model.LineEnding;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PipelinedPartWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static final KeySpec KEY = KeySpec.of(new RangeSegment(0, 4));
+
+    private static PartWriterFactory sorting() {
+        return () -> new InMemorySortingPartWriter(KEY, KEY.comparator(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void shouldSortAndWriteEveryPartBeforeClose() throws IOException {
+        // budget smaller than one part: parts go through the pipeline one at a time
+        SortConfig config = new SortConfig(true, 3, 1);
+        List<List<String>> expected = new ArrayList<>();
+
+        try (PipelinedPartWriter writer = new PipelinedPartWriter(sorting(), config)) {
+            for (int p = 0; p < 20; p++) {
+                List<String> lines = new ArrayList<>();
+                for (int i = 0; i < 50; i++) lines.add(String.format("%04d-%d", (i * 31 + p) % 50, p));
+                for (String line : lines) writer.acceptLine(line, LineEnding.LF);
+                writer.endPart(tempDir.resolve("part-" + p + ".txt"));
+
+                Collections.sort(lines);
+                expected.add(lines);
+            }
+        }
+
+        for (int p = 0; p < 20; p++) {
+            assertThat(Files.readAllLines(tempDir.resolve("part-" + p + ".txt"), StandardCharsets.UTF_8))
+                    .containsExactlyElementsOf(expected.get(p));
+        }
+    }
+
+    @Test
+    void shouldFinalizeOtherWritersWithEndPart() throws IOException {
+        AtomicInteger ended = new AtomicInteger();
+        PartWriterFactory counting = () -> new PartWriter() {
+            @Override
+            public void acceptLine(String line, LineEnding ending) {
+                // discard
+            }
+
+            @Override
+            public void endPart(Path partFile) {
+                ended.incrementAndGet();
+            }
+        };
+
+        try (PipelinedPartWriter writer = new PipelinedPartWriter(counting, new SortConfig(true, 2, 1024))) {
+            for (int p = 0; p < 5; p++) {
+                writer.acceptLine("x", LineEnding.LF);
+                writer.endPart(tempDir.resolve("p" + p));
+            }
+        }
+        assertThat(ended).hasValue(5);
+    }
+
+    @Test
+    void closeShouldRethrowTheFirstFailure() {
+        PartWriterFactory failing = () -> new PartWriter() {
+            @Override
+            public void acceptLine(String line, LineEnding ending) {
+                // discard
+            }
+
+            @Override
+            public void endPart(Path partFile) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+
+        IOException e = assertThrows(IOException.class, () -> {
+            try (PipelinedPartWriter writer = new PipelinedPartWriter(failing, new SortConfig(true, 1, 1024))) {
+                writer.acceptLine("x", LineEnding.LF);
+                writer.endPart(tempDir.resolve("p"));
+            }
+        });
+        assertThat(e).hasMessage("disk full");
+    }
+
+    @Test
+    void shouldFreeTheBuffersOfPartsThatAreNotWritten() {
+        // the comparator fails on the first part: the parts behind it are drained, and the last one never handed off
+        Comparator<String> failing = (x, y) -> {
+            if (x.startsWith("boom") || y.startsWith("boom")) throw new IllegalStateException("bad key");
+            return x.compareTo(y);
+        };
+        SortConfig offHeap = new SortConfig(true, 1, 1 << 20).withOffHeap(true);
+        List<InMemorySortingPartWriter> created = Collections.synchronizedList(new ArrayList<>());
+        PartWriterFactory factory = () -> {
+            InMemorySortingPartWriter w = new InMemorySortingPartWriter(KEY, failing, StandardCharsets.UTF_8, offHeap);
+            created.add(w);
+            return w;
+        };
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> {
+            try (PipelinedPartWriter writer = new PipelinedPartWriter(factory, offHeap)) {
+                for (int p = 0; p < 5; p++) {
+                    writer.acceptLine("zzzz", LineEnding.LF);
+                    writer.acceptLine(p == 0 ? "boom" : "aaaa", LineEnding.LF);
+                    writer.endPart(tempDir.resolve("p" + p));
+                }
+                writer.acceptLine("left", LineEnding.LF);
+            }
+        });
+        assertThat(e).hasMessage("bad key");
+        assertThat(created).isNotEmpty().allMatch(w -> w.bytes() == 0);
+    }
+
+    @Test
+    void shouldRejectInvalidArguments() throws IOException {
+        assertThrows(NullPointerException.class, () -> new PipelinedPartWriter(null, SortConfig.defaults()));
+        assertThrows(NullPointerException.class, () -> new PipelinedPartWriter(sorting(), null));
+
+        PipelinedPartWriter writer = new PipelinedPartWriter(sorting(), new SortConfig(true, 1, 1024));
+        assertThrows(NullPointerException.class, () -> writer.endPart(null));
+        writer.close();
+        assertThrows(IllegalStateException.class, () -> writer.endPart(tempDir.resolve("p")));
+    }
+}
@@ -0,0 +1,130 @@
+package org.github.faberna.file.split.sorter;
+
+import org.github.faberna.file.segment.model.DelimitedSegment;
+import org.github.faberna.file.segment.model.KeySpec;
+import org.github.faberna.file.segment.model.Mode;
+import org.github.faberna.file.segment.model.RangeSegment;
+import org.github.faberna.file.split.model.LineEnding;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RadixSortTest {
+
+    @Test
+    void shouldPickOnlySingleLexOrIntRanges() {
+        assertThat(RadixSort.radixKey(KeySpec.of(new RangeSegment(0, 4)))).isNotNull();
+        assertThat(RadixSort.radixKey(KeySpec.of(new RangeSegment(0, 4, Mode.INT)))).isNotNull();
+        assertThat(RadixSort.radixKey(KeySpec.of(new RangeSegment(0, 4, Mode.FLOAT)))).isNull();
+        assertThat(RadixSort.radixKey(KeySpec.of(new RangeSegment(0, 4), new RangeSegment(4, 8)))).isNull();
+        assertThat(RadixSort.radixKey(KeySpec.of(new DelimitedSegment(',', 0, 5)))).isNull();
+    }
+
+    @Test
+    void lexShouldGiveTheSameOrderAsTheComparisonSort() {
+        Random random = new Random(1);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            // short lines, shared prefixes and many duplicate keys
+            int len = random.nextInt(12);
+            StringBuilder sb = new StringBuilder();
+            for (int c = 0; c < len; c++) sb.append((char) ('a' + random.nextInt(c < 4 ? 3 : 26)));
+            lines.add(sb.toString());
+        }
+
+        assertSameOrder(KeySpec.of(new RangeSegment(2, 8)), lines);
+        assertSameOrder(KeySpec.of(new RangeSegment(0, Integer.MAX_VALUE)), lines);
+    }
+
+    @Test
+    void intShouldGiveTheSameOrderAsTheComparisonSort() {
+        Random random = new Random(2);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            long value = switch (i % 4) {
+                case 0 -> random.nextInt(100) - 50;
+                case 1 -> random.nextLong();
+                case 2 -> random.nextInt();
+                default -> 0;
+            };
+            String number = i % 10 == 0 ? "x" : Long.toString(value);
+            lines.add(String.format(Locale.ROOT, "%22s|%d", number, i));
+        }
+
+        assertSameOrder(KeySpec.of(new RangeSegment(0, 22, Mode.INT)), lines);
+    }
+
+    /**
+     * Crossover against the comparison sorts. Run with -Drun.large.tests=true (and a large heap, e.g. -Xmx8g).
+     * 100M records do not fit the default test heap: raise {@code max} and the heap together.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "run.large.tests", matches = "true")
+    void benchmarkAgainstComparisonSorts() {
+        int max = Integer.getInteger("radix.bench.records", 10_000_000);
+        KeySpec lex = KeySpec.of(new RangeSegment(0, 10));
+        KeySpec number = KeySpec.of(new RangeSegment(0, 10, Mode.INT));
+        Random random = new Random(3);
+
+        for (int n = 1_000; n <= max; n *= 10) {
+            RecordArena arena = new RecordArena(StandardCharsets.UTF_8);
+            List<String> strings = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                String line = String.format(Locale.ROOT, "%010d,payload-%d", random.nextInt(Integer.MAX_VALUE), i);
+                arena.add(line, LineEnding.LF);
+                strings.add(line);
+            }
+
+            int records = n;
+            for (KeySpec spec : List.of(lex, number)) {
+                RangeSegment key = RadixSort.radixKey(spec);
+                long timSort = time(() -> new ArrayList<>(strings)
+                        .sort(((Comparator<String>) spec.comparator()).thenComparing(Comparator.naturalOrder())));
+                long mergeSort = time(() -> IndexSort.sort(identity(records), comparator(spec, arena)));
+                long radix = time(() -> RadixSort.sort(identity(records), arena, key, comparator(spec, arena)));
+                System.out.printf(Locale.ROOT, "%-4s n=%,12d  TimSort %,8d ms  IndexSort %,8d ms  radix %,8d ms%n",
+                        key.mode(), n, timSort, mergeSort, radix);
+            }
+        }
+    }
+
+    private static void assertSameOrder(KeySpec spec, List<String> lines) {
+        RecordArena arena = new RecordArena(StandardCharsets.UTF_8);
+        for (String line : lines) arena.add(line, LineEnding.LF);
+
+        int[] expected = identity(lines.size());
+        IndexSort.sort(expected, comparator(spec, arena));
+        int[] actual = identity(lines.size());
+        RadixSort.sort(actual, arena, RadixSort.radixKey(spec), comparator(spec, arena));
+
+        assertThat(actual).containsExactly(expected);
+    }
+
+    private static IndexSort.IntComparator comparator(KeySpec<?> spec, RecordArena arena) {
+        ByteCharSequence a = new ByteCharSequence();
+        ByteCharSequence b = new ByteCharSequence();
+        return (x, y) -> {
+            int c = spec.compareChars(arena.chars(x, a), arena.chars(y, b));
+            return c != 0 ? c : arena.compareLines(x, y, a, b);
+        };
+    }
+
+    private static int[] identity(int n) {
+        return IntStream.range(0, n).toArray();
+    }
+
+    private static long time(Runnable sort) {
+        long start = System.nanoTime();
+        sort.run();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
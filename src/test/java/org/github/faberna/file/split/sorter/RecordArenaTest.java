@@ -0,0 +1,96 @@
+package org.github.faberna.file.split.sorter;
+
+import org.github.faberna.file.split.model.LineEnding;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecordArenaTest {
+
+    @Test
+    void shouldKeepBytesEndingsAndCharsOfEveryRecord() throws IOException {
+        RecordArena arena = new RecordArena(StandardCharsets.UTF_8);
+        arena.add("plain", LineEnding.CRLF);
+        arena.add("çà", LineEnding.CR);
+        arena.add("", LineEnding.NONE);
+
+        assertThat(arena.size()).isEqualTo(3);
+        assertThat(arena.bytes()).isEqualTo(5 + 4);
+        assertThat(arena.ending(0)).isEqualTo(LineEnding.CRLF);
+        assertThat(arena.ending(1)).isEqualTo(LineEnding.CR);
+        assertThat(arena.ending(2)).isEqualTo(LineEnding.NONE);
+
+        ByteCharSequence view = new ByteCharSequence();
+        assertThat(arena.chars(0, view).toString()).isEqualTo("plain");
+        assertThat(arena.chars(1, view).toString()).isEqualTo("çà");
+        assertThat(arena.string(2)).isEmpty();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        arena.writeRecord(1, out);
+        assertThat(out.toByteArray()).isEqualTo("çà".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void shouldKeepRawBytesAndDecodeThemOnlyWhenRead() throws IOException {
+        RecordArena arena = new RecordArena(StandardCharsets.UTF_8);
+        byte[] malformed = {'x', (byte) 0xC3, '|', 'y'};
+        byte[] line = "--plain--".getBytes(StandardCharsets.UTF_8);
+        arena.add(line, 2, 5, LineEnding.LF);
+        arena.add(malformed, 0, malformed.length, LineEnding.CRLF);
+
+        assertThat(arena.allAscii()).isFalse();
+        assertThat(arena.string(0)).isEqualTo("plain");
+        assertThat(arena.string(1)).isEqualTo("x\uFFFD|y");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        arena.writeRecord(1, out);
+        assertThat(out.toByteArray()).isEqualTo(malformed);
+    }
+
+    @Test
+    void compareLinesShouldMatchStringCompareTo() {
+        String[] lines = {"abc", "abd", "ab", "", "~", "é", "\u007f", "aé"};
+        RecordArena arena = new RecordArena(StandardCharsets.UTF_8);
+        for (String line : lines) arena.add(line, LineEnding.LF);
+
+        ByteCharSequence a = new ByteCharSequence();
+        ByteCharSequence b = new ByteCharSequence();
+        for (int i = 0; i < lines.length; i++) {
+            for (int j = 0; j < lines.length; j++) {
+                assertThat(Integer.signum(arena.compareLines(i, j, a, b)))
+                        .as("%s vs %s", lines[i], lines[j])
+                        .isEqualTo(Integer.signum(lines[i].compareTo(lines[j])));
+            }
+        }
+    }
+
+    @Test
+    void shouldSpreadRecordsOverPagesAndGiveOversizedRecordsTheirOwnPage() {
+        RecordArena arena = new RecordArena(StandardCharsets.US_ASCII);
+        String big = "x".repeat(RecordArena.PAGE_BYTES + 10);
+        String small = "y".repeat(1000);
+        for (int i = 0; i < 3000; i++) arena.add(small, LineEnding.LF);
+        arena.add(big, LineEnding.LF);
+        arena.add("tail", LineEnding.NONE);
+
+        assertThat(arena.size()).isEqualTo(3002);
+        assertThat(arena.string(2999)).isEqualTo(small);
+        assertThat(arena.string(3000)).isEqualTo(big);
+        assertThat(arena.string(3001)).isEqualTo("tail");
+
+        arena.clear();
+        assertThat(arena.size()).isZero();
+        assertThat(arena.bytes()).isZero();
+    }
+
+    @Test
+    void shouldDetectAsciiCompatibleCharsets() {
+        assertThat(RecordArena.isAsciiCompatible(StandardCharsets.UTF_8)).isTrue();
+        assertThat(RecordArena.isAsciiCompatible(StandardCharsets.ISO_8859_1)).isTrue();
+        assertThat(RecordArena.isAsciiCompatible(StandardCharsets.UTF_16)).isFalse();
+    }
+}
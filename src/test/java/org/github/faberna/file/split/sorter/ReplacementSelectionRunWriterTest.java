@@ -0,0 +1,125 @@
+package org.github.faberna.file.split.sorter;
+
+import org.github.faberna.file.segment.model.KeyEncoder;
+import org.github.faberna.file.segment.model.KeySpec;
+import org.github.faberna.file.segment.model.RangeSegment;
+import org.github.faberna.file.split.model.LineEnding;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReplacementSelectionRunWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static final KeySpec KEY = KeySpec.of(new RangeSegment(0, 6));
+    // 100 lines of 10 chars
+    private static final long BUDGET =
+            100L * ReplacementSelectionRunWriter.estimateEntry("000000-abc", new KeyEncoder(KEY).encode("000000-abc"));
+
+    @Test
+    void randomInputShouldGiveRunsAboutTwiceTheMemory() throws IOException {
+        Random random = new Random(42);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) lines.add(String.format("%06d-abc", random.nextInt(1_000_000)));
+
+        RunStats stats = writeAndCheckRuns(lines);
+
+        assertThat(stats.bufferedRecords()).isEqualTo(100);
+        assertThat(stats.records()).isEqualTo(5_000);
+        assertThat(stats.runToMemoryRatio()).isBetween(1.6, 2.4);
+    }
+
+    @Test
+    void nearlySortedInputShouldGiveASingleRun() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            // local disorder smaller than the heap
+            int t = i + (i % 7 == 0 ? 30 : 0);
+            lines.add(String.format("%06d-abc", t));
+        }
+
+        RunStats stats = writeAndCheckRuns(lines);
+
+        assertThat(stats.runs()).isEqualTo(1);
+        assertThat(stats.maxRunRecords()).isEqualTo(5_000);
+    }
+
+    @Test
+    void reverseInputShouldGiveRunsOfTheMemorySize() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 1_000; i > 0; i--) lines.add(String.format("%06d-abc", i));
+
+        RunStats stats = writeAndCheckRuns(lines);
+
+        assertThat(stats.runs()).isEqualTo(10);
+        assertThat(stats.minRunRecords()).isEqualTo(100);
+    }
+
+    @Test
+    void shouldPreserveLineEndingsAndWriteAnEmptyPart() throws IOException {
+        RunPathAllocator spills = new RunPathAllocator(tempDir, "run-", ".txt");
+        ReplacementSelectionRunWriter writer =
+                new ReplacementSelectionRunWriter(KEY.comparator(), StandardCharsets.UTF_8, BUDGET, spills);
+        writer.acceptLine("000002-b", LineEnding.CRLF);
+        writer.acceptLine("000001-a", LineEnding.NONE);
+        writer.acceptLine("000003-c", LineEnding.CRLF);
+        Path part = tempDir.resolve("part.txt");
+        writer.endPart(part);
+        assertThat(Files.readString(part)).isEqualTo("000001-a\r\n000002-b\r\n000003-c");
+
+        Path empty = tempDir.resolve("empty.txt");
+        writer.endPart(empty);
+        assertThat(empty).isEmptyFile();
+        assertThat(spills.allocated()).isEmpty();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new ReplacementSelectionRunWriter(KEY.comparator(), StandardCharsets.UTF_8, 0, spills));
+    }
+
+    @Test
+    void shouldChargeTheHeapCostOfEachLine() {
+        int latin1 = ReplacementSelectionRunWriter.estimateEntry("caf\u00e9-abc", null);
+        // the String, its array and the heap entry weigh more than the chars of a short line
+        assertThat(latin1).isGreaterThan(2 * 10);
+        // one char above Latin-1 stores the whole line on two bytes per char
+        assertThat(ReplacementSelectionRunWriter.estimateEntry("caf\u20ac-abc", null)).isEqualTo(latin1 + 8);
+        // and the binary key of a KeySpec comparator is charged with its array
+        assertThat(ReplacementSelectionRunWriter.estimateEntry("caf\u00e9-abc", new byte[9])).isEqualTo(latin1 + 16 + 16);
+    }
+
+    /** Writes the lines, checks that every run is sorted and that nothing is lost. */
+    private RunStats writeAndCheckRuns(List<String> lines) throws IOException {
+        RunPathAllocator spills = new RunPathAllocator(tempDir, "run-", ".txt");
+        ReplacementSelectionRunWriter writer =
+                new ReplacementSelectionRunWriter(KEY.comparator(), StandardCharsets.UTF_8, BUDGET, spills);
+        for (String line : lines) writer.acceptLine(line, LineEnding.LF);
+        Path last = tempDir.resolve("run-last.txt");
+        writer.endPart(last);
+
+        List<Path> runs = new ArrayList<>(spills.allocated());
+        runs.add(last);
+        List<String> written = new ArrayList<>();
+        for (Path run : runs) {
+            List<String> runLines = Files.readAllLines(run, StandardCharsets.UTF_8);
+            assertThat(runLines).isSorted();
+            written.addAll(runLines);
+        }
+        assertThat(written).containsExactlyInAnyOrderElementsOf(lines);
+
+        RunStats stats = writer.runStats();
+        assertThat(stats.runs()).isEqualTo(runs.size());
+        return stats;
+    }
+}
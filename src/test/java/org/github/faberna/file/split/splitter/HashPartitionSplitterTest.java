@@ -0,0 +1,135 @@
+package org.github.faberna.file.split.splitter;
+
+import org.github.faberna.file.segment.model.DelimitedSegment;
+import org.github.faberna.file.segment.model.KeySpec;
+import org.github.faberna.file.segment.model.Mode;
+import org.github.faberna.file.split.config.IOConfig;
+import org.github.faberna.file.split.model.NewlineSeparator;
+import org.github.faberna.file.split.plan.SplitPlan;
+import org.github.faberna.file.split.plan.SplitPlanner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HashPartitionSplitterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static final KeySpec KEY_BY_FIRST_FIELD = KeySpec.of(new DelimitedSegment(';', 0, null, Mode.INT));
+
+    @Test
+    void shouldColocateEqualKeysAndKeepEveryLine() throws IOException {
+        Path input = tempDir.resolve("in.txt");
+        StringBuilder sb = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String line = "x;" + (i % 37) + ";payload-" + i;
+            expected.add(line);
+            sb.append(line).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        Files.writeString(input, sb.toString(), StandardCharsets.UTF_8);
+
+        KeySpec keySpec = KeySpec.of(new DelimitedSegment(';', 0, null, Mode.INT));
+        SplitPlan plan = new SplitPlanner().planByParts(input, tempDir.resolve("out"), 4, new NewlineSeparator(64, null));
+        IOConfig io = new IOConfig(4 * 1024, 4, false, "hash-", ".txt");
+
+        List<Path> parts = new HashPartitionSplitter().execute(plan, 5, io, keySpec, StandardCharsets.UTF_8);
+
+        assertThat(parts).hasSize(5).allMatch(Files::exists);
+
+        Map<String, Integer> partOfKey = new HashMap<>();
+        List<String> actual = new ArrayList<>();
+        for (int p = 0; p < parts.size(); p++) {
+            for (String line : Files.readAllLines(parts.get(p), StandardCharsets.UTF_8)) {
+                actual.add(line);
+                String key = line.split(";")[1];
+                Integer previous = partOfKey.putIfAbsent(key, p);
+                assertThat(previous == null || previous == p)
+                        .as("key %s found in more than one part", key)
+                        .isTrue();
+            }
+        }
+        assertThat(actual).containsExactlyInAnyOrderElementsOf(expected);
+        assertThat(partOfKey).hasSize(37);
+    }
+
+    @Test
+    void shouldPreserveOriginalBytesAndMissingTerminator() throws IOException {
+        Path input = tempDir.resolve("in.txt");
+        Files.writeString(input, "1;a\r\n2;b\r3;c", StandardCharsets.UTF_8);
+
+        SplitPlan plan = new SplitPlanner().planByParts(input, tempDir, 1, new NewlineSeparator(2, null));
+        IOConfig io = new IOConfig(1, 1, false, "one-", ".txt");
+
+        List<Path> parts = new HashPartitionSplitter().execute(plan, 1, io, KEY_BY_FIRST_FIELD, StandardCharsets.UTF_8);
+
+        assertThat(Files.readString(parts.getFirst(), StandardCharsets.UTF_8)).isEqualTo("1;a\r\n2;b\r3;c");
+    }
+
+    @Test
+    void shouldWriteTheUnterminatedLastLineAfterEveryLineOfItsPart() throws IOException {
+        Path input = tempDir.resolve("in.txt");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 400; i++) sb.append(i % 3).append(";line-").append(i).append('\n');
+        sb.append("1;last");
+        Files.writeString(input, sb.toString(), StandardCharsets.UTF_8);
+
+        // several ranges: lines of earlier ranges are routed to the part of the last line concurrently
+        SplitPlan plan = new SplitPlanner().planByParts(input, tempDir.resolve("out"), 4, new NewlineSeparator(64, null));
+        IOConfig io = new IOConfig(256, 4, false, "tail-", ".txt");
+
+        List<Path> parts = new HashPartitionSplitter().execute(plan, 3, io, KEY_BY_FIRST_FIELD, StandardCharsets.UTF_8);
+
+        long total = 0;
+        int unterminated = 0;
+        for (Path part : parts) {
+            String content = Files.readString(part, StandardCharsets.UTF_8);
+            total += content.length();
+            if (!content.isEmpty() && !content.endsWith("\n")) {
+                unterminated++;
+                assertThat(content).endsWith("\n1;last");
+            }
+        }
+        assertThat(unterminated).isEqualTo(1);
+        assertThat(total).isEqualTo(sb.length());
+    }
+
+    @Test
+    void shouldCreateEmptyPartsForEmptyPartitions() throws IOException {
+        Path input = tempDir.resolve("in.txt");
+        Files.writeString(input, "7;a\n7;b\n", StandardCharsets.UTF_8);
+
+        SplitPlan plan = new SplitPlanner().planByParts(input, tempDir, 2, new NewlineSeparator(8, null));
+        IOConfig io = new IOConfig(1024, 2, false, "empty-", ".txt");
+
+        List<Path> parts = new HashPartitionSplitter().execute(plan, 8, io, KEY_BY_FIRST_FIELD, StandardCharsets.UTF_8);
+
+        assertThat(parts).hasSize(8).allMatch(Files::exists);
+        long nonEmpty = parts.stream().filter(p -> p.toFile().length() > 0).count();
+        assertThat(nonEmpty).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRejectInvalidArguments() {
+        HashPartitionSplitter splitter = new HashPartitionSplitter();
+        SplitPlan plan = new SplitPlan(tempDir.resolve("in.txt"), tempDir, List.of());
+        IOConfig io = IOConfig.defaults();
+
+        assertThrows(IllegalArgumentException.class, () -> splitter.execute(null, 2, io, KEY_BY_FIRST_FIELD, StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> splitter.execute(plan, 0, io, KEY_BY_FIRST_FIELD, StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> splitter.execute(plan, 2, io, null, StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> splitter.execute(plan, 2, io, KEY_BY_FIRST_FIELD, null));
+    }
+}
@@ -1,9 +1,20 @@
 package org.github.faberna.file.split.splitter;
 
+import org.github.faberna.file.segment.model.KeySpec;
+import org.github.faberna.file.segment.model.RangeSegment;
 import org.github.faberna.file.split.config.IOConfig;
+import org.github.faberna.file.split.config.SortConfig;
+import org.github.faberna.file.split.model.FixedLengthSeparator;
+import org.github.faberna.file.split.model.LengthPrefixedSeparator;
 import org.github.faberna.file.split.model.NewlineSeparator;
+import org.github.faberna.file.split.sorter.InMemorySortingPartWriter;
+import org.github.faberna.file.split.sorter.PartWriter;
+import org.github.faberna.file.split.sorter.PartWriterFactory;
+import org.github.faberna.file.split.sorter.PipelinedPartWriter;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -139,8 +150,154 @@ class SequentialStreamingSplitterTest {
         assertArrayEquals(Files.readAllBytes(input), reconstructed);
     }
 
+    @Test
+    void splitByRecords_shouldWriteExactRecordCounts_acrossBufferBoundaries() throws Exception {
+        SequentialStreamingSplitter splitter = new SequentialStreamingSplitter();
+
+        Path input = tempDir.resolve("in.txt");
+        Path outDir = tempDir.resolve("parts");
+
+        // CR and CRLF endings, tiny buffer so that separators straddle reads
+        String content = "A\r\nBB\rC\nDDD\r\nE\rF";
+        Files.writeString(input, content, StandardCharsets.UTF_8);
+
+        IOConfig io = new IOConfig(3, 1, true, "rec-", ".txt");
+
+        splitter.splitByRecords(input, outDir, 2L, new NewlineSeparator(1, null), io);
+
+        List<Path> parts = listParts(outDir);
+        assertEquals(List.of("A\r\nBB\r", "C\nDDD\r\n", "E\rF"),
+                parts.stream().map(p -> {
+                    try {
+                        return Files.readString(p, StandardCharsets.UTF_8);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }).toList());
+    }
+
+    @Test
+    void splitByRecords_shouldNotCreateEmptyTrailingPart() throws Exception {
+        SequentialStreamingSplitter splitter = new SequentialStreamingSplitter();
+
+        Path input = tempDir.resolve("in.txt");
+        Path outDir = tempDir.resolve("parts");
+        Files.writeString(input, "1\n2\n3\n4\n", StandardCharsets.UTF_8);
+
+        splitter.splitByRecords(input, outDir, 2L, new NewlineSeparator(1, null), new IOConfig(1024, 1, true, "rec-", ".txt"));
+
+        List<Path> parts = listParts(outDir);
+        assertEquals(2, parts.size());
+        assertArrayEquals(Files.readAllBytes(input), readAllAndConcat(parts));
+    }
+
+    @Test
+    void splitByRecords_withPartWriter_shouldEndPartEveryNLines() throws Exception {
+        SequentialStreamingSplitter splitter = new SequentialStreamingSplitter();
+
+        Path input = tempDir.resolve("in.txt");
+        Path outDir = tempDir.resolve("parts");
+        Files.writeString(input, "a\rb\nc\r\nd\re", StandardCharsets.UTF_8);
+
+        List<Integer> linesPerPart = new java.util.ArrayList<>();
+        int[] current = {0};
+        PartWriter counting = new PartWriter() {
+            @Override
+            public void acceptLine(String line, org.github.faberna.file.split.model.LineEnding ending) {
+                current[0]++;
+            }
+
+            @Override
+            public void endPart(Path partFile) {
+                linesPerPart.add(current[0]);
+                current[0] = 0;
+            }
+        };
+
+        // buffer of 2 bytes: "a\r" | "b\n" ... exercises the CR resolved at the start of the next buffer
+        splitter.splitByRecords(input, outDir, 2L, new NewlineSeparator(1, null), new IOConfig(2, 1, true, "rec-", ".txt"), counting);
+
+        assertEquals(List.of(2, 2, 1), linesPerPart);
+    }
+
+    @ParameterizedTest(name = "pipelined={0}")
+    @ValueSource(booleans = {false, true})
+    void splitByMaxBytes_withPartWriter_shouldHandOverLinesInTheWriterCharset(boolean pipelined) throws Exception {
+        SequentialStreamingSplitter splitter = new SequentialStreamingSplitter();
+
+        Path input = tempDir.resolve("latin1.txt");
+        Path outDir = tempDir.resolve("parts");
+        // 0xE9 ('\u00e9' in ISO-8859-1) is not valid UTF-8 on its own
+        Files.write(input, "z\u00e9ro\ncaf\u00e9\n\u00e9t\u00e9\n".getBytes(StandardCharsets.ISO_8859_1));
+        KeySpec key = KeySpec.of(new RangeSegment(0, 8));
+        PartWriterFactory latin1 = () -> new InMemorySortingPartWriter(key, key.comparator(), StandardCharsets.ISO_8859_1);
+
+        withWriter(pipelined, latin1, writer -> splitter.splitByMaxBytes(input, outDir, Long.MAX_VALUE,
+                new NewlineSeparator(1, null), new IOConfig(4, 1, true, "part-", ".txt"), writer));
+
+        assertArrayEquals("caf\u00e9\nz\u00e9ro\n\u00e9t\u00e9".getBytes(StandardCharsets.ISO_8859_1),
+                Files.readAllBytes(outDir.resolve("part-0001.txt")));
+    }
+
+    @ParameterizedTest(name = "pipelined={0}")
+    @ValueSource(booleans = {false, true})
+    void splitByRecords_withFixedLengthRecords_shouldKeepBytesThatAreNotUtf8(boolean pipelined) throws Exception {
+        SequentialStreamingSplitter splitter = new SequentialStreamingSplitter();
+
+        Path input = tempDir.resolve("fixed.bin");
+        Path outDir = tempDir.resolve("parts");
+        byte[] records = {'b', (byte) 0xE9, (byte) 0xFF, 'a', (byte) 0x80, 0x00};
+        Files.write(input, records);
+        KeySpec key = KeySpec.of(new RangeSegment(0, 1));
+        PartWriterFactory latin1 = () -> new InMemorySortingPartWriter(key, key.comparator(), StandardCharsets.ISO_8859_1,
+                SortConfig.defaults(), new FixedLengthSeparator(3));
+
+        withWriter(pipelined, latin1, writer -> splitter.splitByRecords(input, outDir, 10L, new FixedLengthSeparator(3),
+                new IOConfig(4, 1, true, "part-", ".bin"), writer));
+
+        assertArrayEquals(new byte[]{'a', (byte) 0x80, 0x00, 'b', (byte) 0xE9, (byte) 0xFF},
+                Files.readAllBytes(outDir.resolve("part-0001.bin")));
+    }
+
+    @ParameterizedTest(name = "pipelined={0}")
+    @ValueSource(booleans = {false, true})
+    void splitByRecords_withLengthPrefixedRecords_shouldKeepPayloadsThatAreNotUtf8(boolean pipelined) throws Exception {
+        SequentialStreamingSplitter splitter = new SequentialStreamingSplitter();
+
+        Path input = tempDir.resolve("framed.bin");
+        Path outDir = tempDir.resolve("parts");
+        // varint length, then the payload
+        Files.write(input, new byte[]{3, 'b', (byte) 0xE9, (byte) 0xFF, 2, 'a', (byte) 0x80});
+        LengthPrefixedSeparator framing = new LengthPrefixedSeparator(LengthPrefixedSeparator.Prefix.VARINT);
+        KeySpec key = KeySpec.of(new RangeSegment(0, 1));
+        PartWriterFactory latin1 = () -> new InMemorySortingPartWriter(key, key.comparator(), StandardCharsets.ISO_8859_1,
+                SortConfig.defaults(), framing);
+
+        withWriter(pipelined, latin1, writer -> splitter.splitByRecords(input, outDir, 10L, framing,
+                new IOConfig(4, 1, true, "part-", ".bin"), writer));
+
+        assertArrayEquals(new byte[]{2, 'a', (byte) 0x80, 3, 'b', (byte) 0xE9, (byte) 0xFF},
+                Files.readAllBytes(outDir.resolve("part-0001.bin")));
+    }
+
     // -------- helpers --------
 
+    /** Runs the split with a writer of the factory, or through a PipelinedPartWriter, as SortedSplitEngine does. */
+    private static void withWriter(boolean pipelined, PartWriterFactory factory, WriterUse use) throws IOException {
+        if (!pipelined) {
+            use.accept(factory.create());
+            return;
+        }
+        try (PipelinedPartWriter writer = new PipelinedPartWriter(factory, new SortConfig(true, 2, 1 << 20))) {
+            use.accept(writer);
+        }
+    }
+
+    @FunctionalInterface
+    private interface WriterUse {
+        void accept(PartWriter writer) throws IOException;
+    }
+
     private static List<Path> listParts(Path dir) throws IOException {
         try (var s = Files.list(dir)) {
             return s.filter(Files::isRegularFile)
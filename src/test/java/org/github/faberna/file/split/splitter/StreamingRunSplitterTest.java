@@ -0,0 +1,165 @@
+package org.github.faberna.file.split.splitter;
+
+import org.github.faberna.file.segment.model.KeySpec;
+import org.github.faberna.file.segment.model.RangeSegment;
+import org.github.faberna.file.split.config.IOConfig;
+import org.github.faberna.file.split.model.LineEnding;
+import org.github.faberna.file.split.model.NewlineSeparator;
+import org.github.faberna.file.split.model.SingleByteSeparator;
+import org.github.faberna.file.split.sorter.InMemorySortingPartWriter;
+import org.github.faberna.file.split.sorter.PartWriter;
+import org.github.faberna.file.split.sorter.PartWriterFactory;
+import org.github.faberna.file.split.util.MemoryBudget;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StreamingRunSplitterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static final KeySpec KEY = KeySpec.of(new RangeSegment(0, 6));
+
+    private static ReadableByteChannel channelOf(String text) {
+        return Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static PartWriterFactory sorting() {
+        return () -> new InMemorySortingPartWriter(KEY, KEY.comparator(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void shouldCutSortedRunsByMemoryBudgetAndKeepEveryLine() throws IOException {
+        List<String> expected = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            String line = String.format("%06d-payload", (i * 7919) % 1000);
+            expected.add(line);
+            sb.append(line).append('\n');
+        }
+        // two sorters: each run holds ~ budget / 3
+        long budget = 3L * 100 * MemoryBudget.estimateLine(14);
+        IOConfig io = new IOConfig(512, 2, false, "run-", ".txt");
+
+        List<Path> runs = new StreamingRunSplitter()
+                .execute(channelOf(sb.toString()), tempDir, budget, new NewlineSeparator(512, null), io, sorting());
+
+        assertThat(runs).hasSize(10).allMatch(Files::exists);
+        assertThat(runs.getFirst().getFileName().toString()).isEqualTo("run-0001.txt");
+
+        List<String> all = new ArrayList<>();
+        for (Path run : runs) {
+            List<String> lines = Files.readAllLines(run, StandardCharsets.UTF_8);
+            assertThat(lines).hasSize(100).isSorted();
+            all.addAll(lines);
+        }
+        assertThat(all).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    @Test
+    void shouldDetectEndingsAcrossReadBuffers() throws IOException {
+        List<String> lines = new ArrayList<>();
+        List<LineEnding> endings = new ArrayList<>();
+        PartWriter recorder = new PartWriter() {
+            @Override
+            public void acceptLine(String line, LineEnding ending) {
+                lines.add(line);
+                endings.add(ending);
+            }
+
+            @Override
+            public void endPart(Path partFile) throws IOException {
+                Files.writeString(partFile, "");
+            }
+        };
+        IOConfig io = new IOConfig(1, 1, false, "run-", ".txt");
+
+        // 1-byte reads: every CRLF and CR spans two buffers
+        List<Path> runs = new StreamingRunSplitter()
+                .execute(channelOf("a\r\nbb\rc\nd\r"), tempDir, Long.MAX_VALUE, new NewlineSeparator(1, null), io, () -> recorder);
+
+        assertThat(runs).hasSize(1);
+        assertThat(lines).containsExactly("a", "bb", "c", "d");
+        assertThat(endings).containsExactly(LineEnding.CRLF, LineEnding.CR, LineEnding.LF, LineEnding.CR);
+    }
+
+    @Test
+    void shouldReturnNoRunForEmptyStream() throws IOException {
+        List<Path> runs = new StreamingRunSplitter()
+                .execute(channelOf(""), tempDir, 1024, new NewlineSeparator(8, null), IOConfig.defaults(), sorting());
+
+        assertThat(runs).isEmpty();
+    }
+
+    @Test
+    void shouldPropagateWriterFailure() {
+        PartWriterFactory failing = () -> new PartWriter() {
+            @Override
+            public void acceptLine(String line, LineEnding ending) {
+                // discard
+            }
+
+            @Override
+            public void endPart(Path partFile) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        IOConfig io = new IOConfig(64, 1, false, "run-", ".txt");
+
+        IOException e = assertThrows(IOException.class, () -> new StreamingRunSplitter()
+                .execute(channelOf("a\nb\nc\nd\n"), tempDir, 1, new NewlineSeparator(8, null), io, failing));
+        assertThat(e).hasMessage("disk full");
+    }
+
+    @Test
+    void shouldFailOnAChannelThatNeverDeliversBytes() {
+        int[] reads = {0};
+        ReadableByteChannel empty = new ReadableByteChannel() {
+            @Override
+            public int read(java.nio.ByteBuffer dst) {
+                reads[0]++;
+                return 0;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        IOConfig io = new IOConfig(64, 1, false, "run-", ".txt");
+
+        assertThrows(IOException.class, () -> new StreamingRunSplitter()
+                .execute(empty, tempDir, 1024, new NewlineSeparator(8, null), io, sorting()));
+        assertThat(reads[0]).isEqualTo(StreamingRunSplitter.MAX_EMPTY_READS);
+    }
+
+    @Test
+    void shouldRejectInvalidArguments() {
+        StreamingRunSplitter splitter = new StreamingRunSplitter();
+        NewlineSeparator lf = new NewlineSeparator(8, null);
+        IOConfig io = IOConfig.defaults();
+
+        assertThrows(IllegalArgumentException.class, () -> splitter.execute(null, tempDir, 1, lf, io, sorting()));
+        assertThrows(IllegalArgumentException.class, () -> splitter.execute(channelOf("a"), tempDir, 0, lf, io, sorting()));
+        assertThrows(IllegalArgumentException.class,
+                () -> splitter.execute(channelOf("a"), tempDir, 1, new SingleByteSeparator((byte) '$', 8), io, sorting()));
+        assertThrows(IllegalArgumentException.class, () -> splitter.execute(channelOf("a"), tempDir, 1, lf, io, null));
+    }
+}
@@ -0,0 +1,70 @@
+package org.github.faberna.file.split.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DirectBufferPoolTest {
+
+    @Test
+    void shouldReuseReleasedBufferOfSameCapacity() {
+        DirectBufferPool pool = new DirectBufferPool(1024);
+
+        ByteBuffer first = pool.acquire(64);
+        assertThat(first.isDirect()).isTrue();
+        assertThat(first.capacity()).isEqualTo(64);
+        first.put((byte) 1).limit(10);
+        pool.release(first);
+
+        ByteBuffer second = pool.acquire(64);
+        assertThat(second).isSameAs(first);
+        // handed out cleared
+        assertThat(second.position()).isZero();
+        assertThat(second.limit()).isEqualTo(64);
+
+        ByteBuffer other = pool.acquire(128);
+        assertThat(other).isNotSameAs(first);
+        assertThat(other.capacity()).isEqualTo(128);
+
+        assertThat(pool.hits()).isEqualTo(1);
+        assertThat(pool.misses()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldShareBuffersAcrossThreadsWithinTheBound() {
+        DirectBufferPool pool = new DirectBufferPool(2 * 64);
+
+        // 2 fit the bound, the third one is dropped
+        ByteBuffer[] buffers = new ByteBuffer[3];
+        for (int i = 0; i < buffers.length; i++) buffers[i] = pool.acquire(64);
+        for (ByteBuffer b : buffers) pool.release(b);
+        assertThat(pool.pooledBytes()).isEqualTo(2 * 64);
+
+        long hitsBefore = pool.hits();
+        ByteBuffer fromOtherThread = CompletableFuture.supplyAsync(() -> pool.acquire(64)).join();
+        assertThat(fromOtherThread).isIn((Object[]) buffers);
+        assertThat(pool.hits()).isEqualTo(hitsBefore + 1);
+        assertThat(pool.pooledBytes()).isEqualTo(64);
+    }
+
+    @Test
+    void shouldIgnoreNullAndHeapBuffers() {
+        DirectBufferPool pool = new DirectBufferPool(1024);
+        pool.release(null);
+        pool.release(ByteBuffer.allocate(64));
+
+        assertThat(pool.acquire(64).isDirect()).isTrue();
+        assertThat(pool.hits()).isZero();
+        assertThat(pool.misses()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRejectInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new DirectBufferPool(-1));
+        assertThrows(IllegalArgumentException.class, () -> new DirectBufferPool(1024).acquire(0));
+    }
+}
@@ -0,0 +1,62 @@
+package org.github.faberna.file.split.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MemoryBudgetTest {
+
+    @Test
+    void reserveShouldBlockUntilEnoughIsReleased() throws Exception {
+        MemoryBudget budget = new MemoryBudget(100);
+        budget.reserve(70);
+
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> {
+            try {
+                budget.reserve(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.sleep(50);
+        assertThat(second).isNotDone();
+
+        budget.release(70);
+        second.get(5, TimeUnit.SECONDS);
+        assertThat(budget.reservedBytes()).isEqualTo(50);
+    }
+
+    @Test
+    void oversizedReservationShouldBeGrantedWhenNothingElseIsReserved() throws InterruptedException {
+        MemoryBudget budget = new MemoryBudget(10);
+        budget.reserve(1_000);
+        assertThat(budget.reservedBytes()).isEqualTo(1_000);
+        budget.release(1_000);
+        assertThat(budget.reservedBytes()).isZero();
+    }
+
+    @Test
+    void tryReserveShouldNeverExceedTheLimit() {
+        MemoryBudget budget = new MemoryBudget(100);
+        assertThat(budget.tryReserve(60)).isTrue();
+        assertThat(budget.tryReserve(50)).isFalse();
+        assertThat(budget.tryReserve(40)).isTrue();
+        assertThat(budget.reservedBytes()).isEqualTo(100);
+        budget.release(100);
+        assertThat(budget.tryReserve(1_000)).isFalse();
+        assertThat(budget.reservedBytes()).isZero();
+    }
+
+    @Test
+    void shouldRejectInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new MemoryBudget(0));
+        MemoryBudget budget = new MemoryBudget(10);
+        assertThrows(IllegalArgumentException.class, () -> budget.reserve(-1));
+        assertThrows(IllegalArgumentException.class, () -> budget.release(-1));
+        assertThat(MemoryBudget.estimateLine(10)).isEqualTo(10 + MemoryBudget.RECORD_OVERHEAD_BYTES);
+    }
+}
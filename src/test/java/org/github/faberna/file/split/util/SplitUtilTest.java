@@ -14,6 +14,8 @@ import java.nio.charset.StandardCharsets;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class SplitUtilTest {
@@ -33,7 +35,8 @@ class SplitUtilTest {
     @ParameterizedTest
     @MethodSource("emitLineBytesCases")
     void emitLineBytes_shouldReturnOriginalBytesConsumed_andResetBuffer(LineEnding ending, int endingBytes) {
-        PartWriter writer = mock(PartWriter.class);
+        // the default acceptRecord decodes the bytes into acceptLine
+        PartWriter writer = mock(PartWriter.class, CALLS_REAL_METHODS);
         ByteArrayOutputStream lineBuf = new ByteArrayOutputStream();
 
         // include multi-byte UTF-8 chars to ensure we count ORIGINAL BYTES (lineBuf.size), not chars
@@ -47,16 +50,19 @@ class SplitUtilTest {
         assertEquals(lineBytes.length + endingBytes, consumed);
         assertEquals(0, lineBuf.size(), "lineBuf must be reset after emitting");
 
+        verify(writer, times(1)).acceptRecord(any(), eq(0), eq(lineBytes.length), eq(charset), eq(ending));
         verify(writer, times(1)).acceptLine(line, ending);
         verifyNoMoreInteractions(writer);
     }
     @Test
     void emitLineBytes_shouldHandleEmptyLine() {
-        PartWriter writer = mock(PartWriter.class);
+        // the default acceptRecord decodes the bytes into acceptLine
+        PartWriter writer = mock(PartWriter.class, CALLS_REAL_METHODS);
         ByteArrayOutputStream lineBuf = new ByteArrayOutputStream();
         long consumed = SplitUtil.emitLineBytes(writer, lineBuf, LineEnding.LF, StandardCharsets.UTF_8);
         assertEquals(1L, consumed);
         assertEquals(0, lineBuf.size());
+        verify(writer).acceptRecord(any(), eq(0), eq(0), eq(StandardCharsets.UTF_8), eq(LineEnding.LF));
         verify(writer).acceptLine("", LineEnding.LF);
         verifyNoMoreInteractions(writer);
     }